@@ -23,4 +23,20 @@ public class AgentChatRequest implements Serializable {
     private String message;
 
     private Map<String, Object> context;
+
+    /**
+     * resumeStream：要恢复的轮次ID（为空时恢复该会话最近的轮次）
+     */
+    private String turnId;
+
+    /**
+     * resumeStream：已收到的最大事件序号，从其后继续（为空表示从头重放）
+     */
+    private Long lastSeq;
+
+    /**
+     * 无状态对话：不读写 Session 和会话历史，适合不会继续的一次性调用，此时 sessionId 可为空；
+     * Agent 定义的 config.stateless 为 true 时同样按无状态执行
+     */
+    private Boolean stateless;
 }
@@ -51,4 +51,24 @@ public class AgentChatResponse implements Serializable {
      * 是否完成
      */
     private Boolean finished;
+
+    /**
+     * 所属轮次ID，只在轮次的第一个事件（seq = 1）中携带
+     */
+    private String turnId;
+
+    /**
+     * 事件在轮次内的序号，从 1 开始连续递增；断线后用 resumeStream 从最后收到的序号继续
+     */
+    private Long seq;
+
+    /**
+     * 请求因节点过载被拒绝时（ERROR 事件），建议的重试间隔（毫秒）
+     */
+    private Long retryAfterMs;
+
+    /**
+     * batchChat：结果对应的请求在 BatchChatRequest.requests 中的下标
+     */
+    private Integer batchIndex;
 }
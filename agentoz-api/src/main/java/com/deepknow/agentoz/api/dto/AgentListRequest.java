@@ -0,0 +1,40 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Agent 分页列表请求（基于游标）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentListRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 游标：上一页返回的 nextCursor，首页为空
+     */
+    private String cursor;
+
+    /**
+     * 每页数量，默认 20，最大 200
+     */
+    private Integer pageSize;
+
+    /**
+     * 是否包含已禁用的 Agent（包含时从数据库查询）
+     */
+    private Boolean includeDisabled;
+
+    /**
+     * 上次响应的 etag，内容未变化时返回 notModified
+     */
+    private String ifNoneMatch;
+}
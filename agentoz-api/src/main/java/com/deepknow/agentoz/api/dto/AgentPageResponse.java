@@ -0,0 +1,43 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Agent 分页列表响应
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentPageResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 当前页数据（notModified 时为空）
+     */
+    private List<AgentSummaryDTO> items;
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+
+    /**
+     * 当前页内容的 etag，轮询时通过 ifNoneMatch 回传
+     */
+    private String etag;
+
+    /**
+     * 内容与 ifNoneMatch 一致，未返回数据
+     */
+    private boolean notModified;
+}
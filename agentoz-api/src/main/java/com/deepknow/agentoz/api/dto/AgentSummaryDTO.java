@@ -0,0 +1,35 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Agent 摘要信息（列表展示用，不含 systemPrompt 和 config）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentSummaryDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private String name;
+
+    private String description;
+
+    private String modelName;
+
+    private Boolean enabled;
+
+    private Boolean callableByOthers;
+
+    private List<String> subAgentIds;
+}
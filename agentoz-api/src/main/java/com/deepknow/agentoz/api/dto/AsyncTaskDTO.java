@@ -0,0 +1,46 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 异步任务状态及结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AsyncTaskDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String taskId;
+
+    private String agentId;
+
+    private String agentName;
+
+    private String conversationId;
+
+    /**
+     * 任务状态：见 AsyncTaskStatus
+     */
+    private String status;
+
+    private String priority;
+
+    private String result;
+
+    private String errorMessage;
+
+    private LocalDateTime submitTime;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime completeTime;
+}
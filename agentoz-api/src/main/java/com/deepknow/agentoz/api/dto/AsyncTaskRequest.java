@@ -0,0 +1,45 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 异步任务提交请求
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AsyncTaskRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 执行任务的智能体ID
+     */
+    private String agentId;
+
+    /**
+     * 所属会话ID（为空时按任务ID生成独立会话）
+     */
+    private String conversationId;
+
+    /**
+     * 任务内容（作为本轮用户消息）
+     */
+    private String message;
+
+    /**
+     * 优先级：high / normal / low，默认 normal
+     */
+    private String priority;
+
+    /**
+     * 调用者智能体ID（可选）
+     */
+    private String callerAgentId;
+}
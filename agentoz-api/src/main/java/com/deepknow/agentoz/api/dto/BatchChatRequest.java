@@ -0,0 +1,37 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量对话请求（离线评测），各条请求相互独立
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchChatRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 要执行的对话，结果中的 batchIndex 即在此列表中的下标
+     */
+    private List<AgentChatRequest> requests;
+
+    /**
+     * 同时执行的请求数，为空时使用服务端默认值，超出服务端上限时按上限执行
+     */
+    private Integer parallelism;
+
+    /**
+     * 整个批次按无状态执行（同 AgentChatRequest.stateless）：不读写 Session 和会话历史，
+     * 此时 sessionId 可为空（只用于回显）
+     */
+    private Boolean stateless;
+}
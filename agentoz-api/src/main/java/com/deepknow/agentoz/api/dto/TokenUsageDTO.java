@@ -0,0 +1,46 @@
+package com.deepknow.agentoz.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Token 用量（累计值）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenUsageDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 统计维度：agent / conversation
+     */
+    private String scope;
+
+    /**
+     * agentId 或 conversationId
+     */
+    private String id;
+
+    private Long inputTokens;
+
+    private Long outputTokens;
+
+    private Long totalTokens;
+
+    /**
+     * 模型调用次数
+     */
+    private Long calls;
+
+    /**
+     * 会话预算（仅 conversation 维度，0 表示不限制）
+     */
+    private Long budget;
+}
@@ -0,0 +1,19 @@
+package com.deepknow.agentoz.api.enums;
+
+/**
+ * 异步任务状态
+ */
+public enum AsyncTaskStatus {
+
+    SUBMITTED,
+
+    QUEUED,
+
+    RUNNING,
+
+    COMPLETED,
+
+    FAILED,
+
+    CANCELLED
+}
@@ -0,0 +1,181 @@
+package com.deepknow.agentoz.api.routing;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.cluster.Constants;
+import org.apache.dubbo.rpc.cluster.loadbalance.AbstractLoadBalance;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 会话亲和负载均衡（Dubbo SPI：conversation-affinity）
+ * <p>
+ * 按 agentId:conversationId 在一致性哈希环上选择节点，同一会话的各轮对话落在同一个 Provider，
+ * 复用节点内存中的 Agent 实例和缓存。由消费端按引用开启（需依赖 agentoz-api），不在 Provider 侧全局声明，
+ * 以免下发到 Provider 导出的其他服务：
+ * <pre>
+ * &#64;DubboReference(loadbalance = ConversationAffinityLoadBalance.NAME)
+ * private AgentService agentService;
+ * </pre>
+ * 或在消费端配置 dubbo.consumer.loadbalance: conversation-affinity。
+ * <p>
+ * 环按服务缓存，只在出现环上没有的节点或节点权重变化时按传入的完整节点列表重建。虚拟节点的位置只由地址和权重决定，
+ * 节点变化只影响环上相邻区段的会话。失败重试时 Dubbo 传入排除了已尝试节点的子集（reselect），此时不重建也不替换缓存的环，
+ * 而是在完整的环上顺时针跳过不在子集中的节点，结果与按子集建环相同；节点下线同样按跳过处理，直到下一次重建。
+ * 请求参数中没有会话信息的方法按权重随机选择。
+ */
+public class ConversationAffinityLoadBalance extends AbstractLoadBalance {
+
+    public static final String NAME = "conversation-affinity";
+
+    /**
+     * 默认权重节点的虚拟节点数，按权重等比例增减
+     */
+    private static final int VIRTUAL_NODES = 160;
+
+    private final ConcurrentMap<String, Ring> rings = new ConcurrentHashMap<>();
+
+    @Override
+    protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+        String key = affinityKey(invocation);
+        if (key == null) {
+            return randomByWeight(invokers, invocation);
+        }
+        Map<String, Invoker<T>> available = new HashMap<>(invokers.size() * 2);
+        for (Invoker<T> invoker : invokers) {
+            available.put(invoker.getUrl().getAddress(), invoker);
+        }
+        String serviceKey = invokers.get(0).getUrl().getServiceKey();
+        Ring ring = rings.get(serviceKey);
+        if (ring == null || !ring.covers(invokers)) {
+            ring = Ring.build(invokers);
+            rings.put(serviceKey, ring);
+        }
+        Invoker<T> selected = available.get(ring.locate(hash(digest(key), 0), available.keySet()));
+        return selected != null ? selected : randomByWeight(invokers, invocation);
+    }
+
+    private static int weightOf(Invoker<?> invoker) {
+        return Math.max(invoker.getUrl().getParameter(Constants.WEIGHT_KEY, Constants.DEFAULT_WEIGHT), 0);
+    }
+
+    /**
+     * 会话键：agentId:conversationId，与 Redis sessionId 一致
+     */
+    private static String affinityKey(Invocation invocation) {
+        Object[] arguments = invocation.getArguments();
+        if (arguments != null && arguments.length > 0 && arguments[0] instanceof AgentChatRequest request
+                && request.getAgentId() != null && request.getSessionId() != null) {
+            return request.getAgentId() + ":" + request.getSessionId();
+        }
+        return null;
+    }
+
+    private <T> Invoker<T> randomByWeight(List<Invoker<T>> invokers, Invocation invocation) {
+        int total = 0;
+        int[] weights = new int[invokers.size()];
+        for (int i = 0; i < invokers.size(); i++) {
+            weights[i] = Math.max(getWeight(invokers.get(i), invocation), 0);
+            total += weights[i];
+        }
+        if (total == 0) {
+            return invokers.get(ThreadLocalRandom.current().nextInt(invokers.size()));
+        }
+        int offset = ThreadLocalRandom.current().nextInt(total);
+        for (int i = 0; i < invokers.size(); i++) {
+            offset -= weights[i];
+            if (offset < 0) {
+                return invokers.get(i);
+            }
+        }
+        return invokers.get(invokers.size() - 1);
+    }
+
+    private static byte[] digest(String value) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从 MD5 摘要中取第 index 个 32 位哈希（ketama）
+     */
+    private static long hash(byte[] digest, int index) {
+        return (((long) (digest[3 + index * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + index * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + index * 4] & 0xFF) << 8)
+                | (digest[index * 4] & 0xFF))
+                & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 一致性哈希环：哈希值 -> 节点地址
+     *
+     * @param weights 建环时的节点地址和权重
+     */
+    private record Ring(NavigableMap<Long, String> nodes, Map<String, Integer> weights) {
+
+        static Ring build(List<? extends Invoker<?>> invokers) {
+            Map<String, Integer> weights = new HashMap<>(invokers.size() * 2);
+            for (Invoker<?> invoker : invokers) {
+                weights.put(invoker.getUrl().getAddress(), weightOf(invoker));
+            }
+            NavigableMap<Long, String> nodes = new TreeMap<>();
+            weights.forEach((address, weight) -> {
+                int replicas = Math.max(4, VIRTUAL_NODES * weight / Constants.DEFAULT_WEIGHT);
+                for (int i = 0; i < replicas / 4; i++) {
+                    byte[] digest = digest(address + "-" + i);
+                    for (int h = 0; h < 4; h++) {
+                        nodes.put(hash(digest, h), address);
+                    }
+                }
+            });
+            return new Ring(nodes, Map.copyOf(weights));
+        }
+
+        /**
+         * 传入的节点都在环上且权重未变（完整列表或重试时的子集）
+         */
+        boolean covers(List<? extends Invoker<?>> invokers) {
+            for (Invoker<?> invoker : invokers) {
+                Integer weight = weights.get(invoker.getUrl().getAddress());
+                if (weight == null || weight != weightOf(invoker)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 顺时针找到第一个在 available 中的节点
+         */
+        String locate(long hash, Set<String> available) {
+            for (String address : nodes.tailMap(hash, true).values()) {
+                if (available.contains(address)) {
+                    return address;
+                }
+            }
+            for (String address : nodes.headMap(hash, false).values()) {
+                if (available.contains(address)) {
+                    return address;
+                }
+            }
+            return null;
+        }
+    }
+}
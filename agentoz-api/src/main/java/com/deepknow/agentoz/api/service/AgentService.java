@@ -20,6 +20,19 @@ public interface AgentService {
      */
     Flux<AgentChatResponse> streamChat(AgentChatRequest request);
 
+    /**
+     * 紧凑格式的流式对话：首帧为会话元数据，之后每帧只有事件类型和增量内容
+     * 帧格式见 CompactStreamCodec；客户端通过 CompactStreams.streamChat 调用，服务端不支持时自动回退到 streamChat
+     */
+    Flux<byte[]> streamChatCompact(AgentChatRequest request);
+
+    /**
+     * 断线重连：重新接上仍在执行（或刚结束）的轮次，从 lastSeq 之后的事件继续，不会重新调用模型
+     * 需要 sessionId、agentId（与 streamChat 相同，保证路由到同一节点），可选 turnId、lastSeq；
+     * 事件已超出重放缓冲区或轮次不存在时返回 ERROR 事件，客户端应重新发起 streamChat
+     */
+    Flux<AgentChatResponse> resumeStream(AgentChatRequest request);
+
     /**
      * 打断当前会话
      */
@@ -27,13 +40,49 @@ public interface AgentService {
 
     Mono<AgentChatResponse> chat(AgentChatRequest request);
 
+    /**
+     * 批量对话（离线评测）：在独立的执行池中按 parallelism 并发执行，不占用在线对话的准入名额；
+     * 每条请求完成后立即返回一个结果（按完成顺序，用 batchIndex 对应请求），单条失败返回 ERROR 结果，不影响其他请求
+     */
+    Flux<AgentChatResponse> batchChat(BatchChatRequest request);
+
     Mono<AgentDefinitionDTO> getAgent(String agentId);
 
     Mono<List<AgentDefinitionDTO>> listAgents();
 
+    /**
+     * 分页查询 Agent 摘要（游标分页，支持 etag 条件响应）
+     */
+    Mono<AgentPageResponse> listAgentPage(AgentListRequest request);
+
     Mono<AgentDefinitionDTO> createAgent(AgentDefinitionDTO definition);
 
     Mono<AgentDefinitionDTO> updateAgent(AgentDefinitionDTO definition);
 
     Mono<Boolean> deleteAgent(String agentId);
+
+    /**
+     * 提交异步任务，立即返回任务ID
+     */
+    Mono<String> submitTask(AsyncTaskRequest request);
+
+    /**
+     * 查询异步任务状态及结果
+     */
+    Mono<AsyncTaskDTO> getTask(String taskId);
+
+    /**
+     * 取消排队中的异步任务
+     */
+    Mono<Boolean> cancelTask(String taskId);
+
+    /**
+     * 查询会话累计 Token 用量
+     */
+    Mono<TokenUsageDTO> getConversationTokenUsage(String conversationId);
+
+    /**
+     * 查询 Agent 累计 Token 用量
+     */
+    Mono<TokenUsageDTO> getAgentTokenUsage(String agentId);
 }
@@ -0,0 +1,256 @@
+package com.deepknow.agentoz.api.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * streamChatCompact 的帧编解码
+ * <p>
+ * 一个流的第一帧是头帧，携带会话和智能体元数据；之后的事件帧只有事件类型、标志位、增量内容和按标志位出现的可选字段：
+ * <pre>
+ * 头帧    [0x00][版本][sessionId][agentId][agentName]
+ * 事件帧  [事件代码][标志位][content][seq][retryAfterMs][turnId]，后四项只在标志位含对应的 HAS_* 时出现
+ * 字符串  [varint(UTF-8 字节数 + 1)][UTF-8 字节]，长度前缀 0 表示 null
+ * 整数    [varint]（非负）
+ * </pre>
+ * 事件代码是固定的线上取值，与 {@link EventType} 的声明顺序无关，新增事件类型只能追加新代码。
+ */
+public final class CompactStreamCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte HEADER = 0x00;
+
+    private static final int FINISHED = 0x01;
+    private static final int HAS_CONTENT = 0x02;
+    private static final int HAS_SEQ = 0x04;
+    private static final int HAS_RETRY_AFTER = 0x08;
+    private static final int HAS_TURN_ID = 0x10;
+
+    private CompactStreamCodec() {
+    }
+
+    public static byte[] header(String sessionId, String agentId, String agentName) {
+        byte[] session = utf8(sessionId);
+        byte[] agent = utf8(agentId);
+        byte[] name = utf8(agentName);
+        Writer writer = new Writer(3 + stringSize(session) + stringSize(agent) + stringSize(name));
+        writer.put(HEADER);
+        writer.put(VERSION);
+        writer.putString(session);
+        writer.putString(agent);
+        writer.putString(name);
+        return writer.buffer;
+    }
+
+    public static byte[] event(AgentChatResponse response) {
+        byte[] content = utf8(response.getContent());
+        byte[] turnId = utf8(response.getTurnId());
+        Long seq = response.getSeq();
+        Long retryAfterMs = response.getRetryAfterMs();
+        int flags = (Boolean.TRUE.equals(response.getFinished()) ? FINISHED : 0)
+                | (content != null ? HAS_CONTENT : 0)
+                | (seq != null ? HAS_SEQ : 0)
+                | (retryAfterMs != null ? HAS_RETRY_AFTER : 0)
+                | (turnId != null ? HAS_TURN_ID : 0);
+        Writer writer = new Writer(2
+                + (content != null ? stringSize(content) : 0)
+                + (seq != null ? varintSize(seq) : 0)
+                + (retryAfterMs != null ? varintSize(retryAfterMs) : 0)
+                + (turnId != null ? stringSize(turnId) : 0));
+        writer.put(code(response.getEventType()));
+        writer.put((byte) flags);
+        if (content != null) {
+            writer.putString(content);
+        }
+        if (seq != null) {
+            writer.putVarint(seq);
+        }
+        if (retryAfterMs != null) {
+            writer.putVarint(retryAfterMs);
+        }
+        if (turnId != null) {
+            writer.putString(turnId);
+        }
+        return writer.buffer;
+    }
+
+    private static byte code(String eventType) {
+        return switch (EventType.valueOf(eventType)) {
+            case TEXT -> 1;
+            case THINKING -> 2;
+            case TOOL_CALL -> 3;
+            case TOOL_RESULT -> 4;
+            case ERROR -> 5;
+            case DONE -> 6;
+        };
+    }
+
+    private static EventType eventType(byte code) {
+        return switch (code) {
+            case 1 -> EventType.TEXT;
+            case 2 -> EventType.THINKING;
+            case 3 -> EventType.TOOL_CALL;
+            case 4 -> EventType.TOOL_RESULT;
+            case 5 -> EventType.ERROR;
+            case 6 -> EventType.DONE;
+            default -> throw new IllegalStateException("Unknown compact event code: " + code);
+        };
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return varintSize(bytes == null ? 0 : bytes.length + 1) + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int varintSize(long value) {
+        requireNonNegative(value);
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void requireNonNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Compact stream integer must be non-negative: " + value);
+        }
+    }
+
+    /**
+     * 单个流的解码器：记住头帧中的元数据，还原完整的 {@link AgentChatResponse}
+     */
+    public static final class Decoder {
+
+        private String sessionId;
+        private String agentId;
+        private String agentName;
+        private boolean headerReceived;
+
+        /**
+         * @return 还原的事件；头帧返回 null
+         */
+        public AgentChatResponse decode(byte[] frame) {
+            Reader reader = new Reader(frame);
+            byte kind = reader.get();
+            if (kind == HEADER) {
+                byte version = reader.get();
+                if (version != VERSION) {
+                    throw new IllegalStateException("Unsupported compact stream version: " + version);
+                }
+                sessionId = reader.getString();
+                agentId = reader.getString();
+                agentName = reader.getString();
+                headerReceived = true;
+                return null;
+            }
+            if (!headerReceived) {
+                throw new IllegalStateException("Compact stream event received before header");
+            }
+            EventType type = eventType(kind);
+            int flags = reader.get();
+            AgentChatResponse response = new AgentChatResponse();
+            response.setSessionId(sessionId);
+            response.setAgentId(agentId);
+            response.setAgentName(agentName);
+            response.setEventType(type.name());
+            response.setFinished((flags & FINISHED) != 0);
+            if ((flags & HAS_CONTENT) != 0) {
+                response.setContent(reader.getString());
+            }
+            if ((flags & HAS_SEQ) != 0) {
+                response.setSeq(reader.getVarint());
+            }
+            if ((flags & HAS_RETRY_AFTER) != 0) {
+                response.setRetryAfterMs(reader.getVarint());
+            }
+            if ((flags & HAS_TURN_ID) != 0) {
+                response.setTurnId(reader.getString());
+            }
+            return response;
+        }
+    }
+
+    private static final class Writer {
+
+        private final byte[] buffer;
+        private int position;
+
+        Writer(int size) {
+            this.buffer = new byte[size];
+        }
+
+        void put(byte value) {
+            buffer[position++] = value;
+        }
+
+        void putVarint(long value) {
+            requireNonNegative(value);
+            while ((value & ~0x7FL) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        void putString(byte[] bytes) {
+            putVarint(bytes == null ? 0 : bytes.length + 1);
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, buffer, position, bytes.length);
+                position += bytes.length;
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte get() {
+            if (position >= buffer.length) {
+                throw new IllegalStateException("Truncated compact stream frame");
+            }
+            return buffer[position++];
+        }
+
+        long getVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 56) {
+                    throw new IllegalStateException("Malformed compact stream frame");
+                }
+                b = get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String getString() {
+            long length = getVarint();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > buffer.length - position) {
+                throw new IllegalStateException("Truncated compact stream frame");
+            }
+            int size = (int) (length - 1);
+            String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.deepknow.agentoz.api.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.service.AgentService;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.StatusRpcException;
+import org.apache.dubbo.rpc.TriRpcStatus;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 客户端使用紧凑流的入口
+ * <p>
+ * 优先调用 streamChatCompact 并在本地还原为 {@link AgentChatResponse}；
+ * 服务端尚未升级（方法不存在）时回退到 streamChat，调用方拿到的事件与 streamChat 一致。
+ */
+public final class CompactStreams {
+
+    private CompactStreams() {
+    }
+
+    public static Flux<AgentChatResponse> streamChat(AgentService agentService, AgentChatRequest request) {
+        return Flux.defer(() -> {
+            CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+            AtomicBoolean received = new AtomicBoolean();
+            return agentService.streamChatCompact(request)
+                    .doOnNext(frame -> received.set(true))
+                    .<AgentChatResponse>handle((frame, sink) -> {
+                        AgentChatResponse response = decoder.decode(frame);
+                        if (response != null) {
+                            sink.next(response);
+                        }
+                    })
+                    // 只在一帧都没收到时回退，避免重复执行对话
+                    .onErrorResume(e -> !received.get() && isUnsupported(e),
+                            e -> agentService.streamChat(request));
+        });
+    }
+
+    /**
+     * 服务端不认识 streamChatCompact：本地存根缺少方法，服务端返回方法不存在（triple 为 UNIMPLEMENTED，
+     * dubbo 协议为 METHOD_NOT_FOUND），或按方法过滤后没有可用的提供者。只看异常类型和状态码，不匹配异常消息
+     */
+    static boolean isUnsupported(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof NoSuchMethodException || e instanceof AbstractMethodError) {
+                return true;
+            }
+            if (e instanceof StatusRpcException status
+                    && status.getStatus().code == TriRpcStatus.Code.UNIMPLEMENTED) {
+                return true;
+            }
+            if (e instanceof RpcException rpc
+                    && (rpc.getCode() == RpcException.METHOD_NOT_FOUND || rpc.isNoInvokerAvailableAfterFilter())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
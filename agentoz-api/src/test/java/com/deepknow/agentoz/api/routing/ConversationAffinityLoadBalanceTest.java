@@ -0,0 +1,121 @@
+package com.deepknow.agentoz.api.routing;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.service.AgentService;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationAffinityLoadBalanceTest {
+
+    private static final int CONVERSATIONS = 500;
+
+    @Test
+    void sameConversationAlwaysSelectsSameNode() {
+        ConversationAffinityLoadBalance loadBalance = new ConversationAffinityLoadBalance();
+        List<Invoker<AgentService>> invokers = invokers(1, 2, 3);
+
+        for (int c = 0; c < 50; c++) {
+            Invoker<AgentService> first = select(loadBalance, invokers, c);
+            assertThat(select(loadBalance, invokers, c)).isSameAs(first);
+            assertThat(select(loadBalance, new ArrayList<>(invokers), c)).isSameAs(first);
+        }
+    }
+
+    @Test
+    void reselectSkipsTriedNodeLikeRingBuiltFromSubset() {
+        ConversationAffinityLoadBalance loadBalance = new ConversationAffinityLoadBalance();
+        List<Invoker<AgentService>> invokers = invokers(1, 2, 3, 4);
+
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            Invoker<AgentService> first = select(loadBalance, invokers, c);
+            List<Invoker<AgentService>> remaining = new ArrayList<>(invokers);
+            remaining.remove(first);
+
+            Invoker<AgentService> retry = select(loadBalance, remaining, c);
+            assertThat(retry).isNotSameAs(first);
+            assertThat(retry.getUrl().getAddress())
+                    .isEqualTo(select(new ConversationAffinityLoadBalance(), remaining, c).getUrl().getAddress());
+            // 重试之后完整列表上的选择不变
+            assertThat(select(loadBalance, invokers, c)).isSameAs(first);
+        }
+    }
+
+    @Test
+    void joiningNodeOnlyTakesOverSomeConversations() {
+        ConversationAffinityLoadBalance loadBalance = new ConversationAffinityLoadBalance();
+        List<Invoker<AgentService>> before = invokers(1, 2, 3);
+        String[] owners = new String[CONVERSATIONS];
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            owners[c] = select(loadBalance, before, c).getUrl().getAddress();
+        }
+
+        List<Invoker<AgentService>> after = invokers(1, 2, 3, 4);
+        int moved = 0;
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            String owner = select(loadBalance, after, c).getUrl().getAddress();
+            if (!owner.equals(owners[c])) {
+                assertThat(owner).isEqualTo(address(4));
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(CONVERSATIONS / 8, CONVERSATIONS / 2);
+    }
+
+    @Test
+    void weightChangeRebuildsRing() {
+        ConversationAffinityLoadBalance loadBalance = new ConversationAffinityLoadBalance();
+        List<Invoker<AgentService>> even = invokers(1, 2);
+        List<Invoker<AgentService>> skewed = List.of(invoker(1, 100), invoker(2, 400));
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            select(loadBalance, even, c);
+        }
+
+        int onHeavy = 0;
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            if (select(loadBalance, skewed, c).getUrl().getAddress().equals(address(2))) {
+                onHeavy++;
+            }
+        }
+        assertThat(onHeavy).isGreaterThan(CONVERSATIONS * 2 / 3);
+    }
+
+    private static Invoker<AgentService> select(ConversationAffinityLoadBalance loadBalance,
+                                                List<Invoker<AgentService>> invokers, int conversation) {
+        AgentChatRequest request = new AgentChatRequest();
+        request.setAgentId("agent-1");
+        request.setSessionId("conv-" + conversation);
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setMethodName("streamChat");
+        invocation.setArguments(new Object[]{request});
+        return loadBalance.select(invokers, invokers.get(0).getUrl(), invocation);
+    }
+
+    private static List<Invoker<AgentService>> invokers(int... hosts) {
+        List<Invoker<AgentService>> invokers = new ArrayList<>();
+        for (int host : hosts) {
+            invokers.add(invoker(host, 100));
+        }
+        return invokers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Invoker<AgentService> invoker(int host, int weight) {
+        Invoker<AgentService> invoker = mock(Invoker.class);
+        when(invoker.getUrl()).thenReturn(URL.valueOf("tri://" + address(host) + "/"
+                + AgentService.class.getName() + "?weight=" + weight));
+        return invoker;
+    }
+
+    private static String address(int host) {
+        return "10.0.0." + host + ":50051";
+    }
+}
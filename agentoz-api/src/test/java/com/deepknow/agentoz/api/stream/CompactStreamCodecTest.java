@@ -0,0 +1,132 @@
+package com.deepknow.agentoz.api.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactStreamCodecTest {
+
+    @Test
+    void roundTripRestoresAllFields() {
+        CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+        assertThat(decoder.decode(CompactStreamCodec.header("conv-1", "agent-1", "助手"))).isNull();
+
+        AgentChatResponse decoded = decoder.decode(CompactStreamCodec.event(AgentChatResponse.builder()
+                .eventType(EventType.TEXT.name())
+                .content("你好，world")
+                .finished(false)
+                .turnId("turn-1")
+                .seq(42L)
+                .build()));
+
+        assertThat(decoded.getSessionId()).isEqualTo("conv-1");
+        assertThat(decoded.getAgentId()).isEqualTo("agent-1");
+        assertThat(decoded.getAgentName()).isEqualTo("助手");
+        assertThat(decoded.getEventType()).isEqualTo(EventType.TEXT.name());
+        assertThat(decoded.getContent()).isEqualTo("你好，world");
+        assertThat(decoded.getFinished()).isFalse();
+        assertThat(decoded.getTurnId()).isEqualTo("turn-1");
+        assertThat(decoded.getSeq()).isEqualTo(42L);
+        assertThat(decoded.getRetryAfterMs()).isNull();
+    }
+
+    @Test
+    void rejectionBeforeTurnStartKeepsRetryAfterAndHasNoSeq() {
+        CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+        decoder.decode(CompactStreamCodec.header("conv-1", "agent-1", null));
+
+        AgentChatResponse decoded = decoder.decode(CompactStreamCodec.event(AgentChatResponse.builder()
+                .eventType(EventType.ERROR.name())
+                .content("服务繁忙")
+                .finished(true)
+                .retryAfterMs(1500L)
+                .build()));
+
+        assertThat(decoded.getAgentName()).isNull();
+        assertThat(decoded.getFinished()).isTrue();
+        assertThat(decoded.getRetryAfterMs()).isEqualTo(1500L);
+        assertThat(decoded.getSeq()).isNull();
+        assertThat(decoded.getTurnId()).isNull();
+    }
+
+    @Test
+    void roundTripsLargeValuesAndLongContent() {
+        CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+        decoder.decode(CompactStreamCodec.header("conv-1", "agent-1", "agent"));
+        String content = "片段".repeat(5000);
+
+        AgentChatResponse decoded = decoder.decode(CompactStreamCodec.event(AgentChatResponse.builder()
+                .eventType(EventType.TOOL_RESULT.name())
+                .content(content)
+                .seq(Long.MAX_VALUE)
+                .retryAfterMs(0L)
+                .build()));
+
+        assertThat(decoded.getContent()).isEqualTo(content);
+        assertThat(decoded.getSeq()).isEqualTo(Long.MAX_VALUE);
+        assertThat(decoded.getRetryAfterMs()).isZero();
+        assertThat(decoded.getFinished()).isFalse();
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] header = CompactStreamCodec.header("conv-1", "agent-1", "agent");
+        header[1] = CompactStreamCodec.VERSION + 1;
+
+        assertThatThrownBy(() -> new CompactStreamCodec.Decoder().decode(header))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void eventWithoutContentHasNullContent() {
+        CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+        decoder.decode(CompactStreamCodec.header("conv-1", "agent-1", "agent"));
+
+        AgentChatResponse decoded = decoder.decode(CompactStreamCodec.event(AgentChatResponse.builder()
+                .eventType(EventType.DONE.name())
+                .finished(true)
+                .seq(7L)
+                .build()));
+
+        assertThat(decoded.getContent()).isNull();
+        assertThat(decoded.getSeq()).isEqualTo(7L);
+    }
+
+    @Test
+    void rejectsEventBeforeHeader() {
+        byte[] frame = CompactStreamCodec.event(AgentChatResponse.builder().eventType(EventType.TEXT.name()).build());
+
+        assertThatThrownBy(() -> new CompactStreamCodec.Decoder().decode(frame))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsTruncatedFrame() {
+        CompactStreamCodec.Decoder decoder = new CompactStreamCodec.Decoder();
+        decoder.decode(CompactStreamCodec.header("conv-1", "agent-1", "agent"));
+        byte[] frame = CompactStreamCodec.event(AgentChatResponse.builder()
+                .eventType(EventType.TEXT.name())
+                .content("truncated content")
+                .turnId("turn-1")
+                .build());
+
+        assertThatThrownBy(() -> decoder.decode(Arrays.copyOf(frame, frame.length - 3)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsNegativeIntegers() {
+        AgentChatResponse response = AgentChatResponse.builder()
+                .eventType(EventType.TEXT.name())
+                .seq(-1L)
+                .build();
+
+        assertThatThrownBy(() -> CompactStreamCodec.event(response)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.deepknow.agentoz.api.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.api.service.AgentService;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.StatusRpcException;
+import org.apache.dubbo.rpc.TriRpcStatus;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CompactStreamsTest {
+
+    @Test
+    void recognizesUnsupportedMethodByStatusCode() {
+        assertThat(CompactStreams.isUnsupported(new StatusRpcException(TriRpcStatus.UNIMPLEMENTED))).isTrue();
+        assertThat(CompactStreams.isUnsupported(new RpcException(RpcException.METHOD_NOT_FOUND, "x"))).isTrue();
+        assertThat(CompactStreams.isUnsupported(
+                new RpcException(RpcException.NO_INVOKER_AVAILABLE_AFTER_FILTER, "x"))).isTrue();
+        assertThat(CompactStreams.isUnsupported(new CompletionException(new NoSuchMethodException("x")))).isTrue();
+    }
+
+    @Test
+    void ignoresOtherFailuresEvenWhenMessageLooksLikeMissingMethod() {
+        assertThat(CompactStreams.isUnsupported(
+                new RpcException(RpcException.TIMEOUT_EXCEPTION, "streamChatCompact not found"))).isFalse();
+        assertThat(CompactStreams.isUnsupported(new StatusRpcException(TriRpcStatus.UNAVAILABLE
+                .withDescription("streamChatCompact UNIMPLEMENTED")))).isFalse();
+        assertThat(CompactStreams.isUnsupported(
+                new IllegalStateException("NoSuchMethod: streamChatCompact"))).isFalse();
+    }
+
+    @Test
+    void fallsBackToStreamChatWhenServerLacksCompactStream() {
+        AgentService agentService = mock(AgentService.class);
+        AgentChatRequest request = new AgentChatRequest();
+        AgentChatResponse response = AgentChatResponse.builder().eventType(EventType.DONE.name()).build();
+        when(agentService.streamChatCompact(request))
+                .thenReturn(Flux.error(new StatusRpcException(TriRpcStatus.UNIMPLEMENTED)));
+        when(agentService.streamChat(request)).thenReturn(Flux.just(response));
+
+        assertThat(CompactStreams.streamChat(agentService, request).collectList().block()).containsExactly(response);
+    }
+
+    @Test
+    void doesNotFallBackAfterFramesWereReceived() {
+        AgentService agentService = mock(AgentService.class);
+        AgentChatRequest request = new AgentChatRequest();
+        when(agentService.streamChatCompact(request)).thenReturn(Flux.concat(
+                Flux.just(CompactStreamCodec.header("conv-1", "agent-1", "agent")),
+                Flux.error(new StatusRpcException(TriRpcStatus.UNIMPLEMENTED))));
+
+        assertThatThrownBy(() -> CompactStreams.streamChat(agentService, request).blockLast())
+                .isInstanceOf(StatusRpcException.class);
+    }
+}
@@ -0,0 +1,65 @@
+package com.deepknow.agentoz.benchmark;
+
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import com.deepknow.agentoz.benchmark.support.StubChatModel;
+import com.deepknow.agentoz.manager.StreamingHook;
+import com.deepknow.agentoz.service.impl.StreamResponseTemplate;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.memory.InMemoryMemory;
+import io.agentscope.core.message.Msg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一轮完整的 Agent 调用（Stub 模型流式返回 + StreamingHook 转换），测量框架和 Hook 链路的固定开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentCallBenchmark {
+
+    /**
+     * 模型流式返回的分片数
+     */
+    @Param({"32", "256"})
+    public int chunks;
+
+    private ReActAgent agent;
+    private Msg userMsg;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        agent = ReActAgent.builder()
+                .name("benchmark")
+                .sysPrompt("你是一个助手")
+                .model(new StubChatModel(chunks, 8))
+                .memory(new InMemoryMemory())
+                .build();
+        agent.getHooks().add(new StreamingHook(
+                new StreamResponseTemplate("conversation-1", "agent-1", blackhole::consume)));
+        userMsg = Msg.builder().name("user").textContent(Fixtures.text(200)).build();
+    }
+
+    @Benchmark
+    public Msg call() {
+        // 保持每次调用的上下文长度一致
+        agent.getMemory().clear();
+        return agent.call(userMsg).block();
+    }
+}
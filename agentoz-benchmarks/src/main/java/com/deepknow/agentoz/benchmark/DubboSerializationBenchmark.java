@@ -0,0 +1,97 @@
+package com.deepknow.agentoz.benchmark;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.api.stream.CompactStreamCodec;
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.serialize.ObjectInput;
+import org.apache.dubbo.common.serialize.ObjectOutput;
+import org.apache.dubbo.common.serialize.Serialization;
+import org.apache.dubbo.common.utils.SerializeSecurityManager;
+import org.apache.dubbo.rpc.model.FrameworkModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式事件的 Dubbo 序列化（每个事件都会序列化一次）：
+ * response 为 streamChat 的 AgentChatResponse，compact 为 streamChatCompact 的事件帧
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DubboSerializationBenchmark {
+
+    @Param({"hessian2", "fastjson2"})
+    public String serialization;
+
+    /**
+     * 事件内容长度：8 为单个 token，512 为工具结果
+     */
+    @Param({"8", "512"})
+    public int contentChars;
+
+    @Param({"response", "compact"})
+    public String frame;
+
+    private Serialization codec;
+    private URL url;
+    private Object payload;
+    private byte[] encoded;
+    private ByteArrayOutputStream buffer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // 正常运行时由服务导出自动登记到序列化白名单，这里没有导出服务，需手动登记
+        FrameworkModel.defaultModel().getBeanFactory().getBean(SerializeSecurityManager.class)
+                .addToAllowed(AgentChatResponse.class.getName());
+        codec = FrameworkModel.defaultModel().getExtensionLoader(Serialization.class).getExtension(serialization);
+        url = URL.valueOf("tri://127.0.0.1:50051/com.deepknow.agentoz.api.service.AgentService")
+                .setScopeModel(FrameworkModel.defaultModel().defaultApplication().getDefaultModule());
+        AgentChatResponse response = AgentChatResponse.builder()
+                .sessionId("8f14e45f-ceea-467f-a0b2-7d3c5b1e9a61")
+                .agentId("agent-researcher")
+                .agentName("研究助手")
+                .content(Fixtures.text(contentChars))
+                .eventType(EventType.TEXT.name())
+                .fromSubAgent(false)
+                .finished(false)
+                .build();
+        payload = "compact".equals(frame) ? CompactStreamCodec.event(response) : response;
+        buffer = new ByteArrayOutputStream(1024);
+        encoded = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        buffer.reset();
+        ObjectOutput output = codec.serialize(url, buffer);
+        output.writeObject(payload);
+        output.flushBuffer();
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        ObjectInput input = codec.deserialize(url, new ByteArrayInputStream(encoded));
+        return input.readObject(payload.getClass());
+    }
+}
@@ -0,0 +1,153 @@
+package com.deepknow.agentoz.benchmark;
+
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import com.deepknow.agentoz.starter.annotation.AgentParam;
+import com.deepknow.agentoz.starter.annotation.AgentTool;
+import com.deepknow.agentoz.starter.config.McpToolRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.common.McpTransportContext;
+import io.modelcontextprotocol.server.McpStatelessServerFeatures.SyncToolSpecification;
+import io.modelcontextprotocol.spec.McpSchema.CallToolRequest;
+import io.modelcontextprotocol.spec.McpSchema.CallToolResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * McpToolRegistry 工具调用：参数解析（名称匹配 + Jackson 类型转换）、反射调用和结果序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class McpToolRegistryBenchmark {
+
+    private GenericApplicationContext context;
+    private SyncToolSpecification queryOrder;
+    private SyncToolSpecification createTicket;
+    private CallToolRequest queryOrderRequest;
+    private CallToolRequest createTicketRequest;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new GenericApplicationContext();
+        context.registerBean("benchmarkTools", BenchmarkTools.class);
+        context.refresh();
+
+        McpToolRegistry registry = new McpToolRegistry(new ObjectMapper());
+        registry.setApplicationContext(context);
+        List<SyncToolSpecification> specs = registry.scanAndBuildTools();
+        queryOrder = find(specs, "query_order");
+        createTicket = find(specs, "create_ticket");
+
+        queryOrderRequest = new CallToolRequest("query_order", Map.of("orderId", "ORD-20240101-0001", "limit", 20));
+        createTicketRequest = new CallToolRequest("create_ticket", Map.of(
+                "ticket", Map.of(
+                        "title", "接口超时排查",
+                        "description", Fixtures.text(300),
+                        "priority", 2,
+                        "tags", List.of("backend", "latency")),
+                "notify", true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 简单类型参数，字符串结果
+     */
+    @Benchmark
+    public CallToolResult invokeSimple() {
+        return queryOrder.callHandler().apply(McpTransportContext.EMPTY, queryOrderRequest);
+    }
+
+    /**
+     * 对象参数（Map 转 POJO），对象结果（序列化为 JSON）
+     */
+    @Benchmark
+    public CallToolResult invokeConverted() {
+        return createTicket.callHandler().apply(McpTransportContext.EMPTY, createTicketRequest);
+    }
+
+    private static SyncToolSpecification find(List<SyncToolSpecification> specs, String name) {
+        return specs.stream()
+                .filter(spec -> spec.tool().name().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("未注册工具: " + name));
+    }
+
+    public static class BenchmarkTools {
+
+        @AgentTool(name = "query_order", description = "查询订单状态")
+        public String queryOrder(@AgentParam("订单号") String orderId,
+                                 @AgentParam(value = "返回条数", required = false) Integer limit,
+                                 McpTransportContext context) {
+            return orderId + ":PAID:" + limit;
+        }
+
+        @AgentTool(name = "create_ticket", description = "创建工单")
+        public Map<String, Object> createTicket(@AgentParam("工单内容") Ticket ticket,
+                                                @AgentParam(value = "是否通知", required = false) Boolean notify) {
+            return Map.of("ticketId", "T-1", "title", ticket.getTitle(), "tags", ticket.getTags(),
+                    "notified", Boolean.TRUE.equals(notify));
+        }
+    }
+
+    public static class Ticket {
+
+        private String title;
+        private String description;
+        private int priority;
+        private List<String> tags;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public void setPriority(int priority) {
+            this.priority = priority;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.deepknow.agentoz.benchmark;
+
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import com.deepknow.agentoz.benchmark.support.StubChatModel;
+import com.deepknow.agentoz.benchmark.support.StubRedisTemplate;
+import com.deepknow.agentoz.session.RedisSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.memory.InMemoryMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisSession 保存 / 加载 Agent 状态（saveTo / loadIfExists 路径，不带租约令牌）
+ * <p>
+ * 使用进程内 Redis 替身，测量的是状态序列化和 Session 读写逻辑的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisSessionBenchmark {
+
+    private static final String SESSION_ID = "agent-1:conversation-1";
+
+    /**
+     * 对话轮数
+     */
+    @Param({"10", "100", "500"})
+    public int rounds;
+
+    @Param({"400"})
+    public int messageChars;
+
+    private RedisSession session;
+    private ReActAgent writer;
+    private ReActAgent reader;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        session = new RedisSession(new StubRedisTemplate(), new ObjectMapper());
+        writer = agent();
+        Fixtures.history(rounds, messageChars).forEach(writer.getMemory()::addMessage);
+        writer.saveTo(session, SESSION_ID);
+        reader = agent();
+    }
+
+    @Benchmark
+    public RedisSession save() {
+        writer.saveTo(session, SESSION_ID);
+        return session;
+    }
+
+    @Benchmark
+    public boolean load() {
+        return reader.loadIfExists(session, SESSION_ID);
+    }
+
+    private static ReActAgent agent() {
+        return ReActAgent.builder()
+                .name("benchmark")
+                .sysPrompt("你是一个助手")
+                .model(new StubChatModel(1, 16))
+                .memory(new InMemoryMemory())
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.deepknow.agentoz.benchmark;
+
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import com.deepknow.agentoz.benchmark.support.StubChatModel;
+import com.deepknow.agentoz.manager.StreamingHook;
+import com.deepknow.agentoz.service.impl.StreamResponseTemplate;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.hook.HookEvent;
+import io.agentscope.core.hook.PostActingEvent;
+import io.agentscope.core.hook.PreActingEvent;
+import io.agentscope.core.hook.ReasoningChunkEvent;
+import io.agentscope.core.memory.InMemoryMemory;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.ToolResultBlock;
+import io.agentscope.core.message.ToolUseBlock;
+import io.agentscope.core.tool.Toolkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamingHook 事件到 AgentChatResponse 的转换（streamChat 每个 token 都会经过）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingHookBenchmark {
+
+    @Param({"8", "64"})
+    public int chunkChars;
+
+    private StreamingHook hook;
+    private HookEvent textChunk;
+    private HookEvent toolCall;
+    private HookEvent toolResult;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        hook = new StreamingHook(
+                new StreamResponseTemplate("conversation-1", "agent-1", response -> this.blackhole.consume(response)));
+
+        ReActAgent agent = ReActAgent.builder()
+                .name("benchmark")
+                .model(new StubChatModel(1, 16))
+                .memory(new InMemoryMemory())
+                .build();
+        Msg chunk = Msg.builder().name("benchmark").textContent(Fixtures.text(chunkChars)).build();
+        textChunk = new ReasoningChunkEvent(agent, "stub", null, chunk, chunk);
+
+        ToolUseBlock toolUse = ToolUseBlock.builder()
+                .id("tool-1")
+                .name("call_researcher")
+                .input(Map.of("task", Fixtures.text(80)))
+                .build();
+        Toolkit toolkit = new Toolkit();
+        toolCall = new PreActingEvent(agent, toolkit, toolUse);
+        toolResult = new PostActingEvent(agent, toolkit, toolUse, ToolResultBlock.text(Fixtures.text(200)));
+    }
+
+    /**
+     * 事件在 onEvent 中同步投递，返回的 Mono 交给 Blackhole 即可，不需要 block
+     */
+    @Benchmark
+    public Object textChunk() {
+        return hook.onEvent(textChunk);
+    }
+
+    @Benchmark
+    public void toolCallAndResult(Blackhole blackhole) {
+        blackhole.consume(hook.onEvent(toolCall));
+        blackhole.consume(hook.onEvent(toolResult));
+    }
+}
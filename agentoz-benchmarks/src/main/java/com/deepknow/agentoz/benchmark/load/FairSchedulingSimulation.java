@@ -0,0 +1,198 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.admission.AdmissionController;
+import com.deepknow.agentoz.admission.AdmissionRejectedException;
+import com.deepknow.agentoz.admission.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多租户公平调度仿真：批量租户持续压满执行名额时，交互租户的延迟
+ * <p>
+ * 直接驱动 {@link AdmissionController}，轮次用按对数正态分布采样的延迟代替模型调用。
+ * 交互租户按泊松过程到达，批量租户由大量闭环 worker 发起（完成后立即再发），两者优先级相同，
+ * 即批量租户没有主动降低优先级。依次运行三个场景：
+ * <ul>
+ *     <li>baseline：只有交互流量</li>
+ *     <li>fifo：叠加批量流量，所有请求归为同一租户（等同按到达顺序执行）</li>
+ *     <li>fair：叠加批量流量，按租户加权公平出队，批量租户有并发上限</li>
+ * </ul>
+ * fair 场景交互请求的 p99 超过 baseline p99 的 --max-slowdown 倍（默认 1.5）加上一个平均轮次耗时时，以非零状态退出。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.FairSchedulingSimulation \
+ *     --duration=PT20S --slots=16 --interactive-rate=40 --batch-workers=64
+ * </pre>
+ */
+public final class FairSchedulingSimulation {
+
+    private static final String INTERACTIVE = "web";
+    private static final String BATCH = "eval";
+    private static final String SHARED = "shared";
+
+    private final Duration duration;
+    private final Duration warmup;
+    private final int slots;
+    private final double interactiveRate;
+    private final int batchWorkers;
+    private final Duration medianTurn;
+    private final double sigma;
+    private final int interactiveWeight;
+    private final int batchMaxConcurrent;
+    private final long seed;
+
+    private FairSchedulingSimulation(LoadOptions options) {
+        this.duration = options.getDuration("duration", Duration.ofSeconds(20));
+        this.warmup = options.getDuration("warmup", Duration.ofSeconds(2));
+        this.slots = options.getInt("slots", 16);
+        this.interactiveRate = Double.parseDouble(options.get("interactive-rate", "40"));
+        this.batchWorkers = options.getInt("batch-workers", 64);
+        this.medianTurn = options.getDuration("median-turn", Duration.ofMillis(100));
+        this.sigma = Double.parseDouble(options.get("sigma", "0.5"));
+        this.interactiveWeight = options.getInt("interactive-weight", 4);
+        this.batchMaxConcurrent = options.getInt("batch-max-concurrent", slots * 3 / 4);
+        this.seed = options.getInt("seed", 42);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadOptions options = LoadOptions.parse(args);
+        FairSchedulingSimulation simulation = new FairSchedulingSimulation(options);
+        double maxSlowdown = Double.parseDouble(options.get("max-slowdown", "1.5"));
+
+        System.out.printf("执行名额 %d，交互到达 %.0f/s，批量 worker %d，轮次耗时中位数 %d ms%n",
+                simulation.slots, simulation.interactiveRate, simulation.batchWorkers, simulation.medianTurn.toMillis());
+        Result baseline = simulation.run("baseline", false, false);
+        Result fifo = simulation.run("fifo", true, false);
+        Result fair = simulation.run("fair", true, true);
+
+        System.out.println();
+        System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "交互(ms)", "p50", "p90", "p99", "p999", "max");
+        baseline.interactive().print("baseline");
+        fifo.interactive().print("fifo");
+        fair.interactive().print("fair");
+        System.out.println();
+        System.out.printf("%-10s %12s %12s %12s%n", "", "交互完成", "交互拒绝", "批量吞吐/s");
+        for (Result result : new Result[]{baseline, fifo, fair}) {
+            System.out.printf("%-10s %12d %12d %12.1f%n", result.name(), result.interactive().size(),
+                    result.interactiveRejected(), result.batchThroughput());
+        }
+
+        long limit = (long) (baseline.interactive().percentile(0.99) * maxSlowdown) + simulation.meanTurnNanos();
+        long actual = fair.interactive().percentile(0.99);
+        System.out.println();
+        if (actual > limit) {
+            System.out.printf("失败: fair 场景交互 p99 %.1f ms 超过上限 %.1f ms%n", actual / 1e6, limit / 1e6);
+            System.exit(1);
+        }
+        System.out.printf("通过: fair 场景交互 p99 %.1f ms，上限 %.1f ms（fifo %.1f ms）%n",
+                actual / 1e6, limit / 1e6, fifo.interactive().percentile(0.99) / 1e6);
+    }
+
+    private Result run(String name, boolean withBatch, boolean fair) throws InterruptedException {
+        AdmissionController admission = new AdmissionController(new SimpleMeterRegistry(), true, slots, 1_000_000,
+                Duration.ofMinutes(5), Duration.ofMinutes(5), Duration.ofMinutes(5),
+                1, fair ? INTERACTIVE + "=" + interactiveWeight : "",
+                0, fair ? BATCH + "=" + batchMaxConcurrent : "");
+        LatencySamples interactive = new LatencySamples((int) (interactiveRate * duration.toSeconds()));
+        AtomicLong interactiveRejected = new AtomicLong();
+        AtomicLong batchCompleted = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        if (withBatch) {
+            for (int i = 0; i < batchWorkers; i++) {
+                batchLoop(admission, fair ? BATCH : SHARED, new SplittableRandom(seed + i + 1), running,
+                        batchCompleted, measureFrom);
+            }
+        }
+
+        // 交互请求：泊松到达
+        SplittableRandom random = new SplittableRandom(seed);
+        CountDownLatch drained = new CountDownLatch(1);
+        AtomicLong pending = new AtomicLong(1);
+        long next = System.nanoTime();
+        while (next < end) {
+            next += (long) (-Math.log(1 - random.nextDouble()) / interactiveRate * 1e9);
+            LockSupport.parkNanos(next - System.nanoTime());
+            long arrival = System.nanoTime();
+            long turn = sampleTurn(random);
+            pending.incrementAndGet();
+            admission.admit(Priority.NORMAL, fair ? INTERACTIVE : SHARED)
+                    .flatMap(permit -> Mono.delay(Duration.ofNanos(turn)).doFinally(signal -> permit.release()))
+                    .subscribe(
+                            ignored -> {
+                            },
+                            e -> {
+                                if (e instanceof AdmissionRejectedException && arrival >= measureFrom) {
+                                    interactiveRejected.incrementAndGet();
+                                }
+                                if (pending.decrementAndGet() == 0) {
+                                    drained.countDown();
+                                }
+                            },
+                            () -> {
+                                if (arrival >= measureFrom) {
+                                    interactive.add(System.nanoTime() - arrival);
+                                }
+                                if (pending.decrementAndGet() == 0) {
+                                    drained.countDown();
+                                }
+                            });
+        }
+        running.set(false);
+        if (pending.decrementAndGet() > 0) {
+            drained.await(1, TimeUnit.MINUTES);
+        }
+        System.out.printf("%s: %s%n", name, admission.state());
+        return new Result(name, interactive, interactiveRejected.get(), batchCompleted.get() / (double) duration.toSeconds());
+    }
+
+    /**
+     * 批量 worker：完成一轮立即发起下一轮，被拒绝时稍后重试
+     */
+    private void batchLoop(AdmissionController admission, String tenant, SplittableRandom random,
+                           AtomicBoolean running, AtomicLong completed, long measureFrom) {
+        if (!running.get()) {
+            return;
+        }
+        long turn = sampleTurn(random);
+        admission.admit(Priority.NORMAL, tenant)
+                .flatMap(permit -> Mono.delay(Duration.ofNanos(turn)).doFinally(signal -> permit.release()))
+                .subscribe(
+                        ignored -> {
+                        },
+                        e -> Mono.delay(Duration.ofMillis(50))
+                                .subscribe(tick -> batchLoop(admission, tenant, random, running, completed, measureFrom)),
+                        () -> {
+                            long now = System.nanoTime();
+                            if (now >= measureFrom && now < measureFrom + duration.toNanos()) {
+                                completed.incrementAndGet();
+                            }
+                            batchLoop(admission, tenant, random, running, completed, measureFrom);
+                        });
+    }
+
+    /**
+     * 对数正态分布的轮次耗时，截断在中位数的 20 倍
+     */
+    private long sampleTurn(SplittableRandom random) {
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        double nanos = medianTurn.toNanos() * Math.exp(sigma * gaussian);
+        return (long) Math.min(nanos, medianTurn.toNanos() * 20.0);
+    }
+
+    private long meanTurnNanos() {
+        return (long) (medianTurn.toNanos() * Math.exp(sigma * sigma / 2));
+    }
+
+    private record Result(String name, LatencySamples interactive, long interactiveRejected, double batchThroughput) {
+    }
+}
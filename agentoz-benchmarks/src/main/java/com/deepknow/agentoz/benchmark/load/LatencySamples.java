@@ -0,0 +1,62 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟样本：保留全部样本，排序后计算精确分位数
+ */
+final class LatencySamples {
+
+    private long[] samples;
+    private int size;
+
+    LatencySamples(int capacity) {
+        this.samples = new long[Math.max(16, capacity)];
+    }
+
+    synchronized void add(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 精确分位数（纳秒），没有样本时返回 0
+     */
+    synchronized long percentile(double quantile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return percentile(sorted, quantile);
+    }
+
+    synchronized void print(String label) {
+        if (size == 0) {
+            System.out.printf("%-10s %10s%n", label, "-");
+            return;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        System.out.printf("%-10s %10.1f %10.1f %10.1f %10.1f %10.1f%n", label,
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                millis(percentile(sorted, 0.99)), millis(percentile(sorted, 0.999)),
+                millis(sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
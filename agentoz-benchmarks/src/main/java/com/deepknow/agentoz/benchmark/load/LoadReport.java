@@ -0,0 +1,83 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测统计：保留全部样本，结束后排序计算精确分位数
+ */
+final class LoadReport {
+
+    private final LatencySamples firstToken;
+    private final LatencySamples turnLatency;
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong noToken = new AtomicLong();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicInteger peakStreams = new AtomicInteger();
+    private final Map<String, Long> failures = new TreeMap<>();
+    private long elapsedNanos;
+
+    LoadReport(int expectedTurns) {
+        this.firstToken = new LatencySamples(expectedTurns);
+        this.turnLatency = new LatencySamples(expectedTurns);
+    }
+
+    void success(long firstTokenNanos, long turnNanos, long eventCount) {
+        if (firstTokenNanos >= 0) {
+            firstToken.add(firstTokenNanos);
+        } else {
+            noToken.incrementAndGet();
+        }
+        turnLatency.add(turnNanos);
+        events.addAndGet(eventCount);
+    }
+
+    void streamOpened() {
+        peakStreams.accumulateAndGet(openStreams.incrementAndGet(), Math::max);
+    }
+
+    void streamClosed() {
+        openStreams.decrementAndGet();
+    }
+
+    void failure(Throwable error) {
+        synchronized (failures) {
+            failures.merge(error.getClass().getSimpleName(), 1L, Long::sum);
+        }
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void print() {
+        double seconds = elapsedNanos / 1e9;
+        int completed = turnLatency.size();
+        long failed;
+        synchronized (failures) {
+            failed = failures.values().stream().mapToLong(Long::longValue).sum();
+        }
+        System.out.println();
+        System.out.printf("耗时            %.1f s%n", seconds);
+        System.out.printf("完成 / 失败     %d / %d%n", completed, failed);
+        System.out.printf("吞吐            %.1f 轮/s, %.0f 事件/s%n", completed / seconds, events.get() / seconds);
+        if (peakStreams.get() > 0) {
+            System.out.printf("峰值并发流      %d%n", peakStreams.get());
+        }
+        if (noToken.get() > 0) {
+            System.out.printf("无文本输出的轮数 %d%n", noToken.get());
+        }
+        System.out.println();
+        System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "(ms)", "p50", "p90", "p99", "p999", "max");
+        firstToken.print("首 Token");
+        turnLatency.print("整轮");
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                System.out.println();
+                failures.forEach((type, count) -> System.out.printf("失败 %-40s %d%n", type, count));
+            }
+        }
+    }
+}
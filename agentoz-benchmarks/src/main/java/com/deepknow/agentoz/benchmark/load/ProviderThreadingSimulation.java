@@ -0,0 +1,182 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.execution.BlockingCallDetector;
+import com.deepknow.agentoz.execution.BlockingScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 提供者线程模型仿真：阻塞步骤留在 IO 线程上与切到 {@link BlockingScheduler} 时的并发流式对话吞吐
+ * <p>
+ * 按 AgentServiceImpl.streamChat 的结构模拟一轮流式对话：在 --io-threads 个提供者线程（NettyServerWorker-*）上订阅，
+ * 查询定义（--lookup）、取租约并加载 Session（--load）两个阻塞步骤，之后模型在 --model-threads 个客户端 IO 线程
+ * （reactor-http-*）上每隔 --token-interval 输出一个 token，共 --tokens 个，结束后保存 Session（--save）并释放租约
+ * （--release）。阻塞步骤用 park 模拟，不占 CPU。依次运行两个场景：
+ * <ul>
+ *     <li>inline：与改动前相同，阻塞步骤直接在订阅线程和模型回调线程上执行</li>
+ *     <li>isolated：定义查询和加载经 {@link BlockingScheduler#fromCallable}，保存前 publishOn 到阻塞调度器</li>
+ * </ul>
+ * 共 --streams 轮，同时进行 --concurrency 轮，统计吞吐、首 token 延迟（含等待提供者线程）、token 间隔和
+ * {@link BlockingCallDetector} 判定为在非阻塞线程上执行的阻塞步骤数。
+ * isolated 的吞吐不到 inline 的 --min-speedup 倍（默认 1.5），或仍有阻塞步骤落在非阻塞线程上时以非零状态退出。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.ProviderThreadingSimulation \
+ *     --streams=1600 --concurrency=400 --io-threads=4 --model-threads=2
+ * </pre>
+ */
+public final class ProviderThreadingSimulation {
+
+    private final int streams;
+    private final int concurrency;
+    private final int ioThreads;
+    private final int modelThreads;
+    private final int tokens;
+    private final Duration tokenInterval;
+    private final Duration lookup;
+    private final Duration load;
+    private final Duration save;
+    private final Duration release;
+    private final int blockingThreads;
+    private final boolean virtualThreads;
+
+    private final BlockingCallDetector detector = new BlockingCallDetector(new SimpleMeterRegistry(), "off",
+            List.of("NettyServerWorker", "reactor-http-"));
+
+    private ProviderThreadingSimulation(LoadOptions options) {
+        this.streams = options.getInt("streams", 1600);
+        this.concurrency = options.getInt("concurrency", 400);
+        this.ioThreads = options.getInt("io-threads", 4);
+        this.modelThreads = options.getInt("model-threads", 2);
+        this.tokens = options.getInt("tokens", 50);
+        this.tokenInterval = options.getDuration("token-interval", Duration.ofMillis(20));
+        this.lookup = options.getDuration("lookup", Duration.ofMillis(2));
+        this.load = options.getDuration("load", Duration.ofMillis(10));
+        this.save = options.getDuration("save", Duration.ofMillis(10));
+        this.release = options.getDuration("release", Duration.ofMillis(2));
+        this.blockingThreads = options.getInt("blocking-threads", 64);
+        this.virtualThreads = options.getBoolean("virtual-threads");
+    }
+
+    public static void main(String[] args) {
+        LoadOptions options = LoadOptions.parse(args);
+        ProviderThreadingSimulation simulation = new ProviderThreadingSimulation(options);
+        double minSpeedup = Double.parseDouble(options.get("min-speedup", "1.5"));
+
+        System.out.printf("%d 轮流式对话，并发 %d；提供者线程 %d，模型 IO 线程 %d，阻塞调度器 %d（%s）%n%n",
+                simulation.streams, simulation.concurrency, simulation.ioThreads, simulation.modelThreads,
+                simulation.blockingThreads, simulation.virtualThreads ? "虚拟线程" : "平台线程");
+        Result inline = simulation.run("inline", false);
+        Result isolated = simulation.run("isolated", true);
+
+        double speedup = isolated.throughput() / inline.throughput();
+        System.out.printf("吞吐提升 %.2fx%n%n", speedup);
+        if (isolated.violations() > 0) {
+            System.out.printf("失败: isolated 仍有 %d 次阻塞步骤在非阻塞线程上执行%n", isolated.violations());
+            System.exit(1);
+        }
+        if (speedup < minSpeedup) {
+            System.out.printf("失败: 吞吐提升 %.2fx 低于 %.2fx%n", speedup, minSpeedup);
+            System.exit(1);
+        }
+        System.out.printf("通过: 吞吐 %.1f -> %.1f 轮/s（%.2fx），token 间隔 p99 %.1f -> %.1f ms%n",
+                inline.throughput(), isolated.throughput(), speedup,
+                inline.tokenGapP99() / 1e6, isolated.tokenGapP99() / 1e6);
+    }
+
+    private Result run(String label, boolean isolated) {
+        Scheduler provider = Schedulers.newParallel("NettyServerWorker-sim", ioThreads);
+        Scheduler model = Schedulers.newParallel("reactor-http-sim", modelThreads);
+        BlockingScheduler blocking = new BlockingScheduler(new SimpleMeterRegistry(), virtualThreads,
+                blockingThreads, 10000);
+        LatencySamples firstToken = new LatencySamples(streams);
+        LatencySamples tokenGap = new LatencySamples(streams * tokens);
+        LatencySamples turn = new LatencySamples(streams);
+        AtomicLong violations = new AtomicLong();
+        try {
+            long start = System.nanoTime();
+            Flux.range(0, streams)
+                    .flatMap(i -> {
+                        // 提交时刻在进入提供者线程之前记录，首 token 延迟包含等待提供者线程的时间
+                        long submitted = System.nanoTime();
+                        long[] last = {0};
+                        return stream(isolated, blocking, model, violations)
+                                .doOnNext(token -> {
+                                    long now = System.nanoTime();
+                                    if (last[0] == 0) {
+                                        firstToken.add(now - submitted);
+                                    } else {
+                                        tokenGap.add(now - last[0]);
+                                    }
+                                    last[0] = now;
+                                })
+                                .doOnComplete(() -> turn.add(System.nanoTime() - submitted))
+                                .subscribeOn(provider);
+                    }, concurrency)
+                    .blockLast();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            double throughput = streams / seconds;
+            System.out.printf("[%s] 耗时 %.1f s，吞吐 %.1f 轮/s，非阻塞线程上的阻塞步骤 %d 次%n",
+                    label, seconds, throughput, violations.get());
+            System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "(ms)", "p50", "p90", "p99", "p999", "max");
+            firstToken.print("首 token");
+            tokenGap.print("token 间隔");
+            turn.print("整轮");
+            System.out.println();
+            return new Result(throughput, tokenGap.percentile(0.99), violations.get());
+        } finally {
+            blocking.destroy();
+            model.dispose();
+            provider.dispose();
+        }
+    }
+
+    /**
+     * 一轮流式对话：返回给客户端的事件流在保存 Session 后结束（对应 TurnStream.events）
+     */
+    private Flux<Long> stream(boolean isolated, BlockingScheduler blocking, Scheduler model, AtomicLong violations) {
+        Callable<String> begin = () -> {
+            block(lookup, violations);
+            block(load, violations);
+            return "turn";
+        };
+        Mono<String> beginTurn = isolated ? blocking.fromCallable(begin) : Mono.fromCallable(begin);
+        return beginTurn.flatMapMany(turn -> {
+            Sinks.Many<Long> events = Sinks.many().unicast().onBackpressureBuffer();
+            Mono<Void> call = Flux.interval(tokenInterval, model)
+                    .take(tokens)
+                    .doOnNext(events::tryEmitNext)
+                    .then();
+            if (isolated) {
+                call = call.publishOn(blocking.scheduler());
+            }
+            call.doOnSuccess(v -> {
+                        block(save, violations);
+                        events.tryEmitComplete();
+                    })
+                    .doFinally(signal -> block(release, violations))
+                    .subscribe();
+            return events.asFlux();
+        });
+    }
+
+    private void block(Duration duration, AtomicLong violations) {
+        if (detector.isNonBlocking(Thread.currentThread())) {
+            violations.incrementAndGet();
+        }
+        LockSupport.parkNanos(duration.toNanos());
+    }
+
+    private record Result(double throughput, long tokenGapP99, long violations) {
+    }
+}
@@ -0,0 +1,360 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.starter.rag.RagClient;
+import com.deepknow.agentoz.starter.rag.RagProperties;
+import com.deepknow.agentoz.starter.rag.RetrievedChunk;
+import com.deepknow.agentoz.vector.HnswIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 知识检索客户端仿真：在本地 Stub 服务（模拟 agentoz-rag 的 /query、/query/batch、/embed）上对比
+ * <ul>
+ *     <li>naive：不缓存、不攒批，每次检索一次 HTTP 调用</li>
+ *     <li>cached：按规范化查询缓存，相同查询的并发请求合并</li>
+ *     <li>batched：缓存 + 并发请求攒批为 /query/batch</li>
+ *     <li>local：缓存 + 本地 HNSW 索引，只调用 /embed 生成查询向量</li>
+ * </ul>
+ * 查询按 Zipf 分布从 --distinct 个问题中抽取，并随机改变大小写和空白；之后单独评估 {@link HnswIndex} 的召回率，
+ * recall@10 低于 --min-recall（默认 0.9）时以非零状态退出。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.RagRetrievalSimulation \
+ *     --clients=32 --requests=200 --distinct=2000 --index-size=20000
+ * </pre>
+ */
+public final class RagRetrievalSimulation {
+
+    private final int clients;
+    private final int requestsPerClient;
+    private final int distinct;
+    private final double zipf;
+    private final Duration queryLatency;
+    private final Duration embedLatency;
+    private final int dimension;
+    private final int localDocuments;
+    private final long seed;
+
+    private RagRetrievalSimulation(LoadOptions options) {
+        this.clients = options.getInt("clients", 32);
+        this.requestsPerClient = options.getInt("requests", 200);
+        this.distinct = options.getInt("distinct", 2000);
+        this.zipf = Double.parseDouble(options.get("zipf", "1.1"));
+        this.queryLatency = options.getDuration("query-latency", Duration.ofMillis(30));
+        this.embedLatency = options.getDuration("embed-latency", Duration.ofMillis(10));
+        this.dimension = options.getInt("dimension", 128);
+        this.localDocuments = options.getInt("local-documents", 2000);
+        this.seed = options.getInt("seed", 42);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        RagRetrievalSimulation simulation = new RagRetrievalSimulation(options);
+        double minRecall = Double.parseDouble(options.get("min-recall", "0.9"));
+
+        StubRagService stub = simulation.new StubRagService();
+        try {
+            System.out.printf("Stub 服务 %s，%d 个并发客户端 x %d 次检索，%d 个不同问题（zipf %.1f），检索延迟 %d ms%n",
+                    stub.baseUrl(), simulation.clients, simulation.requestsPerClient, simulation.distinct,
+                    simulation.zipf, simulation.queryLatency.toMillis());
+            List<Result> results = new ArrayList<>();
+            results.add(simulation.run("naive", stub, 0, false, null));
+            results.add(simulation.run("cached", stub, 10_000, false, null));
+            results.add(simulation.run("batched", stub, 10_000, true, null));
+            results.add(simulation.run("local", stub, 10_000, true, simulation.writeDocuments()));
+
+            System.out.println();
+            System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "延迟(ms)", "p50", "p90", "p99", "p999", "max");
+            results.forEach(result -> result.latencies().print(result.name()));
+            System.out.println();
+            System.out.printf("%-10s %10s %10s %10s %10s%n", "", "/query", "/batch", "/embed", "检索/s");
+            for (Result result : results) {
+                System.out.printf("%-10s %10d %10d %10d %10.0f%n", result.name(), result.queries(),
+                        result.batches(), result.embeds(), result.throughput());
+            }
+        } finally {
+            stub.stop();
+        }
+
+        System.out.println();
+        double recall = simulation.evaluateIndex(options.getInt("index-size", 20_000), options.getInt("ef-search", 64));
+        if (recall < minRecall) {
+            System.out.printf("失败: recall@10 %.3f 低于 %.3f%n", recall, minRecall);
+            System.exit(1);
+        }
+        System.out.printf("通过: recall@10 %.3f%n", recall);
+    }
+
+    private Result run(String name, StubRagService stub, long cacheSize, boolean batch, Path documents)
+            throws Exception {
+        RagProperties properties = new RagProperties();
+        properties.setBaseUrl(stub.baseUrl());
+        properties.getCache().setMaxSize(cacheSize);
+        properties.getBatch().setEnabled(batch);
+        if (documents != null) {
+            properties.getLocal().setEnabled(true);
+            properties.getLocal().setDocuments(documents.toString());
+        }
+        RagClient client = new RagClient(properties, new ObjectMapper());
+        client.start();
+        if (documents != null) {
+            long deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+            while (!client.isLocalIndexReady() && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(Duration.ofMillis(20).toNanos());
+            }
+            if (!client.isLocalIndexReady()) {
+                throw new IllegalStateException("本地索引未在 1 分钟内建好");
+            }
+        }
+        stub.reset();
+
+        LatencySamples latencies = new LatencySamples(clients * requestsPerClient);
+        double[] cdf = zipfCdf();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                SplittableRandom random = new SplittableRandom(seed + c);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        String query = variant(sample(cdf, random), random);
+                        long begin = System.nanoTime();
+                        List<RetrievedChunk> chunks = client.query(query, 5).join();
+                        latencies.add(System.nanoTime() - begin);
+                        if (chunks.isEmpty()) {
+                            throw new IllegalStateException("检索结果为空: " + query);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %d 次检索，耗时 %.1f s%n", name, latencies.size(), seconds);
+        return new Result(name, latencies, stub.queries.get(), stub.batches.get(), stub.embeds.get(),
+                latencies.size() / seconds);
+    }
+
+    /**
+     * 聚类数据上对比 HNSW 与暴力检索
+     */
+    private double evaluateIndex(int size, int efSearch) {
+        SplittableRandom random = new SplittableRandom(seed);
+        float[][] centers = new float[Math.max(1, size / 200)][];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = gaussian(random, 1.0f);
+        }
+        HnswIndex index = new HnswIndex(dimension, size, 16, 200, seed);
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            index.add(near(centers[random.nextInt(centers.length)], random));
+        }
+        double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+
+        int queries = 200;
+        int k = 10;
+        long approxNanos = 0;
+        long exactNanos = 0;
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = near(centers[random.nextInt(centers.length)], random);
+            long t0 = System.nanoTime();
+            List<HnswIndex.Hit> approx = index.search(query, k, efSearch);
+            long t1 = System.nanoTime();
+            List<HnswIndex.Hit> exact = index.exactSearch(query, k);
+            long t2 = System.nanoTime();
+            approxNanos += t1 - t0;
+            exactNanos += t2 - t1;
+            Set<Integer> expected = new HashSet<>();
+            exact.forEach(hit -> expected.add(hit.id()));
+            for (HnswIndex.Hit hit : approx) {
+                if (expected.contains(hit.id())) {
+                    found++;
+                }
+            }
+        }
+        double recall = found / (double) (queries * k);
+        System.out.printf("HNSW：%d 个 %d 维向量（堆外 %.1f MB），建索引 %.1f s，检索 %.0f µs / 次（暴力 %.0f µs），ef=%d%n",
+                size, dimension, size * (double) dimension * Float.BYTES / (1 << 20), buildSeconds,
+                approxNanos / 1e3 / queries, exactNanos / 1e3 / queries, efSearch);
+        return recall;
+    }
+
+    private Path writeDocuments() throws IOException {
+        Path file = Files.createTempFile("rag-documents", ".jsonl");
+        file.toFile().deleteOnExit();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < localDocuments; i++) {
+            lines.append("{\"text\":\"片段 ").append(i).append("\",\"metadata\":{\"source\":\"doc-")
+                    .append(i / 10).append("\"}}\n");
+        }
+        Files.writeString(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private double[] zipfCdf() {
+        double[] cdf = new double[distinct];
+        double sum = 0;
+        for (int i = 0; i < distinct; i++) {
+            sum += 1 / Math.pow(i + 1, zipf);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < distinct; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, SplittableRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    /**
+     * 同一问题的不同写法：大小写、首尾和中间的空白
+     */
+    private static String variant(int question, SplittableRandom random) {
+        String text = "How to configure Agent " + question + " 的知识库";
+        if (random.nextBoolean()) {
+            text = text.toUpperCase(Locale.ROOT);
+        }
+        if (random.nextBoolean()) {
+            text = "  " + text.replace(" ", "   ") + "\n";
+        }
+        return text;
+    }
+
+    private float[] gaussian(SplittableRandom random, float scale) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (nextGaussian(random) * scale);
+        }
+        return vector;
+    }
+
+    private float[] near(float[] center, SplittableRandom random) {
+        float[] vector = gaussian(random, 0.3f);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] += center[i];
+        }
+        return vector;
+    }
+
+    private static double nextGaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private record Result(String name, LatencySamples latencies, long queries, long batches, long embeds,
+                          double throughput) {
+    }
+
+    /**
+     * 模拟 agentoz-rag：每次调用固定延迟，批量接口只多出很小的逐条开销；向量按文本哈希确定性生成
+     */
+    private final class StubRagService {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final HttpServer server;
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong embeds = new AtomicLong();
+
+        private StubRagService() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/query/batch", exchange -> {
+                batches.incrementAndGet();
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                List<Object> results = new ArrayList<>();
+                for (JsonNode query : body.get("queries")) {
+                    results.add(chunks(query.get("query").asText(), query.get("top_k").asInt()));
+                }
+                sleep(queryLatency.plusMillis(body.get("queries").size()));
+                respond(exchange, Map.of("results", results));
+            });
+            server.createContext("/query", exchange -> {
+                queries.incrementAndGet();
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                sleep(queryLatency);
+                respond(exchange, Map.of("query", body.get("query").asText(),
+                        "results", chunks(body.get("query").asText(), body.get("top_k").asInt())));
+            });
+            server.createContext("/embed", exchange -> {
+                embeds.incrementAndGet();
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                List<float[]> embeddings = new ArrayList<>();
+                for (JsonNode text : body.get("texts")) {
+                    embeddings.add(gaussian(new SplittableRandom(text.asText().hashCode()), 1.0f));
+                }
+                sleep(embedLatency);
+                respond(exchange, Map.of("embeddings", embeddings));
+            });
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void reset() {
+            queries.set(0);
+            batches.set(0);
+            embeds.set(0);
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private List<Map<String, Object>> chunks(String query, int topK) {
+            List<Map<String, Object>> chunks = new ArrayList<>(topK);
+            for (int i = 0; i < topK; i++) {
+                chunks.add(Map.of("text", query + " #" + i, "score", 1.0 - i * 0.1,
+                        "metadata", Map.of("source", "stub")));
+            }
+            return chunks;
+        }
+
+        private void respond(HttpExchange exchange, Object body) throws IOException {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private void sleep(Duration duration) {
+            LockSupport.parkNanos(duration.toNanos());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.memory.HashingEmbedder;
+import com.deepknow.agentoz.memory.SemanticLongTermMemory;
+import com.deepknow.agentoz.memory.SemanticMemoryHook;
+import com.deepknow.agentoz.memory.SemanticMemoryStore;
+import io.agentscope.core.memory.InMemoryMemory;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * 会话语义记忆仿真：长对话中按相关度召回早前消息，与重放完整记录相比的提示词大小和检索耗时
+ * <p>
+ * 直接驱动 {@link SemanticMemoryStore}（特征哈希向量化，不依赖模型）。合成一段 --messages 条消息的对话，
+ * 每条消息围绕 --topics 个话题之一，带有该话题的专有词（随机生成的两字词）和公共填充词；工作记忆只保留最近 --window 条，
+ * 之后对随机话题提问，统计：
+ * <ul>
+ *     <li>记录：每轮结束时写入新消息的耗时</li>
+ *     <li>检索：向量化 + HNSW 检索 + 读取文本的耗时（微秒）</li>
+ *     <li>精度：召回的消息中属于提问话题的比例</li>
+ *     <li>提示词：工作记忆 + 召回内容的字符数，对比完整记录</li>
+ *     <li>重新打开：淘汰关闭后再次检索（映射文件、读取日志和索引图结构）的耗时</li>
+ * </ul>
+ * 召回精度低于 --min-precision（默认 0.8）时以非零状态退出。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.SemanticMemorySimulation \
+ *     --messages=4000 --topics=80 --queries=2000
+ * </pre>
+ */
+public final class SemanticMemorySimulation {
+
+    private static final String AGENT_ID = "bench-agent";
+    private static final String CONVERSATION_ID = "bench-conversation";
+    private static final String[] FILLER = {"然后", "我们", "需要", "确认", "一下", "这个", "情况", "可以", "处理",
+            "还有", "问题", "时间", "昨天", "今天", "明天", "已经", "应该", "如果", "不过", "大概", "看看", "帮忙",
+            "the", "and", "please", "check", "status", "update", "thanks", "again", "maybe", "today"};
+
+    private final int messages;
+    private final int topics;
+    private final int queries;
+    private final int window;
+    private final int topK;
+    private final long seed;
+
+    /**
+     * 话题 -> 专有词，第 0 个作为话题标记出现在该话题的每条消息中
+     */
+    private final String[][] topicWords;
+
+    private SemanticMemorySimulation(LoadOptions options) {
+        this.messages = options.getInt("messages", 4000);
+        this.topics = options.getInt("topics", 80);
+        this.queries = options.getInt("queries", 2000);
+        this.window = options.getInt("window", 20);
+        this.topK = options.getInt("top-k", 5);
+        this.seed = options.getInt("seed", 42);
+        this.topicWords = topicWords(topics, seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadOptions options = LoadOptions.parse(args);
+        SemanticMemorySimulation simulation = new SemanticMemorySimulation(options);
+        double minPrecision = Double.parseDouble(options.get("min-precision", "0.8"));
+        Path directory = options.has("dir")
+                ? Path.of(options.get("dir", null))
+                : Files.createTempDirectory("agentoz-semantic-memory");
+
+        SemanticMemoryStore store = new SemanticMemoryStore(new HashingEmbedder(options.getInt("dimension", 256)),
+                new SimpleMeterRegistry(), true, directory.toString(), simulation.messages, 16, 64, 64,
+                simulation.topK, 0.2, 1000, 16, Duration.ofMinutes(30));
+        try {
+            simulation.run(store, minPrecision);
+        } finally {
+            store.close();
+        }
+    }
+
+    private void run(SemanticMemoryStore store, double minPrecision) {
+        SplittableRandom random = new SplittableRandom(seed);
+        InMemoryMemory working = new InMemoryMemory();
+        SemanticMemoryHook hook = (SemanticMemoryHook) store.install(AGENT_ID, working);
+        SemanticLongTermMemory longTerm = hook.getLongTermMemory();
+        longTerm.bind(CONVERSATION_ID);
+
+        // 写入：每轮一问一答，结束时记录工作记忆（与 Hook 的 PostCall 相同），工作记忆只保留最近 window 条
+        LatencySamples recordLatency = new LatencySamples(messages / 2);
+        long transcriptChars = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i += 2) {
+            for (MsgRole role : new MsgRole[]{MsgRole.USER, MsgRole.ASSISTANT}) {
+                Msg message = message(role, random.nextInt(topics), random);
+                transcriptChars += message.getTextContent().length();
+                working.addMessage(message);
+            }
+            long begin = System.nanoTime();
+            longTerm.record(working.getMessages()).block();
+            recordLatency.add(System.nanoTime() - begin);
+            while (working.getMessages().size() > window) {
+                working.deleteMessage(0);
+            }
+        }
+        System.out.printf("写入 %d 条消息（%d 个话题），耗时 %d ms；每轮记录 p50 %.1f µs，p99 %.1f µs%n",
+                messages, topics, (System.nanoTime() - start) / 1_000_000,
+                recordLatency.percentile(0.50) / 1e3, recordLatency.percentile(0.99) / 1e3);
+
+        LatencySamples retrieveLatency = new LatencySamples(queries);
+        Stats stats = query(longTerm, working, random, retrieveLatency);
+        long workingChars = 0;
+        for (Msg message : working.getMessages()) {
+            workingChars += message.getTextContent().length();
+        }
+        System.out.printf("检索 %d 次：p50 %.1f µs，p90 %.1f µs，p99 %.1f µs；召回 %d 条，精度 %.3f%n",
+                queries, retrieveLatency.percentile(0.50) / 1e3, retrieveLatency.percentile(0.90) / 1e3,
+                retrieveLatency.percentile(0.99) / 1e3, stats.recalled(), stats.precision());
+        System.out.printf("提示词字符数：完整记录 %d，工作记忆 %d + 召回平均 %.0f%n",
+                transcriptChars, workingChars, stats.meanRecalledChars());
+
+        // 淘汰关闭后重新打开：映射文件、读取日志和索引图结构
+        store.close();
+        Msg query = message(MsgRole.USER, 0, random);
+        long reopen = System.nanoTime();
+        longTerm.retrieve(query).block();
+        System.out.printf("重新打开并检索：%.1f ms%n", (System.nanoTime() - reopen) / 1e6);
+
+        System.out.println();
+        if (stats.precision() < minPrecision) {
+            System.out.printf("失败: 召回精度 %.3f 低于 %.2f%n", stats.precision(), minPrecision);
+            System.exit(1);
+        }
+        System.out.printf("通过: 召回精度 %.3f，检索 p99 %.1f µs%n", stats.precision(),
+                retrieveLatency.percentile(0.99) / 1e3);
+    }
+
+    private Stats query(SemanticLongTermMemory longTerm, InMemoryMemory working, SplittableRandom random,
+                        LatencySamples latency) {
+        long recalled = 0;
+        long relevant = 0;
+        long recalledChars = 0;
+        for (int i = 0; i < queries; i++) {
+            int topic = random.nextInt(topics);
+            Msg query = message(MsgRole.USER, topic, random);
+            long begin = System.nanoTime();
+            String text = longTerm.retrieve(query).block();
+            latency.add(System.nanoTime() - begin);
+            if (text == null) {
+                continue;
+            }
+            recalledChars += text.length();
+            for (String line : text.split("\n")) {
+                if (line.startsWith("用户: ") || line.startsWith("助手: ")) {
+                    recalled++;
+                    if (line.contains(topicWords[topic][0])) {
+                        relevant++;
+                    }
+                }
+            }
+        }
+        return new Stats(recalled, recalled == 0 ? 0 : relevant / (double) recalled,
+                recalledChars / (double) Math.max(1, queries));
+    }
+
+    /**
+     * 话题标记词 1 个 + 从 6 个话题专有词中取 3 个 + 公共填充词 4 个
+     */
+    private Msg message(MsgRole role, int topic, SplittableRandom random) {
+        List<String> words = new ArrayList<>();
+        words.add(topicWords[topic][0]);
+        for (int i = 0; i < 3; i++) {
+            words.add(topicWords[topic][1 + random.nextInt(6)]);
+        }
+        for (int i = 0; i < 4; i++) {
+            words.add(FILLER[random.nextInt(FILLER.length)]);
+        }
+        for (int i = words.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = words.get(i);
+            words.set(i, words.get(j));
+            words.set(j, swap);
+        }
+        return Msg.builder()
+                .role(role)
+                .content(TextBlock.builder().text(String.join(" ", words)).build())
+                .build();
+    }
+
+    /**
+     * 每个话题 7 个互不相同的两字词（常用汉字区随机取字）
+     */
+    private static String[][] topicWords(int topics, long seed) {
+        SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        Set<String> used = new HashSet<>(Arrays.asList(FILLER));
+        String[][] words = new String[topics][7];
+        for (int topic = 0; topic < topics; topic++) {
+            for (int i = 0; i < words[topic].length; i++) {
+                String word;
+                do {
+                    word = new String(new char[]{(char) (0x4E00 + random.nextInt(0x51A5)),
+                            (char) (0x4E00 + random.nextInt(0x51A5))});
+                } while (!used.add(word));
+                words[topic][i] = word;
+            }
+        }
+        return words;
+    }
+
+    private record Stats(long recalled, double precision, double meanRecalledChars) {
+    }
+}
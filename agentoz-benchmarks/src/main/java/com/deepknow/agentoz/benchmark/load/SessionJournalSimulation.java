@@ -0,0 +1,324 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.benchmark.support.Fixtures;
+import com.deepknow.agentoz.benchmark.support.StubChatModel;
+import com.deepknow.agentoz.benchmark.support.StubRedisTemplate;
+import com.deepknow.agentoz.session.FencedSessionKey;
+import com.deepknow.agentoz.session.RedisSession;
+import com.deepknow.agentoz.session.SessionJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.memory.InMemoryMemory;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Session 本地预写日志仿真：Redis 变慢或短暂不可用时保存的耗时和丢失的轮次，以及重启后的重放
+ * <p>
+ * 使用进程内 Redis 替身，每条命令增加 --redis-latency 的延迟；运行开始 --outage-after 后 Redis 不可用 --outage 时长，
+ * 期间每条命令在 --command-timeout 后失败。--sessions 个会话并发（每个会话一个虚拟线程），
+ * 各执行 --turns 轮：间隔 --think（模型生成）后追加一问一答并携带租约令牌 saveTo。分两组对比：
+ * <ul>
+ *     <li>直接写 Redis：保存耗时，以及保存失败（本轮状态丢失）的轮次</li>
+ *     <li>本地日志：保存耗时、丢失的轮次，全部写入 Redis 还需的时间；之后用不带日志的 RedisSession
+ *     加载每个会话，消息数应与最后一轮一致</li>
+ * </ul>
+ * 最后模拟进程崩溃后重启：Redis 不可用时每个会话再保存一轮，不关闭即放弃该实例，Redis 恢复后在同一目录重新打开日志，
+ * 统计重放耗时并再次校验。本地日志组有丢失或不一致时以非零状态退出。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.SessionJournalSimulation \
+ *     --sessions=64 --turns=40 --outage=PT1S
+ * </pre>
+ */
+public final class SessionJournalSimulation {
+
+    private static final long TOKEN = 1;
+
+    private final int sessions;
+    private final int turns;
+    private final int messageChars;
+    private final Duration think;
+    private final Duration redisLatency;
+    private final Duration commandTimeout;
+    private final Duration outageAfter;
+    private final Duration outage;
+
+    private SessionJournalSimulation(LoadOptions options) {
+        this.sessions = options.getInt("sessions", 64);
+        this.turns = options.getInt("turns", 40);
+        this.messageChars = options.getInt("message-chars", 400);
+        this.think = options.getDuration("think", Duration.ofMillis(20));
+        this.redisLatency = options.getDuration("redis-latency", Duration.ofMillis(1));
+        this.commandTimeout = options.getDuration("command-timeout", Duration.ofMillis(200));
+        this.outageAfter = options.getDuration("outage-after", Duration.ofMillis(300));
+        this.outage = options.getDuration("outage", Duration.ofSeconds(1));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        SessionJournalSimulation simulation = new SessionJournalSimulation(options);
+        Path directory = options.has("dir")
+                ? Path.of(options.get("dir", null))
+                : Files.createTempDirectory("agentoz-session-journal");
+
+        FlakyRedisTemplate direct = simulation.redis();
+        Result directResult = simulation.run(new RedisSession(direct, new ObjectMapper()), direct);
+        System.out.printf("直接写 Redis：保存 p50 %.2f ms，p99 %.2f ms；丢失 %d / %d 轮%n",
+                directResult.latency().percentile(0.50) / 1e6, directResult.latency().percentile(0.99) / 1e6,
+                directResult.lost(), simulation.sessions * simulation.turns);
+
+        FlakyRedisTemplate journaled = simulation.redis();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RedisSession session = new RedisSession(journaled, new ObjectMapper(), null,
+                new SessionJournal(directory.resolve("run"), 64 << 20, false), registry);
+        Result journalResult = simulation.run(session, journaled);
+        long drain = System.nanoTime();
+        session.awaitReplicated(Duration.ofMinutes(5));
+        double drainMillis = (System.nanoTime() - drain) / 1e6;
+        session.close();
+        double coalesced = registry.get("agentoz.session.journal.records").tag("result", "coalesced")
+                .counter().count();
+        System.out.printf("本地日志：保存 p50 %.1f µs，p99 %.1f µs；丢失 %d / %d 轮；结束后全部写入 Redis 用时 %.0f ms"
+                        + "（被后续写入覆盖而跳过 %.0f 条）%n",
+                journalResult.latency().percentile(0.50) / 1e3, journalResult.latency().percentile(0.99) / 1e3,
+                journalResult.lost(), simulation.sessions * simulation.turns, drainMillis, coalesced);
+        int consistent = simulation.verify(journaled, simulation.turns);
+        System.out.printf("一致性：%d / %d 个会话在 Redis 中的消息数与最后一轮一致%n", consistent, simulation.sessions);
+
+        int replayed = simulation.crashAndReplay(directory.resolve("crash"));
+
+        System.out.println();
+        if (journalResult.lost() > 0 || consistent < simulation.sessions || replayed < simulation.sessions) {
+            System.out.printf("失败: 本地日志组丢失 %d 轮，一致 %d / %d，重放后一致 %d / %d%n", journalResult.lost(),
+                    consistent, simulation.sessions, replayed, simulation.sessions);
+            System.exit(1);
+        }
+        System.out.printf("通过: Redis 中断 %d ms 期间本地日志组未丢失轮次（直接写 Redis 丢失 %d 轮），保存 p99 %.1f µs%n",
+                simulation.outage.toMillis(), directResult.lost(), journalResult.latency().percentile(0.99) / 1e3);
+    }
+
+    private Result run(RedisSession session, FlakyRedisTemplate redis) throws InterruptedException {
+        LatencySamples latency = new LatencySamples(sessions * turns);
+        AtomicLong lost = new AtomicLong();
+        long start = System.nanoTime();
+        Thread outages = Thread.ofVirtual().start(() -> {
+            LockSupport.parkNanos(outageAfter.toNanos());
+            redis.down = true;
+            LockSupport.parkNanos(outage.toNanos());
+            redis.down = false;
+        });
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = sessionId(i);
+                executor.submit(() -> {
+                    ReActAgent agent = agent();
+                    for (int turn = 0; turn < turns; turn++) {
+                        LockSupport.parkNanos(think.toNanos());
+                        addTurn(agent);
+                        long begin = System.nanoTime();
+                        try {
+                            agent.saveTo(session, new FencedSessionKey(sessionId, TOKEN));
+                        } catch (RuntimeException e) {
+                            lost.incrementAndGet();
+                        }
+                        latency.add(System.nanoTime() - begin);
+                    }
+                });
+            }
+        }
+        outages.join();
+        System.out.printf("（%d 个会话 x %d 轮，耗时 %d ms）%n", sessions, turns, (System.nanoTime() - start) / 1_000_000);
+        return new Result(latency, lost.get());
+    }
+
+    /**
+     * Redis 不可用时每个会话再保存一轮，放弃该实例（其后台线程继续对不可用的 Redis 重试，相当于进程已崩溃）；
+     * Redis 恢复后在同一目录重新打开
+     *
+     * @return 重放后消息数一致的会话数
+     */
+    private int crashAndReplay(Path directory) throws IOException {
+        FlakyRedisTemplate crashed = redis();
+        crashed.down = true;
+        RedisSession before = new RedisSession(crashed, new ObjectMapper(), null,
+                new SessionJournal(directory, 64 << 20, false), new SimpleMeterRegistry());
+        for (int i = 0; i < sessions; i++) {
+            ReActAgent agent = agent();
+            addTurn(agent);
+            agent.saveTo(before, new FencedSessionKey(sessionId(i), TOKEN));
+        }
+
+        FlakyRedisTemplate recovered = redis();
+        long start = System.nanoTime();
+        RedisSession after = new RedisSession(recovered, new ObjectMapper(), null,
+                new SessionJournal(directory, 64 << 20, false), new SimpleMeterRegistry());
+        boolean drained = after.awaitReplicated(Duration.ofMinutes(1));
+        double replayMillis = (System.nanoTime() - start) / 1e6;
+        after.close();
+        int consistent = verify(recovered, 1);
+        System.out.printf("崩溃后重启：%s重放 %d 个会话用时 %.0f ms，%d 个会话一致%n", drained ? "" : "（超时）",
+                sessions, replayMillis, consistent);
+        return consistent;
+    }
+
+    /**
+     * 用不带日志的 RedisSession 加载每个会话，检查消息数
+     */
+    private int verify(FlakyRedisTemplate redis, int expectedTurns) {
+        redis.latency = Duration.ZERO;
+        RedisSession session = new RedisSession(redis, new ObjectMapper());
+        int consistent = 0;
+        for (int i = 0; i < sessions; i++) {
+            ReActAgent agent = agent();
+            if (agent.loadIfExists(session, sessionId(i))
+                    && agent.getMemory().getMessages().size() == expectedTurns * 2) {
+                consistent++;
+            }
+        }
+        return consistent;
+    }
+
+    private void addTurn(ReActAgent agent) {
+        agent.getMemory().addMessage(Msg.builder()
+                .name("user")
+                .role(MsgRole.USER)
+                .textContent(Fixtures.text(messageChars / 2))
+                .build());
+        agent.getMemory().addMessage(Msg.builder()
+                .name("assistant")
+                .role(MsgRole.ASSISTANT)
+                .textContent(Fixtures.text(messageChars))
+                .build());
+    }
+
+    private FlakyRedisTemplate redis() {
+        FlakyRedisTemplate redis = new FlakyRedisTemplate();
+        redis.latency = redisLatency;
+        redis.timeout = commandTimeout;
+        return redis;
+    }
+
+    private static String sessionId(int index) {
+        return "bench-agent:conversation-" + index;
+    }
+
+    private static ReActAgent agent() {
+        return ReActAgent.builder()
+                .name("benchmark")
+                .sysPrompt("你是一个助手")
+                .model(new StubChatModel(1, 16))
+                .memory(new InMemoryMemory())
+                .build();
+    }
+
+    private record Result(LatencySamples latency, long lost) {
+    }
+
+    /**
+     * 每条命令增加延迟，不可用期间在超时后抛出连接失败；带令牌的写入脚本按 RedisSession 的语义模拟
+     */
+    private static final class FlakyRedisTemplate extends StubRedisTemplate {
+
+        volatile boolean down;
+        volatile Duration latency = Duration.ZERO;
+        volatile Duration timeout = Duration.ZERO;
+
+        private final Map<String, Long> fences = new ConcurrentHashMap<>();
+        private final ValueOperations<String, String> valueOps = delayed(ValueOperations.class, super.opsForValue());
+        private final ListOperations<String, String> listOps = delayed(ListOperations.class, super.opsForList());
+        private final SetOperations<String, String> setOps = delayed(SetOperations.class, super.opsForSet());
+
+        @Override
+        public ValueOperations<String, String> opsForValue() {
+            return valueOps;
+        }
+
+        @Override
+        public ListOperations<String, String> opsForList() {
+            return listOps;
+        }
+
+        @Override
+        public SetOperations<String, String> opsForSet() {
+            return setOps;
+        }
+
+        /**
+         * FENCED_SAVE / FENCED_SAVE_LIST：KEYS fence、状态、索引；ARGV 令牌、TTL、stateKey、值
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            command();
+            long token = Long.parseLong((String) args[0]);
+            synchronized (fences) {
+                Long fence = fences.get(keys.get(0));
+                if (fence != null && fence > token) {
+                    return (T) Long.valueOf(0);
+                }
+                fences.put(keys.get(0), token);
+                if (keys.size() == 3) {
+                    String redisKey = keys.get(1);
+                    if (redisKey.endsWith(":list")) {
+                        super.delete(redisKey);
+                        for (int i = 3; i < args.length; i++) {
+                            super.opsForList().rightPush(redisKey, (String) args[i]);
+                        }
+                    } else {
+                        super.opsForValue().set(redisKey, (String) args[3]);
+                    }
+                    super.opsForSet().add(keys.get(2), (String) args[2]);
+                }
+            }
+            return (T) Long.valueOf(1);
+        }
+
+        @Override
+        public Boolean delete(String key) {
+            command();
+            return super.delete(key);
+        }
+
+        private void command() {
+            if (down) {
+                LockSupport.parkNanos(timeout.toNanos());
+                throw new RedisConnectionFailureException("Redis 不可用（仿真）");
+            }
+            if (!latency.isZero()) {
+                LockSupport.parkNanos(latency.toNanos());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T delayed(Class<T> type, T target) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                command();
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+}
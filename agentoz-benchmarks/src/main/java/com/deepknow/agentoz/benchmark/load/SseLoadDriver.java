@@ -0,0 +1,140 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * SSE 网关压测驱动
+ * <p>
+ * 每个会话一个 HTTP 长连接（GET /api/v1/chat/stream），在虚拟线程上逐行读取事件，
+ * 统计峰值并发流、首 Token 延迟和整轮延迟。服务端应以模拟模型启动（AGENTOZ_SIMULATED_MODEL=true）。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.SseLoadDriver \
+ *     --agent=load-test-agent --url=http://127.0.0.1:8080 --conversations=20000 --concurrency=5000
+ * </pre>
+ * 参数：--agent（必填）、--url、--conversations、--concurrency、--warmup、--timeout、--message，
+ * 含义同 {@link StreamChatLoadDriver}
+ */
+public final class SseLoadDriver {
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String agentId;
+    private final String message;
+    private final Duration timeout;
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    private SseLoadDriver(HttpClient httpClient, LoadOptions options) {
+        this.httpClient = httpClient;
+        this.baseUrl = options.get("url", "http://127.0.0.1:8080");
+        this.agentId = options.required("agent");
+        this.message = options.get("message", StreamChatLoadDriver.DEFAULT_MESSAGE);
+        this.timeout = options.getDuration("timeout", StreamChatLoadDriver.DEFAULT_TIMEOUT);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadOptions options = LoadOptions.parse(args);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+        try {
+            SseLoadDriver driver = new SseLoadDriver(httpClient, options);
+            int concurrency = options.getInt("concurrency", 500);
+            int warmup = options.getInt("warmup", 100);
+            int conversations = options.getInt("conversations", 2000);
+
+            if (warmup > 0) {
+                System.out.printf("预热 %d 个会话...%n", warmup);
+                driver.run("warmup", warmup, concurrency, executor);
+            }
+            System.out.printf("压测 %d 个 SSE 会话，并发 %d...%n", conversations, concurrency);
+            driver.run("run", conversations, concurrency, executor).print();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadReport run(String phase, int conversations, int concurrency, ExecutorService executor)
+            throws InterruptedException {
+        LoadReport report = new LoadReport(conversations);
+        Semaphore permits = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < conversations; i++) {
+            permits.acquire();
+            String conversationId = phase + "-" + runId + "-" + i;
+            executor.execute(() -> {
+                try {
+                    stream(conversationId, report);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        permits.acquire(concurrency);
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private void stream(String conversationId, LoadReport report) {
+        URI uri = URI.create(baseUrl + "/api/v1/chat/stream"
+                + "?sessionId=" + encode(conversationId)
+                + "&agentId=" + encode(agentId)
+                + "&message=" + encode(message));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Accept", "text/event-stream")
+                .timeout(timeout)
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        long firstToken = -1;
+        long events = 0;
+        report.streamOpened();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IllegalStateException("HTTP " + response.statusCode());
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("event:")) {
+                        continue;
+                    }
+                    events++;
+                    String event = line.substring("event:".length()).trim();
+                    if ("TEXT".equals(event) && firstToken < 0) {
+                        firstToken = System.nanoTime() - start;
+                    } else if ("ERROR".equals(event)) {
+                        throw new IllegalStateException("ERROR event");
+                    }
+                }
+            }
+            report.success(firstToken, System.nanoTime() - start, events);
+        } catch (Exception e) {
+            report.failure(e);
+        } finally {
+            report.streamClosed();
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,154 @@
+package com.deepknow.agentoz.benchmark.load;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.api.service.AgentService;
+import com.deepknow.agentoz.api.stream.CompactStreams;
+import org.apache.dubbo.config.ApplicationConfig;
+import org.apache.dubbo.config.ReferenceConfig;
+import org.apache.dubbo.config.RegistryConfig;
+import org.apache.dubbo.config.bootstrap.DubboBootstrap;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * streamChat 压测驱动
+ * <p>
+ * 通过 Dubbo 并发发起大量流式对话，统计吞吐、首 Token 延迟和整轮延迟的分位数。
+ * 服务端应以模拟模型启动（AGENTOZ_SIMULATED_MODEL=true），避免真实模型调用。
+ * <pre>
+ * java -cp agentoz-benchmarks/target/benchmarks.jar com.deepknow.agentoz.benchmark.load.StreamChatLoadDriver \
+ *     --agent=load-test-agent --url=tri://127.0.0.1:50051 --conversations=5000 --concurrency=1000
+ * </pre>
+ * 参数：
+ * <ul>
+ *     <li>--agent：目标 Agent ID（必填，需已存在）</li>
+ *     <li>--url：服务直连地址，默认 tri://127.0.0.1:50051；指定 --registry 时忽略</li>
+ *     <li>--registry：注册中心地址，如 nacos://localhost:8848</li>
+ *     <li>--conversations：会话数，默认 2000</li>
+ *     <li>--turns：每个会话的轮数，默认 1</li>
+ *     <li>--concurrency：同时进行的会话数，默认 500</li>
+ *     <li>--warmup：预热会话数（不计入统计），默认 100</li>
+ *     <li>--timeout：单轮超时，默认 PT2M</li>
+ *     <li>--message：用户消息</li>
+ *     <li>--compact：使用紧凑流（streamChatCompact），默认 false</li>
+ * </ul>
+ */
+public final class StreamChatLoadDriver {
+
+    static final String DEFAULT_MESSAGE = "请简要分析一下当前任务并给出下一步建议";
+    static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+
+    private final AgentService agentService;
+    private final String agentId;
+    private final String message;
+    private final int turns;
+    private final Duration timeout;
+    private final boolean compact;
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    private StreamChatLoadDriver(AgentService agentService, LoadOptions options) {
+        this.agentService = agentService;
+        this.agentId = options.required("agent");
+        this.message = options.get("message", DEFAULT_MESSAGE);
+        this.turns = options.getInt("turns", 1);
+        this.timeout = options.getDuration("timeout", DEFAULT_TIMEOUT);
+        this.compact = options.getBoolean("compact");
+    }
+
+    public static void main(String[] args) {
+        LoadOptions options = LoadOptions.parse(args);
+        ReferenceConfig<AgentService> reference = new ReferenceConfig<>();
+        reference.setInterface(AgentService.class);
+        reference.setTimeout((int) options.getDuration("timeout", DEFAULT_TIMEOUT).toMillis());
+        reference.setCheck(false);
+
+        DubboBootstrap bootstrap = DubboBootstrap.getInstance()
+                .application(new ApplicationConfig("agentoz-load-driver"));
+        if (options.has("registry")) {
+            bootstrap.registry(new RegistryConfig(options.required("registry")));
+        } else {
+            reference.setUrl(options.get("url", "tri://127.0.0.1:50051"));
+        }
+        bootstrap.reference(reference).start();
+
+        try {
+            StreamChatLoadDriver driver = new StreamChatLoadDriver(reference.get(), options);
+            int concurrency = options.getInt("concurrency", 500);
+            int warmup = options.getInt("warmup", 100);
+            int conversations = options.getInt("conversations", 2000);
+
+            if (warmup > 0) {
+                System.out.printf("预热 %d 个会话...%n", warmup);
+                driver.run("warmup", warmup, concurrency);
+            }
+            System.out.printf("压测 %d 个会话 x %d 轮，并发 %d...%n", conversations, driver.turns, concurrency);
+            driver.run("run", conversations, concurrency).print();
+        } finally {
+            bootstrap.stop();
+        }
+    }
+
+    private LoadReport run(String phase, int conversations, int concurrency) {
+        LoadReport report = new LoadReport(conversations * turns);
+        long start = System.nanoTime();
+        Flux.range(0, conversations)
+                .flatMap(i -> conversation(phase + "-" + runId + "-" + i, report), concurrency)
+                .blockLast();
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * 一个会话内的各轮串行执行
+     */
+    private Mono<Void> conversation(String conversationId, LoadReport report) {
+        return Flux.range(0, turns)
+                .concatMap(turn -> turn(conversationId, turn, report))
+                .then();
+    }
+
+    private Mono<Void> turn(String conversationId, int turn, LoadReport report) {
+        AgentChatRequest request = AgentChatRequest.builder()
+                .sessionId(conversationId)
+                .agentId(agentId)
+                .message(turn == 0 ? message : message + "（第 " + (turn + 1) + " 轮）")
+                .build();
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstToken = new AtomicLong(-1);
+            AtomicLong events = new AtomicLong();
+            Flux<AgentChatResponse> stream = compact
+                    ? CompactStreams.streamChat(agentService, request)
+                    : Flux.defer(() -> agentService.streamChat(request));
+            return stream
+                    .doOnNext(response -> {
+                        events.incrementAndGet();
+                        if (isToken(response)) {
+                            firstToken.compareAndSet(-1, System.nanoTime() - start);
+                        }
+                        if (EventType.ERROR.name().equals(response.getEventType())) {
+                            throw new IllegalStateException(response.getContent());
+                        }
+                    })
+                    .timeout(timeout)
+                    .then(Mono.fromRunnable(() ->
+                            report.success(firstToken.get(), System.nanoTime() - start, events.get())))
+                    .onErrorResume(e -> {
+                        report.failure(e);
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    private static boolean isToken(AgentChatResponse response) {
+        return EventType.TEXT.name().equals(response.getEventType())
+                && response.getContent() != null && !response.getContent().isEmpty();
+    }
+}
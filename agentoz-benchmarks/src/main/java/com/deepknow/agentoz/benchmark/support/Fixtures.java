@@ -0,0 +1,69 @@
+package com.deepknow.agentoz.benchmark.support;
+
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import io.agentscope.core.message.ToolResultBlock;
+import io.agentscope.core.message.ToolUseBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试数据：按线上对话的大致形态构造（中英文混排文本，每 5 轮一次工具调用）
+ */
+public final class Fixtures {
+
+    private static final String SAMPLE = "请根据项目需求整理接口设计，包括 request/response 字段、错误码和分页约定。"
+            + "The agent should summarize the previous discussion and propose next steps. ";
+
+    private Fixtures() {
+    }
+
+    public static String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            sb.append(SAMPLE);
+        }
+        return sb.substring(0, chars);
+    }
+
+    /**
+     * 构造 rounds 轮对话历史
+     */
+    public static List<Msg> history(int rounds, int messageChars) {
+        List<Msg> messages = new ArrayList<>(rounds * 3);
+        for (int i = 0; i < rounds; i++) {
+            messages.add(Msg.builder()
+                    .name("user")
+                    .role(MsgRole.USER)
+                    .textContent(text(messageChars / 2))
+                    .build());
+            if (i % 5 == 4) {
+                String toolId = "tool-" + i;
+                messages.add(Msg.builder()
+                        .name("assistant")
+                        .role(MsgRole.ASSISTANT)
+                        .content(ToolUseBlock.builder()
+                                .id(toolId)
+                                .name("call_researcher")
+                                .input(Map.of("task", text(80), "priority", "normal"))
+                                .build())
+                        .build());
+                messages.add(Msg.builder()
+                        .name("system")
+                        .role(MsgRole.TOOL)
+                        .content(ToolResultBlock.of(toolId, "call_researcher",
+                                TextBlock.builder().text(text(messageChars)).build()))
+                        .build());
+            }
+            messages.add(Msg.builder()
+                    .name("assistant")
+                    .role(MsgRole.ASSISTANT)
+                    .textContent(text(messageChars))
+                    .build());
+        }
+        return messages;
+    }
+}
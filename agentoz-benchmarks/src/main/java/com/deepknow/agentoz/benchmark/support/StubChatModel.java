@@ -0,0 +1,49 @@
+package com.deepknow.agentoz.benchmark.support;
+
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.TextBlock;
+import io.agentscope.core.model.ChatModelBase;
+import io.agentscope.core.model.ChatResponse;
+import io.agentscope.core.model.ChatUsage;
+import io.agentscope.core.model.GenerateOptions;
+import io.agentscope.core.model.ToolSchema;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 离线 Stub 模型：同步流式返回固定的文本分片，不产生网络调用
+ */
+public class StubChatModel extends ChatModelBase {
+
+    private final List<ChatResponse> responses;
+
+    /**
+     * @param chunks     分片数
+     * @param chunkChars 每个分片的字符数
+     */
+    public StubChatModel(int chunks, int chunkChars) {
+        String text = Fixtures.text(chunkChars);
+        this.responses = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            boolean last = i == chunks - 1;
+            responses.add(ChatResponse.builder()
+                    .id("stub-" + i)
+                    .content(List.of(TextBlock.builder().text(text).build()))
+                    .usage(last ? new ChatUsage(chunks * chunkChars, chunks * chunkChars / 2, 0) : null)
+                    .finishReason(last ? "stop" : null)
+                    .build());
+        }
+    }
+
+    @Override
+    protected Flux<ChatResponse> doStream(List<Msg> messages, List<ToolSchema> tools, GenerateOptions options) {
+        return Flux.fromIterable(responses);
+    }
+
+    @Override
+    public String getModelName() {
+        return "stub";
+    }
+}
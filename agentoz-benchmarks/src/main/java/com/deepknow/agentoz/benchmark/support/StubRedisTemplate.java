@@ -0,0 +1,116 @@
+package com.deepknow.agentoz.benchmark.support;
+
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的 Redis 替身，只实现 RedisSession 用到的 String / List / Set 操作
+ * <p>
+ * 基准测试关注序列化和调用路径本身的开销，不包含网络往返
+ */
+public class StubRedisTemplate extends StringRedisTemplate {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> lists = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+
+    private final ValueOperations<String, String> valueOps = proxy(ValueOperations.class, (method, args) ->
+            switch (method) {
+                case "set" -> values.put((String) args[0], (String) args[1]);
+                case "get" -> values.get((String) args[0]);
+                default -> throw new UnsupportedOperationException(method);
+            });
+
+    private final ListOperations<String, String> listOps = proxy(ListOperations.class, (method, args) ->
+            switch (method) {
+                case "rightPush" -> {
+                    List<String> list = lists.computeIfAbsent((String) args[0],
+                            k -> Collections.synchronizedList(new ArrayList<>()));
+                    list.add((String) args[1]);
+                    yield (long) list.size();
+                }
+                case "range" -> {
+                    List<String> list = lists.get((String) args[0]);
+                    yield list == null ? List.of() : List.copyOf(list);
+                }
+                default -> throw new UnsupportedOperationException(method);
+            });
+
+    private final SetOperations<String, String> setOps = proxy(SetOperations.class, (method, args) ->
+            switch (method) {
+                case "add" -> {
+                    Set<String> set = sets.computeIfAbsent((String) args[0], k -> ConcurrentHashMap.newKeySet());
+                    long added = 0;
+                    for (Object member : (Object[]) args[1]) {
+                        added += set.add((String) member) ? 1 : 0;
+                    }
+                    yield added;
+                }
+                case "size" -> {
+                    Set<String> set = sets.get((String) args[0]);
+                    yield set == null ? 0L : (long) set.size();
+                }
+                case "members" -> {
+                    Set<String> set = sets.get((String) args[0]);
+                    yield set == null ? Set.of() : new LinkedHashSet<>(set);
+                }
+                default -> throw new UnsupportedOperationException(method);
+            });
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return valueOps;
+    }
+
+    @Override
+    public ListOperations<String, String> opsForList() {
+        return listOps;
+    }
+
+    @Override
+    public SetOperations<String, String> opsForSet() {
+        return setOps;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        boolean removed = values.remove(key) != null;
+        removed |= lists.remove(key) != null;
+        removed |= sets.remove(key) != null;
+        return removed;
+    }
+
+    @Override
+    public Boolean expire(String key, long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public Boolean expire(String key, Duration timeout) {
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Operation operation) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> operation.invoke(method.getName(), args));
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object invoke(String method, Object[] args);
+    }
+}
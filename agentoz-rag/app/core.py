@@ -145,4 +145,13 @@ class RAGEngine:
         nodes = retriever.retrieve(query_text)
         return [{"text": n.node.get_text(), "score": n.score, "metadata": n.node.metadata} for n in nodes]
 
+    def query_batch(self, queries):
+        """批量检索，queries 为 (query_text, top_k) 列表"""
+        return [self.query(query_text, top_k) for query_text, top_k in queries]
+
+    def embed(self, texts, text_type: str = "query"):
+        if text_type == "document":
+            return Settings.embed_model.get_text_embedding_batch(texts)
+        return [Settings.embed_model.get_query_embedding(t) for t in texts]
+
 engine = RAGEngine()
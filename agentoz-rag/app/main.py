@@ -34,6 +34,13 @@ class QueryRequest(BaseModel):
     query: str
     top_k: int = 5
 
+class BatchQueryRequest(BaseModel):
+    queries: list[QueryRequest]
+
+class EmbedRequest(BaseModel):
+    texts: list[str]
+    text_type: str = "query"  # query / document
+
 @app.get("/")
 def health_check():
     return {"status": "ok"}
@@ -70,3 +77,24 @@ async def query_knowledge(request: QueryRequest):
         return {"query": request.query, "results": results}
     except Exception as e:
         raise HTTPException(status_code=500, detail=str(e))
+
+@app.post("/query/batch")
+async def query_knowledge_batch(request: BatchQueryRequest):
+    """
+    批量检索：results 与 queries 一一对应（Java 端把并发的检索请求合并后调用）
+    """
+    try:
+        results = engine.query_batch([(q.query, q.top_k) for q in request.queries])
+        return {"results": results}
+    except Exception as e:
+        raise HTTPException(status_code=500, detail=str(e))
+
+@app.post("/embed")
+async def embed_texts(request: EmbedRequest):
+    """
+    生成向量（Java 端的本地向量索引使用），embeddings 与 texts 一一对应
+    """
+    try:
+        return {"embeddings": engine.embed(request.texts, request.text_type)}
+    except Exception as e:
+        raise HTTPException(status_code=500, detail=str(e))
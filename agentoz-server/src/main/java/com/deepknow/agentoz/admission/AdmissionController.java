@@ -0,0 +1,374 @@
+package com.deepknow.agentoz.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 准入控制：限制本节点同时执行的对话轮次，过载时让一部分请求快速失败，而不是所有请求一起变慢
+ * <p>
+ * 执行名额用满后请求按优先级排队，名额释放时先分给高优先级；同一优先级内按租户（context.tenantId）
+ * 加权公平出队（{@link FairQueue}），租户还可以有自己的并发上限，单个租户的批量请求无法占满全部名额。
+ * 排队前按平均轮次耗时估算等待时间，超过该优先级允许的最长等待则直接拒绝
+ * （{@link AdmissionRejectedException}，附带建议的重试间隔）；low 默认不排队，名额用满即拒绝。
+ * 队列满时高优先级请求挤掉低优先级中排队最多的租户的最后一个请求。状态见 GET /actuator/admission。
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    /**
+     * 平均耗时的指数加权系数
+     */
+    private static final double EWMA_ALPHA = 0.2;
+    private static final Duration MIN_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Map<Priority, Duration> maxWait = new EnumMap<>(Priority.class);
+    private final TenantPolicy tenants;
+
+    private final Map<Priority, FairQueue<Waiter>> queues = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> tenantInFlight = new HashMap<>();
+    private int inFlight;
+    private int queued;
+
+    /**
+     * 轮次耗时（持有名额的时长，主要是模型延迟）与排队时长的指数加权平均，纳秒
+     */
+    private volatile double avgServiceNanos;
+    private volatile double avgQueueNanos;
+
+    private final Counter admitted;
+    private final Counter deferred;
+    private final Counter shed;
+    private final Counter timedOut;
+    private final Timer queueTime;
+
+    public AdmissionController(MeterRegistry meterRegistry,
+                               @Value("${agentoz.admission.enabled:true}") boolean enabled,
+                               @Value("${agentoz.admission.max-concurrent:64}") int maxConcurrent,
+                               @Value("${agentoz.admission.max-queue:256}") int maxQueue,
+                               @Value("${agentoz.admission.max-wait.high:30s}") Duration highMaxWait,
+                               @Value("${agentoz.admission.max-wait.normal:10s}") Duration normalMaxWait,
+                               @Value("${agentoz.admission.max-wait.low:0s}") Duration lowMaxWait,
+                               @Value("${agentoz.admission.tenant.default-weight:1}") int defaultTenantWeight,
+                               @Value("${agentoz.admission.tenant.weights:}") String tenantWeights,
+                               @Value("${agentoz.admission.tenant.default-max-concurrent:0}") int defaultTenantMaxConcurrent,
+                               @Value("${agentoz.admission.tenant.max-concurrent:}") String tenantMaxConcurrent) {
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWait.put(Priority.HIGH, highMaxWait);
+        this.maxWait.put(Priority.NORMAL, normalMaxWait);
+        this.maxWait.put(Priority.LOW, lowMaxWait);
+        this.tenants = new TenantPolicy(defaultTenantWeight, tenantWeights,
+                defaultTenantMaxConcurrent, tenantMaxConcurrent);
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new FairQueue<>());
+        }
+        this.admitted = admissionCounter(meterRegistry, "admitted");
+        this.deferred = admissionCounter(meterRegistry, "queued");
+        this.shed = admissionCounter(meterRegistry, "shed");
+        this.timedOut = admissionCounter(meterRegistry, "timeout");
+        this.queueTime = Timer.builder("agentoz.admission.queue-time")
+                .description("请求获得执行名额前的排队时长")
+                .register(meterRegistry);
+        Gauge.builder("agentoz.admission.in-flight", this, AdmissionController::inFlight)
+                .description("正在执行的对话轮次")
+                .register(meterRegistry);
+        Gauge.builder("agentoz.admission.queued", this, AdmissionController::queued)
+                .description("等待执行名额的请求")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按请求上下文中的 priority、tenantId 申请执行名额
+     */
+    public Mono<Permit> admit(Map<String, Object> context) {
+        return admit(Priority.of(context), TenantPolicy.tenantOf(context));
+    }
+
+    /**
+     * 批量请求按请求上下文中的 tenantId 申请 low 优先级的执行名额
+     */
+    public Mono<Permit> admitBatch(Map<String, Object> context) {
+        return admit(Priority.LOW, TenantPolicy.tenantOf(context));
+    }
+
+    /**
+     * 申请执行名额，得到的 {@link Permit} 必须在轮次结束时释放
+     *
+     * @return 名额可用或排队获得时发出许可；被拒绝时以 {@link AdmissionRejectedException} 结束
+     */
+    public Mono<Permit> admit(Priority priority, String tenant) {
+        if (!enabled) {
+            return Mono.fromSupplier(() -> new Permit(null, tenant));
+        }
+        return Mono.defer(() -> {
+            Waiter waiter;
+            List<Waiter> evicted = new ArrayList<>(1);
+            synchronized (this) {
+                if (inFlight < maxConcurrent && tenantAllowed(tenant)) {
+                    acquire(tenant);
+                    admitted.increment();
+                    return Mono.just(new Permit(this, tenant));
+                }
+                Duration limit = maxWait.get(priority);
+                Duration estimate = estimateWait(priority);
+                if (limit.isZero() || estimate.compareTo(limit) > 0) {
+                    return reject(priority, estimate);
+                }
+                if (queued >= maxQueue) {
+                    Waiter victim = evictBelow(priority);
+                    if (victim == null) {
+                        return reject(priority, estimate);
+                    }
+                    evicted.add(victim);
+                }
+                waiter = new Waiter(priority, tenant, System.nanoTime());
+                queues.get(priority).add(tenant, tenants.weight(tenant), waiter);
+                queued++;
+            }
+            for (Waiter victim : evicted) {
+                shed.increment();
+                victim.sink.tryEmitError(new AdmissionRejectedException(victim.priority, retryAfter(estimateWait(victim.priority))));
+            }
+            deferred.increment();
+            return waiter.sink.asMono()
+                    .timeout(maxWait.get(priority), Mono.defer(() -> onTimeout(waiter)))
+                    .doOnCancel(() -> abandon(waiter));
+        });
+    }
+
+    private Mono<Permit> reject(Priority priority, Duration estimate) {
+        shed.increment();
+        log.debug("请求被拒绝: priority={}, inFlight={}, queued={}, 预计等待 {} ms",
+                priority, inFlight, queued, estimate.toMillis());
+        return Mono.error(new AdmissionRejectedException(priority, retryAfter(estimate)));
+    }
+
+    private Mono<Permit> onTimeout(Waiter waiter) {
+        synchronized (this) {
+            if (!queues.get(waiter.priority).remove(waiter.tenant, waiter)) {
+                // 超时的同时已分到名额
+                return waiter.sink.asMono();
+            }
+            queued--;
+        }
+        timedOut.increment();
+        return Mono.error(new AdmissionRejectedException(waiter.priority, retryAfter(estimateWait(waiter.priority))));
+    }
+
+    /**
+     * 排队中的订阅者取消：移出队列；已分到名额则归还
+     */
+    private void abandon(Waiter waiter) {
+        synchronized (this) {
+            if (queues.get(waiter.priority).remove(waiter.tenant, waiter)) {
+                queued--;
+                return;
+            }
+        }
+        Permit permit = waiter.permit;
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * 从优先级低于 priority 的队列中挤掉一个请求，最低优先级先挤
+     */
+    private Waiter evictBelow(Priority priority) {
+        Priority[] priorities = Priority.values();
+        for (int i = priorities.length - 1; i > priority.ordinal(); i--) {
+            Waiter victim = queues.get(priorities[i]).evictLast();
+            if (victim != null) {
+                queued--;
+                return victim;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排在前面（同级及更高优先级）的请求依次占用名额，按平均轮次耗时估算
+     */
+    private synchronized Duration estimateWait(Priority priority) {
+        int ahead = 0;
+        for (Priority p : Priority.values()) {
+            if (p.ordinal() <= priority.ordinal()) {
+                ahead += queues.get(p).size();
+            }
+        }
+        return Duration.ofNanos((long) (avgServiceNanos * (ahead + 1) / maxConcurrent));
+    }
+
+    private static Duration retryAfter(Duration estimate) {
+        return estimate.compareTo(MIN_RETRY_AFTER) < 0 ? MIN_RETRY_AFTER : estimate;
+    }
+
+    private boolean tenantAllowed(String tenant) {
+        int limit = tenants.maxConcurrent(tenant);
+        return limit <= 0 || tenantInFlight.getOrDefault(tenant, 0) < limit;
+    }
+
+    private void acquire(String tenant) {
+        inFlight++;
+        tenantInFlight.merge(tenant, 1, Integer::sum);
+    }
+
+    private void release(String tenant, long heldNanos) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            tenantInFlight.computeIfPresent(tenant, (key, count) -> count > 1 ? count - 1 : null);
+            avgServiceNanos = avgServiceNanos == 0 ? heldNanos : avgServiceNanos + EWMA_ALPHA * (heldNanos - avgServiceNanos);
+            while (inFlight < maxConcurrent) {
+                Waiter next = pollHighest();
+                if (next == null) {
+                    break;
+                }
+                acquire(next.tenant);
+                queued--;
+                next.permit = new Permit(this, next.tenant);
+                granted.add(next);
+            }
+        }
+        long now = System.nanoTime();
+        for (Waiter waiter : granted) {
+            long waited = now - waiter.enqueuedAt;
+            queueTime.record(waited, TimeUnit.NANOSECONDS);
+            avgQueueNanos = avgQueueNanos + EWMA_ALPHA * (waited - avgQueueNanos);
+            admitted.increment();
+            waiter.sink.tryEmitValue(waiter.permit);
+        }
+    }
+
+    /**
+     * 高优先级先出队；同一优先级内跳过已达并发上限的租户
+     */
+    private Waiter pollHighest() {
+        for (Priority priority : Priority.values()) {
+            Waiter waiter = queues.get(priority).poll(this::tenantAllowed);
+            if (waiter != null) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    public synchronized Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("maxConcurrent", maxConcurrent);
+        state.put("inFlight", inFlight);
+        state.put("maxQueue", maxQueue);
+        Map<String, Object> queuedByPriority = new LinkedHashMap<>();
+        Map<String, Object> estimatedWaitMs = new LinkedHashMap<>();
+        for (Priority priority : Priority.values()) {
+            String key = priority.name().toLowerCase();
+            queuedByPriority.put(key, queues.get(priority).size());
+            estimatedWaitMs.put(key, estimateWait(priority).toMillis());
+        }
+        state.put("queued", queuedByPriority);
+        state.put("tenantInFlight", new HashMap<>(tenantInFlight));
+        state.put("estimatedWaitMs", estimatedWaitMs);
+        state.put("avgTurnMs", (long) (avgServiceNanos / 1_000_000));
+        state.put("avgQueueMs", (long) (avgQueueNanos / 1_000_000));
+        state.put("admitted", (long) admitted.count());
+        state.put("shed", (long) shed.count());
+        state.put("timeout", (long) timedOut.count());
+        return state;
+    }
+
+    private static Counter admissionCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.admission")
+                .description("准入控制结果")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static final class Waiter {
+
+        private final Priority priority;
+        private final String tenant;
+        private final long enqueuedAt;
+        private final Sinks.One<Permit> sink = Sinks.one();
+        private volatile Permit permit;
+
+        private Waiter(Priority priority, String tenant, long enqueuedAt) {
+            this.priority = priority;
+            this.tenant = tenant;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * 执行名额，重复释放无副作用
+     */
+    public static final class Permit {
+
+        private final AdmissionController controller;
+        private final String tenant;
+        private final long acquiredAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean transferred;
+
+        private Permit(AdmissionController controller, String tenant) {
+            this.controller = controller;
+            this.tenant = tenant;
+        }
+
+        public String tenant() {
+            return tenant;
+        }
+
+        /**
+         * 名额交由已开始的轮次持有，之后只在轮次结束时释放
+         */
+        public void transfer() {
+            transferred = true;
+        }
+
+        /**
+         * 轮次开始前请求被取消时释放
+         */
+        public void releaseUnlessTransferred() {
+            if (!transferred) {
+                release();
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true) && controller != null) {
+                controller.release(tenant, System.nanoTime() - acquiredAt);
+            }
+        }
+    }
+}
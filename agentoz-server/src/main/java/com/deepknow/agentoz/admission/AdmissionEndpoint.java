@@ -0,0 +1,24 @@
+package com.deepknow.agentoz.admission;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 准入状态：GET /actuator/admission 查看执行中、排队中的请求和平均耗时
+ */
+@Component
+@Endpoint(id = "admission")
+@RequiredArgsConstructor
+public class AdmissionEndpoint {
+
+    private final AdmissionController admissionController;
+
+    @ReadOperation
+    public Map<String, Object> state() {
+        return admissionController.state();
+    }
+}
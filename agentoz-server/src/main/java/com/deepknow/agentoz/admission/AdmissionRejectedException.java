@@ -0,0 +1,20 @@
+package com.deepknow.agentoz.admission;
+
+import java.time.Duration;
+
+/**
+ * 节点过载，请求未被接纳；客户端应在 retryAfter 之后重试
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(Priority priority, Duration retryAfter) {
+        super("服务繁忙，请在 " + Math.max(1, retryAfter.toSeconds()) + " 秒后重试（priority=" + priority.name().toLowerCase() + "）");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
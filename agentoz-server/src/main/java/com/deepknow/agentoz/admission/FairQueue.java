@@ -0,0 +1,113 @@
+package com.deepknow.agentoz.admission;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 按租户加权公平出队（Deficit Round Robin，每个请求记为单位开销）
+ * <p>
+ * 每个有排队请求的租户一条通道，通道轮流出队，每轮最多出队 weight 个；
+ * 达到并发上限的租户本轮跳过，不消耗额度。空通道立即移除，租户数不会无限增长。
+ * 非线程安全，由 {@link AdmissionController} 加锁访问。
+ */
+final class FairQueue<E> {
+
+    private final Map<String, Lane<E>> lanes = new HashMap<>();
+    private final Deque<Lane<E>> active = new ArrayDeque<>();
+    private int size;
+
+    void add(String tenant, int weight, E element) {
+        Lane<E> lane = lanes.get(tenant);
+        if (lane == null) {
+            lane = new Lane<>(tenant, weight);
+            lanes.put(tenant, lane);
+            active.addLast(lane);
+        }
+        lane.items.addLast(element);
+        size++;
+    }
+
+    /**
+     * 按 DRR 顺序取出下一个可执行的请求
+     *
+     * @param eligible 租户当前是否还能再执行一个请求
+     */
+    E poll(Predicate<String> eligible) {
+        for (int i = 0, lanesToVisit = active.size(); i < lanesToVisit; i++) {
+            Lane<E> lane = active.peekFirst();
+            if (!eligible.test(lane.tenant)) {
+                active.addLast(active.pollFirst());
+                continue;
+            }
+            if (lane.deficit < 1) {
+                lane.deficit += lane.weight;
+            }
+            lane.deficit--;
+            E element = lane.items.pollFirst();
+            size--;
+            if (lane.items.isEmpty()) {
+                active.pollFirst();
+                lanes.remove(lane.tenant);
+            } else if (lane.deficit < 1) {
+                active.addLast(active.pollFirst());
+            }
+            return element;
+        }
+        return null;
+    }
+
+    boolean remove(String tenant, E element) {
+        Lane<E> lane = lanes.get(tenant);
+        if (lane == null || !lane.items.remove(element)) {
+            return false;
+        }
+        size--;
+        if (lane.items.isEmpty()) {
+            active.remove(lane);
+            lanes.remove(tenant);
+        }
+        return true;
+    }
+
+    /**
+     * 从排队最多的租户中取出最后一个请求（队列满时被挤掉）
+     */
+    E evictLast() {
+        Lane<E> longest = null;
+        for (Lane<E> lane : active) {
+            if (longest == null || lane.items.size() > longest.items.size()) {
+                longest = lane;
+            }
+        }
+        if (longest == null) {
+            return null;
+        }
+        E element = longest.items.pollLast();
+        size--;
+        if (longest.items.isEmpty()) {
+            active.remove(longest);
+            lanes.remove(longest.tenant);
+        }
+        return element;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Lane<E> {
+
+        private final String tenant;
+        private final int weight;
+        private final Deque<E> items = new ArrayDeque<>();
+        private int deficit;
+
+        private Lane(String tenant, int weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+    }
+}
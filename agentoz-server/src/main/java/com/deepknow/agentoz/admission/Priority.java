@@ -0,0 +1,36 @@
+package com.deepknow.agentoz.admission;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 请求优先级，取自 AgentChatRequest.context 中的 priority（high / normal / low），缺省为 normal
+ */
+public enum Priority {
+
+    /**
+     * 交互式请求，排队时优先获得执行名额，队列满时可挤掉低优先级的排队请求
+     */
+    HIGH,
+
+    NORMAL,
+
+    /**
+     * 批量 / 后台请求，过载时最先被拒绝
+     */
+    LOW;
+
+    public static final String CONTEXT_KEY = "priority";
+
+    public static Priority of(Map<String, Object> context) {
+        Object value = context == null ? null : context.get(CONTEXT_KEY);
+        if (value == null) {
+            return NORMAL;
+        }
+        return switch (value.toString().trim().toLowerCase(Locale.ROOT)) {
+            case "high", "interactive" -> HIGH;
+            case "low", "batch" -> LOW;
+            default -> NORMAL;
+        };
+    }
+}
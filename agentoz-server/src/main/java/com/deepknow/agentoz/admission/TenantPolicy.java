@@ -0,0 +1,59 @@
+package com.deepknow.agentoz.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 租户的调度权重和并发上限，配置格式为 tenant=value，逗号分隔；未列出的租户使用默认值
+ */
+final class TenantPolicy {
+
+    /**
+     * AgentChatRequest.context 中的租户字段，缺省归入 default
+     */
+    static final String CONTEXT_KEY = "tenantId";
+    static final String DEFAULT_TENANT = "default";
+
+    private final int defaultWeight;
+    private final int defaultMaxConcurrent;
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> maxConcurrent;
+
+    TenantPolicy(int defaultWeight, String weights, int defaultMaxConcurrent, String maxConcurrent) {
+        this.defaultWeight = Math.max(1, defaultWeight);
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        this.weights = parse(weights);
+        this.maxConcurrent = parse(maxConcurrent);
+    }
+
+    static String tenantOf(Map<String, Object> context) {
+        Object value = context == null ? null : context.get(CONTEXT_KEY);
+        return value == null || value.toString().isBlank() ? DEFAULT_TENANT : value.toString();
+    }
+
+    int weight(String tenant) {
+        return Math.max(1, weights.getOrDefault(tenant, defaultWeight));
+    }
+
+    /**
+     * @return 租户同时执行的轮次上限，0 表示只受节点上限约束
+     */
+    int maxConcurrent(String tenant) {
+        return maxConcurrent.getOrDefault(tenant, defaultMaxConcurrent);
+    }
+
+    private static Map<String, Integer> parse(String spec) {
+        Map<String, Integer> values = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return values;
+        }
+        for (String entry : spec.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("租户配置格式应为 tenant=value: " + entry);
+            }
+            values.put(entry.substring(0, eq).trim(), Integer.parseInt(entry.substring(eq + 1).trim()));
+        }
+        return values;
+    }
+}
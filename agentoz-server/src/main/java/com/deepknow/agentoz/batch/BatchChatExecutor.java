@@ -0,0 +1,237 @@
+package com.deepknow.agentoz.batch;
+
+import com.deepknow.agentoz.admission.AdmissionController;
+import com.deepknow.agentoz.admission.AdmissionRejectedException;
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.dto.BatchChatRequest;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.manager.AgentManager;
+import com.deepknow.agentoz.observability.TurnObservation;
+import com.deepknow.agentoz.observability.TurnObservations;
+import com.deepknow.agentoz.session.RedisSession;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.message.Msg;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量对话执行器（离线评测）
+ * <p>
+ * 每条请求以 low 优先级（租户取请求的 context.tenantId）向 {@link AdmissionController} 申请执行名额，
+ * 与在线对话共用本节点的并发上限，但排在交互式请求之后；名额用满被拒绝时按建议的间隔重试，
+ * 超过 admission-timeout 仍未获得名额的请求产生 ERROR 结果。
+ * Session 加载 / 保存等阻塞步骤在独立的 agent-batch 线程池上执行，其任务队列以 max-batches × max-parallelism 为上限。
+ * 单个批次的并发度取请求的 parallelism 与 max-parallelism 中的较小值，本节点同时执行的批次数不超过 max-batches。
+ * 结果按完成顺序返回，单条请求失败只产生一个 ERROR 结果。
+ * <p>
+ * 无状态模式（请求的 stateless 或 Agent 定义的 config.stateless）下按无状态轮次执行，
+ * 不取会话租约，不读写 Session 和会话历史。
+ */
+@Slf4j
+@Component
+public class BatchChatExecutor {
+
+    private final AgentManager agentManager;
+    private final RedisSession redisSession;
+    private final TurnObservations turnObservations;
+    private final AdmissionController admissionController;
+
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final int maxBatches;
+    private final int maxRequests;
+    private final Duration admissionTimeout;
+    private final Scheduler scheduler;
+
+    private final AtomicInteger activeBatches = new AtomicInteger();
+    private final Counter succeeded;
+    private final Counter failed;
+
+    public BatchChatExecutor(AgentManager agentManager,
+                             RedisSession redisSession,
+                             TurnObservations turnObservations,
+                             AdmissionController admissionController,
+                             MeterRegistry meterRegistry,
+                             @Value("${agentoz.batch.threads:8}") int threads,
+                             @Value("${agentoz.batch.default-parallelism:4}") int defaultParallelism,
+                             @Value("${agentoz.batch.max-parallelism:16}") int maxParallelism,
+                             @Value("${agentoz.batch.max-batches:4}") int maxBatches,
+                             @Value("${agentoz.batch.max-requests:10000}") int maxRequests,
+                             @Value("${agentoz.batch.admission-timeout:10m}") Duration admissionTimeout) {
+        this.agentManager = agentManager;
+        this.redisSession = redisSession;
+        this.turnObservations = turnObservations;
+        this.admissionController = admissionController;
+        this.defaultParallelism = Math.max(1, defaultParallelism);
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.maxBatches = maxBatches;
+        this.maxRequests = maxRequests;
+        this.admissionTimeout = admissionTimeout;
+        // 同时执行的请求不超过 max-batches × max-parallelism，每条请求最多有一个阻塞步骤在排队
+        this.scheduler = Schedulers.newBoundedElastic(threads,
+                Math.max(1, maxBatches) * this.maxParallelism, "agent-batch");
+        this.succeeded = resultCounter(meterRegistry, "success");
+        this.failed = resultCounter(meterRegistry, "error");
+        Gauge.builder("agentoz.batch.active", activeBatches, AtomicInteger::get)
+                .description("正在执行的批次数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    public Flux<AgentChatResponse> execute(BatchChatRequest request) {
+        return Flux.defer(() -> {
+            List<AgentChatRequest> requests = request.getRequests();
+            if (requests == null || requests.isEmpty()) {
+                return Flux.empty();
+            }
+            if (requests.size() > maxRequests) {
+                throw new IllegalArgumentException("单个批次最多 " + maxRequests + " 条请求: " + requests.size());
+            }
+            if (requests.stream().anyMatch(Objects::isNull)) {
+                throw new IllegalArgumentException("requests 中不能有空请求");
+            }
+            if (activeBatches.incrementAndGet() > maxBatches) {
+                activeBatches.decrementAndGet();
+                throw new IllegalStateException("正在执行的批次已达上限 " + maxBatches + "，请稍后重试");
+            }
+            boolean stateless = Boolean.TRUE.equals(request.getStateless());
+            int parallelism = request.getParallelism() == null || request.getParallelism() <= 0
+                    ? defaultParallelism
+                    : Math.min(request.getParallelism(), maxParallelism);
+            log.info("开始批量对话: requests={}, parallelism={}, stateless={}", requests.size(), parallelism, stateless);
+
+            return Flux.range(0, requests.size())
+                    .flatMap(index -> run(index, requests.get(index), stateless), parallelism)
+                    .doFinally(signal -> activeBatches.decrementAndGet());
+        });
+    }
+
+    private Mono<AgentChatResponse> run(int index, AgentChatRequest request, boolean stateless) {
+        String agentId = request.getAgentId();
+        String conversationId = request.getSessionId();
+
+        return Mono.defer(() -> {
+            TurnObservation observation = turnObservations.start("batch", agentId, conversationId);
+            return admit(request)
+                    .flatMap(permit -> call(request, stateless, observation)
+                            .doFinally(signal -> permit.release()))
+                    .map(response -> {
+                        succeeded.increment();
+                        return response(index, request)
+                                .content(response.getTextContent())
+                                .eventType(EventType.TEXT.name())
+                                .build();
+                    })
+                    .onErrorResume(e -> {
+                        failed.increment();
+                        observation.stop(e);
+                        log.warn("批量对话请求失败: index={}, agentId={}, sessionId={}, {}",
+                                index, agentId, conversationId, e.getMessage());
+                        return Mono.just(response(index, request)
+                                .content("错误: " + e.getMessage())
+                                .eventType(EventType.ERROR.name())
+                                .build());
+                    })
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    /**
+     * 申请 low 优先级名额，被拒绝时按建议的间隔重试，直到 admission-timeout
+     */
+    private Mono<AdmissionController.Permit> admit(AgentChatRequest request) {
+        return Mono.defer(() -> {
+            long deadline = System.nanoTime() + admissionTimeout.toNanos();
+            return admissionController.admitBatch(request.getContext())
+                    .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                        if (signal.failure() instanceof AdmissionRejectedException rejected
+                                && System.nanoTime() + rejected.getRetryAfter().toNanos() < deadline) {
+                            return Mono.delay(rejected.getRetryAfter());
+                        }
+                        return Mono.error(signal.failure());
+                    })));
+        });
+    }
+
+    private Mono<Msg> call(AgentChatRequest request, boolean stateless, TurnObservation observation) {
+        String agentId = request.getAgentId();
+        String conversationId = request.getSessionId();
+
+        return Mono.fromCallable(() -> {
+                    requireText(agentId, "agentId");
+                    if (stateless || AgentManager.isStateless(agentManager.getAgentDefinition(agentId))) {
+                        return agentManager.beginStatelessTurn(agentId, conversationId);
+                    }
+                    requireText(conversationId, "sessionId");
+                    return observation.stage("session_load",
+                            () -> agentManager.beginTurn(agentId, conversationId, redisSession));
+                })
+                .subscribeOn(scheduler)
+                .flatMap(turn -> {
+                    ReActAgent agent = turn.getAgent();
+                    agent.getHooks().add(observation.hook());
+                    return turn.execute(agent.call(userMessage(request))
+                            // 保存 Session 是阻塞调用，切回批量线程池，不占用模型客户端的 IO 线程
+                            .publishOn(scheduler)
+                            .doOnSuccess(response -> {
+                                if (turn.isStateless()) {
+                                    agentManager.completeTurn(turn);
+                                } else {
+                                    observation.stage("session_save", () -> agentManager.completeTurn(turn));
+                                }
+                            })
+                            .doFinally(signal -> {
+                                agent.getHooks().remove(observation.hook());
+                                agentManager.releaseTurn(turn);
+                            }));
+                });
+    }
+
+    private static Msg userMessage(AgentChatRequest request) {
+        return Msg.builder()
+                .name("user")
+                .textContent(request.getMessage())
+                .build();
+    }
+
+    private static AgentChatResponse.AgentChatResponseBuilder response(int index, AgentChatRequest request) {
+        return AgentChatResponse.builder()
+                .sessionId(request.getSessionId())
+                .agentId(request.getAgentId())
+                .batchIndex(index)
+                .finished(true);
+    }
+
+    private static void requireText(String value, String name) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(name + " 不能为空");
+        }
+    }
+
+    private static Counter resultCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.batch.requests")
+                .description("批量对话请求的执行结果")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
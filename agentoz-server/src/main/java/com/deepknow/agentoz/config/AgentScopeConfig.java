@@ -1,10 +1,17 @@
 package com.deepknow.agentoz.config;
 
+import com.deepknow.agentoz.model.SimulatedChatModel;
 import io.agentscope.core.model.DashScopeChatModel;
+import io.agentscope.core.model.Model;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
+@Slf4j
 @Configuration
 public class AgentScopeConfig {
 
@@ -15,10 +22,40 @@ public class AgentScopeConfig {
     private String defaultModelName;
 
     @Bean
-    public DashScopeChatModel defaultChatModel() {
+    @ConditionalOnProperty(name = "agentoz.model.simulated.enabled", havingValue = "false", matchIfMissing = true)
+    public Model defaultChatModel() {
         return DashScopeChatModel.builder()
                 .apiKey(dashscopeApiKey)
                 .modelName(defaultModelName)
                 .build();
     }
+
+    /**
+     * 压测用模拟模型，替换 DashScope
+     */
+    @Bean("defaultChatModel")
+    @ConditionalOnProperty(name = "agentoz.model.simulated.enabled", havingValue = "true")
+    public Model simulatedChatModel(
+            @Value("${agentoz.model.simulated.seed:42}") long seed,
+            @Value("${agentoz.model.simulated.first-token-latency:500ms}") Duration firstTokenLatency,
+            @Value("${agentoz.model.simulated.inter-token-latency:30ms}") Duration interTokenLatency,
+            @Value("${agentoz.model.simulated.latency-sigma:0.5}") double latencySigma,
+            @Value("${agentoz.model.simulated.max-latency:30s}") Duration maxLatency,
+            @Value("${agentoz.model.simulated.output-tokens:200}") int outputTokens,
+            @Value("${agentoz.model.simulated.tool-call-rate:0.3}") double toolCallRate,
+            @Value("${agentoz.model.simulated.max-tool-rounds:3}") int maxToolRounds,
+            @Value("${agentoz.model.simulated.failure-rate:0.0}") double failureRate) {
+        log.warn("使用模拟模型（agentoz.model.simulated.enabled=true），不会调用真实 LLM");
+        return new SimulatedChatModel(SimulatedChatModel.Settings.builder()
+                .seed(seed)
+                .firstTokenLatency(firstTokenLatency)
+                .interTokenLatency(interTokenLatency)
+                .latencySigma(latencySigma)
+                .maxLatency(maxLatency)
+                .outputTokens(outputTokens)
+                .toolCallRate(toolCallRate)
+                .maxToolRounds(maxToolRounds)
+                .failureRate(failureRate)
+                .build());
+    }
 }
@@ -0,0 +1,20 @@
+package com.deepknow.agentoz.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ObservabilityConfig {
+
+    /**
+     * 本地 Span 导出：把链路 Span 打印到日志，无需部署 Collector 即可验证埋点
+     */
+    @Bean
+    @ConditionalOnProperty(name = "agentoz.observability.log-spans", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -0,0 +1,57 @@
+package com.deepknow.agentoz.config;
+
+import com.deepknow.agentoz.manager.AgentManager;
+import com.deepknow.agentoz.session.RedisSession;
+import com.deepknow.agentoz.session.SessionArchive;
+import com.deepknow.agentoz.session.SessionJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * Session 存储（热数据在 Redis，空闲后降级到 MySQL 冷存储）
+     * <p>
+     * agentoz.session.journal.enabled 时保存先追加到本地日志，由后台线程写入 Redis；关闭时一并关闭日志
+     */
+    @Bean
+    public RedisSession redisSession(StringRedisTemplate redisTemplate,
+                                     ObjectMapper objectMapper,
+                                     SessionArchive sessionArchive,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${agentoz.session.journal.enabled:false}") boolean journalEnabled,
+                                     @Value("${agentoz.session.journal.dir:./data/session-journal}") String journalDir,
+                                     @Value("${agentoz.session.journal.segment-bytes:67108864}") int segmentBytes,
+                                     @Value("${agentoz.session.journal.fsync:false}") boolean fsync)
+            throws IOException {
+        SessionJournal journal = journalEnabled ? new SessionJournal(Path.of(journalDir), segmentBytes, fsync) : null;
+        return new RedisSession(redisTemplate, objectMapper, sessionArchive, journal, meterRegistry);
+    }
+
+    /**
+     * 订阅 Agent 定义变更广播，实现多节点缓存失效
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       AgentManager agentManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> agentManager.onRemoteChange(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(AgentManager.CHANGE_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,51 @@
+package com.deepknow.agentoz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步任务记录（审计及状态查询），表结构见 sql/create_async_tasks_table.sql
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("async_tasks")
+public class AsyncTaskEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String taskId;
+
+    private String agentId;
+
+    private String agentName;
+
+    private String conversationId;
+
+    private String callerAgentId;
+
+    private String taskDescription;
+
+    private String status;
+
+    private String priority;
+
+    private String result;
+
+    private String errorMessage;
+
+    private LocalDateTime submitTime;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime completeTime;
+}
@@ -0,0 +1,50 @@
+package com.deepknow.agentoz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话历史，表结构见 docs/database/schema.sql（conversations）
+ * <p>
+ * historyContext 为按轮次追加的 JSON 数组（history_format = agentoz_turns_v1）：
+ * [{"turn_id": "...", "agent_id": "...", "completed_at": 0, "messages": [Msg...]}, ...]
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("conversations")
+public class ConversationEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String conversationId;
+
+    private String userId;
+
+    private String primaryAgentId;
+
+    private String status;
+
+    private String historyContext;
+
+    private String historyFormat;
+
+    private Integer messageCount;
+
+    private String lastMessageContent;
+
+    private String lastMessageType;
+
+    private LocalDateTime lastMessageAt;
+
+    private LocalDateTime lastActivityAt;
+}
@@ -0,0 +1,41 @@
+package com.deepknow.agentoz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话历史中的一轮对话，表结构见 sql/create_conversation_turns_table.sql
+ * <p>
+ * messages 为本轮新增消息的 JSON 数组
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("conversation_turns")
+public class ConversationTurnEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String conversationId;
+
+    private String turnId;
+
+    private String agentId;
+
+    private String messages;
+
+    private Integer messageCount;
+
+    private Boolean summarized;
+
+    private LocalDateTime completedAt;
+}
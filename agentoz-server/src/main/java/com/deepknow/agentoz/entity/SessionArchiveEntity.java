@@ -0,0 +1,35 @@
+package com.deepknow.agentoz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 冷存储中的 Session 快照，表结构见 sql/create_session_archive_table.sql
+ * <p>
+ * payload 为 gzip 压缩后的 JSON：{"v": {stateKey: json}, "l": {stateKey: [json...]}}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("session_archive")
+public class SessionArchiveEntity {
+
+    @TableId(type = IdType.INPUT)
+    private String sessionId;
+
+    private byte[] payload;
+
+    private Integer rawSize;
+
+    private Integer compressedSize;
+
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,35 @@
+package com.deepknow.agentoz.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 按 Agent、按天汇总的 Token 用量（容量规划），表结构见 sql/create_token_usage_table.sql
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("token_usage_daily")
+public class TokenUsageEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String agentId;
+
+    private LocalDate usageDate;
+
+    private Long inputTokens;
+
+    private Long outputTokens;
+
+    private Long calls;
+}
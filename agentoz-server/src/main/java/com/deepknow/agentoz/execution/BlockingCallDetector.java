@@ -0,0 +1,82 @@
+package com.deepknow.agentoz.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 阻塞调用检测（agentoz.execution.blocking-detection.mode）
+ * <p>
+ * 在阻塞步骤的入口调用 {@link #check}：当前线程是 Reactor 的非阻塞线程（parallel / single），或名称以
+ * thread-prefixes 中任一前缀开头（Dubbo 提供者线程、Netty IO 线程、模型客户端的 reactor-http 线程）时视为违规，
+ * 记录 agentoz.execution.blocking.violations{operation}。warn 模式打印调用栈，error 模式抛出
+ * {@link IllegalStateException}，用于压测和联调时尽早发现没有切到 {@link BlockingScheduler} 的调用。
+ * <p>
+ * 只检查显式标注的阻塞步骤，不像字节码插桩那样覆盖 JDK 内部的所有阻塞方法。
+ */
+@Slf4j
+@Component
+public class BlockingCallDetector {
+
+    public enum Mode {
+        OFF, WARN, ERROR
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Mode mode;
+    private final List<String> threadPrefixes;
+
+    public BlockingCallDetector(MeterRegistry meterRegistry,
+                                @Value("${agentoz.execution.blocking-detection.mode:off}") String mode,
+                                @Value("${agentoz.execution.blocking-detection.thread-prefixes:"
+                                        + "NettyServerWorker,NettyClientWorker,DubboServerHandler,reactor-http-}")
+                                List<String> threadPrefixes) {
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.threadPrefixes = threadPrefixes.stream().map(String::trim).filter(p -> !p.isEmpty()).toList();
+    }
+
+    /**
+     * 即将执行名为 operation 的阻塞步骤
+     *
+     * @throws IllegalStateException error 模式下当前线程不允许阻塞
+     */
+    public void check(String operation) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        if (!isNonBlocking(thread)) {
+            return;
+        }
+        Counter.builder("agentoz.execution.blocking.violations")
+                .description("在非阻塞线程上执行的阻塞步骤数")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+        String message = "在非阻塞线程上执行阻塞步骤: " + operation + ", thread=" + thread.getName();
+        if (mode == Mode.ERROR) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message, new Throwable("调用位置"));
+    }
+
+    public boolean isNonBlocking(Thread thread) {
+        if (Schedulers.isNonBlockingThread(thread)) {
+            return true;
+        }
+        String name = thread.getName();
+        for (String prefix : threadPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
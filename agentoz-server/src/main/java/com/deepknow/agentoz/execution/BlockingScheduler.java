@@ -0,0 +1,126 @@
+package com.deepknow.agentoz.execution;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 阻塞调用（MySQL 查询、Redis 读写、会话租约）专用的调度器
+ * <p>
+ * Dubbo 的 Mono / Flux 方法在提供者线程上被订阅，模型的流式响应在模型客户端的 IO 线程上回调，
+ * 阻塞调用留在这些线程上会拖住同一线程上的其他请求和事件流。{@link #fromCallable} 把阻塞步骤切到本调度器，
+ * 事件流本身（{@code TurnStream}）不经过这里。
+ * <p>
+ * 默认为平台线程的 bounded elastic；virtual-threads 开启时每个任务一个虚拟线程。两种方式同时执行的任务都不超过
+ * max-threads，超出的排队（最多 max-queued 个，再多直接拒绝），数据库和 Redis 连接池不会被瞬时流量打满。
+ * 虚拟线程在 synchronized 中阻塞（如 8.x 的 MySQL 驱动）时会占住载体线程，开启前需确认驱动版本。
+ */
+@Slf4j
+@Component
+public class BlockingScheduler {
+
+    private static final String NAME = "agentoz-blocking";
+
+    private final Scheduler scheduler;
+    private final boolean virtualThreads;
+    private final int maxQueued;
+
+    /**
+     * 虚拟线程模式下限制同时执行的任务数；平台线程模式由 bounded elastic 自身限制
+     */
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public BlockingScheduler(MeterRegistry meterRegistry,
+                             @Value("${agentoz.execution.blocking.virtual-threads:false}") boolean virtualThreads,
+                             @Value("${agentoz.execution.blocking.max-threads:64}") int maxThreads,
+                             @Value("${agentoz.execution.blocking.max-queued:10000}") int maxQueued) {
+        this.virtualThreads = virtualThreads;
+        this.maxQueued = maxQueued;
+        if (virtualThreads) {
+            this.scheduler = Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(NAME + "-", 0).factory()), NAME);
+            this.permits = new Semaphore(Math.max(1, maxThreads));
+        } else {
+            this.scheduler = Schedulers.newBoundedElastic(Math.max(1, maxThreads), maxQueued, NAME);
+            this.permits = null;
+        }
+        this.waitTimer = Timer.builder("agentoz.execution.blocking.wait")
+                .description("阻塞调用从提交到开始执行的排队耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("agentoz.execution.blocking.active", active, AtomicInteger::get)
+                .description("正在执行的阻塞调用数")
+                .register(meterRegistry);
+        log.info("阻塞调用调度器: {}, maxThreads={}, maxQueued={}",
+                virtualThreads ? "虚拟线程" : "bounded elastic", maxThreads, maxQueued);
+    }
+
+    /**
+     * 与 {@link Mono#fromCallable} 相同，但 body 在本调度器上执行，下游信号也从这里发出
+     */
+    public <T> Mono<T> fromCallable(Callable<T> body) {
+        return Mono.defer(() -> {
+            long submitted = System.nanoTime();
+            return Mono.fromCallable(() -> {
+                waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return virtualThreads ? callWithPermit(body) : callCounted(body);
+            }).subscribeOn(scheduler);
+        });
+    }
+
+    /**
+     * 供 publishOn 使用：把阻塞的后续步骤（如保存 Session）切离上游线程
+     */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private <T> T callWithPermit(Callable<T> body) throws Exception {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("阻塞调用排队已达上限 " + maxQueued);
+        }
+        try {
+            // 虚拟线程上等待许可只挂起虚拟线程，不占用载体线程
+            permits.acquire();
+        } finally {
+            queued.decrementAndGet();
+        }
+        try {
+            return callCounted(body);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> T callCounted(Callable<T> body) throws Exception {
+        active.incrementAndGet();
+        try {
+            return body.call();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.deepknow.agentoz.gateway;
+
+import com.deepknow.agentoz.api.dto.AgentChatRequest;
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.api.service.AgentService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式对话 HTTP 网关（SSE）
+ * <p>
+ * 前端直接以 Server-Sent Events 订阅 streamChat，不再经过额外的代理服务。
+ * 请求线程在返回 Flux 后立即释放（Servlet 异步），每个事件写出后立即 flush，
+ * 下游写完一个事件才请求下一个；客户端过慢时事件在有界缓冲区中排队，溢出则断开该连接。
+ * 客户端断开时取消订阅，与 Dubbo 调用方取消的语义一致，轮次本身继续执行。
+ * 距上一个事件超过 heartbeat-interval 时发送注释帧心跳。
+ * SSE id 为事件在轮次内的序号，EventSource 断线重连时携带 Last-Event-ID，网关改为 resumeStream 续传，
+ * 不会重新发起一轮对话。
+ * <p>
+ * 默认关闭（agentoz.gateway.enabled / AGENTOZ_GATEWAY_ENABLED）：本网关不做身份认证，开启后 /api/v1/chat/**
+ * 与应用端口上的其他 HTTP 接口一样对所有能访问该端口的客户端开放。只应在认证网关或反向代理之后开启，
+ * 由其校验用户身份并限制来源，应用端口不直接暴露到公网。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/chat")
+@ConditionalOnProperty(name = "agentoz.gateway.enabled", havingValue = "true")
+public class ChatStreamController {
+
+    private final AgentService agentService;
+    private final int maxStreams;
+    private final int maxBufferedEvents;
+    private final Duration heartbeatInterval;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public ChatStreamController(AgentService agentService,
+                                MeterRegistry meterRegistry,
+                                @Value("${agentoz.gateway.max-streams:10000}") int maxStreams,
+                                @Value("${agentoz.gateway.max-buffered-events:1024}") int maxBufferedEvents,
+                                @Value("${agentoz.gateway.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.agentService = agentService;
+        this.maxStreams = maxStreams;
+        this.maxBufferedEvents = maxBufferedEvents;
+        this.heartbeatInterval = heartbeatInterval;
+
+        Gauge.builder("agentoz.gateway.streams", activeStreams, AtomicInteger::get)
+                .description("SSE 网关当前打开的流数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 流式对话
+     */
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<AgentChatResponse>>> stream(@RequestBody AgentChatRequest request) {
+        return open(request, false);
+    }
+
+    /**
+     * 流式对话（浏览器 EventSource 只能发 GET）；带 Last-Event-ID 时为断线重连
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<AgentChatResponse>>> stream(
+            @RequestParam String sessionId,
+            @RequestParam String agentId,
+            @RequestParam String message,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return open(AgentChatRequest.builder()
+                .sessionId(sessionId)
+                .agentId(agentId)
+                .message(message)
+                .lastSeq(lastEventId)
+                .build(), lastEventId != null);
+    }
+
+    /**
+     * 续传事件流（请求体中的 turnId、lastSeq 可选）
+     */
+    @PostMapping(path = "/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<AgentChatResponse>>> resume(@RequestBody AgentChatRequest request) {
+        return open(request, true);
+    }
+
+    private ResponseEntity<Flux<ServerSentEvent<AgentChatResponse>>> open(AgentChatRequest request, boolean resume) {
+        if (activeStreams.incrementAndGet() > maxStreams) {
+            activeStreams.decrementAndGet();
+            log.warn("SSE 流数已达上限 {}，拒绝请求: sessionId={}", maxStreams, request.getSessionId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // 禁止 Nginx 缓冲，保证逐事件下发
+                .header("X-Accel-Buffering", "no")
+                .body(events(request, resume).doFinally(signal -> activeStreams.decrementAndGet()));
+    }
+
+    private Flux<ServerSentEvent<AgentChatResponse>> events(AgentChatRequest request, boolean resume) {
+        Flux<ServerSentEvent<AgentChatResponse>> events = (resume ? agentService.resumeStream(request)
+                : agentService.streamChat(request))
+                .onBackpressureBuffer(maxBufferedEvents, BufferOverflowStrategy.ERROR)
+                .map(response -> ServerSentEvent.builder(response)
+                        // 轮次开始前的错误事件没有序号，不更新客户端的 Last-Event-ID
+                        .id(response.getSeq() == null ? null : response.getSeq().toString())
+                        .event(response.getEventType())
+                        // 过载拒绝时告知 EventSource 的重连间隔
+                        .retry(response.getRetryAfterMs() == null ? null : Duration.ofMillis(response.getRetryAfterMs()))
+                        .build())
+                .onErrorResume(e -> {
+                    log.warn("SSE 流异常结束: sessionId={}", request.getSessionId(), e);
+                    return Flux.just(ServerSentEvent.builder(AgentChatResponse.builder()
+                                    .sessionId(request.getSessionId())
+                                    .agentId(request.getAgentId())
+                                    .content("错误: " + e.getMessage())
+                                    .eventType(EventType.ERROR.name())
+                                    .finished(true)
+                                    .build())
+                            .event(EventType.ERROR.name())
+                            .build());
+                });
+        // 长时间没有事件（如工具执行中）时发送注释帧，防止代理和负载均衡器判定连接空闲；
+        // 每个事件重新开始计时，事件持续下发时不发送心跳
+        return events.publish(shared -> Flux.merge(shared,
+                shared.map(event -> Boolean.TRUE)
+                        .startWith(Boolean.TRUE)
+                        .switchMap(event -> Flux.interval(heartbeatInterval).onBackpressureDrop())
+                        .map(tick -> ServerSentEvent.<AgentChatResponse>builder().comment("ping").build())
+                        .takeUntilOther(shared.ignoreElements())));
+    }
+}
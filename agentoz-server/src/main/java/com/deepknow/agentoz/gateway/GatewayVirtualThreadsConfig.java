@@ -0,0 +1,29 @@
+package com.deepknow.agentoz.gateway;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * SSE 网关的 Tomcat 请求线程改用虚拟线程（agentoz.gateway.virtual-threads，默认关闭）
+ * <p>
+ * 只替换 Tomcat 的请求执行器，@Scheduled 任务、Dubbo 线程池和 {@code BlockingScheduler} 不受影响。
+ * 不使用全局的 spring.threads.virtual.enabled：虚拟线程在 synchronized 中阻塞（如 8.x 的 MySQL 驱动）时会占住载体线程，
+ * 全局开启会波及所有访问数据库的后台任务。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = {"agentoz.gateway.enabled", "agentoz.gateway.virtual-threads"}, havingValue = "true")
+public class GatewayVirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> gatewayVirtualThreadsCustomizer() {
+        log.info("SSE 网关请求线程使用虚拟线程");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gateway-", 0).factory()));
+    }
+}
@@ -0,0 +1,213 @@
+package com.deepknow.agentoz.lifecycle;
+
+import com.deepknow.agentoz.manager.ChatTurn;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.qos.command.impl.Offline;
+import org.apache.dubbo.qos.command.impl.OfflineApp;
+import org.apache.dubbo.rpc.model.FrameworkModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 停机排空：先从注册中心下线，等待进行中的对话轮次结束，超时后中断并保存检查点
+ * <p>
+ * 在 ContextClosedEvent 中最先执行（早于 Dubbo 自身的停机监听器），此时协议端口仍然打开，
+ * 进行中的 streamChat 可以正常结束。步骤：
+ * <ol>
+ *     <li>从 Nacos 注销接口级和应用级注册，就绪探针切换为 REFUSING_TRAFFIC</li>
+ *     <li>等待 deregister-delay，让消费端刷新地址列表，期间仍正常接受新轮次</li>
+ *     <li>拒绝新轮次（{@link ServiceDrainingException}），等待进行中的轮次结束，最长 timeout</li>
+ *     <li>仍未结束的轮次发出中断，Agent 以中断结果正常结束，走常规的保存流程；再等待 interrupt-grace</li>
+ *     <li>仍未结束的轮次取消其执行（{@link ChatTurn#cancelForCheckpoint}），轮次在取消信号到达后的 releaseTurn 中
+ *     把当前 memory 保存到 Session（携带租约令牌）再释放租约；再等待 interrupt-grace</li>
+ * </ol>
+ * 检查点只在轮次已停止后保存，不与仍在运行的 Agent 并发读写 memory；无法取消或取消后仍未结束的轮次不保存，
+ * 其租约到期后由其他节点从上一次保存的状态继续。
+ * 也可以通过管理端口上的 Actuator（POST /actuator/drain）在 preStop 中提前触发，进度见 GET /actuator/drain。
+ */
+@Slf4j
+@Component
+public class DrainCoordinator implements ApplicationListener<ContextClosedEvent>, Ordered {
+
+    public enum State {
+        SERVING, DEREGISTERED, DRAINING, DRAINED
+    }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration deregisterDelay;
+    private final Duration timeout;
+    private final Duration interruptGrace;
+
+    private final Set<ChatTurn> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile State state = State.SERVING;
+    private volatile boolean accepting = true;
+
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile int inFlightAtStart;
+    private final AtomicInteger interrupted = new AtomicInteger();
+    private final AtomicInteger checkpointed = new AtomicInteger();
+
+    public DrainCoordinator(ApplicationEventPublisher eventPublisher,
+                            @Value("${agentoz.drain.deregister-delay:3s}") Duration deregisterDelay,
+                            @Value("${agentoz.drain.timeout:60s}") Duration timeout,
+                            @Value("${agentoz.drain.interrupt-grace:5s}") Duration interruptGrace) {
+        this.eventPublisher = eventPublisher;
+        this.deregisterDelay = deregisterDelay;
+        this.timeout = timeout;
+        this.interruptGrace = interruptGrace;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        drain();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * 开始新轮次前检查
+     *
+     * @throws ServiceDrainingException 正在排空
+     */
+    public void checkAccepting() {
+        if (!accepting) {
+            throw new ServiceDrainingException();
+        }
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    public void register(ChatTurn turn) {
+        inFlight.add(turn);
+    }
+
+    public void deregister(ChatTurn turn) {
+        inFlight.remove(turn);
+    }
+
+    /**
+     * 执行排空，重复调用直接返回（preStop 触发后停机时不会再执行一次）
+     */
+    public synchronized Map<String, Object> drain() {
+        if (state != State.SERVING) {
+            return progress();
+        }
+        startedAt = Instant.now();
+        inFlightAtStart = inFlight.size();
+        log.info("开始排空: 进行中的轮次 {}", inFlightAtStart);
+
+        deregister();
+        state = State.DEREGISTERED;
+        sleep(deregisterDelay);
+
+        accepting = false;
+        state = State.DRAINING;
+        if (!awaitInFlight(timeout)) {
+            List<ChatTurn> remaining = List.copyOf(inFlight);
+            log.warn("排空超时，中断 {} 个进行中的轮次", remaining.size());
+            for (ChatTurn turn : remaining) {
+                turn.getAgent().interrupt();
+                interrupted.incrementAndGet();
+            }
+            if (!awaitInFlight(interruptGrace)) {
+                for (ChatTurn turn : List.copyOf(inFlight)) {
+                    if (!turn.cancelForCheckpoint()) {
+                        log.warn("轮次无法取消，等待其自行结束: {}", turn.getSessionId());
+                    }
+                }
+                if (!awaitInFlight(interruptGrace)) {
+                    log.error("仍有 {} 个轮次未结束，不保存检查点，租约到期后由其他节点接管", inFlight.size());
+                }
+            }
+        }
+
+        state = State.DRAINED;
+        finishedAt = Instant.now();
+        log.info("排空完成: 耗时 {} ms，中断 {}，强制检查点 {}",
+                Duration.between(startedAt, finishedAt).toMillis(), interrupted.get(), checkpointed.get());
+        return progress();
+    }
+
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("state", state);
+        progress.put("accepting", accepting);
+        progress.put("inFlight", inFlight.size());
+        if (startedAt != null) {
+            progress.put("startedAt", startedAt.toString());
+            progress.put("inFlightAtStart", inFlightAtStart);
+            progress.put("deadline", startedAt.plus(deregisterDelay).plus(timeout).toString());
+            progress.put("interrupted", interrupted.get());
+            progress.put("checkpointed", checkpointed.get());
+        }
+        if (finishedAt != null) {
+            progress.put("elapsedMs", Duration.between(startedAt, finishedAt).toMillis());
+        }
+        return progress;
+    }
+
+    /**
+     * 从注册中心注销（与 QoS offline / offlineApp 命令相同），服务仍保持导出，已建立的连接不受影响
+     */
+    private void deregister() {
+        try {
+            FrameworkModel frameworkModel = FrameworkModel.defaultModel();
+            new Offline(frameworkModel).offline(".*");
+            new OfflineApp(frameworkModel).offline(".*");
+        } catch (Exception e) {
+            log.warn("从注册中心注销失败，继续排空", e);
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+    }
+
+    private boolean awaitInFlight(Duration limit) {
+        long deadline = System.nanoTime() + limit.toNanos();
+        while (!inFlight.isEmpty() && System.nanoTime() < deadline) {
+            sleep(Duration.ofMillis(100));
+        }
+        return inFlight.isEmpty();
+    }
+
+    /**
+     * 被取消的轮次已停止执行（由 releaseTurn 在释放租约前调用）：保存当前 memory（包含本轮已产生的消息），
+     * 下一轮从这里继续
+     */
+    public void checkpoint(ChatTurn turn) {
+        try {
+            turn.getAgent().saveTo(turn.getSession(), turn.getLease().sessionKey());
+            checkpointed.incrementAndGet();
+            log.warn("已保存未完成轮次的检查点: {}", turn.getSessionId());
+        } catch (Exception e) {
+            log.error("保存检查点失败: {}", turn.getSessionId(), e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
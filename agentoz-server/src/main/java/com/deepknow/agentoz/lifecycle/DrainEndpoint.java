@@ -0,0 +1,32 @@
+package com.deepknow.agentoz.lifecycle;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 排空进度：GET /actuator/drain 查看，POST /actuator/drain 触发（阻塞到排空完成，适合 preStop）
+ * <p>
+ * 只在管理端口（management.server.port）上暴露，不与业务 HTTP 端口共用
+ */
+@Component
+@Endpoint(id = "drain")
+@RequiredArgsConstructor
+public class DrainEndpoint {
+
+    private final DrainCoordinator drainCoordinator;
+
+    @ReadOperation
+    public Map<String, Object> progress() {
+        return drainCoordinator.progress();
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        return drainCoordinator.drain();
+    }
+}
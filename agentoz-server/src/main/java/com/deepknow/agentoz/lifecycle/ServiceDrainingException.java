@@ -0,0 +1,11 @@
+package com.deepknow.agentoz.lifecycle;
+
+/**
+ * 节点正在下线，不再接受新的对话轮次（客户端应重试，路由会切到其他节点）
+ */
+public class ServiceDrainingException extends RuntimeException {
+
+    public ServiceDrainingException() {
+        super("节点正在下线，请重试");
+    }
+}
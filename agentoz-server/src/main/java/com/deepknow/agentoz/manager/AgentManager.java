@@ -1,83 +1,529 @@
 package com.deepknow.agentoz.manager;
 
 import com.deepknow.agentoz.entity.AgentEntity;
+import com.deepknow.agentoz.lifecycle.DrainCoordinator;
 import com.deepknow.agentoz.mapper.AgentMapper;
+import com.deepknow.agentoz.memory.SemanticMemoryHook;
+import com.deepknow.agentoz.memory.SemanticMemoryStore;
+import com.deepknow.agentoz.session.ConversationHistoryStore;
+import com.deepknow.agentoz.session.ConversationLease;
+import com.deepknow.agentoz.session.ConversationLeaseManager;
 import com.deepknow.agentoz.session.RedisSession;
+import com.deepknow.agentoz.session.StaleSessionWriteException;
+import com.deepknow.agentoz.tool.ToolSpeculator;
+import com.deepknow.agentoz.usage.TokenAccounting;
+import com.deepknow.agentoz.usage.TokenUsageHook;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.agentscope.core.ReActAgent;
+import io.agentscope.core.hook.Hook;
 import io.agentscope.core.memory.InMemoryMemory;
-import io.agentscope.core.model.DashScopeChatModel;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.model.Model;
 import io.agentscope.core.session.Session;
 import io.agentscope.core.tool.Toolkit;
 import io.agentscope.core.tool.subagent.SubAgentConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class AgentManager {
 
+    /**
+     * Agent 定义变更广播频道，消息格式：agentId|nodeId
+     */
+    public static final String CHANGE_CHANNEL = "agentoz:agent:changed";
+
+    /**
+     * 会话最后一轮的 turnId，用于判断本地绑定实例是否已被其他节点（或异步任务）的轮次越过
+     */
+    private static final String STAMP_PREFIX = "agentoz:turn:stamp:";
+
+    /**
+     * Agent 定义 config 中的无状态开关，为 true 时该 Agent 的对话都按无状态轮次执行
+     */
+    public static final String STATELESS_CONFIG_KEY = "stateless";
+
+    /**
+     * 当前节点标识，用于忽略自己发出的变更广播
+     */
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    private static final Comparator<AgentEntity> ID_ORDER = Comparator.comparing(AgentEntity::getId);
+
     private final AgentMapper agentMapper;
-    private final DashScopeChatModel defaultChatModel;
+    private final Model defaultChatModel;
+    private final StringRedisTemplate redisTemplate;
+    private final ConversationHistoryStore historyStore;
+    private final TokenAccounting tokenAccounting;
+    private final ConversationLeaseManager leaseManager;
+    private final DrainCoordinator drainCoordinator;
+    private final ToolSpeculator toolSpeculator;
+    private final SemanticMemoryStore semanticMemory;
+
+    /**
+     * Agent 定义缓存：存在的定义常驻，不存在的 ID 做短时负缓存，避免反复穿透数据库
+     */
+    private final LoadingCache<String, Optional<AgentEntity>> agentDefinitions;
+
+    /**
+     * 定义版本号（全局单调递增），用于判断实例是否过期
+     */
+    private final Map<String, Long> definitionVersions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private final Map<String, AgentInstance> agentInstances = new ConcurrentHashMap<>();
+
+    /**
+     * 会话绑定实例：sessionId -> 上一轮结束时的实例（memory 即会话状态）
+     * <p>
+     * 消费端按会话一致性哈希路由（ConversationAffinityLoadBalance），同一会话的下一轮通常回到本节点，
+     * 命中时跳过 Session 反序列化。轮次进行中实例从缓存取出，同一会话的并发轮次各自使用独立实例。
+     */
+    private final Cache<String, BoundAgent> boundAgents;
+    private final Duration conversationIdle;
 
-    private final Map<String, AgentEntity> agentDefinitions = new ConcurrentHashMap<>();
-    private final Map<String, ReActAgent> agentInstances = new ConcurrentHashMap<>();
+    /**
+     * 保存写入 Redis 时因令牌过期被拒绝的会话（启用 Session 日志时在轮次结束后才发现）：
+     * 本地实例不是会话的最新状态，下一轮从 Session 重新加载
+     */
+    private final Cache<String, Boolean> staleSessions;
+
+    /**
+     * 无状态轮次的空闲实例：agentId -> memory 已清空的实例（后进先出），一次性调用不必每次重新构建 Agent
+     */
+    private final Map<String, BlockingDeque<AgentInstance>> idleStatelessAgents = new ConcurrentHashMap<>();
+    private final int statelessPoolSize;
+
+    private final Counter affinityHit;
+    private final Counter affinityMiss;
+    private final Counter affinityStale;
+
+    /**
+     * 按 ID 排序的定义快照，供分页列表使用；定义变更时递增代数使其失效
+     */
+    private volatile SortedSnapshot sortedSnapshot;
+    private final AtomicLong snapshotGeneration = new AtomicLong();
+
+    /**
+     * 后台重建线程：串行执行，重建完成后原子替换实例，不阻塞进行中的对话
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "agent-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AgentManager(AgentMapper agentMapper,
+                        Model defaultChatModel,
+                        StringRedisTemplate redisTemplate,
+                        ConversationHistoryStore historyStore,
+                        TokenAccounting tokenAccounting,
+                        ConversationLeaseManager leaseManager,
+                        DrainCoordinator drainCoordinator,
+                        ToolSpeculator toolSpeculator,
+                        SemanticMemoryStore semanticMemory,
+                        RedisSession redisSession,
+                        MeterRegistry meterRegistry,
+                        @Value("${agentoz.agent-cache.negative-ttl:30s}") Duration negativeTtl,
+                        @Value("${agentoz.agent-cache.conversation-max-size:10000}") long conversationMaxSize,
+                        @Value("${agentoz.agent-cache.conversation-idle:30m}") Duration conversationIdle,
+                        @Value("${agentoz.agent-cache.stateless-pool-size:16}") int statelessPoolSize) {
+        this.agentMapper = agentMapper;
+        this.defaultChatModel = defaultChatModel;
+        this.redisTemplate = redisTemplate;
+        this.historyStore = historyStore;
+        this.tokenAccounting = tokenAccounting;
+        this.leaseManager = leaseManager;
+        this.drainCoordinator = drainCoordinator;
+        this.toolSpeculator = toolSpeculator;
+        this.semanticMemory = semanticMemory;
+        this.conversationIdle = conversationIdle;
+        this.statelessPoolSize = Math.max(1, statelessPoolSize);
+        this.boundAgents = Caffeine.newBuilder()
+                .maximumSize(conversationMaxSize)
+                .expireAfterAccess(conversationIdle)
+                .build();
+        this.staleSessions = Caffeine.newBuilder()
+                .expireAfterWrite(conversationIdle)
+                .build();
+        redisSession.onStaleWrite((sessionId, token) -> {
+            staleSessions.put(sessionId, Boolean.TRUE);
+            boundAgents.invalidate(sessionId);
+        });
+        this.affinityHit = affinityCounter(meterRegistry, "hit");
+        this.affinityMiss = affinityCounter(meterRegistry, "miss");
+        this.affinityStale = affinityCounter(meterRegistry, "stale");
+        this.agentDefinitions = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Optional<AgentEntity>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Optional<AgentEntity> value, long currentTime) {
+                        return value.isPresent() ? Long.MAX_VALUE : negativeTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Optional<AgentEntity> value,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Optional<AgentEntity> value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build(this::loadDefinition);
+    }
 
     @PostConstruct
     public void init() {
         loadAgentsFromDatabase();
     }
 
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
     public void loadAgentsFromDatabase() {
         List<AgentEntity> agents = agentMapper.selectList(null);
-        agentDefinitions.clear();
+        Set<String> loaded = new HashSet<>();
         for (AgentEntity agent : agents) {
             if (Boolean.TRUE.equals(agent.getEnabled())) {
-                agentDefinitions.put(agent.getId(), agent);
+                loaded.add(agent.getId());
+                Optional<AgentEntity> previous = agentDefinitions.asMap().put(agent.getId(), Optional.of(agent));
+                if (previous != null && !previous.equals(Optional.of(agent))) {
+                    onDefinitionChanged(agent.getId());
+                }
             }
         }
-        log.info("已加载 {} 个Agent定义", agentDefinitions.size());
+        // 已删除或被禁用的定义
+        for (Map.Entry<String, Optional<AgentEntity>> entry : Set.copyOf(agentDefinitions.asMap().entrySet())) {
+            if (entry.getValue().isPresent() && !loaded.contains(entry.getKey())) {
+                agentDefinitions.invalidate(entry.getKey());
+                onDefinitionChanged(entry.getKey());
+            }
+        }
+        snapshotGeneration.incrementAndGet();
+        log.info("已加载 {} 个Agent定义", loaded.size());
+    }
+
+    /**
+     * 定时全量对账，兜底 Redis 广播丢失（Pub/Sub 不保证送达）
+     */
+    @Scheduled(fixedDelayString = "${agentoz.agent-cache.reconcile-interval:300000}",
+            initialDelayString = "${agentoz.agent-cache.reconcile-interval:300000}")
+    public void reconcile() {
+        try {
+            loadAgentsFromDatabase();
+        } catch (Exception e) {
+            log.warn("Agent定义对账失败", e);
+        }
     }
 
     /**
      * 获取全局单例 Agent 实例
      */
     public ReActAgent getAgent(String agentId) {
-        return agentInstances.computeIfAbsent(agentId, this::createAgentInstance);
+        AgentEntity definition = getAgentDefinition(agentId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Agent不存在: " + agentId);
+        }
+        long version = effectiveVersion(definition);
+        AgentInstance instance = agentInstances.get(agentId);
+        if (instance != null && instance.version() >= version) {
+            return instance.agent();
+        }
+        return agentInstances.compute(agentId, (id, current) ->
+                current != null && current.version() >= version
+                        ? current
+                        : new AgentInstance(createAgentInstance(definition), version)).agent();
     }
 
     /**
-     * 获取 Agent 并加载指定 Session 的状态
+     * 按当前定义创建独立的 Agent 实例（不缓存），供需要并发执行同一 Agent 的场景使用
      */
-    public ReActAgent getAgentWithSession(String agentId, Session session, String sessionId) {
-        ReActAgent agent = getAgent(agentId);
-        agent.loadIfExists(session, sessionId);
-        return agent;
+    public ReActAgent createIsolatedAgent(String agentId) {
+        AgentEntity definition = getAgentDefinition(agentId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Agent不存在: " + agentId);
+        }
+        return createAgentInstance(definition);
     }
 
     /**
-     * 保存 Agent 状态到 Session
+     * 开始一轮对话：取得会话租约后，优先复用本节点上一轮留下的会话实例；否则新建实例并加载 Session 状态，
+     * Redis 中已过期时从 MySQL 历史恢复。之后必须调用 {@link #releaseTurn} 释放租约
      */
-    public void saveAgentSession(String agentId, Session session, String sessionId) {
-        ReActAgent agent = agentInstances.get(agentId);
-        if (agent != null) {
-            agent.saveTo(session, sessionId);
+    public ChatTurn beginTurn(String agentId, String conversationId, Session session) {
+        AgentEntity definition = getAgentDefinition(agentId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Agent不存在: " + agentId);
+        }
+        String sessionId = buildSessionId(agentId, conversationId);
+        long version = effectiveVersion(definition);
+
+        drainCoordinator.checkAccepting();
+        ConversationLease lease = leaseManager.acquire(sessionId);
+        try {
+            BoundAgent bound = boundAgents.asMap().remove(sessionId);
+            if (bound != null) {
+                // 定义未变更，且期间没有其他轮次写过该会话（租约未离开本节点，或轮次标记未变），本地 memory 即最新状态
+                if (bound.version() >= version && staleSessions.getIfPresent(sessionId) == null
+                        && (bound.token() == lease.token() || bound.stamp().equals(readStamp(sessionId)))) {
+                    affinityHit.increment();
+                    bindUsage(bound.agent(), conversationId);
+                    bindMemory(bound.agent(), conversationId);
+                    return track(new ChatTurn(agentId, conversationId, sessionId, bound.agent(), session,
+                            bound.agent().getMemory().getMessages().size(), version, lease));
+                }
+                affinityStale.increment();
+            } else {
+                affinityMiss.increment();
+            }
+            ReActAgent agent = createAgentInstance(definition);
+            staleSessions.invalidate(sessionId);
+            loadState(agent, agentId, conversationId, sessionId, session);
+            return track(new ChatTurn(agentId, conversationId, sessionId, agent, session,
+                    agent.getMemory().getMessages().size(), version, lease));
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
         }
     }
 
-    private ReActAgent createAgentInstance(String agentId) {
-        AgentEntity definition = agentDefinitions.get(agentId);
+    /**
+     * 使用指定实例开始一轮对话（实例不绑定到会话），同样需要 {@link #releaseTurn}
+     */
+    public ChatTurn beginTurn(ReActAgent agent, String agentId, String conversationId, Session session) {
+        String sessionId = buildSessionId(agentId, conversationId);
+        drainCoordinator.checkAccepting();
+        ConversationLease lease = leaseManager.acquire(sessionId);
+        try {
+            loadState(agent, agentId, conversationId, sessionId, session);
+            return track(new ChatTurn(agentId, conversationId, sessionId, agent, session,
+                    agent.getMemory().getMessages().size(), ChatTurn.UNBOUND, lease));
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 开始一轮无状态对话：不取会话租约，不读写 Session 和会话历史。
+     * 优先复用本节点的空闲实例（memory 为空），没有时新建；同样需要 {@link #releaseTurn}
+     *
+     * @param conversationId 可为空，只用于 Token 用量归集
+     */
+    public ChatTurn beginStatelessTurn(String agentId, String conversationId) {
+        AgentEntity definition = getAgentDefinition(agentId);
         if (definition == null) {
             throw new IllegalArgumentException("Agent不存在: " + agentId);
         }
+        long version = effectiveVersion(definition);
+
+        drainCoordinator.checkAccepting();
+        ReActAgent agent = pollIdleStateless(agentId, version);
+        if (agent == null) {
+            agent = createAgentInstance(definition);
+        }
+        bindUsage(agent, conversationId);
+        // 无状态轮次不写入语义记忆
+        bindMemory(agent, null);
+        // 没有会话时每次调用使用独立的临时标识，不同调用之间不会共用 "agentId:null"
+        String sessionId = buildSessionId(agentId,
+                conversationId == null || conversationId.isEmpty() ? "stateless-" + UUID.randomUUID() : conversationId);
+        return track(new ChatTurn(agentId, conversationId, sessionId, agent, null, 0, version, null));
+    }
+
+    /**
+     * 定义中是否开启了无状态模式（config.stateless）
+     */
+    public static boolean isStateless(AgentEntity definition) {
+        Map<String, Object> config = definition == null ? null : definition.getConfig();
+        Object value = config == null ? null : config.get(STATELESS_CONFIG_KEY);
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    private ReActAgent pollIdleStateless(String agentId, long version) {
+        BlockingDeque<AgentInstance> idle = idleStatelessAgents.get(agentId);
+        if (idle == null) {
+            return null;
+        }
+        AgentInstance instance;
+        while ((instance = idle.pollFirst()) != null) {
+            // 定义变更前创建的实例直接丢弃
+            if (instance.version() >= version) {
+                return instance.agent();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 登记进行中的轮次，停机排空时等待它们结束
+     */
+    private ChatTurn track(ChatTurn turn) {
+        drainCoordinator.register(turn);
+        return turn;
+    }
+
+    private void loadState(ReActAgent agent, String agentId, String conversationId, String sessionId,
+                           Session session) {
+        bindUsage(agent, conversationId);
+        bindMemory(agent, conversationId);
+        if (!agent.loadIfExists(session, sessionId)) {
+            // 实例可能残留其他会话的记忆
+            agent.getMemory().clear();
+            List<Msg> history = historyStore.load(conversationId, agentId);
+            if (!history.isEmpty()) {
+                history.forEach(agent.getMemory()::addMessage);
+                log.info("Session 已过期，从历史记录恢复 {} 条消息: {}", history.size(), sessionId);
+            }
+        }
+    }
+
+    /**
+     * Token 用量按会话归集
+     */
+    private static void bindUsage(ReActAgent agent, String conversationId) {
+        for (Hook hook : agent.getHooks()) {
+            if (hook instanceof TokenUsageHook usageHook) {
+                usageHook.bind(conversationId);
+            }
+        }
+    }
+
+    /**
+     * 语义记忆按会话隔离
+     */
+    private static void bindMemory(ReActAgent agent, String conversationId) {
+        for (Hook hook : agent.getHooks()) {
+            if (hook instanceof SemanticMemoryHook memoryHook) {
+                memoryHook.bind(conversationId);
+            }
+        }
+    }
+
+    /**
+     * 结束一轮对话：携带租约令牌保存 Session 状态，并将本轮新增消息交给历史持久化
+     *
+     * @throws StaleSessionWriteException 租约已被其他节点接管，本轮结果未保存（启用 Session 日志时改为写入 Redis 时异步通知）
+     */
+    public void completeTurn(ChatTurn turn) {
+        if (turn.isStateless()) {
+            turn.markCompleted();
+            return;
+        }
+        try {
+            turn.getAgent().saveTo(turn.getSession(), turn.getLease().sessionKey());
+        } catch (StaleSessionWriteException e) {
+            turn.getLease().markLost();
+            throw e;
+        }
+        List<Msg> messages = turn.getAgent().getMemory().getMessages();
+        if (messages.size() > turn.getHistoryBaseline()) {
+            historyStore.append(new ConversationHistoryStore.HistoryTurn(
+                    turn.getTurnId(),
+                    turn.getConversationId(),
+                    turn.getAgentId(),
+                    List.copyOf(messages.subList(turn.getHistoryBaseline(), messages.size())),
+                    System.currentTimeMillis()));
+        }
+        writeStamp(turn.getSessionId(), turn.getTurnId());
+        turn.markCompleted();
+    }
+
+    /**
+     * 轮次结束（成功或失败）后调用，实例上的临时 Hook 应已移除：
+     * 已保存的会话绑定实例留在本节点供下一轮复用，失败的轮次直接丢弃实例；最后释放会话租约。
+     * 无状态轮次成功结束后清空 memory，实例放回空闲池
+     */
+    public void releaseTurn(ChatTurn turn) {
+        if (turn.isStateless()) {
+            drainCoordinator.deregister(turn);
+            if (turn.isCompleted()) {
+                turn.getAgent().getMemory().clear();
+                idleStatelessAgents
+                        .computeIfAbsent(turn.getAgentId(), id -> new LinkedBlockingDeque<>(statelessPoolSize))
+                        .offerFirst(new AgentInstance(turn.getAgent(), turn.getDefinitionVersion()));
+            }
+            return;
+        }
+        if (turn.isConversationBound() && turn.isCompleted()) {
+            boundAgents.put(turn.getSessionId(), new BoundAgent(turn.getAgent(), turn.getDefinitionVersion(),
+                    turn.getTurnId(), turn.getLease().token()));
+        }
+        if (!turn.isCompleted() && turn.isCheckpointRequested()) {
+            // 排空时被取消的轮次：已不再执行，在释放租约前保存检查点
+            drainCoordinator.checkpoint(turn);
+        }
+        drainCoordinator.deregister(turn);
+        turn.getLease().close();
+    }
+
+    private String readStamp(String sessionId) {
+        try {
+            return redisTemplate.opsForValue().get(STAMP_PREFIX + sessionId);
+        } catch (Exception e) {
+            // 无法确认时按过期处理，从 Session 重新加载
+            log.warn("读取会话轮次标记失败: {}", sessionId, e);
+            return null;
+        }
+    }
+
+    private void writeStamp(String sessionId, String turnId) {
+        try {
+            redisTemplate.opsForValue().set(STAMP_PREFIX + sessionId, turnId, conversationIdle);
+        } catch (Exception e) {
+            // 标记未更新时下一轮判定为过期，只多一次 Session 加载
+            log.warn("写入会话轮次标记失败: {}", sessionId, e);
+        }
+    }
+
+    private static Counter affinityCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.agent.affinity")
+                .description("会话绑定实例的复用情况")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
-        log.info("创建 Agent 实例: {}", agentId);
+    /**
+     * 组装 Redis sessionId = agentId:conversationId
+     */
+    public static String buildSessionId(String agentId, String conversationId) {
+        return agentId + ":" + conversationId;
+    }
+
+    private ReActAgent createAgentInstance(AgentEntity definition) {
+        log.info("创建 Agent 实例: {}", definition.getId());
 
         // 检查是否有子智能体（Agent as Tool 模式）
         List<String> subAgentIds = definition.getSubAgentIds();
@@ -86,12 +532,25 @@ public class AgentManager {
         }
 
         // 普通智能体（无子智能体）
-        return ReActAgent.builder()
+        InMemoryMemory memory = new InMemoryMemory();
+        ReActAgent.Builder builder = ReActAgent.builder()
                 .name(definition.getName())
                 .sysPrompt(definition.getSystemPrompt())
                 .model(defaultChatModel)
-                .memory(new InMemoryMemory())
-                .build();
+                .memory(memory)
+                .hook(new TokenUsageHook(definition.getId(), tokenAccounting));
+        installSemanticMemory(builder, definition, memory);
+        return builder.build();
+    }
+
+    /**
+     * 开启语义记忆时挂载：早前消息按相关度召回，而不是依赖完整的工作记忆
+     */
+    private void installSemanticMemory(ReActAgent.Builder builder, AgentEntity definition, InMemoryMemory memory) {
+        Hook hook = semanticMemory.install(definition.getId(), memory);
+        if (hook != null) {
+            builder.hook(hook);
+        }
     }
 
     /**
@@ -101,9 +560,10 @@ public class AgentManager {
         log.info("创建主智能体 [{}]，子智能体: {}", definition.getName(), subAgentIds);
 
         Toolkit toolkit = new Toolkit();
+        TokenUsageHook usageHook = new TokenUsageHook(definition.getId(), tokenAccounting);
 
         for (String subAgentId : subAgentIds) {
-            AgentEntity subDef = agentDefinitions.get(subAgentId);
+            AgentEntity subDef = getAgentDefinition(subAgentId);
             if (subDef == null) {
                 log.warn("子智能体不存在，跳过: {}", subAgentId);
                 continue;
@@ -126,35 +586,176 @@ public class AgentManager {
                             .sysPrompt(finalSubDef.getSystemPrompt())
                             .model(defaultChatModel)
                             .memory(new InMemoryMemory())
+                            .hook(new TokenUsageHook(finalSubDef.getId(), tokenAccounting, usageHook))
                             .build(), config)
                     .apply();
 
             log.info("  ✅ 注册子智能体工具: {} -> {}", toolName, subDef.getName());
         }
 
-        return ReActAgent.builder()
+        InMemoryMemory memory = new InMemoryMemory();
+        ReActAgent.Builder builder = ReActAgent.builder()
                 .name(definition.getName())
                 .sysPrompt(definition.getSystemPrompt())
                 .model(defaultChatModel)
-                .memory(new InMemoryMemory())
+                .memory(memory)
                 .toolkit(toolkit)
-                .build();
+                .hook(usageHook);
+        installSemanticMemory(builder, definition, memory);
+        // 幂等工具在参数输出完整后提前执行
+        Hook speculation = toolSpeculator.install(toolkit);
+        if (speculation != null) {
+            builder.hook(speculation);
+        }
+        return builder.build();
     }
 
     public AgentEntity getAgentDefinition(String agentId) {
-        return agentDefinitions.get(agentId);
+        if (agentId == null) {
+            return null;
+        }
+        return agentDefinitions.get(agentId).orElse(null);
     }
 
     public List<AgentEntity> listAgentDefinitions() {
-        return List.copyOf(agentDefinitions.values());
+        return agentDefinitions.asMap().values().stream()
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    /**
+     * 按 ID 升序返回游标之后的定义（游标分页）
+     */
+    public List<AgentEntity> listAgentDefinitionsAfter(String cursor, int limit) {
+        List<AgentEntity> sorted = sortedDefinitions();
+        int from = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            int index = Collections.binarySearch(sorted, AgentEntity.builder().id(cursor).build(), ID_ORDER);
+            from = index >= 0 ? index + 1 : -(index + 1);
+        }
+        return sorted.subList(from, Math.min(from + limit, sorted.size()));
+    }
+
+    private List<AgentEntity> sortedDefinitions() {
+        long generation = snapshotGeneration.get();
+        SortedSnapshot snapshot = sortedSnapshot;
+        if (snapshot != null && snapshot.generation() == generation) {
+            return snapshot.definitions();
+        }
+        List<AgentEntity> sorted = listAgentDefinitions().stream().sorted(ID_ORDER).toList();
+        // 构建期间如有变更则不缓存，下次重新构建
+        if (generation == snapshotGeneration.get()) {
+            sortedSnapshot = new SortedSnapshot(generation, sorted);
+        }
+        return sorted;
     }
 
+    /**
+     * 本地变更后刷新定义，并广播给其他节点
+     */
     public void refreshAgent(String agentId) {
+        agentDefinitions.put(agentId, loadDefinition(agentId));
+        onDefinitionChanged(agentId);
+        try {
+            redisTemplate.convertAndSend(CHANGE_CHANNEL, agentId + "|" + NODE_ID);
+        } catch (Exception e) {
+            // 广播失败时依赖定时对账兜底
+            log.warn("广播Agent定义变更失败: {}", agentId, e);
+        }
+    }
+
+    /**
+     * 处理其他节点的变更广播
+     */
+    public void onRemoteChange(String message) {
+        int separator = message.lastIndexOf('|');
+        if (separator <= 0) {
+            log.warn("忽略无法解析的Agent变更消息: {}", message);
+            return;
+        }
+        String agentId = message.substring(0, separator);
+        if (NODE_ID.equals(message.substring(separator + 1))) {
+            return;
+        }
+        log.info("收到Agent定义变更广播: {}", agentId);
+        agentDefinitions.refresh(agentId).whenComplete((definition, e) -> {
+            if (e != null) {
+                log.warn("刷新Agent定义失败: {}", agentId, e);
+                agentDefinitions.invalidate(agentId);
+            }
+            onDefinitionChanged(agentId);
+        });
+    }
+
+    private Optional<AgentEntity> loadDefinition(String agentId) {
         AgentEntity agent = agentMapper.selectById(agentId);
-        if (agent != null && Boolean.TRUE.equals(agent.getEnabled())) {
-            agentDefinitions.put(agentId, agent);
-        } else {
-            agentDefinitions.remove(agentId);
+        return Optional.ofNullable(agent).filter(a -> Boolean.TRUE.equals(a.getEnabled()));
+    }
+
+    /**
+     * 定义变更：递增版本，并在后台重建自身及引用它的主智能体
+     */
+    private void onDefinitionChanged(String agentId) {
+        definitionVersions.put(agentId, versionSequence.incrementAndGet());
+        snapshotGeneration.incrementAndGet();
+        rebuildExecutor.execute(() -> rebuildDependents(agentId));
+    }
+
+    private void rebuildDependents(String agentId) {
+        Set<String> affected = new HashSet<>();
+        affected.add(agentId);
+        for (AgentEntity definition : listAgentDefinitions()) {
+            List<String> subAgentIds = definition.getSubAgentIds();
+            if (subAgentIds != null && subAgentIds.contains(agentId)) {
+                affected.add(definition.getId());
+            }
+        }
+
+        for (String id : affected) {
+            idleStatelessAgents.remove(id);
+            if (!agentInstances.containsKey(id)) {
+                continue;  // 未实例化的 Agent 在下次使用时按新定义创建
+            }
+            AgentEntity definition = getAgentDefinition(id);
+            if (definition == null) {
+                agentInstances.remove(id);
+                log.info("Agent已删除或禁用，移除实例: {}", id);
+                continue;
+            }
+            try {
+                long version = effectiveVersion(definition);
+                ReActAgent rebuilt = createAgentInstance(definition);
+                // 仅当已缓存实例更旧时替换；进行中的对话继续持有旧实例直至结束
+                agentInstances.computeIfPresent(id, (key, current) ->
+                        current.version() >= version ? current : new AgentInstance(rebuilt, version));
+                log.info("Agent实例已重建: {} (version={})", id, version);
+            } catch (Exception e) {
+                agentInstances.remove(id);
+                log.error("重建Agent实例失败，已移除缓存: {}", id, e);
+            }
         }
     }
+
+    /**
+     * 实例依赖自身及所有子智能体的定义，取其中最大的版本号
+     */
+    private long effectiveVersion(AgentEntity definition) {
+        long version = definitionVersions.getOrDefault(definition.getId(), 0L);
+        List<String> subAgentIds = definition.getSubAgentIds();
+        if (subAgentIds != null) {
+            for (String subAgentId : subAgentIds) {
+                version = Math.max(version, definitionVersions.getOrDefault(subAgentId, 0L));
+            }
+        }
+        return version;
+    }
+
+    private record AgentInstance(ReActAgent agent, long version) {
+    }
+
+    private record BoundAgent(ReActAgent agent, long version, String stamp, long token) {
+    }
+
+    private record SortedSnapshot(long generation, List<AgentEntity> definitions) {
+    }
 }
@@ -0,0 +1,149 @@
+package com.deepknow.agentoz.manager;
+
+import com.deepknow.agentoz.lifecycle.ServiceDrainingException;
+import com.deepknow.agentoz.session.ConversationLease;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.session.Session;
+import lombok.AccessLevel;
+import lombok.Getter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.util.UUID;
+
+/**
+ * 一轮对话的上下文：由 {@link AgentManager#beginTurn} 创建，{@link AgentManager#completeTurn} 保存，
+ * {@link AgentManager#releaseTurn} 归还实例
+ */
+@Getter
+public class ChatTurn {
+
+    static final long UNBOUND = -1;
+
+    private final String turnId = UUID.randomUUID().toString();
+
+    private final String agentId;
+
+    private final String conversationId;
+
+    /**
+     * Redis sessionId = agentId:conversationId
+     */
+    private final String sessionId;
+
+    /**
+     * 本轮使用的 Agent 实例
+     */
+    private final ReActAgent agent;
+
+    /**
+     * 无状态轮次为 null
+     */
+    private final Session session;
+
+    /**
+     * 本轮开始前 memory 中的消息数，之后新增的消息即本轮历史
+     */
+    private final int historyBaseline;
+
+    /**
+     * 实例创建时的定义版本；{@link #UNBOUND} 表示实例不绑定到会话
+     */
+    private final long definitionVersion;
+
+    /**
+     * 本轮持有的会话租约，{@link AgentManager#releaseTurn} 时释放；无状态轮次为 null
+     */
+    private final ConversationLease lease;
+
+    /**
+     * 本轮状态已保存（{@link AgentManager#completeTurn}）
+     */
+    private volatile boolean completed;
+
+    /**
+     * 执行本轮的订阅，排空时用于取消
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile Disposable execution;
+
+    /**
+     * 排空时要求本轮在结束（{@link AgentManager#releaseTurn}）时保存检查点
+     */
+    private volatile boolean checkpointRequested;
+
+    ChatTurn(String agentId, String conversationId, String sessionId,
+             ReActAgent agent, Session session, int historyBaseline, long definitionVersion,
+             ConversationLease lease) {
+        this.agentId = agentId;
+        this.conversationId = conversationId;
+        this.sessionId = sessionId;
+        this.agent = agent;
+        this.session = session;
+        this.historyBaseline = historyBaseline;
+        this.definitionVersion = definitionVersion;
+        this.lease = lease;
+    }
+
+    /**
+     * 实例是否绑定到本会话：结束后可留在本节点供下一轮复用
+     */
+    public boolean isConversationBound() {
+        return definitionVersion != UNBOUND;
+    }
+
+    /**
+     * 无状态轮次（{@link AgentManager#beginStatelessTurn}）：不读写 Session，没有会话租约
+     */
+    public boolean isStateless() {
+        return lease == null;
+    }
+
+    /**
+     * 记录执行本轮的订阅，之后可由 {@link #cancelForCheckpoint} 取消
+     */
+    public void attach(Disposable execution) {
+        this.execution = execution;
+    }
+
+    /**
+     * 订阅本轮的执行（应包含 releaseTurn）并记录，返回的 Mono 发出其结果；
+     * 返回的 Mono 被取消时执行随之取消，排空时执行被 {@link #cancelForCheckpoint} 取消则以
+     * {@link ServiceDrainingException} 结束（在执行的 doFinally 之后，即检查点已保存）
+     */
+    public <T> Mono<T> execute(Mono<T> call) {
+        return Mono.defer(() -> {
+            Sinks.One<T> result = Sinks.one();
+            Disposable subscription = call
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            result.tryEmitError(new ServiceDrainingException());
+                        }
+                    })
+                    .subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty);
+            attach(subscription);
+            return result.asMono().doOnCancel(subscription::dispose);
+        });
+    }
+
+    /**
+     * 排空超时：取消本轮的执行，轮次在取消信号到达、不再修改 memory 后由 releaseTurn 保存检查点
+     *
+     * @return false 表示本轮没有可取消的订阅，只能等待其自行结束
+     */
+    public boolean cancelForCheckpoint() {
+        Disposable current = execution;
+        if (current == null) {
+            return false;
+        }
+        checkpointRequested = !isStateless();
+        current.dispose();
+        return true;
+    }
+
+    void markCompleted() {
+        this.completed = true;
+    }
+}
@@ -3,21 +3,27 @@ package com.deepknow.agentoz.manager;
 import io.agentscope.core.hook.Hook;
 import io.agentscope.core.hook.HookEvent;
 import io.agentscope.core.hook.ReasoningChunkEvent;
-import io.agentscope.core.hook.ActingChunkEvent;
 import io.agentscope.core.hook.PreActingEvent;
 import io.agentscope.core.hook.PostActingEvent;
+import io.agentscope.core.message.ContentBlock;
 import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.TextBlock;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
-import java.util.function.Consumer;
+import java.util.List;
 
+/**
+ * 流式事件 Hook
+ * <p>
+ * 每个 token 都会经过这里：直接回调 {@link StreamListener} 的对应方法，只传递增量内容，
+ * 不创建中间事件对象
+ */
 public class StreamingHook implements Hook {
 
-    private final Consumer<StreamEvent> eventConsumer;
+    private final StreamListener listener;
 
-    public StreamingHook(Consumer<StreamEvent> eventConsumer) {
-        this.eventConsumer = eventConsumer;
+    public StreamingHook(StreamListener listener) {
+        this.listener = listener;
     }
 
     @Override
@@ -25,17 +31,15 @@ public class StreamingHook implements Hook {
         if (event instanceof ReasoningChunkEvent chunkEvent) {
             Msg chunk = chunkEvent.getIncrementalChunk();
             if (chunk != null) {
-                String text = chunk.getTextContent();
+                String text = textOf(chunk);
                 if (text != null && !text.isEmpty()) {
-                    eventConsumer.accept(new StreamEvent(StreamEventType.TEXT, text, null));
+                    listener.onText(text);
                 }
             }
         } else if (event instanceof PreActingEvent actingEvent) {
-            String toolName = actingEvent.getToolUse().getName();
-            String toolInput = actingEvent.getToolUse().getInput().toString();
-            eventConsumer.accept(new StreamEvent(StreamEventType.TOOL_CALL, toolName, toolInput));
-        } else if (event instanceof PostActingEvent postActingEvent) {
-            eventConsumer.accept(new StreamEvent(StreamEventType.TOOL_RESULT, null, null));
+            listener.onToolCall(actingEvent.getToolUse().getName());
+        } else if (event instanceof PostActingEvent) {
+            listener.onToolResult();
         }
         return Mono.just(event);
     }
@@ -45,16 +49,36 @@ public class StreamingHook implements Hook {
         return 50;
     }
 
-    public enum StreamEventType {
-        TEXT,
-        THINKING,
-        TOOL_CALL,
-        TOOL_RESULT
+    /**
+     * 增量分片通常只有一个 TextBlock，直接返回其文本；
+     * {@link Msg#getTextContent()} 每次都会走 Stream + joining
+     */
+    private static String textOf(Msg chunk) {
+        List<ContentBlock> blocks = chunk.getContent();
+        if (blocks.size() == 1) {
+            return blocks.get(0) instanceof TextBlock textBlock ? textBlock.getText() : null;
+        }
+        return chunk.getTextContent();
     }
 
-    public record StreamEvent(
-            StreamEventType type,
-            String content,
-            String extra
-    ) {}
+    /**
+     * 流式事件回调，每个流一个实例
+     */
+    public interface StreamListener {
+
+        /**
+         * 文本增量
+         */
+        void onText(String delta);
+
+        /**
+         * 开始调用工具（包括子智能体）
+         */
+        void onToolCall(String toolName);
+
+        /**
+         * 工具调用完成
+         */
+        void onToolResult();
+    }
 }
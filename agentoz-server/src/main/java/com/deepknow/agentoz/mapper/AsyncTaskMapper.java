@@ -0,0 +1,9 @@
+package com.deepknow.agentoz.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.deepknow.agentoz.entity.AsyncTaskEntity;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface AsyncTaskMapper extends BaseMapper<AsyncTaskEntity> {
+}
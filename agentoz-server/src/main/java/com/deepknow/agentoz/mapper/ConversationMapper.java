@@ -0,0 +1,50 @@
+package com.deepknow.agentoz.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.deepknow.agentoz.entity.ConversationEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+
+@Mapper
+public interface ConversationMapper extends BaseMapper<ConversationEntity> {
+
+    /**
+     * 批量确保会话记录存在（已存在则忽略）；各轮内容在 conversation_turns 中，history_context 保持为空数组
+     */
+    @Insert("""
+            <script>
+            INSERT IGNORE INTO conversations
+                (conversation_id, user_id, primary_agent_id, history_context, history_format)
+            VALUES
+            <foreach collection="conversations" item="c" separator=",">
+                (#{c.conversationId}, '', #{c.primaryAgentId}, JSON_ARRAY(), 'agentoz_turn_rows_v1')
+            </foreach>
+            </script>
+            """)
+    int insertIgnore(@Param("conversations") Collection<ConversationEntity> conversations);
+
+    /**
+     * 把已写入 conversation_turns 的一轮计入会话汇总字段；按 summarized 标记只计一次（幂等），
+     * 经唯一键定位到这一轮，开销与会话长度无关。溢写后补写的旧轮次不覆盖更新的最后一条消息
+     */
+    @Update("""
+            UPDATE conversations c
+            JOIN conversation_turns t ON t.conversation_id = c.conversation_id AND t.turn_id = #{turnId}
+            SET c.message_count = c.message_count + t.message_count,
+                c.last_message_content = IF(c.last_message_at IS NULL OR t.completed_at >= c.last_message_at,
+                    #{lastMessageContent}, c.last_message_content),
+                c.last_message_type = 'message',
+                c.last_message_at = GREATEST(COALESCE(c.last_message_at, t.completed_at), t.completed_at),
+                c.last_activity_at = GREATEST(COALESCE(c.last_activity_at, t.completed_at), t.completed_at),
+                t.summarized = 1
+            WHERE c.conversation_id = #{conversationId}
+              AND t.summarized = 0
+            """)
+    int summarizeTurn(@Param("conversationId") String conversationId,
+                      @Param("turnId") String turnId,
+                      @Param("lastMessageContent") String lastMessageContent);
+}
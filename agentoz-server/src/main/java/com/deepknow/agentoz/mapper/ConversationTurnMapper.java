@@ -0,0 +1,22 @@
+package com.deepknow.agentoz.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.deepknow.agentoz.entity.ConversationTurnEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface ConversationTurnMapper extends BaseMapper<ConversationTurnEntity> {
+
+    /**
+     * 写入一轮对话；(conversation_id, turn_id) 已存在时忽略（幂等）
+     */
+    @Insert("""
+            INSERT IGNORE INTO conversation_turns
+                (conversation_id, turn_id, agent_id, messages, message_count, completed_at)
+            VALUES (#{t.conversationId}, #{t.turnId}, #{t.agentId}, CAST(#{t.messages} AS JSON),
+                    #{t.messageCount}, #{t.completedAt})
+            """)
+    int insertIgnore(@Param("t") ConversationTurnEntity turn);
+}
@@ -0,0 +1,25 @@
+package com.deepknow.agentoz.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.deepknow.agentoz.entity.SessionArchiveEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface SessionArchiveMapper extends BaseMapper<SessionArchiveEntity> {
+
+    /**
+     * 写入快照，已存在则覆盖
+     */
+    @Insert("""
+            INSERT INTO session_archive (session_id, payload, raw_size, compressed_size, archived_at)
+            VALUES (#{a.sessionId}, #{a.payload}, #{a.rawSize}, #{a.compressedSize}, #{a.archivedAt})
+            ON DUPLICATE KEY UPDATE
+                payload = VALUES(payload),
+                raw_size = VALUES(raw_size),
+                compressed_size = VALUES(compressed_size),
+                archived_at = VALUES(archived_at)
+            """)
+    int upsert(@Param("a") SessionArchiveEntity archive);
+}
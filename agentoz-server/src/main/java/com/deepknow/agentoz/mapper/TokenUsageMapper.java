@@ -0,0 +1,24 @@
+package com.deepknow.agentoz.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.deepknow.agentoz.entity.TokenUsageEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface TokenUsageMapper extends BaseMapper<TokenUsageEntity> {
+
+    /**
+     * 累加当天用量
+     */
+    @Insert("""
+            INSERT INTO token_usage_daily (agent_id, usage_date, input_tokens, output_tokens, calls)
+            VALUES (#{u.agentId}, #{u.usageDate}, #{u.inputTokens}, #{u.outputTokens}, #{u.calls})
+            ON DUPLICATE KEY UPDATE
+                input_tokens = input_tokens + VALUES(input_tokens),
+                output_tokens = output_tokens + VALUES(output_tokens),
+                calls = calls + VALUES(calls)
+            """)
+    int increment(@Param("u") TokenUsageEntity usage);
+}
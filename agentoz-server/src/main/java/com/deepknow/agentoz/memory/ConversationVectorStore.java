@@ -0,0 +1,293 @@
+package com.deepknow.agentoz.memory;
+
+import com.deepknow.agentoz.vector.HnswIndex;
+import io.agentscope.core.message.MsgRole;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 单个会话的语义记忆：向量在映射文件中（堆外，由操作系统页缓存管理），消息文本追加写入日志文件，
+ * 堆上只保留消息 ID、日志偏移量和索引的邻居列表
+ * <pre>
+ * {name}.vec  64 字节头部（魔数、格式版本、维度、容量、已提交条数），之后是 容量 x 维度 个 float（小端）
+ * {name}.log  每条记录：int 长度 | byte 角色 | short ID 长度 | ID | 文本，均为 UTF-8
+ * {name}.hnsw 关闭时写出的索引图结构
+ * </pre>
+ * 写入顺序为 日志 → 向量 → 头部条数，头部条数是提交点，重新打开时以它为准截掉多出的日志；
+ * 索引读取上次关闭时的图结构，之后提交的向量（进程异常退出时）再逐条编入。
+ * 不逐条 fsync：语义记忆可由会话消息重新生成，丢失的尾部会在下一轮结束时补录。
+ * <p>
+ * 非线程安全，由 {@link SemanticMemoryStore} 按会话串行访问。首次写入前不创建文件。
+ */
+final class ConversationVectorStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x414F5A56;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int DIMENSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+
+    private final Path vectorFile;
+    private final Path logFile;
+    private final Path graphFile;
+    private final int m;
+    private final int efConstruction;
+
+    private int capacity;
+    private int dimension;
+    private int count;
+
+    private MappedByteBuffer header;
+    private HnswIndex index;
+    private FileChannel log;
+
+    /**
+     * 第 i 条记录在日志中的起止位置为 offsets[i]、offsets[i + 1]
+     */
+    private long[] offsets;
+    private String[] ids;
+    private final Set<String> messageIds = new HashSet<>();
+
+    /**
+     * 图结构文件中的节点数，与 count 不同时关闭时重新写出
+     */
+    private int persistedNodes;
+    private boolean closed;
+
+    ConversationVectorStore(Path directory, String name, int capacity, int m, int efConstruction) throws IOException {
+        this.vectorFile = directory.resolve(name + ".vec");
+        this.logFile = directory.resolve(name + ".log");
+        this.graphFile = directory.resolve(name + ".hnsw");
+        this.capacity = capacity;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        if (Files.exists(vectorFile)) {
+            load();
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean contains(String messageId) {
+        return messageIds.contains(messageId);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @return 容量已满时返回 false
+     */
+    boolean append(String messageId, MsgRole role, String text, float[] vector) throws IOException {
+        if (index == null) {
+            create(vector.length);
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度应为 " + dimension + "（更换向量模型后需清理 " + vectorFile + "）: "
+                    + vector.length);
+        }
+        if (count == capacity) {
+            return false;
+        }
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Short.BYTES + id.length + body.length;
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length)
+                .putInt(length)
+                .put((byte) role.ordinal())
+                .putShort((short) id.length)
+                .put(id)
+                .put(body)
+                .flip();
+        long position = offsets[count];
+        while (record.hasRemaining()) {
+            position += log.write(record, position);
+        }
+        index.add(vector);
+        offsets[count + 1] = position;
+        ids[count] = messageId;
+        count++;
+        header.putInt(COUNT_OFFSET, count);
+        messageIds.add(messageId);
+        return true;
+    }
+
+    /**
+     * 检索最相似的 candidates 条，跳过 exclude 中的消息和相似度低于 minScore 的结果，
+     * 只为最终选中的至多 limit 条读取文本
+     */
+    List<Entry> search(float[] query, int candidates, int ef, Set<String> exclude, double minScore, int limit)
+            throws IOException {
+        if (index == null || count == 0) {
+            return List.of();
+        }
+        List<Entry> entries = new ArrayList<>(limit);
+        for (HnswIndex.Hit hit : index.search(query, Math.min(candidates, count), ef)) {
+            if (entries.size() == limit || hit.score() < minScore) {
+                break;
+            }
+            if (!exclude.contains(ids[hit.id()])) {
+                entries.add(read(hit.id(), hit.score()));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (index != null && count != persistedNodes) {
+            writeGraph();
+        }
+        if (header != null) {
+            // 映射区域随缓冲区被回收而释放，这里只把脏页写回
+            header.force();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private Entry read(int id, float score) throws IOException {
+        long start = offsets[id] + Integer.BYTES;
+        ByteBuffer record = ByteBuffer.allocate((int) (offsets[id + 1] - start));
+        while (record.hasRemaining()) {
+            if (log.read(record, start + record.position()) < 0) {
+                throw new EOFException("语义记忆日志不完整: " + logFile);
+            }
+        }
+        record.flip();
+        MsgRole role = MsgRole.values()[record.get()];
+        record.position(record.position() + Short.BYTES + (record.getShort(record.position()) & 0xffff));
+        String text = StandardCharsets.UTF_8.decode(record).toString();
+        return new Entry(ids[id], role, text, score);
+    }
+
+    private void writeGraph() throws IOException {
+        Path temp = graphFile.resolveSibling(graphFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            index.writeGraph(out);
+        }
+        Files.move(temp, graphFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        persistedNodes = count;
+    }
+
+    private void create(int dimension) throws IOException {
+        Files.createDirectories(vectorFile.getParent());
+        this.dimension = dimension;
+        map();
+        header.putInt(0, MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        header.putInt(DIMENSION_OFFSET, dimension);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        header.putInt(COUNT_OFFSET, 0);
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        offsets = new long[capacity + 1];
+        ids = new String[capacity];
+        Files.deleteIfExists(graphFile);
+    }
+
+    private void load() throws IOException {
+        try (FileChannel channel = FileChannel.open(vectorFile, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(head, 0);
+            if (head.getInt(0) != MAGIC || head.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("无法识别的语义记忆文件: " + vectorFile);
+            }
+            dimension = head.getInt(DIMENSION_OFFSET);
+            // 容量以文件为准，配置调整只影响新会话
+            capacity = head.getInt(CAPACITY_OFFSET);
+            count = head.getInt(COUNT_OFFSET);
+        }
+        map();
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsets = new long[capacity + 1];
+        ids = new String[capacity];
+
+        int records = 0;
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (records < count) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] record = in.readNBytes(length);
+                if (record.length < length) {
+                    break;
+                }
+                int idLength = ((record[1] & 0xff) << 8) | (record[2] & 0xff);
+                ids[records] = new String(record, 3, idLength, StandardCharsets.UTF_8);
+                messageIds.add(ids[records]);
+                position += Integer.BYTES + length;
+                offsets[++records] = position;
+            }
+        }
+        // 日志比提交点短（写入中断）时以日志为准，多出的日志截掉
+        count = records;
+        header.putInt(COUNT_OFFSET, count);
+        log.truncate(position);
+        if (Files.exists(graphFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+                if (index.readGraph(in, count)) {
+                    persistedNodes = index.size();
+                }
+            } catch (IOException e) {
+                // 图结构文件不完整时逐条重建（读取完成前不修改索引）
+                persistedNodes = 0;
+            }
+        }
+        index.restore(count);
+    }
+
+    private void map() throws IOException {
+        long vectorBytes = (long) capacity * dimension * Float.BYTES;
+        if (HEADER_BYTES + vectorBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("单个会话的向量文件超过 2GB: " + capacity + " x " + dimension);
+        }
+        try (FileChannel channel = FileChannel.open(vectorFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // 按容量一次映射，未写入的部分在文件系统中是空洞，不占磁盘
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + vectorBytes);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            header = mapped;
+            index = new HnswIndex(mapped.slice(HEADER_BYTES, (int) vectorBytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer(), dimension, m, efConstruction, vectorFile.hashCode());
+        }
+    }
+
+    /**
+     * @param score 余弦相似度
+     */
+    record Entry(String messageId, MsgRole role, String text, float score) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.deepknow.agentoz.memory;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 文本向量化，供会话语义记忆使用
+ * <p>
+ * 同一个实现的向量维度必须固定：维度写入每个会话的向量文件头，切换实现后旧文件无法继续写入。
+ */
+public interface Embedder {
+
+    /**
+     * 为待存储的消息生成向量，结果与 texts 一一对应
+     */
+    Mono<List<float[]>> embedDocuments(List<String> texts);
+
+    /**
+     * 为检索语句生成向量
+     */
+    Mono<float[]> embedQuery(String text);
+}
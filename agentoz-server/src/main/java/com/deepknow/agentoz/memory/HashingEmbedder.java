@@ -0,0 +1,113 @@
+package com.deepknow.agentoz.memory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 进程内特征哈希向量（默认实现，agentoz.memory.semantic.embedder=hashing）
+ * <p>
+ * 中日韩文字取单字和相邻两字（单字权重减半，常用字不至于淹没词语），其他文字按词切分，
+ * 特征哈希到固定维度并带符号累加，最后归一化。
+ * 只反映字面重合度，不理解同义词，但无需模型和网络调用，单条消息几微秒，适合在对话热路径上使用。
+ */
+@Component
+@ConditionalOnProperty(name = "agentoz.memory.semantic.embedder", havingValue = "hashing", matchIfMissing = true)
+public class HashingEmbedder implements Embedder {
+
+    private final int dimension;
+
+    public HashingEmbedder(@Value("${agentoz.memory.semantic.dimension:256}") int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("agentoz.memory.semantic.dimension 必须为正数: " + dimension);
+        }
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Mono<List<float[]>> embedDocuments(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return Mono.just(vectors);
+    }
+
+    @Override
+    public Mono<float[]> embedQuery(String text) {
+        return Mono.just(embed(text));
+    }
+
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int wordStart = -1;
+        int previousIdeograph = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            if (isIdeograph(codePoint)) {
+                if (wordStart >= 0) {
+                    addFeature(vector, normalized, wordStart, i, 1);
+                    wordStart = -1;
+                }
+                addFeature(vector, normalized, i, next, 0.5f);
+                if (previousIdeograph >= 0) {
+                    addFeature(vector, normalized, previousIdeograph, next, 1);
+                }
+                previousIdeograph = i;
+            } else {
+                previousIdeograph = -1;
+                if (Character.isLetterOrDigit(codePoint)) {
+                    if (wordStart < 0) {
+                        wordStart = i;
+                    }
+                } else if (wordStart >= 0) {
+                    addFeature(vector, normalized, wordStart, i, 1);
+                    wordStart = -1;
+                }
+            }
+            i = next;
+        }
+        if (wordStart >= 0) {
+            addFeature(vector, normalized, wordStart, normalized.length(), 1);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void addFeature(float[] vector, String text, int from, int to, float weight) {
+        // FNV-1a，高位决定符号，低位决定下标
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 29;
+        int index = (int) Long.remainderUnsigned(hash, dimension);
+        vector[index] += hash < 0 ? -weight : weight;
+    }
+
+    private static boolean isIdeograph(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
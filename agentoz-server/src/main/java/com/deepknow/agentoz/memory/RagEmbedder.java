@@ -0,0 +1,99 @@
+package com.deepknow.agentoz.memory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过 agentoz-rag 的 /embed 生成向量（agentoz.memory.semantic.embedder=rag），与知识库使用同一个模型
+ */
+@Component
+@ConditionalOnProperty(name = "agentoz.memory.semantic.embedder", havingValue = "rag")
+public class RagEmbedder implements Embedder {
+
+    private final ObjectMapper objectMapper;
+    private final URI endpoint;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    public RagEmbedder(ObjectMapper objectMapper,
+                       @Value("${agentoz.memory.semantic.rag-url:http://localhost:8000}") String baseUrl,
+                       @Value("${agentoz.memory.semantic.rag-timeout:5s}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.endpoint = URI.create((baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl)
+                + "/embed");
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                // uvicorn 只支持 HTTP/1.1
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public Mono<List<float[]>> embedDocuments(List<String> texts) {
+        return embed(texts, "document");
+    }
+
+    @Override
+    public Mono<float[]> embedQuery(String text) {
+        return embed(List.of(text), "query").map(vectors -> vectors.get(0));
+    }
+
+    private Mono<List<float[]>> embed(List<String> texts, String textType) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(Map.of("texts", texts, "text_type", textType));
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        return Mono.fromFuture(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()))
+                .map(response -> toVectors(response, texts.size()));
+    }
+
+    private List<float[]> toVectors(HttpResponse<byte[]> response, int expected) {
+        if (response.statusCode() != 200) {
+            String body = new String(response.body(), StandardCharsets.UTF_8);
+            throw new IllegalStateException("agentoz-rag /embed 返回 " + response.statusCode() + ": "
+                    + (body.length() > 200 ? body.substring(0, 200) : body));
+        }
+        JsonNode embeddings;
+        try {
+            embeddings = objectMapper.readTree(response.body()).get("embeddings");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (embeddings == null || embeddings.size() != expected) {
+            throw new IllegalStateException("向量数与文本数不一致: " + expected);
+        }
+        List<float[]> vectors = new ArrayList<>(expected);
+        for (JsonNode embedding : embeddings) {
+            float[] vector = new float[embedding.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) embedding.get(i).asDouble();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
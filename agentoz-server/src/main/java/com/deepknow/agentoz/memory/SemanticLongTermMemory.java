@@ -0,0 +1,62 @@
+package com.deepknow.agentoz.memory;
+
+import io.agentscope.core.memory.LongTermMemory;
+import io.agentscope.core.memory.Memory;
+import io.agentscope.core.message.Msg;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于 {@link SemanticMemoryStore} 的长期记忆，数据按 Agent + 会话隔离
+ * <p>
+ * 实例随 Agent 在多个会话间复用，每轮开始时通过 {@link #bind} 绑定会话（与 TokenUsageHook 相同）；
+ * 未绑定（无状态轮次）时不记录也不检索。
+ */
+public class SemanticLongTermMemory implements LongTermMemory {
+
+    private final String agentId;
+    private final Memory workingMemory;
+    private final SemanticMemoryStore store;
+
+    private volatile String conversationId;
+
+    SemanticLongTermMemory(String agentId, Memory workingMemory, SemanticMemoryStore store) {
+        this.agentId = agentId;
+        this.workingMemory = workingMemory;
+        this.store = store;
+    }
+
+    public void bind(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    @Override
+    public Mono<Void> record(List<Msg> messages) {
+        String conversation = conversationId;
+        return Mono.defer(() -> store.record(agentId, conversation, messages));
+    }
+
+    /**
+     * 记录工作记忆中尚未写入的消息
+     */
+    Mono<Void> recordWorkingMemory() {
+        return record(List.copyOf(workingMemory.getMessages()));
+    }
+
+    @Override
+    public Mono<String> retrieve(Msg message) {
+        String conversation = conversationId;
+        return Mono.defer(() -> {
+            Set<String> inContext = new HashSet<>();
+            for (Msg msg : workingMemory.getMessages()) {
+                if (msg.getId() != null) {
+                    inContext.add(msg.getId());
+                }
+            }
+            return store.retrieve(agentId, conversation, message, inContext);
+        });
+    }
+}
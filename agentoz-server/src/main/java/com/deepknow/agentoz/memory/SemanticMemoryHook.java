@@ -0,0 +1,110 @@
+package com.deepknow.agentoz.memory;
+
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.hook.HookEvent;
+import io.agentscope.core.hook.PostCallEvent;
+import io.agentscope.core.hook.PreCallEvent;
+import io.agentscope.core.hook.PreReasoningEvent;
+import io.agentscope.core.memory.LongTermMemoryTools;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 挂载 {@link SemanticLongTermMemory}：调用开始时按最后一条用户消息检索，
+ * 召回内容只插入每次推理的模型输入（紧跟系统提示），调用结束后记录工作记忆中的新消息
+ * <p>
+ * 不使用 AgentScope 的 STATIC_CONTROL 模式：它把召回内容作为输入消息写入工作记忆，
+ * 会随 Session 持久化并在之后每一轮重复出现。检索和记录失败只记日志，不影响对话。
+ */
+@Slf4j
+public class SemanticMemoryHook implements Hook {
+
+    private static final String RECALL_NAME = "long_term_memory";
+
+    private final SemanticLongTermMemory longTermMemory;
+
+    /**
+     * 本次调用召回的内容，同一实例不会并发执行
+     */
+    private volatile Msg recalled;
+
+    SemanticMemoryHook(SemanticLongTermMemory longTermMemory) {
+        this.longTermMemory = longTermMemory;
+    }
+
+    public SemanticLongTermMemory getLongTermMemory() {
+        return longTermMemory;
+    }
+
+    public void bind(String conversationId) {
+        longTermMemory.bind(conversationId);
+    }
+
+    @Override
+    public <T extends HookEvent> Mono<T> onEvent(T event) {
+        if (event instanceof PreCallEvent preCall) {
+            recalled = null;
+            Msg query = lastUserMessage(preCall.getInputMessages());
+            if (query == null) {
+                return Mono.just(event);
+            }
+            return longTermMemory.retrieve(query)
+                    .doOnNext(text -> recalled = Msg.builder()
+                            .role(MsgRole.SYSTEM)
+                            .name(RECALL_NAME)
+                            .content(TextBlock.builder().text(LongTermMemoryTools.wrap(text)).build())
+                            .build())
+                    .onErrorResume(e -> {
+                        log.warn("语义记忆检索失败，本轮不注入: {}", e.getMessage());
+                        return Mono.empty();
+                    })
+                    .thenReturn(event);
+        }
+        if (event instanceof PreReasoningEvent preReasoning && recalled != null) {
+            List<Msg> input = preReasoning.getInputMessages();
+            int position = 0;
+            while (position < input.size() && input.get(position).getRole() == MsgRole.SYSTEM) {
+                position++;
+            }
+            List<Msg> withRecall = new ArrayList<>(input.size() + 1);
+            withRecall.addAll(input.subList(0, position));
+            withRecall.add(recalled);
+            withRecall.addAll(input.subList(position, input.size()));
+            preReasoning.setInputMessages(withRecall);
+            return Mono.just(event);
+        }
+        if (event instanceof PostCallEvent) {
+            recalled = null;
+            return longTermMemory.recordWorkingMemory()
+                    .onErrorResume(e -> {
+                        log.warn("语义记忆记录失败，下一轮结束时补录: {}", e.getMessage());
+                        return Mono.empty();
+                    })
+                    .thenReturn(event);
+        }
+        return Mono.just(event);
+    }
+
+    @Override
+    public int priority() {
+        return 50;
+    }
+
+    private static Msg lastUserMessage(List<Msg> messages) {
+        if (messages == null) {
+            return null;
+        }
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getRole() == MsgRole.USER) {
+                return messages.get(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,288 @@
+package com.deepknow.agentoz.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.memory.Memory;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话语义记忆（agentoz.memory.semantic.enabled）
+ * <p>
+ * 每个 Agent + 会话一组本地文件（{@link ConversationVectorStore}），消息向量在映射文件中，由 HNSW 索引检索；
+ * 每轮开始时只把与当前问题最相关的 top-k 条早前消息注入模型输入，而不是重放整段记录。
+ * 已在工作记忆（本轮模型输入）中的消息不会重复注入。
+ * <p>
+ * 文件在本节点磁盘上：会话按一致性哈希路由，通常回到同一节点；换节点后新节点的文件缺少早前消息，
+ * 下一轮结束时会把工作记忆中尚未记录的消息补录进来。
+ */
+@Slf4j
+@Component
+public class SemanticMemoryStore {
+
+    private final boolean enabled;
+    private final Embedder embedder;
+    private final Path directory;
+    private final int capacity;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int topK;
+    private final double minScore;
+    private final int maxEntryChars;
+
+    /**
+     * 已打开的会话文件：sessionId -> store；淘汰时写回并关闭
+     */
+    private final Cache<String, ConversationVectorStore> stores;
+
+    private final Counter stored;
+    private final Counter full;
+    private final Counter retrievalHit;
+    private final Counter retrievalMiss;
+    private final Timer searchTimer;
+
+    public SemanticMemoryStore(Embedder embedder,
+                               MeterRegistry meterRegistry,
+                               @Value("${agentoz.memory.semantic.enabled:false}") boolean enabled,
+                               @Value("${agentoz.memory.semantic.dir:./data/semantic-memory}") String directory,
+                               @Value("${agentoz.memory.semantic.capacity:4096}") int capacity,
+                               @Value("${agentoz.memory.semantic.m:16}") int m,
+                               @Value("${agentoz.memory.semantic.ef-construction:64}") int efConstruction,
+                               @Value("${agentoz.memory.semantic.ef-search:64}") int efSearch,
+                               @Value("${agentoz.memory.semantic.top-k:5}") int topK,
+                               @Value("${agentoz.memory.semantic.min-score:0.2}") double minScore,
+                               @Value("${agentoz.memory.semantic.max-entry-chars:1000}") int maxEntryChars,
+                               @Value("${agentoz.memory.semantic.max-open:256}") long maxOpen,
+                               @Value("${agentoz.memory.semantic.idle:30m}") Duration idle) {
+        this.enabled = enabled;
+        this.embedder = embedder;
+        this.directory = Path.of(directory);
+        this.capacity = Math.max(1, capacity);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.topK = Math.max(1, topK);
+        this.minScore = minScore;
+        this.maxEntryChars = Math.max(1, maxEntryChars);
+        this.stores = Caffeine.newBuilder()
+                .maximumSize(maxOpen)
+                .expireAfterAccess(idle)
+                // 在淘汰线程上同步关闭，保证同一会话不会同时存在两个打开的实例
+                .executor(Runnable::run)
+                .removalListener((String sessionId, ConversationVectorStore store, RemovalCause cause) -> {
+                    if (store != null) {
+                        closeQuietly(sessionId, store);
+                    }
+                })
+                .build();
+        this.stored = recordCounter(meterRegistry, "stored");
+        this.full = recordCounter(meterRegistry, "full");
+        this.retrievalHit = retrievalCounter(meterRegistry, "hit");
+        this.retrievalMiss = retrievalCounter(meterRegistry, "miss");
+        this.searchTimer = Timer.builder("agentoz.memory.semantic.search")
+                .description("语义记忆向量检索耗时（不含向量化）")
+                .register(meterRegistry);
+        Gauge.builder("agentoz.memory.semantic.open", stores, Cache::estimatedSize)
+                .description("已打开的会话语义记忆文件数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为 Agent 实例创建语义记忆 Hook，未开启时返回 null
+     *
+     * @param workingMemory Agent 的工作记忆，其中的消息在检索时排除
+     */
+    public Hook install(String agentId, Memory workingMemory) {
+        if (!enabled) {
+            return null;
+        }
+        return new SemanticMemoryHook(new SemanticLongTermMemory(agentId, workingMemory, this));
+    }
+
+    /**
+     * 记录尚未写入的用户和助手消息（按消息 ID 去重），一次批量向量化
+     */
+    Mono<Void> record(String agentId, String conversationId, List<Msg> messages) {
+        if (conversationId == null || messages.isEmpty()) {
+            return Mono.empty();
+        }
+        String sessionId = agentId + ":" + conversationId;
+        List<Msg> pending = withStore(agentId, conversationId, store -> {
+            List<Msg> missing = new ArrayList<>();
+            for (Msg message : messages) {
+                if (isRecordable(message) && !store.contains(message.getId())) {
+                    missing.add(message);
+                }
+            }
+            return missing;
+        });
+        if (pending.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> texts = new ArrayList<>(pending.size());
+        for (Msg message : pending) {
+            texts.add(truncate(message.getTextContent().strip()));
+        }
+        return embedder.embedDocuments(texts).doOnNext(vectors -> withStore(agentId, conversationId, store -> {
+            for (int i = 0; i < pending.size(); i++) {
+                Msg message = pending.get(i);
+                // 向量化期间可能已有其他轮次写入
+                if (store.contains(message.getId())) {
+                    continue;
+                }
+                if (!store.append(message.getId(), message.getRole(), texts.get(i), vectors.get(i))) {
+                    full.increment();
+                    log.warn("会话语义记忆已满（{} 条），之后的消息不再记录: {}", capacity, sessionId);
+                    break;
+                }
+                stored.increment();
+            }
+            return null;
+        })).then();
+    }
+
+    /**
+     * 检索与 query 最相关的早前消息，格式化为注入模型的文本；没有相关内容时为空
+     *
+     * @param excludeIds 已在工作记忆中的消息
+     */
+    Mono<String> retrieve(String agentId, String conversationId, Msg query, Set<String> excludeIds) {
+        String text = query == null ? null : query.getTextContent();
+        if (conversationId == null || text == null || text.isBlank()) {
+            return Mono.empty();
+        }
+        // 工作记忆已覆盖全部记录（会话较短，或工作记忆未裁剪）时不必检索
+        int candidates = withStore(agentId, conversationId, store -> {
+            int covered = 0;
+            for (String id : excludeIds) {
+                if (store.contains(id)) {
+                    covered++;
+                }
+            }
+            return store.size() > covered ? topK + covered : 0;
+        });
+        if (candidates == 0) {
+            return Mono.empty();
+        }
+        return embedder.embedQuery(truncate(text.strip())).flatMap(vector -> {
+            long start = System.nanoTime();
+            List<ConversationVectorStore.Entry> entries = withStore(agentId, conversationId,
+                    store -> store.search(vector, candidates, Math.max(efSearch, candidates), excludeIds, minScore, topK));
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (entries.isEmpty()) {
+                retrievalMiss.increment();
+                return Mono.empty();
+            }
+            retrievalHit.increment();
+            StringBuilder recalled = new StringBuilder("以下是本会话早前与当前问题相关的对话片段（按相关度排序）：\n");
+            for (ConversationVectorStore.Entry entry : entries) {
+                recalled.append(entry.role() == MsgRole.USER ? "用户: " : "助手: ").append(entry.text()).append('\n');
+            }
+            return Mono.just(recalled.toString());
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        stores.invalidateAll();
+        stores.cleanUp();
+    }
+
+    /**
+     * 在会话 store 上串行执行；store 恰好被淘汰关闭时重新打开
+     */
+    private <T> T withStore(String agentId, String conversationId, StoreAction<T> action) {
+        String sessionId = agentId + ":" + conversationId;
+        while (true) {
+            ConversationVectorStore store = stores.get(sessionId, key -> open(agentId, conversationId));
+            synchronized (store) {
+                if (store.isClosed()) {
+                    continue;
+                }
+                try {
+                    return action.apply(store);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("读写会话语义记忆失败: " + sessionId, e);
+                }
+            }
+        }
+    }
+
+    private ConversationVectorStore open(String agentId, String conversationId) {
+        try {
+            // 目录和文件名加前缀，避免 "." ".." 等 ID 被解释为路径
+            return new ConversationVectorStore(directory.resolve("a-" + encode(agentId)),
+                    "c-" + encode(conversationId), capacity, m, efConstruction);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开会话语义记忆失败: " + agentId + ":" + conversationId, e);
+        }
+    }
+
+    private static boolean isRecordable(Msg message) {
+        if (message.getId() == null || (message.getRole() != MsgRole.USER && message.getRole() != MsgRole.ASSISTANT)) {
+            return false;
+        }
+        String text = message.getTextContent();
+        return text != null && !text.isBlank();
+    }
+
+    private String truncate(String text) {
+        return text.length() > maxEntryChars ? text.substring(0, maxEntryChars) : text;
+    }
+
+    private static String encode(String id) {
+        return URLEncoder.encode(id, StandardCharsets.UTF_8);
+    }
+
+    private static void closeQuietly(String sessionId, ConversationVectorStore store) {
+        synchronized (store) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                log.warn("关闭会话语义记忆失败: {}", sessionId, e);
+            }
+        }
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.memory.semantic.records")
+                .description("写入会话语义记忆的消息数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter retrievalCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.memory.semantic.retrievals")
+                .description("语义记忆检索次数（hit 表示注入了早前消息）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface StoreAction<T> {
+        T apply(ConversationVectorStore store) throws IOException;
+    }
+}
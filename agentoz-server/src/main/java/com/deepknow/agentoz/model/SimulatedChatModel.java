@@ -0,0 +1,223 @@
+package com.deepknow.agentoz.model;
+
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import io.agentscope.core.message.ToolUseBlock;
+import io.agentscope.core.model.ChatModelBase;
+import io.agentscope.core.model.ChatResponse;
+import io.agentscope.core.model.ChatUsage;
+import io.agentscope.core.model.GenerateOptions;
+import io.agentscope.core.model.ToolSchema;
+import lombok.Builder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 模拟流式模型（压测用，不产生真实模型调用）
+ * <p>
+ * 首 Token 延迟和 Token 间隔服从对数正态分布，按概率发起工具调用或在流中途失败。
+ * 随机数种子由配置种子和输入消息共同决定：相同的对话输入得到相同的输出、延迟和故障，压测结果可复现。
+ */
+public class SimulatedChatModel extends ChatModelBase {
+
+    private static final String[] VOCABULARY = {
+            "智能体", "会话", "模拟", "响应", "数据", "工具", "结果", "分析", "任务", "上下文", "，", "。"
+    };
+
+    private final Settings settings;
+
+    public SimulatedChatModel(Settings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    protected Flux<ChatResponse> doStream(List<Msg> messages, List<ToolSchema> tools, GenerateOptions options) {
+        return Flux.defer(() -> {
+            SplittableRandom random = new SplittableRandom(settings.seed() ^ fingerprint(messages));
+            List<ChatResponse> chunks = plan(random, messages, tools);
+
+            Flux<ChatResponse> stream = Flux.range(0, chunks.size())
+                    .concatMap(i -> Mono.delay(i == 0
+                                    ? sample(random, settings.firstTokenLatency())
+                                    : sample(random, settings.interTokenLatency()))
+                            .thenReturn(chunks.get(i)));
+            if (random.nextDouble() < settings.failureRate()) {
+                // 故障位置均匀分布：0 表示首 Token 之前失败（限流、超时），其余为流中途断开
+                int failAt = random.nextInt(chunks.size());
+                return stream.take(failAt)
+                        .concatWith(Flux.error(new SimulatedModelException(
+                                "Simulated model failure after " + failAt + " chunks")));
+            }
+            return stream;
+        });
+    }
+
+    @Override
+    public String getModelName() {
+        return "simulated";
+    }
+
+    private List<ChatResponse> plan(SplittableRandom random, List<Msg> messages, List<ToolSchema> tools) {
+        boolean callTool = tools != null && !tools.isEmpty()
+                && toolRoundsSinceUser(messages) < settings.maxToolRounds()
+                && random.nextDouble() < settings.toolCallRate();
+        int outputTokens = callTool
+                ? 1 + random.nextInt(Math.max(1, settings.outputTokens() / 8))
+                : Math.max(1, settings.outputTokens() / 2 + random.nextInt(Math.max(1, settings.outputTokens())));
+
+        List<ChatResponse> chunks = new ArrayList<>(outputTokens + 2);
+        for (int i = 0; i < outputTokens; i++) {
+            chunks.add(chunk(i, List.of(TextBlock.builder()
+                    .text(VOCABULARY[random.nextInt(VOCABULARY.length)])
+                    .build()), null, null));
+        }
+        if (callTool) {
+            ToolSchema tool = tools.get(random.nextInt(tools.size()));
+            chunks.add(chunk(chunks.size(), List.of(ToolUseBlock.builder()
+                    .id("call_sim_" + Long.toHexString(random.nextLong()))
+                    .name(tool.getName())
+                    .input(arguments(tool))
+                    .build()), null, null));
+        }
+        ChatUsage usage = new ChatUsage(estimateTokens(messages), outputTokens, 0);
+        chunks.add(chunk(chunks.size(), List.of(), usage, callTool ? "tool_calls" : "stop"));
+        return chunks;
+    }
+
+    private static ChatResponse chunk(int index, List<ContentBlock> content, ChatUsage usage, String finishReason) {
+        return ChatResponse.builder()
+                .id("sim-" + index)
+                .content(content)
+                .usage(usage)
+                .finishReason(finishReason)
+                .build();
+    }
+
+    /**
+     * 按工具 Schema 的必填参数生成调用参数
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> arguments(ToolSchema tool) {
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        Map<String, Object> parameters = tool.getParameters();
+        if (parameters == null) {
+            return arguments;
+        }
+        Map<String, Object> properties = (Map<String, Object>) parameters.getOrDefault("properties", Map.of());
+        List<String> required = (List<String>) parameters.getOrDefault("required", List.of());
+        for (String name : required) {
+            Object property = properties.get(name);
+            Object type = property instanceof Map<?, ?> map ? map.get("type") : null;
+            arguments.put(name, switch (String.valueOf(type)) {
+                case "integer", "number" -> 1;
+                case "boolean" -> true;
+                case "array" -> List.of();
+                case "object" -> Map.of();
+                default -> "模拟参数";
+            });
+        }
+        return arguments;
+    }
+
+    /**
+     * 最近一条用户消息之后已经发起的工具调用轮数，避免无限循环调用工具
+     */
+    private static int toolRoundsSinceUser(List<Msg> messages) {
+        int rounds = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Msg msg = messages.get(i);
+            if (msg.getRole() == MsgRole.USER) {
+                break;
+            }
+            if (msg.hasContentBlocks(ToolUseBlock.class)) {
+                rounds++;
+            }
+        }
+        return rounds;
+    }
+
+    private static long fingerprint(List<Msg> messages) {
+        long hash = messages.size();
+        if (!messages.isEmpty()) {
+            String text = messages.get(messages.size() - 1).getTextContent();
+            hash = hash * 31 + (text == null ? 0 : text.hashCode());
+        }
+        return hash;
+    }
+
+    /**
+     * 按字符数粗略估算输入 Token 数
+     */
+    private static int estimateTokens(List<Msg> messages) {
+        long chars = 0;
+        for (Msg msg : messages) {
+            String text = msg.getTextContent();
+            chars += text == null ? 0 : text.length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars / 2 + 1);
+    }
+
+    /**
+     * 对数正态采样：中位数为配置值，sigma 控制长尾
+     */
+    private Duration sample(SplittableRandom random, Duration median) {
+        if (median.isZero()) {
+            return Duration.ZERO;
+        }
+        double gaussian = gaussian(random);
+        long nanos = (long) (median.toNanos() * Math.exp(settings.latencySigma() * gaussian));
+        return Duration.ofNanos(Math.min(nanos, settings.maxLatency().toNanos()));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    /**
+     * 模拟参数
+     *
+     * @param seed              随机数种子
+     * @param firstTokenLatency 首 Token 延迟中位数
+     * @param interTokenLatency Token 间隔中位数
+     * @param latencySigma      延迟对数正态分布的 sigma，越大长尾越重
+     * @param maxLatency        单次延迟上限
+     * @param outputTokens      平均输出 Token 数
+     * @param toolCallRate      有可用工具时发起工具调用的概率
+     * @param maxToolRounds     一轮用户输入内最多连续发起的工具调用次数
+     * @param failureRate       单次模型调用失败的概率
+     */
+    @Builder
+    public record Settings(
+            long seed,
+            Duration firstTokenLatency,
+            Duration interTokenLatency,
+            double latencySigma,
+            Duration maxLatency,
+            int outputTokens,
+            double toolCallRate,
+            int maxToolRounds,
+            double failureRate
+    ) {}
+
+    /**
+     * 模拟的模型调用失败
+     */
+    public static class SimulatedModelException extends RuntimeException {
+
+        public SimulatedModelException(String message) {
+            super(message);
+        }
+    }
+}
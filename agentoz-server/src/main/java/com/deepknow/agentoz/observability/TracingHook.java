@@ -0,0 +1,94 @@
+package com.deepknow.agentoz.observability;
+
+import io.agentscope.core.hook.ErrorEvent;
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.hook.HookEvent;
+import io.agentscope.core.hook.PostActingEvent;
+import io.agentscope.core.hook.PostReasoningEvent;
+import io.agentscope.core.hook.PreActingEvent;
+import io.agentscope.core.hook.PreReasoningEvent;
+import io.agentscope.core.hook.ReasoningChunkEvent;
+import io.micrometer.observation.Observation;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录推理步骤和工具调用的 Hook
+ * <p>
+ * agentoz.reasoning{model}：每个推理步骤；agentoz.tool{tool, kind=tool|subagent}：每次工具 / 子智能体调用
+ */
+class TracingHook implements Hook {
+
+    /**
+     * 子智能体注册为工具时的名称前缀，见 AgentManager#createAgentWithSubAgents
+     */
+    private static final String SUB_AGENT_PREFIX = "call_";
+
+    private final TurnObservation turn;
+
+    private volatile Observation reasoning;
+    private final Map<String, Observation> tools = new ConcurrentHashMap<>();
+    private int step;
+
+    TracingHook(TurnObservation turn) {
+        this.turn = turn;
+    }
+
+    @Override
+    public <T extends HookEvent> Mono<T> onEvent(T event) {
+        if (event instanceof PreReasoningEvent preReasoning) {
+            turn.model(preReasoning.getModelName());
+            step++;
+            reasoning = turn.child("agentoz.reasoning", "reasoning")
+                    .lowCardinalityKeyValue("model", turn.modelTag())
+                    .highCardinalityKeyValue("step", String.valueOf(step))
+                    .start();
+        } else if (event instanceof ReasoningChunkEvent) {
+            turn.firstToken();
+        } else if (event instanceof PostReasoningEvent) {
+            stop(reasoning, null);
+            reasoning = null;
+        } else if (event instanceof PreActingEvent preActing) {
+            String toolName = preActing.getToolUse().getName();
+            Observation tool = turn.child("agentoz.tool", "tool " + toolName)
+                    .lowCardinalityKeyValue("tool", turn.toolTag(toolName))
+                    .lowCardinalityKeyValue("kind", toolName != null && toolName.startsWith(SUB_AGENT_PREFIX)
+                            ? "subagent" : "tool")
+                    .start();
+            tools.put(preActing.getToolUse().getId(), tool);
+        } else if (event instanceof PostActingEvent postActing) {
+            stop(tools.remove(postActing.getToolUse().getId()), null);
+        } else if (event instanceof ErrorEvent errorEvent) {
+            closeOpen(errorEvent.getError());
+        }
+        return Mono.just(event);
+    }
+
+    @Override
+    public int priority() {
+        // 先于其他 Hook 执行，计时不包含它们的耗时
+        return 10;
+    }
+
+    /**
+     * 结束仍未关闭的子 Observation（出错或被打断时）
+     */
+    void closeOpen(Throwable error) {
+        stop(reasoning, error);
+        reasoning = null;
+        tools.values().forEach(tool -> stop(tool, error));
+        tools.clear();
+    }
+
+    private static void stop(Observation observation, Throwable error) {
+        if (observation == null) {
+            return;
+        }
+        if (error != null) {
+            observation.error(error);
+        }
+        observation.stop();
+    }
+}
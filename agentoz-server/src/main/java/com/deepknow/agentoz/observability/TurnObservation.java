@@ -0,0 +1,132 @@
+package com.deepknow.agentoz.observability;
+
+import io.agentscope.core.hook.Hook;
+import io.micrometer.observation.Observation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 一轮对话的观测
+ * <p>
+ * 阶段（定义查询、Session 加载 / 保存，均为阻塞步骤）用 {@link #stage} 包裹，推理步骤和工具调用由 {@link #hook()}
+ * 在 Agent 事件上记录，均作为本轮的子 Observation；{@link #stop} 幂等，结束整轮。
+ * 流式对话在客户端断开后轮次仍继续执行，因此开始后以轮次的结束而不是事件流的取消为准（{@link #turnStarted}）。
+ */
+public class TurnObservation {
+
+    private final TurnObservations observations;
+    private final Observation observation;
+    private final String operation;
+    private final String agentTag;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicBoolean firstTokenSeen = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final TracingHook hook;
+
+    private volatile boolean started;
+
+    private volatile String modelTag = TurnObservations.UNKNOWN;
+
+    TurnObservation(TurnObservations observations, Observation observation, String operation, String agentTag) {
+        this.observations = observations;
+        this.observation = observation;
+        this.operation = operation;
+        this.agentTag = agentTag;
+        this.hook = new TracingHook(this);
+    }
+
+    /**
+     * 记录一个同步阶段：agentoz.turn.stage{stage=...}
+     */
+    public <T> T stage(String stage, Supplier<T> body) {
+        observations.checkBlocking(stage);
+        Observation child = child("agentoz.turn.stage", stage)
+                .lowCardinalityKeyValue("stage", stage)
+                .start();
+        try {
+            return body.get();
+        } catch (RuntimeException e) {
+            child.error(e);
+            throw e;
+        } finally {
+            child.stop();
+        }
+    }
+
+    public void stage(String stage, Runnable body) {
+        stage(stage, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * 挂到本轮使用的 Agent 上，结束后需移除
+     */
+    public Hook hook() {
+        return hook;
+    }
+
+    /**
+     * 轮次已开始执行：之后由轮次结束时 {@link #stop}，客户端断开不结束观测
+     */
+    public void turnStarted() {
+        started = true;
+    }
+
+    /**
+     * 轮次开始前请求被取消时结束观测
+     */
+    public void stopUnlessStarted() {
+        if (!started) {
+            stop();
+        }
+    }
+
+    public void stop() {
+        if (stopped.compareAndSet(false, true)) {
+            hook.closeOpen(null);
+            observation.lowCardinalityKeyValue("model", modelTag);
+            observation.stop();
+        }
+    }
+
+    public void stop(Throwable error) {
+        if (error != null && !stopped.get()) {
+            observation.error(error);
+            hook.closeOpen(error);
+        }
+        stop();
+    }
+
+    void model(String modelName) {
+        if (TurnObservations.UNKNOWN.equals(modelTag)) {
+            modelTag = observations.modelTag(modelName);
+        }
+    }
+
+    void firstToken() {
+        if (firstTokenSeen.compareAndSet(false, true)) {
+            observations.firstTokenTimer(operation, agentTag, modelTag)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            observation.event(Observation.Event.of("first.token"));
+        }
+    }
+
+    Observation child(String name, String contextualName) {
+        return observations.child(observation, name, contextualName)
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("agent", agentTag);
+    }
+
+    String toolTag(String toolName) {
+        return observations.toolTag(toolName);
+    }
+
+    String modelTag() {
+        return modelTag;
+    }
+}
@@ -0,0 +1,115 @@
+package com.deepknow.agentoz.observability;
+
+import com.deepknow.agentoz.execution.BlockingCallDetector;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对话链路观测入口
+ * <p>
+ * 基于 Micrometer Observation，同时产生指标（Timer）和链路 Span（接入 OpenTelemetry bridge 时）。
+ * 指标标签只使用低基数取值：agent、tool 各自最多保留 max-tag-values 个不同取值，超出归为 "other"；
+ * conversationId 等高基数字段只写入 Span，不进入指标。
+ */
+@Slf4j
+@Component
+public class TurnObservations {
+
+    public static final String OTHER = "other";
+    public static final String UNKNOWN = "unknown";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final BlockingCallDetector blockingCallDetector;
+    private final int maxTagValues;
+
+    private final Set<String> agentTags = ConcurrentHashMap.newKeySet();
+    private final Set<String> toolTags = ConcurrentHashMap.newKeySet();
+    private final Set<String> modelTags = ConcurrentHashMap.newKeySet();
+
+    public TurnObservations(ObservationRegistry observationRegistry,
+                            MeterRegistry meterRegistry,
+                            BlockingCallDetector blockingCallDetector,
+                            @Value("${agentoz.observability.max-tag-values:200}") int maxTagValues) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.blockingCallDetector = blockingCallDetector;
+        this.maxTagValues = maxTagValues;
+    }
+
+    /**
+     * 开始观测一轮对话
+     *
+     * @param operation chat / stream / task
+     */
+    public TurnObservation start(String operation, String agentId, String conversationId) {
+        String agentTag = agentTag(agentId);
+        Observation observation = Observation.createNotStarted("agentoz.turn", observationRegistry)
+                .contextualName("turn " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("agent", agentTag)
+                .highCardinalityKeyValue("conversation.id", conversationId == null ? UNKNOWN : conversationId)
+                .start();
+        return new TurnObservation(this, observation, operation, agentTag);
+    }
+
+    Observation child(Observation parent, String name, String contextualName) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .contextualName(contextualName)
+                .parentObservation(parent);
+    }
+
+    /**
+     * 阶段都是阻塞步骤：开启检测时确认当前线程允许阻塞
+     */
+    void checkBlocking(String stage) {
+        blockingCallDetector.check(stage);
+    }
+
+    Timer firstTokenTimer(String operation, String agentTag, String modelTag) {
+        return Timer.builder("agentoz.turn.first.token")
+                .description("从收到请求到首个 token 的耗时")
+                .tag("operation", operation)
+                .tag("agent", agentTag)
+                .tag("model", modelTag)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    String agentTag(String agentId) {
+        return limit(agentTags, agentId);
+    }
+
+    String toolTag(String toolName) {
+        return limit(toolTags, toolName);
+    }
+
+    String modelTag(String modelName) {
+        return limit(modelTags, modelName);
+    }
+
+    /**
+     * 限制标签基数：已出现过或名额未满的取值原样使用，否则归为 other
+     */
+    private String limit(Set<String> seen, String value) {
+        if (value == null || value.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (seen.contains(value)) {
+            return value;
+        }
+        if (seen.size() < maxTagValues) {
+            seen.add(value);
+            return value;
+        }
+        return OTHER;
+    }
+}
@@ -1,32 +1,49 @@
 package com.deepknow.agentoz.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.deepknow.agentoz.admission.AdmissionController;
+import com.deepknow.agentoz.admission.AdmissionRejectedException;
 import com.deepknow.agentoz.api.dto.*;
 import com.deepknow.agentoz.api.enums.EventType;
 import com.deepknow.agentoz.api.service.AgentService;
+import com.deepknow.agentoz.api.stream.CompactStreamCodec;
+import com.deepknow.agentoz.batch.BatchChatExecutor;
 import com.deepknow.agentoz.entity.AgentEntity;
+import com.deepknow.agentoz.execution.BlockingScheduler;
+import com.deepknow.agentoz.lifecycle.ServiceDrainingException;
 import com.deepknow.agentoz.manager.AgentManager;
+import com.deepknow.agentoz.manager.ChatTurn;
 import com.deepknow.agentoz.manager.StreamingHook;
 import com.deepknow.agentoz.mapper.AgentMapper;
+import com.deepknow.agentoz.observability.TurnObservation;
+import com.deepknow.agentoz.observability.TurnObservations;
 import com.deepknow.agentoz.session.RedisSession;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.deepknow.agentoz.stream.TurnStream;
+import com.deepknow.agentoz.stream.TurnStreamRegistry;
+import com.deepknow.agentoz.task.AsyncTaskManager;
+import com.deepknow.agentoz.usage.TokenAccounting;
 import io.agentscope.core.ReActAgent;
 import io.agentscope.core.message.Msg;
 import io.agentscope.core.session.Session;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.DubboService;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Dubbo 对话服务
+ * <p>
+ * 方法在 Dubbo 提供者线程上被订阅，查库、读写 Redis、取会话租约等阻塞步骤都经 {@link BlockingScheduler} 执行；
+ * 模型流式输出后保存 Session 同样切回该调度器，不占用模型客户端的 IO 线程。
+ */
 @Slf4j
 @DubboService
 @RequiredArgsConstructor
@@ -34,28 +51,30 @@ public class AgentServiceImpl implements AgentService {
 
     private final AgentManager agentManager;
     private final AgentMapper agentMapper;
-    private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final RedisSession redisSession;
+    private final AsyncTaskManager asyncTaskManager;
+    private final TurnObservations turnObservations;
+    private final TokenAccounting tokenAccounting;
+    private final TurnStreamRegistry turnStreams;
+    private final AdmissionController admissionController;
+    private final BatchChatExecutor batchChatExecutor;
+    private final BlockingScheduler blockingScheduler;
 
     /**
      * 活跃会话的打断标记
      */
     private final Map<String, Boolean> interruptFlags = new ConcurrentHashMap<>();
 
-    private Session getSession() {
-        return new RedisSession(redisTemplate, objectMapper);
-    }
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
 
-    /**
-     * 组装 Redis sessionId = agentId:conversationId
-     */
-    private String buildRedisSessionId(String agentId, String conversationId) {
-        return agentId + ":" + conversationId;
+    private Session getSession() {
+        return redisSession;
     }
 
     @Override
     public Mono<SessionInitResponse> initSession(SessionInitRequest request) {
-        return Mono.fromCallable(() -> {
+        return blockingScheduler.fromCallable(() -> {
             String sessionId = request.getSessionId();
             String primaryAgentId = request.getPrimaryAgentId();
 
@@ -123,96 +142,122 @@ public class AgentServiceImpl implements AgentService {
     public Flux<AgentChatResponse> streamChat(AgentChatRequest request) {
         String agentId = request.getAgentId();
         String conversationId = request.getSessionId();  // paper 传来的是 conversationId
-        String redisSessionId = buildRedisSessionId(agentId, conversationId);
 
-        return Mono.fromCallable(() -> {
+        return Flux.defer(() -> {
+            TurnObservation observation = turnObservations.start("stream", agentId, conversationId);
+            // 轮次开始后客户端断开不结束观测，由轮次结束时结束
+            return streamChat(request, agentId, conversationId, observation)
+                    .doOnCancel(observation::stopUnlessStarted);
+        });
+    }
+
+    private Flux<AgentChatResponse> streamChat(AgentChatRequest request, String agentId, String conversationId,
+                                               TurnObservation observation) {
+        return admissionController.admit(request.getContext())
+                .flatMapMany(permit -> streamChat(request, agentId, conversationId, observation, permit)
+                        // 轮次开始前失败或被取消时归还名额，开始后由轮次结束时归还
+                        .doOnError(e -> permit.releaseUnlessTransferred())
+                        .doOnCancel(permit::releaseUnlessTransferred))
+                .onErrorResume(e -> {
+                    logFailure("流式对话失败", e);
+                    observation.stop(e);
+                    return Flux.just(AgentChatResponse.builder()
+                            .sessionId(conversationId)
+                            .agentId(agentId)
+                            .content("错误: " + e.getMessage())
+                            .eventType(EventType.ERROR.name())
+                            .finished(true)
+                            .retryAfterMs(retryAfterMs(e))
+                            .build());
+                });
+    }
+
+    private Flux<AgentChatResponse> streamChat(AgentChatRequest request, String agentId, String conversationId,
+                                               TurnObservation observation, AdmissionController.Permit permit) {
+        // 之后的 beginTurn（取租约、加载 Session）随定义查询的结果一起在阻塞调度器上执行
+        return blockingScheduler.fromCallable(() -> {
                     if (agentId == null || agentId.isEmpty()) {
                         throw new IllegalArgumentException("agentId 不能为空");
                     }
-                    if (conversationId == null || conversationId.isEmpty()) {
-                        throw new IllegalArgumentException("conversationId 不能为空");
-                    }
-                    return agentManager.getAgentDefinition(agentId);
+                    return observation.stage("definition_lookup", () -> agentManager.getAgentDefinition(agentId));
                 })
                 .flatMapMany(definition -> {
                     if (definition == null) {
                         return Flux.error(new IllegalArgumentException("Agent 不存在: " + agentId));
                     }
 
-                    Sinks.Many<AgentChatResponse> sink = Sinks.many().unicast().onBackpressureBuffer();
-                    Session session = getSession();
+                    ChatTurn turn = beginTurn(request, definition, observation);
+                    ReActAgent agent = turn.getAgent();
 
-                    StreamingHook streamingHook = new StreamingHook(event -> {
-                        AgentChatResponse response = switch (event.type()) {
-                            case TEXT -> AgentChatResponse.builder()
-                                    .sessionId(conversationId)
-                                    .agentId(agentId)
-                                    .content(event.content())
-                                    .eventType(EventType.TEXT.name())
-                                    .finished(false)
-                                    .build();
-                            case THINKING -> AgentChatResponse.builder()
-                                    .sessionId(conversationId)
-                                    .agentId(agentId)
-                                    .content(event.content())
-                                    .eventType(EventType.THINKING.name())
-                                    .finished(false)
-                                    .build();
-                            case TOOL_CALL -> AgentChatResponse.builder()
-                                    .sessionId(conversationId)
-                                    .agentId(agentId)
-                                    .content(event.content())
-                                    .eventType(EventType.TOOL_CALL.name())
-                                    .finished(false)
-                                    .build();
-                            case TOOL_RESULT -> AgentChatResponse.builder()
-                                    .sessionId(conversationId)
-                                    .agentId(agentId)
-                                    .content(event.content())
-                                    .eventType(EventType.TOOL_RESULT.name())
-                                    .finished(false)
-                                    .build();
-                        };
-                        sink.tryEmitNext(response);
-                    });
-
-                    // 获取 Agent 并加载 Session 状态（使用 redisSessionId）
-                    ReActAgent agent = agentManager.getAgentWithSession(agentId, session, redisSessionId);
+                    // 事件编号并保留在重放缓冲区，客户端断开后轮次继续执行，可通过 resumeStream 重新接上
+                    TurnStream stream = turn.isStateless()
+                            ? turnStreams.openDetached(turn.getSessionId(), turn.getTurnId())
+                            : turnStreams.open(turn.getSessionId(), turn.getTurnId());
+                    StreamResponseTemplate responses = new StreamResponseTemplate(conversationId, agentId, stream::emit);
+                    StreamingHook streamingHook = new StreamingHook(responses);
                     agent.getHooks().add(streamingHook);
+                    agent.getHooks().add(observation.hook());
 
                     Msg userMsg = Msg.builder()
                             .name("user")
                             .textContent(request.getMessage())
                             .build();
 
-                    agent.call(userMsg)
+                    permit.transfer();
+                    observation.turnStarted();
+                    turn.attach(agent.call(userMsg)
+                            // 保存 Session、释放租约是阻塞调用，切离模型客户端的 IO 线程
+                            .publishOn(blockingScheduler.scheduler())
                             .doOnSuccess(response -> {
-                                // 保存 Session 状态（使用 redisSessionId）
-                                agentManager.saveAgentSession(agentId, session, redisSessionId);
-                                sink.tryEmitNext(AgentChatResponse.builder()
-                                        .sessionId(conversationId)
-                                        .agentId(agentId)
-                                        .eventType(EventType.DONE.name())
-                                        .finished(true)
-                                        .build());
-                                sink.tryEmitComplete();
+                                // 保存 Session 状态并记录本轮历史
+                                completeTurn(turn, observation);
+                                responses.done();
+                                turnStreams.finish(stream);
                             })
                             .doOnError(e -> {
-                                sink.tryEmitNext(AgentChatResponse.builder()
-                                        .sessionId(conversationId)
-                                        .agentId(agentId)
-                                        .content("错误: " + e.getMessage())
-                                        .eventType(EventType.ERROR.name())
-                                        .finished(true)
-                                        .build());
-                                sink.tryEmitComplete();
+                                observation.stop(e);
+                                responses.error(e);
+                                turnStreams.finish(stream);
+                            })
+                            .doOnCancel(() -> {
+                                // 仅在排空超时时发生（DrainCoordinator），检查点由 releaseTurn 保存
+                                ServiceDrainingException e = new ServiceDrainingException();
+                                observation.stop(e);
+                                responses.error(e);
+                                turnStreams.finish(stream);
                             })
-                            .subscribe();
+                            .doFinally(signal -> {
+                                agent.getHooks().remove(streamingHook);
+                                agent.getHooks().remove(observation.hook());
+                                agentManager.releaseTurn(turn);
+                                permit.release();
+                                observation.stop();
+                            })
+                            .subscribe());
 
-                    return sink.asFlux();
+                    return stream.events();
+                });
+    }
+
+    @Override
+    public Flux<AgentChatResponse> resumeStream(AgentChatRequest request) {
+        String agentId = request.getAgentId();
+        String conversationId = request.getSessionId();
+
+        return Flux.defer(() -> {
+                    if (agentId == null || agentId.isEmpty()) {
+                        throw new IllegalArgumentException("agentId 不能为空");
+                    }
+                    if (conversationId == null || conversationId.isEmpty()) {
+                        throw new IllegalArgumentException("conversationId 不能为空");
+                    }
+                    long afterSeq = request.getLastSeq() == null ? 0 : request.getLastSeq();
+                    log.info("恢复事件流: sessionId={}, turnId={}, lastSeq={}", conversationId, request.getTurnId(), afterSeq);
+                    return turnStreams.resume(AgentManager.buildSessionId(agentId, conversationId),
+                            request.getTurnId(), afterSeq);
                 })
                 .onErrorResume(e -> {
-                    log.error("流式对话失败", e);
+                    log.warn("恢复事件流失败: sessionId={}, {}", conversationId, e.getMessage());
                     return Flux.just(AgentChatResponse.builder()
                             .sessionId(conversationId)
                             .agentId(agentId)
@@ -223,36 +268,81 @@ public class AgentServiceImpl implements AgentService {
                 });
     }
 
+    @Override
+    public Flux<byte[]> streamChatCompact(AgentChatRequest request) {
+        return Flux.concat(
+                blockingScheduler.fromCallable(() -> {
+                    AgentEntity definition = request.getAgentId() == null
+                            ? null : agentManager.getAgentDefinition(request.getAgentId());
+                    return CompactStreamCodec.header(request.getSessionId(), request.getAgentId(),
+                            definition == null ? null : definition.getName());
+                }),
+                streamChat(request).map(CompactStreamCodec::event));
+    }
+
     @Override
     public Mono<AgentChatResponse> chat(AgentChatRequest request) {
         String agentId = request.getAgentId();
         String conversationId = request.getSessionId();  // paper 传来的是 conversationId
-        String redisSessionId = buildRedisSessionId(agentId, conversationId);
 
-        return Mono.fromCallable(() -> {
+        return Mono.defer(() -> {
+            TurnObservation observation = turnObservations.start("chat", agentId, conversationId);
+            return chat(request, agentId, conversationId, observation)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    private Mono<AgentChatResponse> chat(AgentChatRequest request, String agentId, String conversationId,
+                                         TurnObservation observation) {
+        return admissionController.admit(request.getContext())
+                .flatMap(permit -> chat(request, agentId, conversationId, observation, permit)
+                        .doOnError(e -> permit.releaseUnlessTransferred())
+                        .doOnCancel(permit::releaseUnlessTransferred))
+                .onErrorResume(e -> {
+                    logFailure("对话失败", e);
+                    observation.stop(e);
+                    return Mono.just(AgentChatResponse.builder()
+                            .sessionId(conversationId)
+                            .agentId(agentId)
+                            .content("错误: " + e.getMessage())
+                            .eventType(EventType.ERROR.name())
+                            .finished(true)
+                            .retryAfterMs(retryAfterMs(e))
+                            .build());
+                });
+    }
+
+    private Mono<AgentChatResponse> chat(AgentChatRequest request, String agentId, String conversationId,
+                                         TurnObservation observation, AdmissionController.Permit permit) {
+        return blockingScheduler.fromCallable(() -> {
                     if (agentId == null || agentId.isEmpty()) {
                         throw new IllegalArgumentException("agentId 不能为空");
                     }
-                    if (conversationId == null || conversationId.isEmpty()) {
-                        throw new IllegalArgumentException("conversationId 不能为空");
-                    }
-                    return agentManager.getAgentDefinition(agentId);
+                    return observation.stage("definition_lookup", () -> agentManager.getAgentDefinition(agentId));
                 })
                 .flatMap(definition -> {
                     if (definition == null) {
                         return Mono.error(new IllegalArgumentException("Agent 不存在: " + agentId));
                     }
 
-                    Session session = getSession();
-                    ReActAgent agent = agentManager.getAgentWithSession(agentId, session, redisSessionId);
+                    ChatTurn turn = beginTurn(request, definition, observation);
+                    ReActAgent agent = turn.getAgent();
+                    agent.getHooks().add(observation.hook());
 
                     Msg userMsg = Msg.builder()
                             .name("user")
                             .textContent(request.getMessage())
                             .build();
 
-                    return agent.call(userMsg)
-                            .doOnSuccess(resp -> agentManager.saveAgentSession(agentId, session, redisSessionId))
+                    permit.transfer();
+                    return turn.execute(agent.call(userMsg)
+                                    .publishOn(blockingScheduler.scheduler())
+                                    .doOnSuccess(resp -> completeTurn(turn, observation))
+                                    .doFinally(signal -> {
+                                        agent.getHooks().remove(observation.hook());
+                                        agentManager.releaseTurn(turn);
+                                        permit.release();
+                                    }))
                             .map(response -> AgentChatResponse.builder()
                                     .sessionId(conversationId)
                                     .agentId(agentId)
@@ -260,12 +350,15 @@ public class AgentServiceImpl implements AgentService {
                                     .eventType(EventType.TEXT.name())
                                     .finished(true)
                                     .build());
-                })
+                });
+    }
+
+    @Override
+    public Flux<AgentChatResponse> batchChat(BatchChatRequest request) {
+        return batchChatExecutor.execute(request)
                 .onErrorResume(e -> {
-                    log.error("对话失败", e);
-                    return Mono.just(AgentChatResponse.builder()
-                            .sessionId(conversationId)
-                            .agentId(agentId)
+                    log.warn("批量对话失败: {}", e.getMessage());
+                    return Flux.just(AgentChatResponse.builder()
                             .content("错误: " + e.getMessage())
                             .eventType(EventType.ERROR.name())
                             .finished(true)
@@ -273,9 +366,51 @@ public class AgentServiceImpl implements AgentService {
                 });
     }
 
+    /**
+     * 开始一轮对话：请求或 Agent 定义要求无状态时不加载 Session，否则加载 Session 状态（sessionId = agentId:conversationId）
+     */
+    private ChatTurn beginTurn(AgentChatRequest request, AgentEntity definition, TurnObservation observation) {
+        String agentId = request.getAgentId();
+        String conversationId = request.getSessionId();
+        if (Boolean.TRUE.equals(request.getStateless()) || AgentManager.isStateless(definition)) {
+            return agentManager.beginStatelessTurn(agentId, conversationId);
+        }
+        if (conversationId == null || conversationId.isEmpty()) {
+            throw new IllegalArgumentException("conversationId 不能为空");
+        }
+        Session session = getSession();
+        return observation.stage("session_load", () -> agentManager.beginTurn(agentId, conversationId, session));
+    }
+
+    /**
+     * 无状态轮次没有 Session 读写，不记录 session_save 阶段
+     */
+    private void completeTurn(ChatTurn turn, TurnObservation observation) {
+        if (turn.isStateless()) {
+            agentManager.completeTurn(turn);
+        } else {
+            observation.stage("session_save", () -> agentManager.completeTurn(turn));
+        }
+    }
+
+    /**
+     * 过载拒绝是预期内的快速失败，不打印堆栈，避免过载时日志放大
+     */
+    private static void logFailure(String message, Throwable e) {
+        if (e instanceof AdmissionRejectedException) {
+            log.warn("{}: {}", message, e.getMessage());
+        } else {
+            log.error(message, e);
+        }
+    }
+
+    private static Long retryAfterMs(Throwable e) {
+        return e instanceof AdmissionRejectedException rejected ? rejected.getRetryAfter().toMillis() : null;
+    }
+
     @Override
     public Mono<AgentDefinitionDTO> getAgent(String agentId) {
-        return Mono.fromCallable(() -> {
+        return blockingScheduler.fromCallable(() -> {
             AgentEntity entity = agentManager.getAgentDefinition(agentId);
             if (entity == null) {
                 entity = agentMapper.selectById(agentId);
@@ -286,17 +421,71 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Mono<List<AgentDefinitionDTO>> listAgents() {
-        return Mono.fromCallable(() -> {
-            List<AgentEntity> entities = agentMapper.selectList(
-                    new LambdaQueryWrapper<AgentEntity>().eq(AgentEntity::getEnabled, true)
-            );
-            return entities.stream().map(this::toDTO).toList();
+        // 启用的定义已全部缓存在 AgentManager 中，无需查库
+        return Mono.fromCallable(() -> agentManager.listAgentDefinitions().stream().map(this::toDTO).toList());
+    }
+
+    @Override
+    public Mono<AgentPageResponse> listAgentPage(AgentListRequest request) {
+        return blockingScheduler.fromCallable(() -> {
+            int pageSize = request.getPageSize() == null || request.getPageSize() <= 0
+                    ? DEFAULT_PAGE_SIZE
+                    : Math.min(request.getPageSize(), MAX_PAGE_SIZE);
+            String cursor = request.getCursor();
+
+            // 多取一条用于判断是否还有下一页
+            List<AgentEntity> entities;
+            if (Boolean.TRUE.equals(request.getIncludeDisabled())) {
+                entities = agentMapper.selectList(new LambdaQueryWrapper<AgentEntity>()
+                        .select(AgentEntity::getId, AgentEntity::getName, AgentEntity::getDescription,
+                                AgentEntity::getModelName, AgentEntity::getEnabled,
+                                AgentEntity::getCallableByOthers, AgentEntity::getSubAgentIds)
+                        .gt(cursor != null && !cursor.isEmpty(), AgentEntity::getId, cursor)
+                        .orderByAsc(AgentEntity::getId)
+                        .last("LIMIT " + (pageSize + 1)));
+            } else {
+                entities = agentManager.listAgentDefinitionsAfter(cursor, pageSize + 1);
+            }
+
+            boolean hasMore = entities.size() > pageSize;
+            List<AgentSummaryDTO> items = entities.stream().limit(pageSize).map(this::toSummary).toList();
+            String nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+            String etag = buildEtag(items, nextCursor);
+
+            if (etag.equals(request.getIfNoneMatch())) {
+                return AgentPageResponse.builder()
+                        .items(List.of())
+                        .nextCursor(nextCursor)
+                        .hasMore(hasMore)
+                        .etag(etag)
+                        .notModified(true)
+                        .build();
+            }
+            return AgentPageResponse.builder()
+                    .items(items)
+                    .nextCursor(nextCursor)
+                    .hasMore(hasMore)
+                    .etag(etag)
+                    .notModified(false)
+                    .build();
         });
     }
 
+    /**
+     * 基于页内容计算弱 etag：摘要字段不变则 etag 不变，各节点结果一致
+     */
+    private String buildEtag(List<AgentSummaryDTO> items, String nextCursor) {
+        long hash = 1125899906842597L;
+        for (AgentSummaryDTO item : items) {
+            hash = 31 * hash + item.hashCode();
+        }
+        hash = 31 * hash + Objects.hashCode(nextCursor);
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
     @Override
     public Mono<AgentDefinitionDTO> createAgent(AgentDefinitionDTO definition) {
-        return Mono.fromCallable(() -> {
+        return blockingScheduler.fromCallable(() -> {
             AgentEntity entity = toEntity(definition);
             entity.setCreateTime(LocalDateTime.now());
             entity.setUpdateTime(LocalDateTime.now());
@@ -309,7 +498,7 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Mono<AgentDefinitionDTO> updateAgent(AgentDefinitionDTO definition) {
-        return Mono.fromCallable(() -> {
+        return blockingScheduler.fromCallable(() -> {
             AgentEntity entity = toEntity(definition);
             entity.setUpdateTime(LocalDateTime.now());
             agentMapper.updateById(entity);
@@ -320,13 +509,54 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Mono<Boolean> deleteAgent(String agentId) {
-        return Mono.fromCallable(() -> {
+        return blockingScheduler.fromCallable(() -> {
             int rows = agentMapper.deleteById(agentId);
             agentManager.refreshAgent(agentId);
             return rows > 0;
         });
     }
 
+    @Override
+    public Mono<String> submitTask(AsyncTaskRequest request) {
+        return blockingScheduler.fromCallable(() -> asyncTaskManager.submit(request));
+    }
+
+    @Override
+    public Mono<AsyncTaskDTO> getTask(String taskId) {
+        return blockingScheduler.fromCallable(() -> asyncTaskManager.get(taskId));
+    }
+
+    @Override
+    public Mono<Boolean> cancelTask(String taskId) {
+        return blockingScheduler.fromCallable(() -> asyncTaskManager.cancel(taskId));
+    }
+
+    @Override
+    public Mono<TokenUsageDTO> getConversationTokenUsage(String conversationId) {
+        return blockingScheduler.fromCallable(() -> {
+            TokenAccounting.TokenUsage usage = tokenAccounting.conversationUsage(conversationId);
+            TokenUsageDTO dto = toUsageDTO("conversation", conversationId, usage);
+            dto.setBudget(tokenAccounting.getConversationBudget());
+            return dto;
+        });
+    }
+
+    @Override
+    public Mono<TokenUsageDTO> getAgentTokenUsage(String agentId) {
+        return blockingScheduler.fromCallable(() -> toUsageDTO("agent", agentId, tokenAccounting.agentUsage(agentId)));
+    }
+
+    private TokenUsageDTO toUsageDTO(String scope, String id, TokenAccounting.TokenUsage usage) {
+        return TokenUsageDTO.builder()
+                .scope(scope)
+                .id(id)
+                .inputTokens(usage.inputTokens())
+                .outputTokens(usage.outputTokens())
+                .totalTokens(usage.totalTokens())
+                .calls(usage.calls())
+                .build();
+    }
+
     private AgentDefinitionDTO toDTO(AgentEntity entity) {
         if (entity == null) return null;
         return AgentDefinitionDTO.builder()
@@ -340,6 +570,18 @@ public class AgentServiceImpl implements AgentService {
                 .build();
     }
 
+    private AgentSummaryDTO toSummary(AgentEntity entity) {
+        return AgentSummaryDTO.builder()
+                .id(entity.getId())
+                .name(entity.getName())
+                .description(entity.getDescription())
+                .modelName(entity.getModelName())
+                .enabled(entity.getEnabled())
+                .callableByOthers(entity.getCallableByOthers())
+                .subAgentIds(entity.getSubAgentIds())
+                .build();
+    }
+
     private AgentEntity toEntity(AgentDefinitionDTO dto) {
         return AgentEntity.builder()
                 .id(dto.getId())
@@ -0,0 +1,65 @@
+package com.deepknow.agentoz.service.impl;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import com.deepknow.agentoz.manager.StreamingHook;
+
+import java.util.function.Consumer;
+
+/**
+ * 单个流的 {@link AgentChatResponse} 模板
+ * <p>
+ * 会话 ID、Agent ID 在流开始时确定，每个事件只填入增量内容和事件类型，
+ * 不经过 Builder。响应对象交给 Dubbo 异步序列化，不能复用，每个事件仍需一个新实例。
+ */
+public final class StreamResponseTemplate implements StreamingHook.StreamListener {
+
+    private static final String TEXT = EventType.TEXT.name();
+    private static final String TOOL_CALL = EventType.TOOL_CALL.name();
+    private static final String TOOL_RESULT = EventType.TOOL_RESULT.name();
+    private static final String DONE = EventType.DONE.name();
+    private static final String ERROR = EventType.ERROR.name();
+
+    private final String sessionId;
+    private final String agentId;
+    private final Consumer<AgentChatResponse> downstream;
+
+    public StreamResponseTemplate(String sessionId, String agentId, Consumer<AgentChatResponse> downstream) {
+        this.sessionId = sessionId;
+        this.agentId = agentId;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onText(String delta) {
+        downstream.accept(event(TEXT, delta, Boolean.FALSE));
+    }
+
+    @Override
+    public void onToolCall(String toolName) {
+        downstream.accept(event(TOOL_CALL, toolName, Boolean.FALSE));
+    }
+
+    @Override
+    public void onToolResult() {
+        downstream.accept(event(TOOL_RESULT, null, Boolean.FALSE));
+    }
+
+    public void done() {
+        downstream.accept(event(DONE, null, Boolean.TRUE));
+    }
+
+    public void error(Throwable e) {
+        downstream.accept(event(ERROR, "错误: " + e.getMessage(), Boolean.TRUE));
+    }
+
+    private AgentChatResponse event(String eventType, String content, Boolean finished) {
+        AgentChatResponse response = new AgentChatResponse();
+        response.setSessionId(sessionId);
+        response.setAgentId(agentId);
+        response.setContent(content);
+        response.setEventType(eventType);
+        response.setFinished(finished);
+        return response;
+    }
+}
@@ -0,0 +1,401 @@
+package com.deepknow.agentoz.session;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.deepknow.agentoz.entity.ConversationEntity;
+import com.deepknow.agentoz.entity.ConversationTurnEntity;
+import com.deepknow.agentoz.mapper.ConversationMapper;
+import com.deepknow.agentoz.mapper.ConversationTurnMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agentscope.core.message.Msg;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 会话历史的 MySQL 持久化（write-behind）
+ * <p>
+ * 每轮对话完成后入队，后台线程按批次写入 conversation_turns（每轮一行），并更新 conversations 的汇总字段，
+ * 写入开销与会话长度无关；对话链路不等待 MySQL。写入失败时整批保留重试（至少一次），
+ * (conversation_id, turn_id) 唯一键保证重复写入幂等。Redis 中的 Session 过期后可从这里恢复。
+ * <p>
+ * 队列满时最多等待 offer-timeout，仍满则把该轮追加到本地溢写文件（spill-dir，每行一轮 JSON，agentoz.history.spilled）；
+ * 停止时仍未写入 MySQL 的记录同样溢写。写入线程在批次之间把溢写文件补写到 MySQL，启动时补写上次留下的文件，
+ * 因此历史不会因 MySQL 变慢或不可用出现缺口。补写的轮次 ID 晚于之后完成的轮次，加载时按完成时间排序。
+ * 只有本地磁盘也不可写时才丢弃（agentoz.history.dropped）。
+ */
+@Slf4j
+@Component
+public class ConversationHistoryStore {
+
+    private static final String SPILL_FILE = "pending.jsonl";
+    private static final String REPLAY_PREFIX = "replay-";
+
+    private final ConversationMapper conversationMapper;
+    private final ConversationTurnMapper turnMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final BlockingQueue<HistoryTurn> queue;
+    private final Path spillDirectory;
+    private final Counter spilled;
+    private final Counter dropped;
+
+    /**
+     * 有尚未补写的溢写文件；修改溢写文件时持有 spillDirectory 的锁
+     */
+    private volatile boolean spillPending;
+
+    private volatile boolean stopped;
+    private Thread flushThread;
+
+    public ConversationHistoryStore(ConversationMapper conversationMapper,
+                                    ConversationTurnMapper turnMapper,
+                                    SqlSessionFactory sqlSessionFactory,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${agentoz.history.enabled:true}") boolean enabled,
+                                    @Value("${agentoz.history.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${agentoz.history.batch-size:200}") int batchSize,
+                                    @Value("${agentoz.history.flush-interval:1s}") Duration flushInterval,
+                                    @Value("${agentoz.history.offer-timeout:100ms}") Duration offerTimeout,
+                                    @Value("${agentoz.history.spill-dir:./data/history-spill}") String spillDirectory) {
+        this.conversationMapper = conversationMapper;
+        this.turnMapper = turnMapper;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spillDirectory = Paths.get(spillDirectory);
+        this.spilled = Counter.builder("agentoz.history.spilled")
+                .description("写入队列满载或停止时未写入 MySQL 而溢写到本地文件的会话历史轮次")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("agentoz.history.dropped")
+                .description("溢写文件也无法写入而丢弃的会话历史轮次")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // 上次运行留下的溢写文件
+        spillPending = Files.isDirectory(spillDirectory);
+        flushThread = new Thread(this::flushLoop, "history-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * 停止时写完队列中剩余的记录，写不进 MySQL 的溢写到本地文件
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        if (flushThread != null) {
+            flushThread.interrupt();
+            flushThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * 记录一轮已完成的对话
+     * <p>
+     * 队列满时最多等待 offer-timeout（调用方在阻塞调度器上），仍满则溢写到本地文件，不在调用线程上同步写 MySQL
+     */
+    public void append(HistoryTurn turn) {
+        if (!enabled || turn.messages().isEmpty()) {
+            return;
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(turn, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            log.warn("历史写入队列已满，本轮历史溢写到本地文件: conversationId={}, turnId={}",
+                    turn.conversationId(), turn.turnId());
+            spill(List.of(turn));
+        }
+    }
+
+    /**
+     * 从 MySQL 加载指定 Agent 在会话中的历史消息（Redis Session 过期后恢复用）
+     */
+    public List<Msg> load(String conversationId, String agentId) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        List<Msg> messages = new ArrayList<>(loadLegacy(conversationId, agentId));
+        List<ConversationTurnEntity> turns = turnMapper.selectList(new LambdaQueryWrapper<ConversationTurnEntity>()
+                .select(ConversationTurnEntity::getMessages)
+                .eq(ConversationTurnEntity::getConversationId, conversationId)
+                .eq(ConversationTurnEntity::getAgentId, agentId)
+                .orderByAsc(ConversationTurnEntity::getCompletedAt)
+                .orderByAsc(ConversationTurnEntity::getId));
+        try {
+            for (ConversationTurnEntity turn : turns) {
+                for (JsonNode message : objectMapper.readTree(turn.getMessages())) {
+                    messages.add(objectMapper.treeToValue(message, Msg.class));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.error("解析会话历史失败: conversationId={}", conversationId, e);
+            return Collections.emptyList();
+        }
+        return messages;
+    }
+
+    /**
+     * 改为每轮一行之前写入 conversations.history_context 的历史，排在新记录之前
+     */
+    private List<Msg> loadLegacy(String conversationId, String agentId) {
+        ConversationEntity conversation = conversationMapper.selectOne(new LambdaQueryWrapper<ConversationEntity>()
+                .select(ConversationEntity::getHistoryContext)
+                .eq(ConversationEntity::getConversationId, conversationId));
+        if (conversation == null || conversation.getHistoryContext() == null) {
+            return Collections.emptyList();
+        }
+        List<Msg> messages = new ArrayList<>();
+        try {
+            for (JsonNode turn : objectMapper.readTree(conversation.getHistoryContext())) {
+                if (!agentId.equals(turn.path("agent_id").asText())) {
+                    continue;
+                }
+                for (JsonNode message : turn.path("messages")) {
+                    messages.add(objectMapper.treeToValue(message, Msg.class));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.error("解析会话历史失败: conversationId={}", conversationId, e);
+            return Collections.emptyList();
+        }
+        return messages;
+    }
+
+    private void flushLoop() {
+        List<HistoryTurn> batch = new ArrayList<>(batchSize);
+        long backoffMillis = 0;
+        while (!stopped || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (backoffMillis > 0 && !stopped) {
+                    Thread.sleep(backoffMillis);
+                }
+                if (spillPending && batch.isEmpty() && !stopped) {
+                    try {
+                        replaySpill();
+                        backoffMillis = 0;
+                    } catch (Exception e) {
+                        spillPending = true;
+                        backoffMillis = Math.min(Math.max(backoffMillis * 2, 500), 30_000);
+                        log.error("补写溢写的会话历史失败，{}ms 后重试", backoffMillis, e);
+                        continue;
+                    }
+                }
+                if (batch.size() < batchSize) {
+                    HistoryTurn first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        // 攒批：等待一个刷新间隔或批次写满
+                        long deadline = System.nanoTime() + flushInterval.toNanos();
+                        while (batch.size() < batchSize && !stopped) {
+                            HistoryTurn next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                            if (next == null) {
+                                break;
+                            }
+                            batch.add(next);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // 停止信号：继续写完剩余记录
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                flush(batch);
+                batch.clear();
+                backoffMillis = 0;
+            } catch (Exception e) {
+                backoffMillis = Math.min(Math.max(backoffMillis * 2, 500), 30_000);
+                log.error("写入会话历史失败，{}ms 后重试 {} 条记录", backoffMillis, batch.size(), e);
+                if (stopped) {
+                    queue.drainTo(batch);
+                    log.error("停止时写入失败，{} 条会话历史溢写到本地文件，下次启动时补写", batch.size());
+                    spill(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * 追加到溢写文件（每行一轮），刷盘后返回
+     */
+    private void spill(List<HistoryTurn> turns) {
+        synchronized (spillDirectory) {
+            try {
+                StringBuilder lines = new StringBuilder();
+                for (HistoryTurn turn : turns) {
+                    lines.append(objectMapper.writeValueAsString(turn)).append('\n');
+                }
+                Files.createDirectories(spillDirectory);
+                try (FileChannel channel = FileChannel.open(spillDirectory.resolve(SPILL_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+                spilled.increment(turns.size());
+                spillPending = true;
+            } catch (IOException e) {
+                dropped.increment(turns.size());
+                log.error("会话历史溢写失败，丢弃 {} 轮（Session 中仍保留）", turns.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 把溢写文件改名后按批写入 MySQL，全部写入后删除；失败时文件保留，下次从头补写（唯一键保证幂等）
+     */
+    private void replaySpill() throws IOException {
+        synchronized (spillDirectory) {
+            spillPending = false;
+            Path pending = spillDirectory.resolve(SPILL_FILE);
+            if (Files.exists(pending)) {
+                Files.move(pending, spillDirectory.resolve(REPLAY_PREFIX + System.currentTimeMillis() + ".jsonl"));
+            }
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(spillDirectory)) {
+            files = listing.filter(file -> file.getFileName().toString().startsWith(REPLAY_PREFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            int replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                List<HistoryTurn> batch = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    batch.add(objectMapper.readValue(line, HistoryTurn.class));
+                    if (batch.size() == batchSize) {
+                        flush(batch);
+                        replayed += batch.size();
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    replayed += batch.size();
+                }
+            }
+            Files.delete(file);
+            log.info("已补写溢写的会话历史 {} 轮: {}", replayed, file);
+        }
+    }
+
+    /**
+     * 批量写入：一条多行 INSERT IGNORE 确保会话存在，再以 JDBC batch 逐轮写入 conversation_turns 并计入汇总字段
+     */
+    private void flush(List<HistoryTurn> batch) throws JsonProcessingException {
+        Map<String, ConversationEntity> conversationsById = new LinkedHashMap<>();
+        List<ConversationTurnEntity> rows = new ArrayList<>(batch.size());
+        for (HistoryTurn turn : batch) {
+            conversationsById.putIfAbsent(turn.conversationId(), ConversationEntity.builder()
+                    .conversationId(turn.conversationId())
+                    .primaryAgentId(turn.agentId())
+                    .build());
+            rows.add(ConversationTurnEntity.builder()
+                    .conversationId(turn.conversationId())
+                    .turnId(turn.turnId())
+                    .agentId(turn.agentId())
+                    .messages(objectMapper.writeValueAsString(turn.messages()))
+                    .messageCount(turn.messages().size())
+                    .completedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(turn.completedAt()),
+                            ZoneId.systemDefault()))
+                    .build());
+        }
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            ConversationMapper conversations = sqlSession.getMapper(ConversationMapper.class);
+            ConversationTurnMapper turns = sqlSession.getMapper(ConversationTurnMapper.class);
+            conversations.insertIgnore(conversationsById.values());
+            for (int i = 0; i < batch.size(); i++) {
+                HistoryTurn turn = batch.get(i);
+                turns.insertIgnore(rows.get(i));
+                conversations.summarizeTurn(turn.conversationId(), turn.turnId(), lastText(turn.messages()));
+            }
+            sqlSession.flushStatements();
+            sqlSession.commit();
+        }
+        log.debug("写入会话历史: {} 轮, {} 个会话", batch.size(), conversationsById.size());
+    }
+
+    private String lastText(List<Msg> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            String text = messages.get(i).getTextContent();
+            if (text != null && !text.isEmpty()) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一轮对话新增的消息
+     */
+    public record HistoryTurn(
+            String turnId,
+            String conversationId,
+            String agentId,
+            List<Msg> messages,
+            long completedAt
+    ) {}
+}
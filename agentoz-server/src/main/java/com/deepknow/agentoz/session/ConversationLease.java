@@ -0,0 +1,51 @@
+package com.deepknow.agentoz.session;
+
+/**
+ * 一轮对话持有的会话租约，由 {@link ConversationLeaseManager#acquire} 获取
+ * <p>
+ * 持有期间同一会话的其他轮次（本节点或其他节点）等待；保存 Session 时携带 {@link #token()}，
+ * 租约被其他节点接管后旧持有者的保存会被拒绝。
+ */
+public final class ConversationLease implements AutoCloseable {
+
+    private final ConversationLeaseManager manager;
+    private final ConversationLeaseManager.Holder holder;
+    private final long token;
+    private boolean closed;
+
+    ConversationLease(ConversationLeaseManager manager, ConversationLeaseManager.Holder holder, long token) {
+        this.manager = manager;
+        this.holder = holder;
+        this.token = token;
+    }
+
+    public String sessionId() {
+        return holder.sessionId;
+    }
+
+    public long token() {
+        return token;
+    }
+
+    /**
+     * 带令牌的 SessionKey，用于 saveTo
+     */
+    public FencedSessionKey sessionKey() {
+        return new FencedSessionKey(holder.sessionId, token);
+    }
+
+    /**
+     * 保存被拒绝，说明租约已丢失：释放时不再保留给本节点后续轮次
+     */
+    public void markLost() {
+        holder.lost = true;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            manager.release(holder);
+        }
+    }
+}
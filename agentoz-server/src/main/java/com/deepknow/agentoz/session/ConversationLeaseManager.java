@@ -0,0 +1,302 @@
+package com.deepknow.agentoz.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.RedissonFencedLock;
+import org.redisson.RedissonObject;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话租约：同一会话同一时刻只有一轮对话在执行（跨节点）
+ * <p>
+ * 租约是 Redisson 公平令牌锁（RFencedLock），每次获取得到单调递增的 fencing token，
+ * 持有期间由 watchdog 续期；节点宕机后锁在 watchdog 超时后自动释放。
+ * 续期失败（如长时间 GC 或网络分区）后锁可能被其他节点取得，此时旧持有者携带的令牌已落后，
+ * {@link RedisSession} 会拒绝它的保存，避免覆盖新一轮的状态。
+ * <p>
+ * 快速路径：本节点的轮次结束后租约保留 linger 时长，期间同一会话的下一轮（会话亲和路由下通常回到本节点）
+ * 直接复用，不访问 Redis；本节点内同一会话的并发轮次在本地排队，不在 Redis 上竞争。
+ * <p>
+ * 启用 Session 日志时，会话还有未写入 Redis 的记录就不释放租约（每隔 pending-recheck 检查一次），
+ * 其他节点取得租约时加载到的一定是本节点最后保存的状态。
+ */
+@Slf4j
+@Component
+public class ConversationLeaseManager {
+
+    private static final String LEASE_PREFIX = "agentoz:lease:";
+
+    /**
+     * RFencedLock 的令牌计数器前缀（Redisson 内部命名），用于给计数器设置过期时间
+     */
+    private static final String TOKEN_PREFIX = "redisson_lock_token";
+
+    /**
+     * 会话还有未写入 Redis 的 Session 记录时，推迟释放租约后再次检查的间隔
+     */
+    private static final Duration PENDING_RECHECK = Duration.ofMillis(100);
+
+    /**
+     * 停机时等待保留中的会话把记录写入 Redis 的总时长，超时的会话不释放租约，由 watchdog 超时后自动释放
+     */
+    private static final Duration SHUTDOWN_REPLICATION_TIMEOUT = Duration.ofSeconds(5);
+
+    private final RedissonClient redissonClient;
+    private final RedisSession redisSession;
+    private final Duration acquireTimeout;
+    private final Duration linger;
+    private final Duration tokenTtl;
+
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * 租约持有者标识：Redisson 锁默认按线程区分持有者，而一轮对话会跨线程结束，改用每次获取唯一的编号
+     */
+    private final AtomicLong ownerSequence = new AtomicLong();
+
+    private final ScheduledExecutorService releaseScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "lease-release");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter localAcquired;
+    private final Counter remoteAcquired;
+    private final Counter timedOut;
+
+    public ConversationLeaseManager(RedissonClient redissonClient,
+                                    RedisSession redisSession,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${agentoz.lease.acquire-timeout:30s}") Duration acquireTimeout,
+                                    @Value("${agentoz.lease.linger:5s}") Duration linger,
+                                    @Value("${agentoz.lease.token-ttl:7d}") Duration tokenTtl) {
+        this.redissonClient = redissonClient;
+        this.redisSession = redisSession;
+        this.acquireTimeout = acquireTimeout;
+        this.linger = linger;
+        this.tokenTtl = tokenTtl;
+        redisSession.onStaleWrite(this::onStaleWrite);
+        this.localAcquired = acquireCounter(meterRegistry, "local");
+        this.remoteAcquired = acquireCounter(meterRegistry, "remote");
+        this.timedOut = acquireCounter(meterRegistry, "timeout");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        releaseScheduler.shutdownNow();
+        // 停机时交出保留中的租约，其他节点无需等待 watchdog 超时；记录尚未写入 Redis 的会话先等待写入
+        long deadline = System.nanoTime() + SHUTDOWN_REPLICATION_TIMEOUT.toNanos();
+        holders.forEach((sessionId, holder) -> {
+            if (redisSession.awaitReplicated(sessionId, Duration.ofNanos(remaining(deadline)))) {
+                expire(holder);
+            } else {
+                log.warn("会话仍有 Session 记录未写入 Redis，不释放租约: {}", sessionId);
+            }
+        });
+    }
+
+    /**
+     * 获取会话租约，阻塞直到上一轮结束或超时
+     *
+     * @throws LeaseUnavailableException 等待超时
+     * @throws StaleSessionWriteException 会话已有更新的令牌（计数器过期重置等异常情况）
+     */
+    public ConversationLease acquire(String sessionId) {
+        long deadline = System.nanoTime() + acquireTimeout.toNanos();
+        Holder holder = holders.compute(sessionId, (id, current) -> {
+            Holder h = current != null ? current : new Holder(id);
+            h.users++;
+            if (h.pendingRelease != null) {
+                h.pendingRelease.cancel(false);
+                h.pendingRelease = null;
+            }
+            return h;
+        });
+        boolean queued = false;
+        try {
+            // 本节点内同一会话串行
+            awaitLocal(holder, deadline);
+            queued = true;
+            if (holder.token == 0 || holder.lost) {
+                lockRemote(holder, deadline);
+                remoteAcquired.increment();
+            } else {
+                localAcquired.increment();
+            }
+            return new ConversationLease(this, holder, holder.token);
+        } catch (RuntimeException e) {
+            if (e instanceof LeaseUnavailableException) {
+                timedOut.increment();
+            }
+            if (queued) {
+                holder.turn.release();
+            }
+            leave(holder);
+            throw e;
+        }
+    }
+
+    /**
+     * 启用 Session 日志时保存是异步写入 Redis 的，令牌过期在轮次结束后才发现：
+     * 标记租约丢失，下一轮重新获取，不再复用本节点保留的租约
+     */
+    private void onStaleWrite(String sessionId, long token) {
+        Holder holder = holders.get(sessionId);
+        if (holder != null && holder.token == token) {
+            holder.lost = true;
+        }
+    }
+
+    void release(Holder holder) {
+        holder.turn.release();
+        leave(holder);
+    }
+
+    private void awaitLocal(Holder holder, long deadline) {
+        try {
+            if (!holder.turn.tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                throw new LeaseUnavailableException(holder.sessionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LeaseUnavailableException(holder.sessionId);
+        }
+    }
+
+    /**
+     * 在 Redis 上获取租约并推进会话的 fence
+     */
+    private void lockRemote(Holder holder, long deadline) {
+        if (holder.token != 0) {
+            // 租约已丢失：放弃旧的持有者标识重新获取
+            unlockRemote(holder);
+            holder.token = 0;
+        }
+        holder.owner = ownerSequence.incrementAndGet();
+        RedissonFencedLock lock = lock(holder.sessionId);
+        Long token;
+        try {
+            // leaseTime = -1：由 watchdog 续期
+            token = lock.tryLockAndGetTokenAsync(remaining(deadline), -1, TimeUnit.NANOSECONDS, holder.owner)
+                    .toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LeaseUnavailableException(holder.sessionId);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("获取会话租约失败: " + holder.sessionId, e.getCause());
+        }
+        if (token == null) {
+            throw new LeaseUnavailableException(holder.sessionId);
+        }
+        // 令牌计数器的过期时间不短于 Session 的 fence，计数器不会在 fence 仍有效时归零
+        redissonClient.getAtomicLong(RedissonObject.prefixName(TOKEN_PREFIX, lock.getName()))
+                .expireAsync(tokenTtl);
+        if (!redisSession.advanceFence(holder.sessionId, token)) {
+            lock.unlockAsync(holder.owner);
+            throw new StaleSessionWriteException(holder.sessionId, token);
+        }
+        holder.token = token;
+        holder.lost = false;
+    }
+
+    private void unlockRemote(Holder holder) {
+        lock(holder.sessionId).unlockAsync(holder.owner).whenComplete((ignored, e) -> {
+            if (e != null) {
+                // 租约已过期或已被接管
+                log.debug("释放会话租约失败: {}", holder.sessionId, e);
+            }
+        });
+    }
+
+    /**
+     * 最后一个本地使用者离开：保留 linger 时长后再释放 Redis 上的租约
+     */
+    private void leave(Holder holder) {
+        holders.compute(holder.sessionId, (id, current) -> {
+            if (--holder.users > 0) {
+                return current;
+            }
+            if (holder.token == 0) {
+                return null;
+            }
+            // 租约已丢失时本节点的记录会被 fence 拒绝，不必等待写入
+            boolean replicating = !holder.lost && redisSession.hasPendingWrites(holder.sessionId);
+            if (releaseScheduler.isShutdown() || holder.lost || linger.isZero() && !replicating) {
+                unlockRemote(holder);
+                return null;
+            }
+            Duration delay = linger.isZero() ? PENDING_RECHECK : linger;
+            holder.pendingRelease = releaseScheduler.schedule(() -> expire(holder),
+                    delay.toMillis(), TimeUnit.MILLISECONDS);
+            return holder;
+        });
+    }
+
+    /**
+     * 保留期满：会话的记录全部写入 Redis 后释放租约，否则稍后再检查
+     */
+    private void expire(Holder holder) {
+        holders.compute(holder.sessionId, (id, current) -> {
+            if (current != holder || holder.users > 0) {
+                return current;
+            }
+            if (!holder.lost && !releaseScheduler.isShutdown() && redisSession.hasPendingWrites(holder.sessionId)) {
+                holder.pendingRelease = releaseScheduler.schedule(() -> expire(holder),
+                        PENDING_RECHECK.toMillis(), TimeUnit.MILLISECONDS);
+                return holder;
+            }
+            unlockRemote(holder);
+            return null;
+        });
+    }
+
+    private RedissonFencedLock lock(String sessionId) {
+        // 需要 RedissonFencedLock 上按持有者编号加解锁的方法，RFencedLock 接口只提供按线程的版本
+        return (RedissonFencedLock) redissonClient.getFencedLock(LEASE_PREFIX + sessionId);
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static Counter acquireCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.lease.acquire")
+                .description("会话租约获取次数（local 为本节点保留的租约直接复用）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 本节点对一个会话租约的持有状态；users、pendingRelease 只在 holders.compute 中修改，
+     * token、owner 只由持有 turn 许可的线程修改
+     */
+    static final class Holder {
+
+        final String sessionId;
+        final Semaphore turn = new Semaphore(1, true);
+        int users;
+        ScheduledFuture<?> pendingRelease;
+        volatile long token;
+        volatile long owner;
+        volatile boolean lost;
+
+        Holder(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.deepknow.agentoz.session;
+
+import io.agentscope.core.state.SessionKey;
+
+/**
+ * 携带租约令牌的 SessionKey：{@link RedisSession} 写入前比较令牌，拒绝过期持有者的保存
+ *
+ * @param sessionId agentId:conversationId
+ * @param token     {@link ConversationLease} 的 fencing token，单调递增
+ */
+public record FencedSessionKey(String sessionId, long token) implements SessionKey {
+
+    @Override
+    public String toIdentifier() {
+        return sessionId;
+    }
+}
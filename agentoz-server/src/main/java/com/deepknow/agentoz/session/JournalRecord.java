@@ -0,0 +1,86 @@
+package com.deepknow.agentoz.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SessionJournal} 中的一条记录：一次 Session 写入（已序列化为 JSON）
+ * <pre>
+ * byte 类型 | long 令牌 | sessionId | stateKey | int 条数 | 各条 JSON；字符串为 int 长度 + UTF-8
+ * </pre>
+ *
+ * @param sequence 日志序号，追加前为 0
+ * @param token    写入时的 fence 令牌（{@link FencedSessionKey} 的令牌，或不带令牌的写入追加时读到的 fence）；
+ *                 -1 为旧版本写下的不带令牌的记录，重放时按 0 处理（会话被任何租约持有过即拒绝）
+ * @param stateKey DELETE 时为空串
+ * @param values   VALUE 一条，LIST 为整个列表，DELETE 为空
+ */
+record JournalRecord(long sequence, Type type, String sessionId, long token, String stateKey, List<String> values) {
+
+    static final long NO_TOKEN = -1;
+
+    enum Type {
+        VALUE, LIST, DELETE
+    }
+
+    static JournalRecord value(String sessionId, long token, String stateKey, String json) {
+        return new JournalRecord(0, Type.VALUE, sessionId, token, stateKey, List.of(json));
+    }
+
+    static JournalRecord list(String sessionId, long token, String stateKey, List<String> items) {
+        return new JournalRecord(0, Type.LIST, sessionId, token, stateKey, items);
+    }
+
+    static JournalRecord delete(String sessionId, long token) {
+        return new JournalRecord(0, Type.DELETE, sessionId, token, "", List.of());
+    }
+
+    JournalRecord withSequence(long sequence) {
+        return new JournalRecord(sequence, type, sessionId, token, stateKey, values);
+    }
+
+    byte[] encode() {
+        byte[] session = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] key = stateKey.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> items = new ArrayList<>(values.size());
+        int length = 1 + Long.BYTES + Integer.BYTES * 3 + session.length + key.length;
+        for (String value : values) {
+            byte[] item = value.getBytes(StandardCharsets.UTF_8);
+            items.add(item);
+            length += Integer.BYTES + item.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length)
+                .put((byte) type.ordinal())
+                .putLong(token)
+                .putInt(session.length).put(session)
+                .putInt(key.length).put(key)
+                .putInt(items.size());
+        for (byte[] item : items) {
+            buffer.putInt(item.length).put(item);
+        }
+        return buffer.array();
+    }
+
+    static JournalRecord decode(long sequence, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        Type type = Type.values()[buffer.get()];
+        long token = buffer.getLong();
+        String sessionId = readString(buffer);
+        String stateKey = readString(buffer);
+        int count = buffer.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(buffer));
+        }
+        return new JournalRecord(sequence, type, sessionId, token, stateKey, values);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
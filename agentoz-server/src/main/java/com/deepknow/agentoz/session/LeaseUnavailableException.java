@@ -0,0 +1,11 @@
+package com.deepknow.agentoz.session;
+
+/**
+ * 等待会话租约超时：同一会话的上一轮仍在进行
+ */
+public class LeaseUnavailableException extends RuntimeException {
+
+    public LeaseUnavailableException(String sessionId) {
+        super("会话正在处理上一轮对话，请稍后重试: sessionId=" + sessionId);
+    }
+}
@@ -6,20 +6,50 @@ import io.agentscope.core.session.Session;
 import io.agentscope.core.state.SessionKey;
 import io.agentscope.core.state.SimpleSessionKey;
 import io.agentscope.core.state.State;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
 
 /**
  * Redis 实现的 Session
  * 适配 AgentScope 官方 Session 接口
+ * <p>
+ * 配置了 {@link SessionArchive} 时启用分层存储：{keyPrefix}_active（ZSet，分值为最近访问时间）
+ * 记录热 Session，{@link SessionTieringSweeper} 把空闲超过阈值的 Session 压缩转存到冷存储并写入
+ * {sessionId}:_archived 标记，之后的 {@link #exists}（即 loadIfExists）会透明地把它恢复回 Redis。
+ * 只有带标记的会话才查询冷存储，新会话的 {@link #exists} 只访问 Redis。
+ * <p>
+ * 同一会话的 key 都带 {sessionId} 哈希标签（{keyPrefix}{sessionId}:stateKey 等），落在 Redis Cluster 的同一个槽，
+ * 脚本访问的 key 全部经 KEYS 传入；全局的 _active 不在脚本中访问。旧格式（不带哈希标签）的 Session
+ * 和没有标记的旧冷存储快照由 {@link SessionMigration} 一次性迁移。
+ * <p>
+ * 以 {@link FencedSessionKey} 保存时校验租约令牌：{sessionId}:_fence 记录已见过的最大令牌，
+ * 令牌更小的写入被拒绝（{@link StaleSessionWriteException}），检查与写入在同一脚本中原子完成。
+ * <p>
+ * 配置了 {@link SessionJournal} 时保存只追加本地日志即返回，由后台线程按顺序写入 Redis（{@link SessionJournalReplicator}），
+ * Redis 变慢或短暂不可用不影响保存；尚未写入 Redis 的状态本节点可直接读到。
+ * 此时令牌过期在写入 Redis 时才发现，通过 {@link #onStaleWrite} 通知，而不是由 save 抛出。
+ * 日志中的记录全部带令牌写入：不带令牌的保存和删除在追加前读取会话当前的 fence 作为令牌，
+ * 重放时若会话已被更新的租约接管则被拒绝，不会覆盖或删除新持有者的状态。
  */
 @Slf4j
 public class RedisSession implements Session {
@@ -28,9 +58,110 @@ public class RedisSession implements Session {
     private final ObjectMapper objectMapper;
     private final String keyPrefix;
     private final Duration ttl;
+    private final SessionArchive archive;
+    private final Timer rehydrateTimer;
+    private final SessionJournalReplicator journal;
 
     private static final String DEFAULT_PREFIX = "agentoz:session:";
     private static final Duration DEFAULT_TTL = Duration.ofDays(7);
+    private static final String ACTIVE_SUFFIX = "_active";
+    private static final String FENCE_SUFFIX = "_fence";
+    private static final String INDEX_SUFFIX = "_keys";
+    private static final String TOUCHED_SUFFIX = "_touched";
+    private static final String ARCHIVED_SUFFIX = "_archived";
+    private static final Duration JOURNAL_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * 推进 fence：KEYS[1] fence；ARGV[1] 令牌，ARGV[2] TTL 秒。返回 0 表示已有更大的令牌
+     */
+    private static final String FENCE_CHECK = """
+            local fence = redis.call('GET', KEYS[1])
+            if fence and tonumber(fence) > tonumber(ARGV[1]) then return 0 end
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            """;
+
+    private static final RedisScript<Long> FENCE_SCRIPT = new DefaultRedisScript<>(
+            FENCE_CHECK + "return 1", Long.class);
+
+    /**
+     * 带令牌的单值写入：KEYS[1] fence，KEYS[2] 状态，KEYS[3] 索引；ARGV[3] stateKey，ARGV[4] json
+     */
+    private static final RedisScript<Long> FENCED_SAVE_SCRIPT = new DefaultRedisScript<>(FENCE_CHECK + """
+            redis.call('SET', KEYS[2], ARGV[4], 'EX', ARGV[2])
+            redis.call('SADD', KEYS[3], ARGV[3])
+            redis.call('EXPIRE', KEYS[3], ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * 带令牌的列表写入（整体替换）：KEYS 同上；ARGV[3] stateKey，ARGV[4..] 列表项
+     */
+    private static final RedisScript<Long> FENCED_SAVE_LIST_SCRIPT = new DefaultRedisScript<>(FENCE_CHECK + """
+            redis.call('DEL', KEYS[2])
+            for i = 4, #ARGV do
+                redis.call('RPUSH', KEYS[2], ARGV[i])
+            end
+            if #ARGV >= 4 then redis.call('EXPIRE', KEYS[2], ARGV[2]) end
+            redis.call('SADD', KEYS[3], ARGV[3])
+            redis.call('EXPIRE', KEYS[3], ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * 带令牌的删除：KEYS[1] fence，KEYS[2..] 会话的其他 key（保留 fence）
+     */
+    private static final RedisScript<Long> FENCED_DELETE_SCRIPT = new DefaultRedisScript<>(FENCE_CHECK + """
+            redis.call('DEL', unpack(KEYS, 2))
+            return 1
+            """, Long.class);
+
+    /**
+     * 降级：访问时间未变时删除热数据（变了说明期间有访问，放弃本次降级）
+     * KEYS[1] 索引，KEYS[2] 访问时间，KEYS[3..] 状态；ARGV[1] 读快照时的访问时间。
+     * 返回 1 已降级，0 已不在热存储，-1 期间有访问
+     */
+    private static final RedisScript<Long> DEMOTE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            if tonumber(redis.call('GET', KEYS[2]) or '0') ~= tonumber(ARGV[1]) then return -1 end
+            redis.call('DEL', unpack(KEYS))
+            return 1
+            """, Long.class);
+
+    /**
+     * 从 _active 移除：KEYS[1] _active；ARGV[1] sessionId，ARGV[2] 降级时的访问时间（之后又被访问过则保留）
+     */
+    private static final RedisScript<Long> DEACTIVATE_SCRIPT = new DefaultRedisScript<>("""
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if score and tonumber(score) <= tonumber(ARGV[2]) then
+                return redis.call('ZREM', KEYS[1], ARGV[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 恢复：热存储中不存在时原子写回快照（多节点并发恢复只有一个生效）
+     * KEYS[1] 索引，KEYS[2] 访问时间，KEYS[2 + i] 第 i 个三元组的状态 key；
+     * ARGV[1] TTL 秒，ARGV[2] 当前时间，ARGV[3..] 为 (类型 v/l, stateKey, json) 三元组
+     */
+    private static final RedisScript<Long> RESTORE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            local ttl = tonumber(ARGV[1])
+            local n = 3
+            for i = 3, #ARGV, 3 do
+                local kind, stateKey, json = ARGV[i], ARGV[i + 1], ARGV[i + 2]
+                if kind == 'v' then
+                    redis.call('SET', KEYS[n], json, 'EX', ttl)
+                else
+                    redis.call('RPUSH', KEYS[n], json)
+                    redis.call('EXPIRE', KEYS[n], ttl)
+                end
+                redis.call('SADD', KEYS[1], stateKey)
+                n = n + 1
+            end
+            redis.call('EXPIRE', KEYS[1], ttl)
+            redis.call('SET', KEYS[2], ARGV[2], 'EX', ttl)
+            return 1
+            """, Long.class);
 
     public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
         this(redisTemplate, objectMapper, DEFAULT_PREFIX, DEFAULT_TTL);
@@ -38,50 +169,90 @@ public class RedisSession implements Session {
 
     public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, 
                         String keyPrefix, Duration ttl) {
+        this(redisTemplate, objectMapper, keyPrefix, ttl, null, null);
+    }
+
+    /**
+     * 启用分层存储
+     */
+    public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                        SessionArchive archive, MeterRegistry meterRegistry) {
+        this(redisTemplate, objectMapper, DEFAULT_PREFIX, DEFAULT_TTL, archive, meterRegistry);
+    }
+
+    public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                        String keyPrefix, Duration ttl,
+                        SessionArchive archive, MeterRegistry meterRegistry) {
+        this(redisTemplate, objectMapper, keyPrefix, ttl, archive, null, meterRegistry);
+    }
+
+    /**
+     * 启用分层存储和本地预写日志（journal 为 null 时直接写 Redis）
+     */
+    public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                        SessionArchive archive, SessionJournal journal, MeterRegistry meterRegistry) {
+        this(redisTemplate, objectMapper, DEFAULT_PREFIX, DEFAULT_TTL, archive, journal, meterRegistry);
+    }
+
+    public RedisSession(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                        String keyPrefix, Duration ttl,
+                        SessionArchive archive, SessionJournal journal, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
         this.keyPrefix = keyPrefix;
         this.ttl = ttl;
+        this.archive = archive;
+        this.rehydrateTimer = meterRegistry == null ? null : Timer.builder("agentoz.session.rehydrate")
+                .description("从冷存储恢复 Session 的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.journal = journal == null ? null
+                : new SessionJournalReplicator(journal, this::replicate, JOURNAL_DRAIN_TIMEOUT, meterRegistry);
     }
 
     @Override
     public void save(SessionKey sessionKey, String key, State value) {
         String redisKey = buildRedisKey(sessionKey, key);
+        String json;
         try {
-            String json = objectMapper.writeValueAsString(value);
-            redisTemplate.opsForValue().set(redisKey, json, ttl);
-            addToIndex(sessionKey, key);
-            log.debug("保存状态: {} -> {}", redisKey, value.getClass().getSimpleName());
+            json = objectMapper.writeValueAsString(value);
         } catch (JsonProcessingException e) {
             log.error("序列化状态失败: {}", redisKey, e);
             throw new RuntimeException("Failed to serialize state", e);
         }
+        if (journal != null) {
+            journal.submit(JournalRecord.value(getSessionId(sessionKey), journalToken(sessionKey), key, json));
+            return;
+        }
+        writeValue(sessionKey, key, json);
     }
 
     @Override
     public void save(SessionKey sessionKey, String key, List<? extends State> values) {
         String redisKey = buildRedisKey(sessionKey, key) + ":list";
-        // 先删除旧数据
-        redisTemplate.delete(redisKey);
-        
+        List<String> items = new ArrayList<>(values.size());
         for (State value : values) {
             try {
-                String json = objectMapper.writeValueAsString(value);
-                redisTemplate.opsForList().rightPush(redisKey, json);
+                items.add(objectMapper.writeValueAsString(value));
             } catch (JsonProcessingException e) {
                 log.error("序列化状态列表项失败: {}", redisKey, e);
                 throw new RuntimeException("Failed to serialize state list item", e);
             }
         }
-        redisTemplate.expire(redisKey, ttl);
-        addToIndex(sessionKey, key);
-        log.debug("保存状态列表: {} -> {} items", redisKey, values.size());
+        if (journal != null) {
+            journal.submit(JournalRecord.list(getSessionId(sessionKey), journalToken(sessionKey), key, items));
+            return;
+        }
+        writeList(sessionKey, key, items);
     }
 
     @Override
     public <T extends State> Optional<T> get(SessionKey sessionKey, String key, Class<T> type) {
         String redisKey = buildRedisKey(sessionKey, key);
-        String json = redisTemplate.opsForValue().get(redisKey);
+        SessionJournalReplicator.Pending pending = pending(sessionKey);
+        String json = pending != null && (pending.deleted() || pending.values().containsKey(key))
+                ? pending.values().get(key)
+                : redisTemplate.opsForValue().get(redisKey);
         if (json == null || json.isEmpty()) {
             return Optional.empty();
         }
@@ -97,7 +268,10 @@ public class RedisSession implements Session {
     @Override
     public <T extends State> List<T> getList(SessionKey sessionKey, String key, Class<T> itemType) {
         String redisKey = buildRedisKey(sessionKey, key) + ":list";
-        List<String> jsonList = redisTemplate.opsForList().range(redisKey, 0, -1);
+        SessionJournalReplicator.Pending pending = pending(sessionKey);
+        List<String> jsonList = pending != null && (pending.deleted() || pending.lists().containsKey(key))
+                ? pending.lists().get(key)
+                : redisTemplate.opsForList().range(redisKey, 0, -1);
         if (jsonList == null || jsonList.isEmpty()) {
             return Collections.emptyList();
         }
@@ -115,15 +289,39 @@ public class RedisSession implements Session {
 
     @Override
     public boolean exists(SessionKey sessionKey) {
+        SessionJournalReplicator.Pending pending = pending(sessionKey);
+        if (pending != null) {
+            // 尚未写入 Redis：以本地状态为准（之前的删除也尚未写入时视为不存在）
+            return !pending.isEmpty();
+        }
         String indexKey = buildIndexKey(sessionKey);
         Long size = redisTemplate.opsForSet().size(indexKey);
-        return size != null && size > 0;
+        if (size != null && size > 0) {
+            // 对话开始时刷新访问时间，避免进行中的 Session 被降级
+            touch(sessionKey);
+            return true;
+        }
+        String sessionId = getSessionId(sessionKey);
+        return archive != null && Boolean.TRUE.equals(redisTemplate.hasKey(archivedKey(sessionId)))
+                && rehydrate(sessionId);
     }
 
     @Override
     public void delete(SessionKey sessionKey) {
+        if (journal != null) {
+            journal.submit(JournalRecord.delete(getSessionId(sessionKey), journalToken(sessionKey)));
+            return;
+        }
+        deleteNow(sessionKey);
+    }
+
+    private void deleteNow(SessionKey sessionKey) {
         String indexKey = buildIndexKey(sessionKey);
         Set<String> keys = redisTemplate.opsForSet().members(indexKey);
+        if (sessionKey instanceof FencedSessionKey fenced) {
+            deleteFenced(fenced, keys == null ? Set.of() : keys);
+            return;
+        }
         if (keys != null && !keys.isEmpty()) {
             for (String key : keys) {
                 String redisKey = buildRedisKey(sessionKey, key);
@@ -132,45 +330,465 @@ public class RedisSession implements Session {
             }
         }
         redisTemplate.delete(indexKey);
+        redisTemplate.delete(touchedKey(getSessionId(sessionKey)));
+        deleteArchived(getSessionId(sessionKey));
         log.debug("删除 Session: {}", getSessionId(sessionKey));
     }
 
+    private void deleteFenced(FencedSessionKey sessionKey, Set<String> stateKeys) {
+        String sessionId = sessionKey.sessionId();
+        List<String> keys = new ArrayList<>(stateKeys.size() * 2 + 3);
+        keys.add(fenceKey(sessionId));
+        keys.add(buildIndexKey(sessionKey));
+        keys.add(touchedKey(sessionId));
+        for (String stateKey : stateKeys) {
+            String redisKey = buildRedisKey(sessionKey, stateKey);
+            keys.add(redisKey);
+            keys.add(redisKey + ":list");
+        }
+        Long result = redisTemplate.execute(FENCED_DELETE_SCRIPT, keys,
+                String.valueOf(sessionKey.token()), String.valueOf(ttl.toSeconds()));
+        if (result == null || result == 0) {
+            log.warn("拒绝过期租约的删除: {} (token={})", sessionId, sessionKey.token());
+            throw new StaleSessionWriteException(sessionId, sessionKey.token());
+        }
+        deleteArchived(sessionId);
+        log.debug("删除 Session: {} (token={})", sessionId, sessionKey.token());
+    }
+
+    private void deleteArchived(String sessionId) {
+        if (archive != null) {
+            redisTemplate.opsForZSet().remove(activeKey(), sessionId);
+            archive.delete(sessionId);
+            redisTemplate.delete(archivedKey(sessionId));
+        }
+    }
+
+    /**
+     * 使用 SCAN 遍历，不阻塞 Redis；启用分层存储时包含冷存储中的 Session
+     */
     @Override
     public Set<SessionKey> listSessionKeys() {
-        String pattern = keyPrefix + "*:_keys";
-        Set<String> indexKeys = redisTemplate.keys(pattern);
-        if (indexKeys == null || indexKeys.isEmpty()) {
-            return Collections.emptySet();
+        Set<SessionKey> sessionKeys = new HashSet<>();
+        if (archive != null) {
+            try (Cursor<ZSetOperations.TypedTuple<String>> cursor = redisTemplate.opsForZSet()
+                    .scan(activeKey(), ScanOptions.scanOptions().count(1000).build())) {
+                cursor.forEachRemaining(t -> sessionKeys.add(SimpleSessionKey.of(t.getValue())));
+            }
+            archive.listSessionIds().forEach(id -> sessionKeys.add(SimpleSessionKey.of(id)));
+        } else {
+            ScanOptions options = ScanOptions.scanOptions().match(keyPrefix + "*:" + INDEX_SUFFIX).count(1000).build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                cursor.forEachRemaining(k -> sessionKeys.add(SimpleSessionKey.of(sessionIdOf(k))));
+            }
+        }
+        if (journal != null) {
+            journal.pendingSessionIds().forEach(id -> sessionKeys.add(SimpleSessionKey.of(id)));
         }
-        return indexKeys.stream()
-                .map(k -> k.substring(keyPrefix.length(), k.length() - 6)) // 移除前缀和 ":_keys"
-                .map(SimpleSessionKey::of)
-                .collect(Collectors.toSet());
+        return sessionKeys;
     }
 
     @Override
     public void close() {
-        // Redis 连接由 Spring 管理，不需要手动关闭
+        // Redis 连接由 Spring 管理，不需要手动关闭；本地日志中剩余的记录在停止前尽量写完
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * 注册令牌过期的监听（sessionId, token）：启用本地日志时写入是异步的，过期在写入 Redis 时才发现
+     */
+    public void onStaleWrite(BiConsumer<String, Long> listener) {
+        if (journal != null) {
+            journal.onStaleWrite(listener);
+        }
+    }
+
+    /**
+     * 等待本地日志中已追加的记录全部写入 Redis；未启用本地日志时立即返回 true
+     *
+     * @return 超时返回 false
+     */
+    public boolean awaitReplicated(Duration timeout) {
+        return journal == null || journal.awaitReplicated(timeout);
+    }
+
+    /**
+     * 会话是否还有已追加到本地日志、尚未写入 Redis 的记录（释放租约前检查，写入完成前不交出租约）
+     */
+    public boolean hasPendingWrites(String sessionId) {
+        return journal != null && journal.hasPending(sessionId);
+    }
+
+    /**
+     * 等待会话在本地日志中的记录全部写入 Redis；未启用本地日志时立即返回 true
+     *
+     * @return 超时返回 false
+     */
+    public boolean awaitReplicated(String sessionId, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (hasPendingWrites(sessionId)) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return true;
+    }
+
+    /**
+     * 把会话的 fence 推进到 token（新持有者取得租约后、加载状态前调用），之后令牌更小的写入全部被拒绝
+     *
+     * @return false 表示已有更大的令牌
+     */
+    public boolean advanceFence(String sessionId, long token) {
+        Long result = redisTemplate.execute(FENCE_SCRIPT, List.of(fenceKey(sessionId)),
+                String.valueOf(token), String.valueOf(ttl.toSeconds()));
+        return result != null && result > 0;
+    }
+
+    // ==================== 写入 Redis ====================
+
+    private void writeValue(SessionKey sessionKey, String key, String json) {
+        String redisKey = buildRedisKey(sessionKey, key);
+        if (sessionKey instanceof FencedSessionKey fenced) {
+            saveFenced(FENCED_SAVE_SCRIPT, fenced, key, redisKey, List.of(json));
+            return;
+        }
+        redisTemplate.opsForValue().set(redisKey, json, ttl);
+        addToIndex(sessionKey, key);
+        log.debug("保存状态: {}", redisKey);
+    }
+
+    private void writeList(SessionKey sessionKey, String key, List<String> items) {
+        String redisKey = buildRedisKey(sessionKey, key) + ":list";
+        if (sessionKey instanceof FencedSessionKey fenced) {
+            saveFenced(FENCED_SAVE_LIST_SCRIPT, fenced, key, redisKey, items);
+            return;
+        }
+        // 先删除旧数据
+        redisTemplate.delete(redisKey);
+        for (String json : items) {
+            redisTemplate.opsForList().rightPush(redisKey, json);
+        }
+        redisTemplate.expire(redisKey, ttl);
+        addToIndex(sessionKey, key);
+        log.debug("保存状态列表: {} -> {} items", redisKey, items.size());
+    }
+
+    /**
+     * 本地日志中的一条记录写入 Redis（{@link SessionJournalReplicator} 线程）
+     */
+    private void replicate(JournalRecord record) {
+        // 旧版本不带令牌的记录按 0 处理：会话已被任何租约持有过时拒绝
+        SessionKey sessionKey = new FencedSessionKey(record.sessionId(),
+                record.token() == JournalRecord.NO_TOKEN ? 0 : record.token());
+        switch (record.type()) {
+            case VALUE -> writeValue(sessionKey, record.stateKey(), record.values().get(0));
+            case LIST -> writeList(sessionKey, record.stateKey(), record.values());
+            case DELETE -> deleteNow(sessionKey);
+        }
+    }
+
+    private SessionJournalReplicator.Pending pending(SessionKey sessionKey) {
+        return journal == null ? null : journal.pending(getSessionId(sessionKey));
+    }
+
+    /**
+     * 日志记录的令牌：不带令牌的写入取会话当前的 fence（没有时为 0），重放时以它校验，期间被新租约接管则拒绝。
+     * 读取 fence 需要访问 Redis，Redis 不可用时不带令牌的写入直接失败（轮次的保存都带令牌，不受影响）
+     */
+    private long journalToken(SessionKey sessionKey) {
+        if (sessionKey instanceof FencedSessionKey fenced) {
+            return fenced.token();
+        }
+        String fence = redisTemplate.opsForValue().get(fenceKey(getSessionId(sessionKey)));
+        return fence == null ? 0 : Long.parseLong(fence);
+    }
+
+    private void saveFenced(RedisScript<Long> script, FencedSessionKey sessionKey, String stateKey,
+                            String redisKey, List<String> values) {
+        List<String> args = new ArrayList<>(values.size() + 3);
+        args.add(String.valueOf(sessionKey.token()));
+        args.add(String.valueOf(ttl.toSeconds()));
+        args.add(stateKey);
+        args.addAll(values);
+        Long result = redisTemplate.execute(script,
+                List.of(fenceKey(sessionKey.sessionId()), redisKey, buildIndexKey(sessionKey)),
+                args.toArray());
+        if (result == null || result == 0) {
+            log.warn("拒绝过期租约的写入: {} (token={})", redisKey, sessionKey.token());
+            throw new StaleSessionWriteException(sessionKey.sessionId(), sessionKey.token());
+        }
+        touch(sessionKey);
+        log.debug("保存状态: {} (token={})", redisKey, sessionKey.token());
+    }
+
+    /**
+     * 会话所有 key 的公共前缀：{keyPrefix}{sessionId}:
+     */
+    private String base(String sessionId) {
+        return keyPrefix + "{" + sessionId + "}:";
+    }
+
+    /**
+     * 不带哈希标签的旧格式前缀：{keyPrefix}sessionId:
+     */
+    private String legacyBase(String sessionId) {
+        return keyPrefix + sessionId + ":";
+    }
+
+    /**
+     * 从索引 key（新旧格式均可）中取出 sessionId
+     */
+    private String sessionIdOf(String indexKey) {
+        String id = indexKey.substring(keyPrefix.length(), indexKey.length() - INDEX_SUFFIX.length() - 1);
+        return id.length() >= 2 && id.startsWith("{") && id.endsWith("}") ? id.substring(1, id.length() - 1) : id;
+    }
+
+    private String fenceKey(String sessionId) {
+        return base(sessionId) + FENCE_SUFFIX;
+    }
+
+    private String touchedKey(String sessionId) {
+        return base(sessionId) + TOUCHED_SUFFIX;
+    }
+
+    /**
+     * 冷存储中有快照的标记（不过期，恢复或删除时移除）
+     */
+    private String archivedKey(String sessionId) {
+        return base(sessionId) + ARCHIVED_SUFFIX;
     }
 
     private String buildRedisKey(SessionKey sessionKey, String stateKey) {
-        return keyPrefix + getSessionId(sessionKey) + ":" + stateKey;
+        return base(getSessionId(sessionKey)) + stateKey;
     }
 
     private String buildIndexKey(SessionKey sessionKey) {
-        return keyPrefix + getSessionId(sessionKey) + ":_keys";
+        return base(getSessionId(sessionKey)) + INDEX_SUFFIX;
     }
 
     private void addToIndex(SessionKey sessionKey, String stateKey) {
         String indexKey = buildIndexKey(sessionKey);
         redisTemplate.opsForSet().add(indexKey, stateKey);
         redisTemplate.expire(indexKey, ttl);
+        touch(sessionKey);
+    }
+
+    /**
+     * 刷新访问时间：_active 供降级扫描，{sessionId}:_touched 供降级脚本在同一个槽内校验
+     */
+    private void touch(SessionKey sessionKey) {
+        if (archive != null) {
+            String sessionId = getSessionId(sessionKey);
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForValue().set(touchedKey(sessionId), String.valueOf(now), ttl);
+            redisTemplate.opsForZSet().add(activeKey(), sessionId, now);
+        }
+    }
+
+    private String activeKey() {
+        return keyPrefix + ACTIVE_SUFFIX;
+    }
+
+    // ==================== 分层存储 ====================
+
+    /**
+     * 空闲时间超过阈值的热 Session（分值为最近访问时间）
+     */
+    Set<ZSetOperations.TypedTuple<String>> idleSessions(long lastAccessBefore, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> idle = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(activeKey(), 0, lastAccessBefore, 0, limit);
+        return idle == null ? Collections.emptySet() : idle;
+    }
+
+    long hotCount() {
+        Long count = redisTemplate.opsForZSet().zCard(activeKey());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 把一个空闲 Session 降级到冷存储
+     * <p>
+     * 先写冷存储和标记再删热数据；删之前校验访问时间，期间被访问过则撤销冷存储快照
+     *
+     * @return 是否完成降级
+     */
+    boolean demote(String sessionId, double lastAccess) {
+        String base = base(sessionId);
+        Set<String> stateKeys = members(base + INDEX_SUFFIX);
+        SessionArchive.Snapshot snapshot = readSnapshot(base, stateKeys);
+        if (!snapshot.isEmpty()) {
+            archive.store(sessionId, snapshot);
+            redisTemplate.opsForValue().set(archivedKey(sessionId), "1");
+        }
+        List<String> keys = new ArrayList<>(stateKeys.size() * 2 + 2);
+        keys.add(base + INDEX_SUFFIX);
+        keys.add(touchedKey(sessionId));
+        for (String stateKey : stateKeys) {
+            keys.add(base + stateKey);
+            keys.add(base + stateKey + ":list");
+        }
+        String access = String.valueOf((long) lastAccess);
+        Long result = redisTemplate.execute(DEMOTE_SCRIPT, keys, access);
+        if (result != null && result < 0) {
+            if (!snapshot.isEmpty()) {
+                archive.delete(sessionId);
+                redisTemplate.delete(archivedKey(sessionId));
+            }
+            return false;
+        }
+        redisTemplate.execute(DEACTIVATE_SCRIPT, List.of(activeKey()), sessionId, access);
+        return result != null && result > 0 && !snapshot.isEmpty();
+    }
+
+    private Set<String> members(String indexKey) {
+        Set<String> stateKeys = redisTemplate.opsForSet().members(indexKey);
+        return stateKeys == null ? Collections.emptySet() : stateKeys;
+    }
+
+    private SessionArchive.Snapshot readSnapshot(String base, Set<String> stateKeys) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        for (String stateKey : stateKeys) {
+            String json = redisTemplate.opsForValue().get(base + stateKey);
+            if (json != null) {
+                values.put(stateKey, json);
+            }
+            List<String> items = redisTemplate.opsForList().range(base + stateKey + ":list", 0, -1);
+            if (items != null && !items.isEmpty()) {
+                lists.put(stateKey, items);
+            }
+        }
+        return new SessionArchive.Snapshot(values, lists);
+    }
+
+    private boolean rehydrate(String sessionId) {
+        long start = System.nanoTime();
+        Optional<SessionArchive.Snapshot> snapshot = archive.load(sessionId);
+        if (snapshot.isEmpty()) {
+            // 快照已过保留期被清理
+            redisTemplate.delete(archivedKey(sessionId));
+            return false;
+        }
+        restore(sessionId, snapshot.get());
+        archive.delete(sessionId);
+        redisTemplate.delete(archivedKey(sessionId));
+        if (rehydrateTimer != null) {
+            rehydrateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("Session 从冷存储恢复: {}", sessionId);
+        return true;
+    }
+
+    // ==================== 一次性迁移 ====================
+
+    /**
+     * 遍历旧格式（不带哈希标签）的索引 key，逐个迁移到新格式
+     *
+     * @return 迁移的 Session 数
+     */
+    int migrateLegacySessions() {
+        List<String> sessionIds = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(keyPrefix + "*:" + INDEX_SUFFIX).count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            cursor.forEachRemaining(indexKey -> {
+                if (!indexKey.startsWith(keyPrefix + "{")) {
+                    sessionIds.add(sessionIdOf(indexKey));
+                }
+            });
+        }
+        int migrated = 0;
+        for (String sessionId : sessionIds) {
+            if (migrateLegacy(sessionId)) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * 为引入标记之前降级的冷存储快照补写标记
+     *
+     * @return 补写的标记数
+     */
+    int markArchivedSessions() {
+        if (archive == null) {
+            return 0;
+        }
+        int marked = 0;
+        for (String sessionId : archive.listSessionIds()) {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(archivedKey(sessionId), "1"))) {
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * 旧格式的 Session 写成带哈希标签的新格式后删除旧 key（多节点并发迁移只有一个写入生效）
+     */
+    private boolean migrateLegacy(String sessionId) {
+        String legacy = legacyBase(sessionId);
+        Set<String> stateKeys = members(legacy + INDEX_SUFFIX);
+        if (stateKeys.isEmpty()) {
+            return false;
+        }
+        SessionArchive.Snapshot snapshot = readSnapshot(legacy, stateKeys);
+        if (!snapshot.isEmpty()) {
+            restore(sessionId, snapshot);
+        }
+        List<String> legacyKeys = new ArrayList<>(stateKeys.size() * 2 + 2);
+        for (String stateKey : stateKeys) {
+            legacyKeys.add(legacy + stateKey);
+            legacyKeys.add(legacy + stateKey + ":list");
+        }
+        legacyKeys.add(legacy + FENCE_SUFFIX);
+        legacyKeys.add(legacy + INDEX_SUFFIX);
+        redisTemplate.delete(legacyKeys);
+        log.info("Session 迁移到带哈希标签的 key: {}", sessionId);
+        return !snapshot.isEmpty();
+    }
+
+    /**
+     * 热存储中不存在时写回快照并登记到 _active
+     */
+    private void restore(String sessionId, SessionArchive.Snapshot snapshot) {
+        String base = base(sessionId);
+        long now = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>();
+        keys.add(base + INDEX_SUFFIX);
+        keys.add(touchedKey(sessionId));
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(ttl.toSeconds()));
+        args.add(String.valueOf(now));
+        snapshot.v().forEach((stateKey, json) -> {
+            keys.add(base + stateKey);
+            args.add("v");
+            args.add(stateKey);
+            args.add(json);
+        });
+        snapshot.l().forEach((stateKey, items) -> items.forEach(json -> {
+            keys.add(base + stateKey + ":list");
+            args.add("l");
+            args.add(stateKey);
+            args.add(json);
+        }));
+        Long result = redisTemplate.execute(RESTORE_SCRIPT, keys, args.toArray());
+        if (archive != null && result != null && result > 0) {
+            redisTemplate.opsForZSet().add(activeKey(), sessionId, now);
+        }
     }
 
     private String getSessionId(SessionKey sessionKey) {
         if (sessionKey instanceof SimpleSessionKey simpleKey) {
             return simpleKey.sessionId();
         }
+        if (sessionKey instanceof FencedSessionKey fencedKey) {
+            return fencedKey.sessionId();
+        }
         return sessionKey.toString();
     }
 }
@@ -0,0 +1,118 @@
+package com.deepknow.agentoz.session;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.deepknow.agentoz.entity.SessionArchiveEntity;
+import com.deepknow.agentoz.mapper.SessionArchiveMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Session 冷存储（MySQL session_archive 表）
+ * <p>
+ * 快照直接保存 Redis 中的原始 JSON 字符串，降级和恢复都不经过 State 反序列化
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionArchive {
+
+    private final SessionArchiveMapper archiveMapper;
+    private final ObjectMapper objectMapper;
+
+    public void store(String sessionId, Snapshot snapshot) {
+        byte[] raw = toBytes(snapshot);
+        byte[] compressed = gzip(raw);
+        archiveMapper.upsert(SessionArchiveEntity.builder()
+                .sessionId(sessionId)
+                .payload(compressed)
+                .rawSize(raw.length)
+                .compressedSize(compressed.length)
+                .archivedAt(LocalDateTime.now())
+                .build());
+        log.debug("Session 降级到冷存储: {} ({} -> {} bytes)", sessionId, raw.length, compressed.length);
+    }
+
+    public Optional<Snapshot> load(String sessionId) {
+        SessionArchiveEntity archive = archiveMapper.selectById(sessionId);
+        if (archive == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(gunzip(archive.getPayload()), Snapshot.class));
+        } catch (IOException e) {
+            log.error("解析冷存储 Session 失败: {}", sessionId, e);
+            return Optional.empty();
+        }
+    }
+
+    public void delete(String sessionId) {
+        archiveMapper.deleteById(sessionId);
+    }
+
+    public long count() {
+        return archiveMapper.selectCount(null);
+    }
+
+    public List<String> listSessionIds() {
+        return archiveMapper.selectList(new LambdaQueryWrapper<SessionArchiveEntity>()
+                        .select(SessionArchiveEntity::getSessionId))
+                .stream()
+                .map(SessionArchiveEntity::getSessionId)
+                .toList();
+    }
+
+    /**
+     * 清理超过保留期的快照
+     */
+    public int purgeArchivedBefore(LocalDateTime cutoff) {
+        return archiveMapper.delete(new LambdaQueryWrapper<SessionArchiveEntity>()
+                .lt(SessionArchiveEntity::getArchivedAt, cutoff));
+    }
+
+    private byte[] toBytes(Snapshot snapshot) {
+        try {
+            return objectMapper.writeValueAsBytes(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize session snapshot", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    /**
+     * Session 快照：单值状态与列表状态的原始 JSON
+     */
+    public record Snapshot(Map<String, String> v, Map<String, List<String>> l) {
+
+        public boolean isEmpty() {
+            return v.isEmpty() && l.isEmpty();
+        }
+    }
+}
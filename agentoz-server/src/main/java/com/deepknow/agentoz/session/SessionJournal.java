@@ -0,0 +1,347 @@
+package com.deepknow.agentoz.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Session 写入的本地预写日志：{@link RedisSession} 先把每次保存追加到这里，再由
+ * {@link SessionJournalReplicator} 按顺序写入 Redis
+ * <pre>
+ * journal-{首条序号}.seg  映射文件，逐条追加：int 长度 | int CRC32C | long 序号 | 记录内容，长度为 0 表示段结束
+ * checkpoint             映射文件，long 已写入 Redis 的最大序号
+ * </pre>
+ * 追加只是写映射内存（进程崩溃后仍在页缓存中，随后由操作系统写回）；fsync 开启时每条记录写入后刷盘，
+ * 防止整机掉电丢失。启动时从 checkpoint 之后逐条校验 CRC 和序号连续性，遇到不完整的记录即视为日志末尾。
+ * 一个段的记录全部确认后删除该段文件。
+ * <p>
+ * 线程安全：追加、读取、确认都在实例锁内完成，单次追加只是一次内存拷贝。
+ */
+@Slf4j
+public class SessionJournal implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int FRAME_HEADER_BYTES = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    /**
+     * 首条序号 -> 段，最后一个是当前追加的段
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final MappedByteBuffer checkpoint;
+    private final CRC32C crc = new CRC32C();
+
+    private long nextSequence;
+    private long acknowledged;
+
+    /**
+     * 读取位置：replicator 下一条要读取的记录
+     */
+    private Segment readSegment;
+    private int readPosition;
+    private boolean closed;
+
+    public SessionJournal(Path directory, int segmentBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve("checkpoint"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        this.acknowledged = checkpoint.getLong(0);
+        recover();
+    }
+
+    /**
+     * 追加一条记录，返回其序号
+     */
+    long append(JournalRecord record) {
+        // 编码在锁外完成，锁内只有一次内存拷贝
+        byte[] payload = record.encode();
+        synchronized (this) {
+            checkOpen();
+            long sequence = nextSequence;
+            int length = Long.BYTES + payload.length;
+            Segment segment = segments.lastEntry().getValue();
+            if (segment.position + FRAME_HEADER_BYTES + length > segment.buffer.capacity()) {
+                segment = roll(sequence, FRAME_HEADER_BYTES + length);
+            }
+            ByteBuffer buffer = segment.buffer;
+            int start = segment.position;
+            buffer.putLong(start + FRAME_HEADER_BYTES, sequence);
+            buffer.put(start + FRAME_HEADER_BYTES + Long.BYTES, payload);
+            crc.reset();
+            crc.update(buffer.slice(start + FRAME_HEADER_BYTES, length));
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            // 长度最后写入：长度为 0 时读取方视为段结束，不会读到写了一半的记录
+            buffer.putInt(start, length);
+            if (fsync) {
+                segment.buffer.force(start, FRAME_HEADER_BYTES + length);
+            }
+            segment.position = start + FRAME_HEADER_BYTES + length;
+            segment.lastSequence = sequence;
+            nextSequence = sequence + 1;
+            return sequence;
+        }
+    }
+
+    /**
+     * 从读取位置起取出至多 max 条记录并前移读取位置；没有新记录时返回空列表
+     */
+    synchronized List<JournalRecord> poll(int max) {
+        checkOpen();
+        List<JournalRecord> records = new ArrayList<>(Math.min(max, 64));
+        while (records.size() < max) {
+            if (readPosition >= readSegment.position) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.firstSequence);
+                if (next == null) {
+                    break;
+                }
+                readSegment = next.getValue();
+                readPosition = 0;
+                continue;
+            }
+            ByteBuffer buffer = readSegment.buffer;
+            int length = buffer.getInt(readPosition);
+            long sequence = buffer.getLong(readPosition + FRAME_HEADER_BYTES);
+            byte[] payload = new byte[length - Long.BYTES];
+            buffer.get(readPosition + FRAME_HEADER_BYTES + Long.BYTES, payload);
+            records.add(JournalRecord.decode(sequence, payload));
+            readPosition += FRAME_HEADER_BYTES + length;
+        }
+        return records;
+    }
+
+    /**
+     * 确认 sequence 及之前的记录已写入 Redis，删除已全部确认的段
+     */
+    synchronized void acknowledge(long sequence) {
+        if (closed || sequence <= acknowledged) {
+            return;
+        }
+        acknowledged = sequence;
+        checkpoint.putLong(0, sequence);
+        if (fsync) {
+            checkpoint.force();
+        }
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.lastSequence > acknowledged || oldest == readSegment) {
+                break;
+            }
+            segments.pollFirstEntry();
+            delete(oldest.path);
+        }
+    }
+
+    /**
+     * 已追加但尚未确认的记录数
+     */
+    public synchronized long pending() {
+        return nextSequence - 1 - acknowledged;
+    }
+
+    public synchronized long acknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * 最近一条追加的记录的序号
+     */
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 映射区域随缓冲区被回收而释放，这里只把脏页写回
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        checkpoint.force();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Session 日志已关闭: " + directory);
+        }
+    }
+
+    /**
+     * 打开已有的段，定位日志末尾和读取位置
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        TreeMap<Long, Path> ordered = new TreeMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            ordered.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length())), file);
+        }
+
+        long expected = -1;
+        boolean truncated = false;
+        for (Map.Entry<Long, Path> entry : ordered.entrySet()) {
+            if (truncated || (expected >= 0 && entry.getKey() != expected)) {
+                // 前一段不完整或序号不连续：之后的段不可信
+                log.warn("丢弃 Session 日志段（序号不连续）: {}", entry.getValue());
+                delete(entry.getValue());
+                truncated = true;
+                continue;
+            }
+            Segment segment = new Segment(entry.getValue(), entry.getKey(),
+                    map(entry.getValue(), Math.max(segmentBytes, (int) Files.size(entry.getValue()))));
+            truncated = !scan(segment);
+            segments.put(segment.firstSequence, segment);
+            expected = segment.lastSequence + 1;
+        }
+
+        if (segments.isEmpty()) {
+            nextSequence = acknowledged + 1;
+            roll(nextSequence, 0);
+        } else {
+            nextSequence = segments.lastEntry().getValue().lastSequence + 1;
+            if (nextSequence <= acknowledged) {
+                // checkpoint 比日志新（段文件被清理过）：从 checkpoint 之后继续编号
+                nextSequence = acknowledged + 1;
+                roll(nextSequence, 0);
+            }
+        }
+
+        // 读取位置：第一条未确认的记录
+        readSegment = segments.firstEntry().getValue();
+        readPosition = 0;
+        for (Segment segment : segments.values()) {
+            if (segment.lastSequence <= acknowledged) {
+                readSegment = segment;
+                readPosition = segment.position;
+                continue;
+            }
+            readSegment = segment;
+            readPosition = 0;
+            while (readPosition < segment.position
+                    && segment.buffer.getLong(readPosition + FRAME_HEADER_BYTES) <= acknowledged) {
+                readPosition += FRAME_HEADER_BYTES + segment.buffer.getInt(readPosition);
+            }
+            break;
+        }
+        // 已全部确认的旧段
+        while (segments.size() > 1 && segments.firstEntry().getValue() != readSegment) {
+            delete(segments.pollFirstEntry().getValue().path);
+        }
+        long pending = nextSequence - 1 - acknowledged;
+        if (pending > 0) {
+            log.info("Session 日志中有 {} 条记录尚未写入 Redis，将按顺序重放: {}", pending, directory);
+        }
+    }
+
+    /**
+     * 逐条校验段内记录，定位追加位置
+     *
+     * @return false 表示遇到了不完整的记录（已截断）
+     */
+    private boolean scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        long expected = segment.firstSequence;
+        int position = 0;
+        boolean complete = true;
+        while (position + FRAME_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < Long.BYTES || position + FRAME_HEADER_BYTES + length > buffer.capacity()
+                    || buffer.getLong(position + FRAME_HEADER_BYTES) != expected) {
+                complete = false;
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + FRAME_HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                complete = false;
+                break;
+            }
+            position += FRAME_HEADER_BYTES + length;
+            expected++;
+        }
+        if (!complete) {
+            log.warn("Session 日志段在 {} 处不完整，截断: {}", position, segment.path);
+            buffer.putInt(position, 0);
+        }
+        segment.position = position;
+        segment.lastSequence = expected - 1;
+        return complete;
+    }
+
+    private Segment roll(long firstSequence, int minBytes) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        try {
+            // 单条记录超过段大小时该段按记录大小分配；末尾留出段结束标记
+            Segment segment = new Segment(path, firstSequence,
+                    map(path, Math.max(segmentBytes, minBytes + Integer.BYTES)));
+            segment.lastSequence = firstSequence - 1;
+            segments.put(firstSequence, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建 Session 日志段失败: " + path, e);
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, int bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // 新段按大小一次映射，未写入的部分在文件系统中是空洞，读出为 0（段结束标记）
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除 Session 日志段失败: {}", path, e);
+        }
+    }
+
+    private static final class Segment {
+
+        final Path path;
+        final long firstSequence;
+        final MappedByteBuffer buffer;
+        int position;
+        long lastSequence;
+
+        Segment(Path path, long firstSequence, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.deepknow.agentoz.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * 把 {@link SessionJournal} 中的记录按顺序写入 Redis（单个后台线程）
+ * <p>
+ * 保存只追加日志并更新 {@link #pending} 中的最新状态，本节点随后的读取先查这里（读己之写），
+ * 记录写入 Redis 后移除。Redis 不可用（{@link DataAccessException}）时停在当前记录上按退避间隔重试，
+ * 恢复后继续按序写入；同一批中被后续记录覆盖的写入直接跳过。
+ * 令牌已过期的记录被 fence 拒绝后丢弃，并通知 {@link #onStaleWrite} 的监听者。
+ * <p>
+ * 启动时日志中尚未确认的记录先载入 pending，再作为第一批重放。
+ */
+@Slf4j
+final class SessionJournalReplicator implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 把一条记录写入 Redis
+     */
+    @FunctionalInterface
+    interface Target {
+        void apply(JournalRecord record);
+    }
+
+    /**
+     * 尚未写入 Redis 的会话状态
+     *
+     * @param deleted 会话在这些写入之前被删除过：values / lists 之外的状态视为不存在
+     */
+    record Pending(Map<String, String> values, Map<String, List<String>> lists, boolean deleted) {
+
+        boolean isEmpty() {
+            return values.isEmpty() && lists.isEmpty();
+        }
+    }
+
+    private final SessionJournal journal;
+    private final Target target;
+    private final Duration drainTimeout;
+    private final Map<String, PendingSession> pending = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, Long>> staleListeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    private final Counter replicated;
+    private final Counter coalesced;
+    private final Counter stale;
+    private final Counter failed;
+
+    private List<JournalRecord> backlog;
+    private volatile boolean stopping;
+    private volatile long drainDeadline;
+
+    SessionJournalReplicator(SessionJournal journal, Target target, Duration drainTimeout,
+                             MeterRegistry meterRegistry) {
+        this.journal = journal;
+        this.target = target;
+        this.drainTimeout = drainTimeout;
+        this.replicated = recordCounter(meterRegistry, "replicated");
+        this.coalesced = recordCounter(meterRegistry, "coalesced");
+        this.stale = recordCounter(meterRegistry, "stale");
+        this.failed = recordCounter(meterRegistry, "failed");
+        Gauge.builder("agentoz.session.journal.pending", journal, SessionJournal::pending)
+                .description("已写入本地日志、尚未写入 Redis 的 Session 记录数")
+                .register(meterRegistry);
+
+        this.backlog = new ArrayList<>();
+        List<JournalRecord> batch;
+        while (!(batch = journal.poll(BATCH_SIZE)).isEmpty()) {
+            batch.forEach(this::stage);
+            backlog.addAll(batch);
+        }
+        this.thread = new Thread(this::run, "session-journal-replicator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 追加一条写入，返回后即可被本节点读到；写入 Redis 由后台线程完成
+     */
+    long submit(JournalRecord record) {
+        long sequence;
+        synchronized (this) {
+            // 追加与更新 pending 在同一把锁内，pending 中的顺序与日志一致
+            sequence = journal.append(record);
+            stage(record.withSequence(sequence));
+        }
+        LockSupport.unpark(thread);
+        return sequence;
+    }
+
+    /**
+     * 会话尚未写入 Redis 的状态，没有时为 null
+     */
+    Pending pending(String sessionId) {
+        PendingSession session = pending.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        synchronized (this) {
+            return new Pending(Map.copyOf(session.values), Map.copyOf(session.lists), session.deleted);
+        }
+    }
+
+    boolean hasPending(String sessionId) {
+        return pending.containsKey(sessionId);
+    }
+
+    Set<String> pendingSessionIds() {
+        return pending.keySet();
+    }
+
+    void onStaleWrite(BiConsumer<String, Long> listener) {
+        staleListeners.add(listener);
+    }
+
+    /**
+     * 等待已追加的记录全部写入 Redis
+     *
+     * @return 超时返回 false
+     */
+    boolean awaitReplicated(Duration timeout) {
+        long sequence = journal.lastSequence();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (journal.acknowledged() < sequence) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /**
+     * 在 drainTimeout 内尽量写完剩余记录后停止并关闭日志，未写入的记录留在日志中，下次启动时重放
+     */
+    @Override
+    public void close() {
+        drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        stopping = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(drainTimeout.toMillis() + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long remaining = journal.pending();
+        if (remaining > 0) {
+            log.warn("仍有 {} 条 Session 记录未写入 Redis，保留在本地日志中，下次启动时重放", remaining);
+        }
+        journal.close();
+    }
+
+    private void run() {
+        List<JournalRecord> batch = backlog;
+        backlog = null;
+        long backoff = INITIAL_BACKOFF_NANOS;
+        boolean unavailable = false;
+        while (true) {
+            if (stopping && System.nanoTime() - drainDeadline >= 0) {
+                return;
+            }
+            if (batch.isEmpty()) {
+                batch = journal.poll(BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    if (stopping) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+            }
+            int applied = replicate(batch);
+            if (applied == batch.size()) {
+                if (unavailable) {
+                    unavailable = false;
+                    log.info("Redis 已恢复，本地日志中剩余 {} 条 Session 记录", journal.pending());
+                }
+                batch = List.of();
+                backoff = INITIAL_BACKOFF_NANOS;
+                continue;
+            }
+            batch = new ArrayList<>(batch.subList(applied, batch.size()));
+            if (!unavailable) {
+                unavailable = true;
+                log.warn("Redis 写入失败，Session 记录暂存在本地日志中（{} 条）并持续重试", journal.pending());
+            }
+            LockSupport.parkNanos(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * 按顺序写入一批记录，每条完成后确认
+     *
+     * @return 已完成的条数；小于批大小表示 Redis 不可用，停在该条上
+     */
+    private int replicate(List<JournalRecord> batch) {
+        boolean[] superseded = superseded(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            JournalRecord record = batch.get(i);
+            if (superseded[i]) {
+                coalesced.increment();
+            } else {
+                try {
+                    target.apply(record);
+                    replicated.increment();
+                } catch (StaleSessionWriteException e) {
+                    stale.increment();
+                    staleListeners.forEach(listener -> listener.accept(record.sessionId(), record.token()));
+                } catch (DataAccessException e) {
+                    log.debug("写入 Redis 失败: seq={}", record.sequence(), e);
+                    return i;
+                } catch (RuntimeException e) {
+                    // 不是 Redis 不可用：重试不会成功，跳过这条
+                    failed.increment();
+                    log.error("Session 记录写入失败，已跳过: seq={}, sessionId={}", record.sequence(),
+                            record.sessionId(), e);
+                }
+            }
+            journal.acknowledge(record.sequence());
+            settle(record);
+        }
+        return batch.size();
+    }
+
+    /**
+     * 同一批中之后还有同一状态的写入，或之后会话被删除的记录不必写入
+     */
+    private static boolean[] superseded(List<JournalRecord> batch) {
+        boolean[] superseded = new boolean[batch.size()];
+        Set<String> written = new HashSet<>();
+        Set<String> deleted = new HashSet<>();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            JournalRecord record = batch.get(i);
+            if (deleted.contains(record.sessionId())) {
+                superseded[i] = true;
+            } else if (record.type() == JournalRecord.Type.DELETE) {
+                deleted.add(record.sessionId());
+            } else {
+                superseded[i] = !written.add(record.type() + "\0" + record.sessionId() + "\0" + record.stateKey());
+            }
+        }
+        return superseded;
+    }
+
+    private void stage(JournalRecord record) {
+        pending.compute(record.sessionId(), (sessionId, session) -> {
+            PendingSession state = session != null ? session : new PendingSession();
+            switch (record.type()) {
+                case VALUE -> state.values.put(record.stateKey(), record.values().get(0));
+                case LIST -> state.lists.put(record.stateKey(), record.values());
+                case DELETE -> {
+                    state.values.clear();
+                    state.lists.clear();
+                    state.deleted = true;
+                }
+            }
+            state.lastSequence = record.sequence();
+            return state;
+        });
+    }
+
+    /**
+     * 会话的最后一条记录已写入 Redis：之后的读取直接访问 Redis
+     */
+    private void settle(JournalRecord record) {
+        pending.computeIfPresent(record.sessionId(),
+                (sessionId, session) -> session.lastSequence <= record.sequence() ? null : session);
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.session.journal.records")
+                .description("Session 日志记录写入 Redis 的结果（coalesced 为被同一批后续写入覆盖而跳过）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 修改在 {@link #stage}（pending.compute 内，且持有实例锁）中完成，读取在实例锁内复制
+     */
+    private static final class PendingSession {
+
+        final Map<String, String> values = new HashMap<>();
+        final Map<String, List<String>> lists = new HashMap<>();
+        boolean deleted;
+        long lastSequence;
+    }
+}
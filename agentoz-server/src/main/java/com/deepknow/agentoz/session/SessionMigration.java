@@ -0,0 +1,51 @@
+package com.deepknow.agentoz.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Session 存储格式的一次性迁移，升级时开启一次（agentoz.session.migration.enabled），完成后关闭
+ * <p>
+ * 把旧格式（不带哈希标签）的 Session 迁移到新格式，并为引入 _archived 标记之前降级的冷存储快照补写标记。
+ * {@link RedisSession#exists} 不再为每次未命中扫描旧格式 key 和查询冷存储，未迁移的数据在迁移完成前读不到。
+ * 多节点同时启动时通过 Redis 锁保证只有一个节点执行。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "agentoz.session.migration.enabled", havingValue = "true")
+public class SessionMigration {
+
+    private static final String LOCK_KEY = "agentoz:session:_migration";
+
+    private final RedisSession redisSession;
+    private final StringRedisTemplate redisTemplate;
+
+    public SessionMigration(RedisSession redisSession, StringRedisTemplate redisTemplate) {
+        this.redisSession = redisSession;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, "1", Duration.ofHours(1));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("其他节点正在迁移 Session，跳过");
+            return;
+        }
+        try {
+            int migrated = redisSession.migrateLegacySessions();
+            int marked = redisSession.markArchivedSessions();
+            log.info("Session 迁移完成: 旧格式 {} 个, 补写冷存储标记 {} 个", migrated, marked);
+        } catch (Exception e) {
+            log.error("Session 迁移失败，可重启后重试", e);
+        } finally {
+            redisTemplate.delete(LOCK_KEY);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.deepknow.agentoz.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session 分层后台任务
+ * <p>
+ * 按 {@link RedisSession} 的访问时间 ZSet 找出空闲 Session 降级到冷存储（不使用 KEYS），
+ * 并清理超过保留期的冷存储快照。多节点部署时通过 Redis 锁保证同一时刻只有一个节点在执行。
+ */
+@Slf4j
+@Component
+public class SessionTieringSweeper {
+
+    private static final String LOCK_KEY = "agentoz:session:_sweeper";
+
+    private final RedisSession redisSession;
+    private final SessionArchive archive;
+    private final StringRedisTemplate redisTemplate;
+
+    private final boolean enabled;
+    private final Duration idleThreshold;
+    private final Duration coldRetention;
+    private final int batchSize;
+
+    private final AtomicLong hotSessions = new AtomicLong();
+    private final AtomicLong coldSessions = new AtomicLong();
+    private final Counter demoted;
+
+    public SessionTieringSweeper(RedisSession redisSession,
+                                 SessionArchive archive,
+                                 StringRedisTemplate redisTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${agentoz.session.tiering.enabled:true}") boolean enabled,
+                                 @Value("${agentoz.session.tiering.idle-threshold:24h}") Duration idleThreshold,
+                                 @Value("${agentoz.session.tiering.cold-retention:90d}") Duration coldRetention,
+                                 @Value("${agentoz.session.tiering.batch-size:500}") int batchSize) {
+        this.redisSession = redisSession;
+        this.archive = archive;
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.idleThreshold = idleThreshold;
+        this.coldRetention = coldRetention;
+        this.batchSize = batchSize;
+
+        Gauge.builder("agentoz.session.count", hotSessions, AtomicLong::get)
+                .description("Session 数量")
+                .tag("tier", "hot")
+                .register(meterRegistry);
+        Gauge.builder("agentoz.session.count", coldSessions, AtomicLong::get)
+                .description("Session 数量")
+                .tag("tier", "cold")
+                .register(meterRegistry);
+        this.demoted = Counter.builder("agentoz.session.demoted")
+                .description("降级到冷存储的 Session 数")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${agentoz.session.tiering.sweep-interval:60000}",
+            initialDelayString = "${agentoz.session.tiering.sweep-interval:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, "1", Duration.ofMinutes(5));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            int count = demoteIdleSessions();
+            int purged = archive.purgeArchivedBefore(LocalDateTime.now().minus(coldRetention));
+            hotSessions.set(redisSession.hotCount());
+            coldSessions.set(archive.count());
+            if (count > 0 || purged > 0) {
+                log.info("Session 分层完成: 降级 {} 个, 清理过期冷存储 {} 个, 当前热 {} / 冷 {}",
+                        count, purged, hotSessions.get(), coldSessions.get());
+            }
+        } catch (Exception e) {
+            log.error("Session 分层失败", e);
+        } finally {
+            redisTemplate.delete(LOCK_KEY);
+        }
+    }
+
+    private int demoteIdleSessions() {
+        long lastAccessBefore = System.currentTimeMillis() - idleThreshold.toMillis();
+        int count = 0;
+        while (true) {
+            Set<ZSetOperations.TypedTuple<String>> idle = redisSession.idleSessions(lastAccessBefore, batchSize);
+            if (idle.isEmpty()) {
+                return count;
+            }
+            for (ZSetOperations.TypedTuple<String> session : idle) {
+                try {
+                    if (redisSession.demote(session.getValue(), session.getScore())) {
+                        count++;
+                        demoted.increment();
+                    }
+                } catch (Exception e) {
+                    // 冷存储写入失败时热数据保持不变，下一轮重试
+                    log.error("Session 降级失败: {}", session.getValue(), e);
+                    return count;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.deepknow.agentoz.session;
+
+/**
+ * 会话租约已被其他节点接管，本轮的保存被拒绝（本轮结果不会写入 Session）
+ */
+public class StaleSessionWriteException extends RuntimeException {
+
+    public StaleSessionWriteException(String sessionId, long token) {
+        super("会话租约已失效，拒绝写入: sessionId=" + sessionId + ", token=" + token);
+    }
+}
@@ -0,0 +1,23 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * 不保留跨节点副本，只能在执行轮次的节点上恢复
+ */
+@Component
+@ConditionalOnProperty(name = "agentoz.stream.replay.redis-mirror", havingValue = "false", matchIfMissing = true)
+public class NoopTurnEventMirror implements TurnEventMirror {
+
+    @Override
+    public void attach(TurnStream stream) {
+    }
+
+    @Override
+    public Flux<AgentChatResponse> replay(String sessionId, String turnId, long afterSeq) {
+        return Flux.error(new StreamNotResumableException("没有可恢复的轮次: " + sessionId));
+    }
+}
@@ -0,0 +1,157 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Redis Stream 副本：agentoz:turn:events:{sessionId}，每条记录为 turn、seq、事件 JSON
+ * <p>
+ * 事件按 50ms 或 64 条攒批后流水线写入，不逐 Token 访问 Redis；长度上限与本地缓冲区相同，
+ * 最后一次写入后保留 ttl。其他节点通过轮询 XRANGE 重放，直到收到结束事件。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "agentoz.stream.replay.redis-mirror", havingValue = "true")
+public class RedisTurnEventMirror implements TurnEventMirror {
+
+    private static final String KEY_PREFIX = "agentoz:turn:events:";
+    private static final int BATCH_SIZE = 64;
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(50);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int capacity;
+    private final Duration ttl;
+    private final Duration pollInterval;
+
+    public RedisTurnEventMirror(StringRedisTemplate redisTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${agentoz.stream.replay.capacity:512}") int capacity,
+                                @Value("${agentoz.stream.replay.redis-ttl:2m}") Duration ttl,
+                                @Value("${agentoz.stream.replay.redis-poll-interval:200ms}") Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public void attach(TurnStream stream) {
+        String key = KEY_PREFIX + stream.sessionId();
+        AtomicBoolean first = new AtomicBoolean(true);
+        stream.events()
+                .bufferTimeout(BATCH_SIZE, BATCH_WINDOW)
+                .concatMap(batch -> Mono.fromRunnable(() -> write(key, stream.turnId(), batch, first.getAndSet(false)))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .subscribe(null, e -> log.warn("写入轮次事件副本失败: {}", key, e));
+    }
+
+    private void write(String key, String turnId, List<AgentChatResponse> batch, boolean reset) {
+        List<MapRecord<String, String, String>> records = new ArrayList<>(batch.size());
+        for (AgentChatResponse response : batch) {
+            try {
+                records.add(StreamRecords.string(Map.of(
+                        "turn", turnId,
+                        "seq", String.valueOf(response.getSeq()),
+                        "event", objectMapper.writeValueAsString(response))).withStreamKey(key));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("序列化轮次事件失败", e);
+            }
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> redisOperations) {
+                // 模板的 key / value 类型固定为 String
+                RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                if (reset) {
+                    // 上一轮的记录
+                    operations.delete(key);
+                }
+                records.forEach(record -> operations.opsForStream().add(record));
+                operations.opsForStream().trim(key, capacity, true);
+                operations.expire(key, ttl);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Flux<AgentChatResponse> replay(String sessionId, String turnId, long afterSeq) {
+        String key = KEY_PREFIX + sessionId;
+        AtomicReference<String> cursor = new AtomicReference<>();
+        AtomicLong lastSeq = new AtomicLong(afterSeq);
+        return Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(() -> read(key, cursor))
+                        .subscribeOn(Schedulers.boundedElastic()), 1)
+                .concatMapIterable(records -> records)
+                .<AgentChatResponse>handle((record, sink) -> {
+                    long seq = Long.parseLong((String) record.getValue().get("seq"));
+                    if (turnId != null && !turnId.equals(record.getValue().get("turn"))) {
+                        sink.error(new StreamNotResumableException("轮次已结束或被新轮次取代: " + turnId));
+                        return;
+                    }
+                    if (seq <= lastSeq.get()) {
+                        return;
+                    }
+                    if (seq > lastSeq.get() + 1) {
+                        sink.error(new StreamNotResumableException(
+                                "事件已超出重放缓冲区: sessionId=" + sessionId + ", lastSeq=" + lastSeq.get()));
+                        return;
+                    }
+                    lastSeq.set(seq);
+                    try {
+                        sink.next(objectMapper.readValue((String) record.getValue().get("event"),
+                                AgentChatResponse.class));
+                    } catch (JsonProcessingException e) {
+                        sink.error(e);
+                    }
+                })
+                .takeUntil(response -> Boolean.TRUE.equals(response.getFinished()))
+                // 副本过期或执行节点宕机后不再有新事件
+                .timeout(ttl, Flux.error(new StreamNotResumableException("没有可恢复的轮次: " + sessionId)));
+    }
+
+    private List<MapRecord<String, Object, Object>> read(String key, AtomicReference<String> cursor) {
+        String from = cursor.get();
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(key,
+                from == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(from)));
+        if (records == null || records.isEmpty()) {
+            if (from == null && !Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                throw new StreamNotResumableException("没有可恢复的轮次: " + key.substring(KEY_PREFIX.length()));
+            }
+            return List.of();
+        }
+        if (from != null && records.get(0).getId().getValue().equals(from)) {
+            records = records.subList(1, records.size());
+        }
+        if (!records.isEmpty()) {
+            cursor.set(records.get(records.size() - 1).getId().getValue());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,11 @@
+package com.deepknow.agentoz.stream;
+
+/**
+ * 无法恢复事件流：轮次不存在、已被新轮次取代，或请求的事件已超出重放缓冲区
+ */
+public class StreamNotResumableException extends RuntimeException {
+
+    public StreamNotResumableException(String message) {
+        super(message);
+    }
+}
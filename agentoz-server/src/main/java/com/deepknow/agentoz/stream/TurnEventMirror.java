@@ -0,0 +1,24 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import reactor.core.publisher.Flux;
+
+/**
+ * 轮次事件的跨节点副本：本节点没有该轮次时（路由在轮次进行中发生变化）从副本恢复
+ * <p>
+ * 实现由 agentoz.stream.replay.redis-mirror 选择
+ */
+public interface TurnEventMirror {
+
+    /**
+     * 轮次开始时调用，订阅 {@link TurnStream#events()} 写入副本
+     */
+    void attach(TurnStream stream);
+
+    /**
+     * 从副本重放 afterSeq 之后的事件，直到轮次结束
+     *
+     * @param turnId 为空时不校验轮次
+     */
+    Flux<AgentChatResponse> replay(String sessionId, String turnId, long afterSeq);
+}
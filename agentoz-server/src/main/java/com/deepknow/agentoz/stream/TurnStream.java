@@ -0,0 +1,77 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * 一轮对话的事件流：给事件编号并保留最近 capacity 个，供断线的客户端从某个序号重新接上
+ * <p>
+ * 事件流与订阅者解耦：原始订阅者断开不会中止轮次，轮次结束后流在 {@link TurnStreamRegistry} 中再保留一段时间。
+ */
+public final class TurnStream {
+
+    private final String sessionId;
+    private final String turnId;
+
+    /**
+     * 有界重放：每个订阅者先收到仍在缓冲区中的历史事件，再收到后续的实时事件
+     */
+    private final Sinks.Many<AgentChatResponse> sink;
+
+    private long seq;
+    private boolean finished;
+
+    TurnStream(String sessionId, String turnId, int capacity) {
+        this.sessionId = sessionId;
+        this.turnId = turnId;
+        this.sink = Sinks.many().replay().limit(capacity);
+    }
+
+    public String sessionId() {
+        return sessionId;
+    }
+
+    public String turnId() {
+        return turnId;
+    }
+
+    /**
+     * 编号并发出事件；Hook 可能在不同线程回调，加锁保证序号与发出顺序一致
+     */
+    public synchronized void emit(AgentChatResponse response) {
+        if (finished) {
+            return;
+        }
+        response.setSeq(++seq);
+        if (seq == 1) {
+            response.setTurnId(turnId);
+        }
+        sink.tryEmitNext(response);
+    }
+
+    synchronized void complete() {
+        finished = true;
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * 全部事件（缓冲区内的历史 + 实时）
+     */
+    public Flux<AgentChatResponse> events() {
+        return sink.asFlux();
+    }
+
+    /**
+     * 从 afterSeq 之后继续；需要的事件已被挤出缓冲区时报错
+     */
+    public Flux<AgentChatResponse> resume(long afterSeq) {
+        return sink.asFlux().switchOnFirst((first, events) -> {
+            if (first.hasValue() && first.get().getSeq() > afterSeq + 1) {
+                return Flux.error(new StreamNotResumableException(
+                        "事件已超出重放缓冲区: turnId=" + turnId + ", lastSeq=" + afterSeq));
+            }
+            return events.filter(response -> response.getSeq() > afterSeq);
+        });
+    }
+}
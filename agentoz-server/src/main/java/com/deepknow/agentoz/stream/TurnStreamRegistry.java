@@ -0,0 +1,102 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * 本节点的轮次事件流：sessionId -> 最近一轮的 {@link TurnStream}
+ * <p>
+ * 会话租约保证同一会话同一时刻只有一轮在执行，按 sessionId 索引即可，
+ * 客户端在收到第一个事件（携带 turnId）之前断开也能恢复。
+ */
+@Component
+public class TurnStreamRegistry {
+
+    /**
+     * 未正常结束的流的最长保留时间，兜底防止泄漏
+     */
+    private static final Duration ACTIVE_LIMIT = Duration.ofHours(1);
+
+    private final TurnEventMirror mirror;
+    private final int capacity;
+    private final Duration retention;
+
+    private final Cache<String, TurnStream> streams;
+
+    public TurnStreamRegistry(TurnEventMirror mirror,
+                              @Value("${agentoz.stream.replay.capacity:512}") int capacity,
+                              @Value("${agentoz.stream.replay.retention:30s}") Duration retention) {
+        this.mirror = mirror;
+        this.capacity = capacity;
+        this.retention = retention;
+        this.streams = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, TurnStream>() {
+                    @Override
+                    public long expireAfterCreate(String key, TurnStream value, long currentTime) {
+                        return ACTIVE_LIMIT.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TurnStream value,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TurnStream value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 轮次开始：替换该会话上一轮的流
+     */
+    public TurnStream open(String sessionId, String turnId) {
+        TurnStream stream = new TurnStream(sessionId, turnId, capacity);
+        streams.put(sessionId, stream);
+        mirror.attach(stream);
+        return stream;
+    }
+
+    /**
+     * 无状态轮次的流：不登记也不写跨节点副本，只服务当前订阅者，不支持 resumeStream
+     */
+    public TurnStream openDetached(String sessionId, String turnId) {
+        return new TurnStream(sessionId, turnId, capacity);
+    }
+
+    /**
+     * 轮次结束：流完成，再保留 retention 供迟到的重连
+     */
+    public void finish(TurnStream stream) {
+        stream.complete();
+        // 下一轮要在本轮释放租约后才能开始，此处不会误改新一轮的流
+        if (streams.getIfPresent(stream.sessionId()) == stream) {
+            streams.policy().expireVariably().ifPresent(policy ->
+                    policy.setExpiresAfter(stream.sessionId(), retention));
+        }
+    }
+
+    /**
+     * 从 afterSeq 之后恢复；本节点没有该轮次时从跨节点副本恢复
+     *
+     * @param turnId 为空时恢复该会话最近的轮次
+     */
+    public Flux<AgentChatResponse> resume(String sessionId, String turnId, long afterSeq) {
+        TurnStream stream = streams.getIfPresent(sessionId);
+        if (stream != null && (turnId == null || turnId.equals(stream.turnId()))) {
+            return stream.resume(afterSeq);
+        }
+        return mirror.replay(sessionId, turnId, afterSeq);
+    }
+}
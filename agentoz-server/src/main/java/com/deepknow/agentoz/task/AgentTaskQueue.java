@@ -0,0 +1,64 @@
+package com.deepknow.agentoz.task;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 异步任务队列
+ * <p>
+ * 每个 Agent 一个优先级队列；出队的任务进入处理中集合并持有租约，
+ * 完成后确认移除，租约过期未确认的任务会被重新入队（至少一次语义）。
+ */
+public interface AgentTaskQueue {
+
+    /**
+     * 入队（已在队列或处理中时忽略）
+     */
+    void offer(String agentId, String taskId, String priority, long submitMillis);
+
+    /**
+     * 有待处理任务的 Agent
+     */
+    Set<String> pendingAgents();
+
+    /**
+     * 取出指定 Agent 优先级最高的任务，并持有租约至 leaseDeadlineMillis
+     *
+     * @return 任务ID，队列为空时返回 null
+     */
+    String poll(String agentId, long leaseDeadlineMillis);
+
+    /**
+     * 确认任务处理完成，释放租约
+     */
+    void complete(String taskId);
+
+    /**
+     * 从队列中移除排队中的任务
+     */
+    boolean remove(String agentId, String taskId);
+
+    /**
+     * 将租约已过期的任务重新入队
+     *
+     * @return 重新入队的任务ID
+     */
+    List<String> requeueExpired(long nowMillis);
+
+    /**
+     * 排序分值：优先级优先，同优先级先进先出（分值越小越先出队）
+     */
+    static double score(String priority, long submitMillis) {
+        return priorityRank(priority) * 1e13 + submitMillis;
+    }
+
+    static int priorityRank(String priority) {
+        if ("high".equalsIgnoreCase(priority)) {
+            return 0;
+        }
+        if ("low".equalsIgnoreCase(priority)) {
+            return 2;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,118 @@
+package com.deepknow.agentoz.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.deepknow.agentoz.api.dto.AsyncTaskDTO;
+import com.deepknow.agentoz.api.dto.AsyncTaskRequest;
+import com.deepknow.agentoz.api.enums.AsyncTaskStatus;
+import com.deepknow.agentoz.entity.AgentEntity;
+import com.deepknow.agentoz.entity.AsyncTaskEntity;
+import com.deepknow.agentoz.manager.AgentManager;
+import com.deepknow.agentoz.mapper.AsyncTaskMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * 异步任务的提交、查询与取消
+ * <p>
+ * 先写数据库记录（审计及状态查询），再写入队列；执行见 {@link AsyncTaskWorker}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AsyncTaskManager {
+
+    private final AgentManager agentManager;
+    private final AsyncTaskMapper taskMapper;
+    private final AgentTaskQueue taskQueue;
+
+    public String submit(AsyncTaskRequest request) {
+        String agentId = request.getAgentId();
+        if (request.getMessage() == null || request.getMessage().isEmpty()) {
+            throw new IllegalArgumentException("任务内容不能为空");
+        }
+        AgentEntity definition = agentManager.getAgentDefinition(agentId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Agent 不存在: " + agentId);
+        }
+
+        String taskId = UUID.randomUUID().toString();
+        String conversationId = request.getConversationId() != null && !request.getConversationId().isEmpty()
+                ? request.getConversationId()
+                : "task-" + taskId;
+        String priority = request.getPriority() != null ? request.getPriority().toLowerCase() : "normal";
+        LocalDateTime now = LocalDateTime.now();
+
+        taskMapper.insert(AsyncTaskEntity.builder()
+                .taskId(taskId)
+                .agentId(agentId)
+                .agentName(definition.getName())
+                .conversationId(conversationId)
+                .callerAgentId(request.getCallerAgentId())
+                .taskDescription(request.getMessage())
+                .status(AsyncTaskStatus.QUEUED.name())
+                .priority(priority)
+                .submitTime(now)
+                .build());
+        taskQueue.offer(agentId, taskId, priority, toMillis(now));
+
+        log.info("异步任务已提交: taskId={}, agentId={}, priority={}", taskId, agentId, priority);
+        return taskId;
+    }
+
+    public AsyncTaskDTO get(String taskId) {
+        AsyncTaskEntity task = findTask(taskId);
+        return task != null ? toDTO(task) : null;
+    }
+
+    /**
+     * 仅排队中的任务可取消
+     */
+    public boolean cancel(String taskId) {
+        AsyncTaskEntity task = findTask(taskId);
+        if (task == null) {
+            return false;
+        }
+        int rows = taskMapper.update(null, new LambdaUpdateWrapper<AsyncTaskEntity>()
+                .set(AsyncTaskEntity::getStatus, AsyncTaskStatus.CANCELLED.name())
+                .set(AsyncTaskEntity::getCompleteTime, LocalDateTime.now())
+                .eq(AsyncTaskEntity::getTaskId, taskId)
+                .eq(AsyncTaskEntity::getStatus, AsyncTaskStatus.QUEUED.name()));
+        if (rows == 0) {
+            return false;
+        }
+        taskQueue.remove(task.getAgentId(), taskId);
+        log.info("异步任务已取消: taskId={}", taskId);
+        return true;
+    }
+
+    AsyncTaskEntity findTask(String taskId) {
+        return taskMapper.selectOne(new LambdaQueryWrapper<AsyncTaskEntity>()
+                .eq(AsyncTaskEntity::getTaskId, taskId));
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private AsyncTaskDTO toDTO(AsyncTaskEntity entity) {
+        return AsyncTaskDTO.builder()
+                .taskId(entity.getTaskId())
+                .agentId(entity.getAgentId())
+                .agentName(entity.getAgentName())
+                .conversationId(entity.getConversationId())
+                .status(entity.getStatus())
+                .priority(entity.getPriority())
+                .result(entity.getResult())
+                .errorMessage(entity.getErrorMessage())
+                .submitTime(entity.getSubmitTime())
+                .startTime(entity.getStartTime())
+                .completeTime(entity.getCompleteTime())
+                .build();
+    }
+}
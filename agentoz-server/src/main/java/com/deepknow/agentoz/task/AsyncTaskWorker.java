@@ -0,0 +1,268 @@
+package com.deepknow.agentoz.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.deepknow.agentoz.api.enums.AsyncTaskStatus;
+import com.deepknow.agentoz.entity.AsyncTaskEntity;
+import com.deepknow.agentoz.lifecycle.DrainCoordinator;
+import com.deepknow.agentoz.lifecycle.ServiceDrainingException;
+import com.deepknow.agentoz.manager.AgentManager;
+import com.deepknow.agentoz.manager.ChatTurn;
+import com.deepknow.agentoz.mapper.AsyncTaskMapper;
+import com.deepknow.agentoz.observability.TurnObservation;
+import com.deepknow.agentoz.observability.TurnObservations;
+import com.deepknow.agentoz.session.RedisSession;
+import io.agentscope.core.ReActAgent;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.session.Session;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步任务执行器
+ * <p>
+ * 调度线程轮询有待处理任务的 Agent，在全局并发和单 Agent 并发上限内出队执行；
+ * 每个任务使用独立的 Agent 实例，互不阻塞。
+ */
+@Slf4j
+@Component
+public class AsyncTaskWorker {
+
+    private final AgentTaskQueue taskQueue;
+    private final AsyncTaskMapper taskMapper;
+    private final AgentManager agentManager;
+    private final RedisSession redisSession;
+    private final TurnObservations turnObservations;
+    private final DrainCoordinator drainCoordinator;
+
+    private final int perAgentConcurrency;
+    private final Duration taskTimeout;
+    private final Duration pollInterval;
+
+    private final Semaphore workerPermits;
+    private final Map<String, Semaphore> agentPermits = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "async-task-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AsyncTaskWorker(AgentTaskQueue taskQueue,
+                           AsyncTaskMapper taskMapper,
+                           AgentManager agentManager,
+                           RedisSession redisSession,
+                           TurnObservations turnObservations,
+                           DrainCoordinator drainCoordinator,
+                           @Value("${agentoz.task.worker-threads:8}") int workerThreads,
+                           @Value("${agentoz.task.per-agent-concurrency:2}") int perAgentConcurrency,
+                           @Value("${agentoz.task.timeout:10m}") Duration taskTimeout,
+                           @Value("${agentoz.task.poll-interval:500ms}") Duration pollInterval) {
+        this.taskQueue = taskQueue;
+        this.taskMapper = taskMapper;
+        this.agentManager = agentManager;
+        this.redisSession = redisSession;
+        this.turnObservations = turnObservations;
+        this.drainCoordinator = drainCoordinator;
+        this.perAgentConcurrency = perAgentConcurrency;
+        this.taskTimeout = taskTimeout;
+        this.pollInterval = pollInterval;
+        this.workerPermits = new Semaphore(workerThreads);
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "async-task-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.execute(this::recover);
+        scheduler.scheduleWithFixedDelay(this::dispatchSafely,
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::requeueExpired, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+    }
+
+    /**
+     * 启动时根据数据库记录补齐队列（Redis 数据丢失时恢复）
+     */
+    void recover() {
+        try {
+            LocalDateTime staleBefore = LocalDateTime.now().minus(leaseDuration());
+            List<AsyncTaskEntity> tasks = taskMapper.selectList(new LambdaQueryWrapper<AsyncTaskEntity>()
+                    .eq(AsyncTaskEntity::getStatus, AsyncTaskStatus.QUEUED.name())
+                    .or(w -> w.eq(AsyncTaskEntity::getStatus, AsyncTaskStatus.RUNNING.name())
+                            .lt(AsyncTaskEntity::getStartTime, staleBefore)));
+            for (AsyncTaskEntity task : tasks) {
+                if (AsyncTaskStatus.RUNNING.name().equals(task.getStatus())) {
+                    markQueued(task.getTaskId());
+                }
+                taskQueue.offer(task.getAgentId(), task.getTaskId(), task.getPriority(),
+                        AsyncTaskManager.toMillis(task.getSubmitTime()));
+            }
+            if (!tasks.isEmpty()) {
+                log.info("恢复 {} 个未完成的异步任务", tasks.size());
+            }
+        } catch (Exception e) {
+            log.error("恢复异步任务失败", e);
+        }
+    }
+
+    private void dispatchSafely() {
+        try {
+            dispatch();
+        } catch (Exception e) {
+            log.error("异步任务调度失败", e);
+        }
+    }
+
+    private void dispatch() {
+        // 排空期间不再出队，任务留在队列中由其他节点执行
+        if (!drainCoordinator.isAccepting()) {
+            return;
+        }
+        for (String agentId : taskQueue.pendingAgents()) {
+            Semaphore permits = agentPermits.computeIfAbsent(agentId, id -> new Semaphore(perAgentConcurrency));
+            while (workerPermits.tryAcquire()) {
+                if (!permits.tryAcquire()) {
+                    workerPermits.release();
+                    break;
+                }
+                String taskId = taskQueue.poll(agentId, System.currentTimeMillis() + leaseDuration().toMillis());
+                if (taskId == null) {
+                    permits.release();
+                    workerPermits.release();
+                    break;
+                }
+                workers.execute(() -> {
+                    try {
+                        execute(taskId);
+                    } finally {
+                        permits.release();
+                        workerPermits.release();
+                    }
+                });
+            }
+            if (workerPermits.availablePermits() == 0) {
+                return;
+            }
+        }
+    }
+
+    private void execute(String taskId) {
+        AsyncTaskEntity task = taskMapper.selectOne(new LambdaQueryWrapper<AsyncTaskEntity>()
+                .eq(AsyncTaskEntity::getTaskId, taskId));
+        if (task == null) {
+            taskQueue.complete(taskId);
+            return;
+        }
+
+        // 仅从排队状态进入执行，已取消或已被其他节点执行的任务直接确认
+        int rows = taskMapper.update(null, new LambdaUpdateWrapper<AsyncTaskEntity>()
+                .set(AsyncTaskEntity::getStatus, AsyncTaskStatus.RUNNING.name())
+                .set(AsyncTaskEntity::getStartTime, LocalDateTime.now())
+                .eq(AsyncTaskEntity::getTaskId, taskId)
+                .eq(AsyncTaskEntity::getStatus, AsyncTaskStatus.QUEUED.name()));
+        if (rows == 0) {
+            taskQueue.complete(taskId);
+            return;
+        }
+
+        log.info("开始执行异步任务: taskId={}, agentId={}", taskId, task.getAgentId());
+        TurnObservation observation = turnObservations.start("task", task.getAgentId(), task.getConversationId());
+        ChatTurn turn = null;
+        boolean requeue = false;
+        try {
+            Session session = redisSession;
+            ReActAgent agent = observation.stage("definition_lookup",
+                    () -> agentManager.createIsolatedAgent(task.getAgentId()));
+            turn = observation.stage("session_load",
+                    () -> agentManager.beginTurn(agent, task.getAgentId(), task.getConversationId(), session));
+            agent.getHooks().add(observation.hook());
+
+            Msg userMsg = Msg.builder()
+                    .name(task.getCallerAgentId() != null ? task.getCallerAgentId() : "user")
+                    .textContent(task.getTaskDescription())
+                    .build();
+            Msg response = turn.execute(agent.call(userMsg)).block(taskTimeout);
+            ChatTurn completed = turn;
+            observation.stage("session_save", () -> agentManager.completeTurn(completed));
+
+            finish(taskId, AsyncTaskStatus.COMPLETED, response != null ? response.getTextContent() : null, null);
+            log.info("异步任务完成: taskId={}", taskId);
+        } catch (ServiceDrainingException e) {
+            // 排空超时被取消：检查点由 releaseTurn 保存，任务放回队列由其他节点继续执行
+            log.warn("节点下线，异步任务重新入队: taskId={}", taskId);
+            observation.stop(e);
+            requeue = true;
+        } catch (Exception e) {
+            log.error("异步任务执行失败: taskId={}", taskId, e);
+            observation.stop(e);
+            finish(taskId, AsyncTaskStatus.FAILED, null, e.getMessage());
+        } finally {
+            if (turn != null) {
+                agentManager.releaseTurn(turn);
+            }
+            observation.stop();
+            taskQueue.complete(taskId);
+            if (requeue) {
+                markQueued(taskId);
+                taskQueue.offer(task.getAgentId(), taskId, task.getPriority(),
+                        AsyncTaskManager.toMillis(task.getSubmitTime()));
+            }
+        }
+    }
+
+    private void requeueExpired() {
+        try {
+            for (String taskId : taskQueue.requeueExpired(System.currentTimeMillis())) {
+                markQueued(taskId);
+            }
+        } catch (Exception e) {
+            log.error("重新入队过期任务失败", e);
+        }
+    }
+
+    private void markQueued(String taskId) {
+        taskMapper.update(null, new LambdaUpdateWrapper<AsyncTaskEntity>()
+                .set(AsyncTaskEntity::getStatus, AsyncTaskStatus.QUEUED.name())
+                .eq(AsyncTaskEntity::getTaskId, taskId)
+                .eq(AsyncTaskEntity::getStatus, AsyncTaskStatus.RUNNING.name()));
+    }
+
+    private void finish(String taskId, AsyncTaskStatus status, String result, String errorMessage) {
+        taskMapper.update(null, new LambdaUpdateWrapper<AsyncTaskEntity>()
+                .set(AsyncTaskEntity::getStatus, status.name())
+                .set(AsyncTaskEntity::getResult, result)
+                .set(AsyncTaskEntity::getErrorMessage, errorMessage)
+                .set(AsyncTaskEntity::getCompleteTime, LocalDateTime.now())
+                .eq(AsyncTaskEntity::getTaskId, taskId));
+    }
+
+    /**
+     * 租约时长：任务超时时间加一分钟余量
+     */
+    private Duration leaseDuration() {
+        return taskTimeout.plusMinutes(1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.deepknow.agentoz.task;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内异步任务队列，语义与 {@link RedisAgentTaskQueue} 一致
+ * <p>
+ * 仅用于本地开发和测试（agentoz.task.queue=memory），不具备持久性
+ */
+@Component
+@ConditionalOnProperty(name = "agentoz.task.queue", havingValue = "memory")
+public class InMemoryAgentTaskQueue implements AgentTaskQueue {
+
+    private final Map<String, PriorityBlockingQueue<QueuedTask>> queues = new ConcurrentHashMap<>();
+    private final Map<String, Lease> processing = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void offer(String agentId, String taskId, String priority, long submitMillis) {
+        if (processing.containsKey(taskId)) {
+            return;
+        }
+        PriorityBlockingQueue<QueuedTask> queue = queues.computeIfAbsent(agentId,
+                id -> new PriorityBlockingQueue<>(16, Comparator.comparingDouble(QueuedTask::score)));
+        if (queue.stream().noneMatch(task -> task.taskId().equals(taskId))) {
+            queue.add(new QueuedTask(agentId, taskId, AgentTaskQueue.score(priority, submitMillis)));
+        }
+    }
+
+    @Override
+    public Set<String> pendingAgents() {
+        return queues.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public synchronized String poll(String agentId, long leaseDeadlineMillis) {
+        PriorityBlockingQueue<QueuedTask> queue = queues.get(agentId);
+        QueuedTask task = queue != null ? queue.poll() : null;
+        if (task == null) {
+            return null;
+        }
+        processing.put(task.taskId(), new Lease(task, leaseDeadlineMillis));
+        return task.taskId();
+    }
+
+    @Override
+    public void complete(String taskId) {
+        processing.remove(taskId);
+    }
+
+    @Override
+    public synchronized boolean remove(String agentId, String taskId) {
+        PriorityBlockingQueue<QueuedTask> queue = queues.get(agentId);
+        return queue != null && queue.removeIf(task -> task.taskId().equals(taskId));
+    }
+
+    @Override
+    public synchronized List<String> requeueExpired(long nowMillis) {
+        List<String> requeued = new ArrayList<>();
+        processing.values().removeIf(lease -> {
+            if (lease.deadlineMillis() > nowMillis) {
+                return false;
+            }
+            queues.computeIfAbsent(lease.task().agentId(),
+                    id -> new PriorityBlockingQueue<>(16, Comparator.comparingDouble(QueuedTask::score)))
+                    .add(lease.task());
+            requeued.add(lease.task().taskId());
+            return true;
+        });
+        return requeued;
+    }
+
+    private record QueuedTask(String agentId, String taskId, double score) {
+    }
+
+    private record Lease(QueuedTask task, long deadlineMillis) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.deepknow.agentoz.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Redis 实现的异步任务队列
+ * <p>
+ * {agentoz:tasks}:queue:{agentId}  ZSet  待处理任务，分值见 {@link AgentTaskQueue#score}
+ * {agentoz:tasks}:agents           Set   有待处理任务的 Agent
+ * {agentoz:tasks}:processing       ZSet  处理中任务，分值为租约到期时间
+ * {agentoz:tasks}:meta             Hash  taskId -> agentId|score，用于租约过期后原样重新入队
+ * <p>
+ * 脚本访问的键都经 KEYS 传入，并带同一个哈希标签，Redis Cluster 和代理下落在同一个槽位。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "agentoz.task.queue", havingValue = "redis", matchIfMissing = true)
+public class RedisAgentTaskQueue implements AgentTaskQueue {
+
+    private static final String KEY_PREFIX = "{agentoz:tasks}:";
+    private static final String QUEUE_PREFIX = KEY_PREFIX + "queue:";
+    private static final String AGENTS_KEY = KEY_PREFIX + "agents";
+    private static final String PROCESSING_KEY = KEY_PREFIX + "processing";
+    private static final String META_KEY = KEY_PREFIX + "meta";
+
+    /**
+     * 单次重新入队的任务数上限
+     */
+    private static final int REQUEUE_BATCH = 100;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Class<List<Object>> LIST_RESULT = (Class) List.class;
+
+    private static final RedisScript<Long> OFFER_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZSCORE', KEYS[3], ARGV[1]) then return 0 end
+            local added = redis.call('ZADD', KEYS[1], 'NX', ARGV[2], ARGV[1])
+            redis.call('SADD', KEYS[2], ARGV[3])
+            redis.call('HSET', KEYS[4], ARGV[1], ARGV[3] .. '|' .. ARGV[2])
+            return added
+            """, Long.class);
+
+    private static final RedisScript<String> POLL_SCRIPT = new DefaultRedisScript<>("""
+            local item = redis.call('ZPOPMIN', KEYS[1])
+            if #item == 0 then
+                redis.call('SREM', KEYS[2], ARGV[2])
+                return false
+            end
+            redis.call('ZADD', KEYS[3], ARGV[1], item[1])
+            return item[1]
+            """, String.class);
+
+    /**
+     * KEYS[4..] 依次是各任务所属的队列，ARGV 为 now 之后按 taskId, agentId 成对排列；
+     * 只处理执行时仍处于过期租约中的任务（期间可能已被完成或续约）
+     */
+    private static final RedisScript<List<Object>> REQUEUE_SCRIPT = new DefaultRedisScript<>("""
+            local requeued = {}
+            for i = 4, #KEYS do
+                local id = ARGV[(i - 4) * 2 + 2]
+                local agentId = ARGV[(i - 4) * 2 + 3]
+                local lease = redis.call('ZSCORE', KEYS[1], id)
+                if lease and tonumber(lease) <= tonumber(ARGV[1]) then
+                    redis.call('ZREM', KEYS[1], id)
+                    local meta = redis.call('HGET', KEYS[2], id)
+                    if meta then
+                        local metaAgentId, score = string.match(meta, '^(.*)|([^|]*)$')
+                        if metaAgentId == agentId then
+                            redis.call('ZADD', KEYS[i], score, id)
+                            redis.call('SADD', KEYS[3], agentId)
+                            table.insert(requeued, id)
+                        end
+                    end
+                end
+            end
+            return requeued
+            """, LIST_RESULT);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisAgentTaskQueue(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void offer(String agentId, String taskId, String priority, long submitMillis) {
+        String score = Double.toString(AgentTaskQueue.score(priority, submitMillis));
+        redisTemplate.execute(OFFER_SCRIPT,
+                List.of(QUEUE_PREFIX + agentId, AGENTS_KEY, PROCESSING_KEY, META_KEY),
+                taskId, score, agentId);
+    }
+
+    @Override
+    public Set<String> pendingAgents() {
+        Set<String> agents = redisTemplate.opsForSet().members(AGENTS_KEY);
+        return agents != null ? agents : Collections.emptySet();
+    }
+
+    @Override
+    public String poll(String agentId, long leaseDeadlineMillis) {
+        return redisTemplate.execute(POLL_SCRIPT,
+                List.of(QUEUE_PREFIX + agentId, AGENTS_KEY, PROCESSING_KEY),
+                Long.toString(leaseDeadlineMillis), agentId);
+    }
+
+    @Override
+    public void complete(String taskId) {
+        redisTemplate.opsForZSet().remove(PROCESSING_KEY, taskId);
+        redisTemplate.opsForHash().delete(META_KEY, taskId);
+    }
+
+    @Override
+    public boolean remove(String agentId, String taskId) {
+        Long removed = redisTemplate.opsForZSet().remove(QUEUE_PREFIX + agentId, taskId);
+        if (removed != null && removed > 0) {
+            redisTemplate.opsForHash().delete(META_KEY, taskId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 先读出过期任务和所属 Agent，得到各自的队列键，再由脚本原子地确认租约仍已过期并重新入队
+     */
+    @Override
+    public List<String> requeueExpired(long nowMillis) {
+        Set<String> expired = redisTemplate.opsForZSet()
+                .rangeByScore(PROCESSING_KEY, Double.NEGATIVE_INFINITY, nowMillis, 0, REQUEUE_BATCH);
+        if (expired == null || expired.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> taskIds = new ArrayList<>(expired);
+        List<String> metas = redisTemplate.<String, String>opsForHash().multiGet(META_KEY, taskIds);
+
+        List<String> keys = new ArrayList<>(List.of(PROCESSING_KEY, META_KEY, AGENTS_KEY));
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(nowMillis));
+        for (int i = 0; i < taskIds.size(); i++) {
+            String meta = metas.get(i);
+            if (meta == null) {
+                // 没有入队信息，无法重新入队：只移出处理中集合
+                redisTemplate.opsForZSet().remove(PROCESSING_KEY, taskIds.get(i));
+                log.warn("租约过期的任务缺少入队信息，已移出处理中集合: {}", taskIds.get(i));
+                continue;
+            }
+            String agentId = meta.substring(0, meta.lastIndexOf('|'));
+            keys.add(QUEUE_PREFIX + agentId);
+            args.add(taskIds.get(i));
+            args.add(agentId);
+        }
+        if (keys.size() == 3) {
+            return Collections.emptyList();
+        }
+
+        List<Object> requeued = redisTemplate.execute(REQUEUE_SCRIPT, keys, args.toArray());
+        if (requeued == null || requeued.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> ids = requeued.stream().map(String::valueOf).toList();
+        log.warn("租约过期，重新入队 {} 个任务: {}", ids.size(), ids);
+        return ids;
+    }
+}
@@ -0,0 +1,50 @@
+package com.deepknow.agentoz.tool;
+
+import io.agentscope.core.message.ToolResultBlock;
+import io.agentscope.core.tool.AgentTool;
+import io.agentscope.core.tool.ToolCallParam;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 可预执行的工具：实际调用时优先取用 {@link SpeculativeToolHook} 已提前发起的同参数调用
+ */
+final class SpeculativeTool implements AgentTool {
+
+    private final AgentTool delegate;
+    private final SpeculativeToolHook hook;
+
+    SpeculativeTool(AgentTool delegate, SpeculativeToolHook hook) {
+        this.delegate = delegate;
+        this.hook = hook;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public Map<String, Object> getParameters() {
+        return delegate.getParameters();
+    }
+
+    @Override
+    public Mono<ToolResultBlock> callAsync(ToolCallParam param) {
+        Mono<ToolResultBlock> speculated = hook.take(param.getToolUseBlock());
+        if (speculated == null) {
+            return delegate.callAsync(param);
+        }
+        // 预执行失败（可能是瞬时错误）时按正常流程重新调用，不计入命中
+        return speculated.onErrorResume(e -> {
+            hook.speculator().recordFailed();
+            return delegate.callAsync(param);
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.deepknow.agentoz.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.agentscope.core.agent.Agent;
+import io.agentscope.core.hook.ErrorEvent;
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.hook.HookEvent;
+import io.agentscope.core.hook.PostCallEvent;
+import io.agentscope.core.hook.PreCallEvent;
+import io.agentscope.core.hook.ReasoningChunkEvent;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.ToolResultBlock;
+import io.agentscope.core.message.ToolUseBlock;
+import io.agentscope.core.tool.AgentTool;
+import io.agentscope.core.tool.ToolCallParam;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 监听模型的流式工具调用分片，参数完整后立即发起预执行；每个 Agent 实例一个
+ * <p>
+ * 同一实例不会并发执行，进行中的预执行按工具调用 ID 索引。实际调用时由 {@link SpeculativeTool} 取走，
+ * 轮次结束（或出错）时仍未取走的预执行被取消。
+ */
+@Slf4j
+class SpeculativeToolHook implements Hook {
+
+    private static final TypeReference<Map<String, Object>> ARGS_TYPE = new TypeReference<>() {
+    };
+
+    private final ToolSpeculator speculator;
+    private final Map<String, AgentTool> delegates;
+
+    private final Map<String, Speculation> inFlight = new ConcurrentHashMap<>();
+
+    SpeculativeToolHook(ToolSpeculator speculator, Map<String, AgentTool> delegates) {
+        this.speculator = speculator;
+        this.delegates = Map.copyOf(delegates);
+    }
+
+    ToolSpeculator speculator() {
+        return speculator;
+    }
+
+    @Override
+    public <T extends HookEvent> Mono<T> onEvent(T event) {
+        if (event instanceof ReasoningChunkEvent chunkEvent) {
+            Msg accumulated = chunkEvent.getAccumulated();
+            if (accumulated != null) {
+                // 回复中可能先有文本，也可能并行调用多个工具：参数已完整的各自预执行
+                for (ContentBlock block : accumulated.getContent()) {
+                    if (block instanceof ToolUseBlock toolUse) {
+                        speculate(chunkEvent.getAgent(), toolUse);
+                    }
+                }
+            }
+        } else if (event instanceof PreCallEvent || event instanceof PostCallEvent || event instanceof ErrorEvent) {
+            discardAll();
+        }
+        return Mono.just(event);
+    }
+
+    @Override
+    public int priority() {
+        return 90;
+    }
+
+    /**
+     * 取走与实际调用匹配的预执行结果；没有预执行或参数不一致时返回 null
+     */
+    Mono<ToolResultBlock> take(ToolUseBlock toolUse) {
+        Speculation speculation = toolUse.getId() != null ? inFlight.remove(toolUse.getId()) : null;
+        if (speculation == null) {
+            return null;
+        }
+        if (!speculation.name().equals(toolUse.getName()) || !speculation.input().equals(toolUse.getInput())) {
+            speculation.cancel();
+            speculator.recordMismatch();
+            log.debug("工具预执行参数不一致，已丢弃: {}", toolUse.getName());
+            return null;
+        }
+        long savedNanos = speculation.savedNanos(System.nanoTime());
+        return speculation.result().doOnNext(result -> speculator.recordHit(savedNanos));
+    }
+
+    /**
+     * 累积的参数能解析为完整 JSON 对象时发起预执行，同一调用只发起一次
+     */
+    private void speculate(Agent agent, ToolUseBlock toolUse) {
+        String id = toolUse.getId();
+        AgentTool delegate = toolUse.getName() != null ? delegates.get(toolUse.getName()) : null;
+        if (id == null || delegate == null || inFlight.containsKey(id)) {
+            return;
+        }
+        Map<String, Object> input = completeInput(toolUse);
+        if (input == null) {
+            return;
+        }
+        ToolUseBlock complete = new ToolUseBlock(id, toolUse.getName(), input, toolUse.getMetadata());
+        Speculation speculation = new Speculation(toolUse.getName(), input, System.nanoTime());
+        inFlight.put(id, speculation);
+        speculation.start(delegate.callAsync(ToolCallParam.builder()
+                .toolUseBlock(complete)
+                .input(input)
+                .agent(agent)
+                .build()));
+    }
+
+    /**
+     * 参数仍在输出中（原始 JSON 不完整）时返回 null；模型一次性给出参数时直接使用
+     */
+    private Map<String, Object> completeInput(ToolUseBlock toolUse) {
+        String raw = toolUse.getContent();
+        if (raw == null || raw.isBlank()) {
+            Map<String, Object> input = toolUse.getInput();
+            return input != null && !input.isEmpty() ? input : null;
+        }
+        try {
+            return speculator.objectMapper().readValue(raw, ARGS_TYPE);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void discardAll() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        for (String id : List.copyOf(inFlight.keySet())) {
+            Speculation speculation = inFlight.remove(id);
+            if (speculation != null) {
+                speculation.cancel();
+                speculator.recordUnused();
+            }
+        }
+    }
+
+    /**
+     * 一次预执行：结果缓存在 Sink 中，取消时中止底层调用
+     */
+    private static final class Speculation {
+
+        private final String name;
+        private final Map<String, Object> input;
+        private final long startedAt;
+        private final Sinks.One<ToolResultBlock> sink = Sinks.one();
+
+        private volatile long finishedAt;
+        private volatile Disposable call;
+
+        Speculation(String name, Map<String, Object> input, long startedAt) {
+            this.name = name;
+            this.input = input;
+            this.startedAt = startedAt;
+        }
+
+        void start(Mono<ToolResultBlock> invocation) {
+            call = invocation.subscribe(
+                    result -> {
+                        finishedAt = System.nanoTime();
+                        sink.tryEmitValue(result);
+                    },
+                    error -> {
+                        finishedAt = System.nanoTime();
+                        sink.tryEmitError(error);
+                    },
+                    sink::tryEmitEmpty);
+        }
+
+        String name() {
+            return name;
+        }
+
+        Map<String, Object> input() {
+            return input;
+        }
+
+        Mono<ToolResultBlock> result() {
+            return sink.asMono();
+        }
+
+        /**
+         * 预执行领先于实际调用的时间：已完成时为整个执行耗时，否则为已执行的时长
+         */
+        long savedNanos(long now) {
+            long finished = finishedAt;
+            return (finished != 0 && finished < now ? finished : now) - startedAt;
+        }
+
+        void cancel() {
+            Disposable current = call;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.deepknow.agentoz.tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.tool.AgentTool;
+import io.agentscope.core.tool.Toolkit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工具预执行：模型流式输出的工具参数一旦能解析为完整的 JSON 对象，就提前调用工具，
+ * 不必等到整条回复（后续文本、并行的其他工具调用、用量统计）输出完毕
+ * <p>
+ * 只对 safe-tools 中列出的工具生效，它们必须是幂等的（@AgentTool(idempotent = true)，MCP 注解 idempotentHint），
+ * 因为预执行的结果可能被丢弃。实际调用时工具名与参数一致则复用结果，否则丢弃并正常调用。
+ */
+@Slf4j
+@Component
+public class ToolSpeculator {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Set<String> safeTools;
+
+    private final Counter hit;
+    private final Counter mismatch;
+    private final Counter unused;
+    private final Counter failed;
+    private final Timer saved;
+
+    public ToolSpeculator(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${agentoz.tool.speculation.enabled:true}") boolean enabled,
+                          @Value("${agentoz.tool.speculation.safe-tools:}") List<String> safeTools) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.safeTools = Set.copyOf(safeTools);
+        this.hit = speculationCounter(meterRegistry, "hit");
+        this.mismatch = speculationCounter(meterRegistry, "mismatch");
+        this.unused = speculationCounter(meterRegistry, "unused");
+        this.failed = speculationCounter(meterRegistry, "failed");
+        this.saved = Timer.builder("agentoz.tool.speculation.saved")
+                .description("预执行命中时节省的工具等待时间")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 用预执行包装 toolkit 中的幂等工具
+     *
+     * @return 需要挂载到同一 Agent 上的 Hook；没有可预执行的工具时返回 null
+     */
+    public Hook install(Toolkit toolkit) {
+        if (!enabled || safeTools.isEmpty()) {
+            return null;
+        }
+        Map<String, AgentTool> delegates = new HashMap<>();
+        for (String name : Set.copyOf(toolkit.getToolNames())) {
+            if (safeTools.contains(name)) {
+                delegates.put(name, toolkit.getTool(name));
+            }
+        }
+        if (delegates.isEmpty()) {
+            return null;
+        }
+        SpeculativeToolHook hook = new SpeculativeToolHook(this, delegates);
+        delegates.forEach((name, delegate) -> {
+            toolkit.removeTool(name);
+            toolkit.registerAgentTool(new SpeculativeTool(delegate, hook));
+        });
+        log.info("已启用工具预执行: {}", delegates.keySet());
+        return hook;
+    }
+
+    ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    void recordHit(long savedNanos) {
+        hit.increment();
+        saved.record(savedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordMismatch() {
+        mismatch.increment();
+    }
+
+    void recordUnused() {
+        unused.increment();
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    private static Counter speculationCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agentoz.tool.speculation")
+                .description("工具预执行结果")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,323 @@
+package com.deepknow.agentoz.usage;
+
+import com.deepknow.agentoz.entity.TokenUsageEntity;
+import com.deepknow.agentoz.mapper.TokenUsageMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token 用量统计
+ * <p>
+ * 模型调用时只累加本地 LongAdder（无锁），定时批量刷出：
+ * 会话和 Agent 累计值写入 Redis Hash（agentoz:tokens:conversation:{id} / agentoz:tokens:agent:{id}，
+ * 字段 input / output / calls），Agent 日汇总写入 MySQL token_usage_daily。
+ * 会话预算按 Redis 累计值加本节点未刷出的增量判断，多节点下存在一个刷新周期的误差。
+ * Agent 增量按写入目标（Redis / MySQL）分别暂存，一个目标写入失败只重试该目标，不会重复累加到另一个。
+ */
+@Slf4j
+@Component
+public class TokenAccounting {
+
+    private static final String CONVERSATION_PREFIX = "agentoz:tokens:conversation:";
+    private static final String AGENT_PREFIX = "agentoz:tokens:agent:";
+    private static final Duration CONVERSATION_TTL = Duration.ofDays(30);
+
+    private final StringRedisTemplate redisTemplate;
+    private final TokenUsageMapper usageMapper;
+    private final MeterRegistry meterRegistry;
+    private final long conversationBudget;
+
+    /**
+     * 未刷出的增量：pendingAgents 写 Redis 累计值，pendingAgentDaily 写 MySQL 日汇总
+     */
+    private final Map<String, UsageCounter> pendingAgents = new ConcurrentHashMap<>();
+    private final Map<String, UsageCounter> pendingAgentDaily = new ConcurrentHashMap<>();
+    private final Map<String, UsageCounter> pendingConversations = new ConcurrentHashMap<>();
+
+    /**
+     * 上一轮移出的空闲计数器：移出瞬间仍可能有线程在累加，下一轮再收一次
+     */
+    private Map<String, UsageCounter> retiredConversations = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点累计用量，供 Micrometer 读取
+     */
+    private final Map<String, UsageCounter> agentTotals = new ConcurrentHashMap<>();
+
+    /**
+     * 已刷出到 Redis 的会话总 Token 数（预算判断用）
+     */
+    private final LoadingCache<String, Long> flushedConversationTotals;
+
+    public TokenAccounting(StringRedisTemplate redisTemplate,
+                           TokenUsageMapper usageMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${agentoz.usage.conversation-budget:0}") long conversationBudget) {
+        this.redisTemplate = redisTemplate;
+        this.usageMapper = usageMapper;
+        this.meterRegistry = meterRegistry;
+        this.conversationBudget = conversationBudget;
+        this.flushedConversationTotals = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build(conversationId -> readRedis(CONVERSATION_PREFIX + conversationId).totalTokens());
+
+        Gauge.builder("agentoz.tokens.pending.conversations", pendingConversations, Map::size)
+                .description("有未刷出 Token 用量的会话数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次模型调用
+     */
+    public void record(String agentId, String conversationId, long inputTokens, long outputTokens) {
+        pendingAgents.computeIfAbsent(agentId, id -> new UsageCounter()).add(inputTokens, outputTokens);
+        pendingAgentDaily.computeIfAbsent(agentId, id -> new UsageCounter()).add(inputTokens, outputTokens);
+        if (conversationId != null) {
+            pendingConversations.computeIfAbsent(conversationId, id -> new UsageCounter())
+                    .add(inputTokens, outputTokens);
+        }
+        agentTotals.computeIfAbsent(agentId, this::registerAgentMeters).add(inputTokens, outputTokens);
+    }
+
+    public boolean isOverBudget(String conversationId) {
+        return conversationBudget > 0 && conversationTotal(conversationId) >= conversationBudget;
+    }
+
+    public TokenBudgetExceededException budgetExceeded(String conversationId) {
+        return new TokenBudgetExceededException(conversationId, conversationTotal(conversationId), conversationBudget);
+    }
+
+    public long getConversationBudget() {
+        return conversationBudget;
+    }
+
+    /**
+     * 会话累计用量（含本节点未刷出部分）
+     */
+    public TokenUsage conversationUsage(String conversationId) {
+        return readRedis(CONVERSATION_PREFIX + conversationId).plus(pendingOf(pendingConversations, conversationId));
+    }
+
+    /**
+     * Agent 累计用量（含本节点未刷出部分）
+     */
+    public TokenUsage agentUsage(String agentId) {
+        return readRedis(AGENT_PREFIX + agentId).plus(pendingOf(pendingAgents, agentId));
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${agentoz.usage.flush-interval:10000}")
+    public synchronized void flush() {
+        try {
+            flushConversations();
+            flushAgents();
+        } catch (Exception e) {
+            log.error("刷出 Token 用量失败", e);
+        }
+    }
+
+    private void flushConversations() {
+        Map<String, TokenUsage> deltas = new HashMap<>();
+        // 上一轮移出的计数器上可能残留移出瞬间的增量
+        retiredConversations.forEach((id, counter) -> mergeDelta(deltas, id, counter.drain()));
+        Map<String, UsageCounter> retired = new ConcurrentHashMap<>();
+        for (Map.Entry<String, UsageCounter> entry : pendingConversations.entrySet()) {
+            TokenUsage delta = entry.getValue().drain();
+            if (delta.isEmpty()) {
+                if (pendingConversations.remove(entry.getKey(), entry.getValue())) {
+                    retired.put(entry.getKey(), entry.getValue());
+                }
+                continue;
+            }
+            mergeDelta(deltas, entry.getKey(), delta);
+        }
+        retiredConversations = retired;
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(deltas.keySet());
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String id : ids) {
+                    String key = CONVERSATION_PREFIX + id;
+                    incrementHash(connection, key, deltas.get(id));
+                    ((StringRedisConnection) connection).expire(key, CONVERSATION_TTL.toSeconds());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 放回待刷出，下一轮重试
+            deltas.forEach((id, delta) -> pendingConversations.computeIfAbsent(id, k -> new UsageCounter()).add(delta));
+            throw e;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            long input = (Long) results.get(i * 4);
+            long output = (Long) results.get(i * 4 + 1);
+            flushedConversationTotals.put(ids.get(i), input + output);
+        }
+        log.debug("刷出 {} 个会话的 Token 用量", ids.size());
+    }
+
+    private void flushAgents() {
+        // Agent 数量有限，计数器常驻
+        for (Map.Entry<String, UsageCounter> entry : pendingAgents.entrySet()) {
+            TokenUsage delta = entry.getValue().drain();
+            if (delta.isEmpty()) {
+                continue;
+            }
+            try {
+                String key = AGENT_PREFIX + entry.getKey();
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    incrementHash(connection, key, delta);
+                    return null;
+                });
+            } catch (Exception e) {
+                entry.getValue().add(delta);
+                log.warn("刷出 Agent Token 累计值到 Redis 失败，下一轮重试: {}", entry.getKey(), e);
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        for (Map.Entry<String, UsageCounter> entry : pendingAgentDaily.entrySet()) {
+            TokenUsage delta = entry.getValue().drain();
+            if (delta.isEmpty()) {
+                continue;
+            }
+            try {
+                usageMapper.increment(TokenUsageEntity.builder()
+                        .agentId(entry.getKey())
+                        .usageDate(today)
+                        .inputTokens(delta.inputTokens())
+                        .outputTokens(delta.outputTokens())
+                        .calls(delta.calls())
+                        .build());
+            } catch (Exception e) {
+                entry.getValue().add(delta);
+                log.warn("刷出 Agent Token 日汇总到 MySQL 失败，下一轮重试: {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private static void incrementHash(RedisConnection connection, String key, TokenUsage delta) {
+        StringRedisConnection redis = (StringRedisConnection) connection;
+        redis.hIncrBy(key, "input", delta.inputTokens());
+        redis.hIncrBy(key, "output", delta.outputTokens());
+        redis.hIncrBy(key, "calls", delta.calls());
+    }
+
+    private long conversationTotal(String conversationId) {
+        Long flushed = flushedConversationTotals.get(conversationId);
+        return (flushed == null ? 0 : flushed) + pendingOf(pendingConversations, conversationId).totalTokens();
+    }
+
+    private TokenUsage readRedis(String key) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(key, List.of("input", "output", "calls"));
+        return new TokenUsage(parse(values.get(0)), parse(values.get(1)), parse(values.get(2)));
+    }
+
+    private static long parse(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static TokenUsage pendingOf(Map<String, UsageCounter> pending, String id) {
+        UsageCounter counter = pending.get(id);
+        return counter == null ? TokenUsage.EMPTY : counter.current();
+    }
+
+    private static void mergeDelta(Map<String, TokenUsage> deltas, String id, TokenUsage delta) {
+        if (!delta.isEmpty()) {
+            deltas.merge(id, delta, TokenUsage::plus);
+        }
+    }
+
+    private UsageCounter registerAgentMeters(String agentId) {
+        UsageCounter counter = new UsageCounter();
+        FunctionCounter.builder("agentoz.tokens", counter, c -> c.input.sum())
+                .description("本节点模型调用的 Token 数")
+                .tag("agent", agentId)
+                .tag("type", "input")
+                .register(meterRegistry);
+        FunctionCounter.builder("agentoz.tokens", counter, c -> c.output.sum())
+                .description("本节点模型调用的 Token 数")
+                .tag("agent", agentId)
+                .tag("type", "output")
+                .register(meterRegistry);
+        FunctionCounter.builder("agentoz.model.calls", counter, c -> c.calls.sum())
+                .description("本节点模型调用次数")
+                .tag("agent", agentId)
+                .register(meterRegistry);
+        return counter;
+    }
+
+    /**
+     * Token 用量
+     */
+    public record TokenUsage(long inputTokens, long outputTokens, long calls) {
+
+        static final TokenUsage EMPTY = new TokenUsage(0, 0, 0);
+
+        public long totalTokens() {
+            return inputTokens + outputTokens;
+        }
+
+        boolean isEmpty() {
+            return inputTokens == 0 && outputTokens == 0 && calls == 0;
+        }
+
+        TokenUsage plus(TokenUsage other) {
+            return new TokenUsage(inputTokens + other.inputTokens, outputTokens + other.outputTokens,
+                    calls + other.calls);
+        }
+    }
+
+    private static final class UsageCounter {
+
+        private final LongAdder input = new LongAdder();
+        private final LongAdder output = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+
+        void add(long inputTokens, long outputTokens) {
+            input.add(inputTokens);
+            output.add(outputTokens);
+            calls.increment();
+        }
+
+        void add(TokenUsage usage) {
+            input.add(usage.inputTokens());
+            output.add(usage.outputTokens());
+            calls.add(usage.calls());
+        }
+
+        TokenUsage current() {
+            return new TokenUsage(input.sum(), output.sum(), calls.sum());
+        }
+
+        TokenUsage drain() {
+            return new TokenUsage(input.sumThenReset(), output.sumThenReset(), calls.sumThenReset());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.deepknow.agentoz.usage;
+
+/**
+ * 会话 Token 用量超出预算，中止本轮对话
+ */
+public class TokenBudgetExceededException extends RuntimeException {
+
+    public TokenBudgetExceededException(String conversationId, long used, long budget) {
+        super("会话 Token 用量超出预算: conversationId=" + conversationId + ", used=" + used + ", budget=" + budget);
+    }
+}
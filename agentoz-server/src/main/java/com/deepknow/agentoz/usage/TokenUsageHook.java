@@ -0,0 +1,73 @@
+package com.deepknow.agentoz.usage;
+
+import io.agentscope.core.hook.Hook;
+import io.agentscope.core.hook.HookEvent;
+import io.agentscope.core.hook.PostReasoningEvent;
+import io.agentscope.core.hook.PreReasoningEvent;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.model.ChatUsage;
+import reactor.core.publisher.Mono;
+
+/**
+ * 记录每次模型调用的 Token 用量，并执行会话预算
+ * <p>
+ * 由 AgentManager 在构建 Agent 时挂载，实例在多个会话间复用，每轮开始时通过 {@link #bind} 绑定会话；
+ * 同一实例不会并发执行，因此绑定字段无需额外同步。子智能体的 Hook 从主智能体继承会话。
+ */
+public class TokenUsageHook implements Hook {
+
+    private final String agentId;
+    private final TokenAccounting accounting;
+    private final TokenUsageHook parent;
+
+    private volatile String conversationId;
+
+    public TokenUsageHook(String agentId, TokenAccounting accounting) {
+        this(agentId, accounting, null);
+    }
+
+    /**
+     * 子智能体使用：会话跟随主智能体
+     */
+    public TokenUsageHook(String agentId, TokenAccounting accounting, TokenUsageHook parent) {
+        this.agentId = agentId;
+        this.accounting = accounting;
+        this.parent = parent;
+    }
+
+    public void bind(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String conversationId() {
+        return parent != null ? parent.conversationId() : conversationId;
+    }
+
+    @Override
+    public <T extends HookEvent> Mono<T> onEvent(T event) {
+        if (event instanceof PreReasoningEvent) {
+            // 已超预算时不再调用模型
+            String conversation = conversationId();
+            if (conversation != null && accounting.isOverBudget(conversation)) {
+                return Mono.error(accounting.budgetExceeded(conversation));
+            }
+        } else if (event instanceof PostReasoningEvent postReasoning) {
+            Msg message = postReasoning.getReasoningMessage();
+            ChatUsage usage = message != null ? message.getChatUsage() : null;
+            if (usage != null) {
+                String conversation = conversationId();
+                accounting.record(agentId, conversation, usage.getInputTokens(), usage.getOutputTokens());
+                if (conversation != null && accounting.isOverBudget(conversation)) {
+                    // 不再执行工具和下一步推理，本轮以当前结果结束
+                    postReasoning.stopAgent();
+                }
+            }
+        }
+        return Mono.just(event);
+    }
+
+    @Override
+    public int priority() {
+        return 20;
+    }
+}
@@ -0,0 +1,174 @@
+package com.deepknow.agentoz.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControllerTest {
+
+    private static final Duration LONG_WAIT = Duration.ofMinutes(5);
+    private static final int RACES = 200;
+
+    @Test
+    void shedsWhenEstimatedWaitExceedsMaxWait() throws InterruptedException {
+        AdmissionController admission = controller(1, 10, LONG_WAIT, Duration.ofMillis(100), Duration.ZERO);
+        // 一个轮次持有名额约 200ms，平均轮次耗时随之更新
+        AdmissionController.Permit first = admission.admit(Priority.NORMAL, "web").block();
+        Thread.sleep(200);
+        first.release();
+
+        admission.admit(Priority.NORMAL, "web").block();
+
+        // 前面没有排队，预计等待一个轮次（约 200ms），超过 normal 的 100ms
+        assertThatThrownBy(() -> admission.admit(Priority.NORMAL, "web").block())
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getRetryAfter()).isGreaterThanOrEqualTo(Duration.ofSeconds(1)));
+        assertThat(admission.queued()).isZero();
+
+        // high 允许等待更久，正常排队
+        admission.admit(Priority.HIGH, "web").subscribe();
+        assertThat(admission.queued()).isEqualTo(1);
+    }
+
+    @Test
+    void highPriorityEvictsQueuedLowWhenQueueIsFull() {
+        AdmissionController admission = controller(1, 1, LONG_WAIT, LONG_WAIT, LONG_WAIT);
+        AdmissionController.Permit running = admission.admit(Priority.NORMAL, "web").block();
+
+        AtomicReference<Throwable> lowFailure = new AtomicReference<>();
+        admission.admit(Priority.LOW, "eval").subscribe(permit -> { }, lowFailure::set);
+        AtomicReference<AdmissionController.Permit> high = new AtomicReference<>();
+        admission.admit(Priority.HIGH, "web").subscribe(high::set);
+
+        assertThat(lowFailure.get()).isInstanceOf(AdmissionRejectedException.class);
+        assertThat(admission.queued()).isEqualTo(1);
+
+        running.release();
+        assertThat(high.get()).isNotNull();
+        assertThat(admission.inFlight()).isEqualTo(1);
+        assertThat(admission.queued()).isZero();
+    }
+
+    @Test
+    void normalCannotEvictQueuedNormal() {
+        AdmissionController admission = controller(1, 1, LONG_WAIT, LONG_WAIT, LONG_WAIT);
+        admission.admit(Priority.NORMAL, "web").block();
+        admission.admit(Priority.NORMAL, "web").subscribe();
+
+        assertThatThrownBy(() -> admission.admit(Priority.NORMAL, "eval").block())
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThat(admission.queued()).isEqualTo(1);
+    }
+
+    @Test
+    void timedOutWaiterLeavesQueue() {
+        AdmissionController admission = controller(1, 10, LONG_WAIT, Duration.ofMillis(50), Duration.ZERO);
+        AdmissionController.Permit running = admission.admit(Priority.NORMAL, "web").block();
+
+        assertThatThrownBy(() -> admission.admit(Priority.NORMAL, "web").block(Duration.ofSeconds(5)))
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThat(admission.queued()).isZero();
+
+        // 名额不会再分给已超时的请求
+        running.release();
+        assertThat(admission.inFlight()).isZero();
+        assertThat(admission.state()).containsEntry("timeout", 1L);
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() {
+        AdmissionController admission = controller(1, 10, LONG_WAIT, LONG_WAIT, Duration.ZERO);
+        AdmissionController.Permit running = admission.admit(Priority.NORMAL, "web").block();
+
+        Disposable waiting = admission.admit(Priority.NORMAL, "web").subscribe();
+        assertThat(admission.queued()).isEqualTo(1);
+        waiting.dispose();
+        assertThat(admission.queued()).isZero();
+
+        running.release();
+        assertThat(admission.inFlight()).isZero();
+    }
+
+    @Test
+    void permitGrantedWhileTimingOutIsReleasedExactlyOnce() throws InterruptedException {
+        Duration maxWait = Duration.ofMillis(2);
+        AdmissionController admission = controller(1, 10, LONG_WAIT, maxWait, Duration.ZERO);
+        for (int i = 0; i < RACES; i++) {
+            AdmissionController.Permit running = admission.admit(Priority.NORMAL, "web").block();
+            CountDownLatch queued = new CountDownLatch(1);
+            Thread releaser = new Thread(() -> {
+                awaitQuietly(queued);
+                // 在超时前后释放
+                LockSupport.parkNanos(maxWait.toNanos() + ThreadLocalRandom.current().nextLong(-500_000, 500_000));
+                running.release();
+            });
+            releaser.start();
+
+            AdmissionController.Permit granted = admission.admit(Priority.NORMAL, "web")
+                    .doOnSubscribe(subscription -> queued.countDown())
+                    .onErrorResume(AdmissionRejectedException.class, e -> Mono.empty())
+                    .block(Duration.ofSeconds(5));
+            releaser.join();
+            if (granted != null) {
+                granted.release();
+                granted.release();
+            }
+
+            assertThat(admission.inFlight()).as("第 %d 次", i).isZero();
+            assertThat(admission.queued()).as("第 %d 次", i).isZero();
+        }
+    }
+
+    @Test
+    void permitGrantedWhileCancellingIsReleasedExactlyOnce() throws InterruptedException {
+        AdmissionController admission = controller(1, 10, LONG_WAIT, LONG_WAIT, Duration.ZERO);
+        for (int i = 0; i < RACES; i++) {
+            AdmissionController.Permit running = admission.admit(Priority.NORMAL, "web").block();
+            AtomicReference<AdmissionController.Permit> granted = new AtomicReference<>();
+            Disposable waiting = admission.admit(Priority.NORMAL, "web").subscribe(granted::set);
+
+            CountDownLatch start = new CountDownLatch(1);
+            Thread releaser = new Thread(() -> {
+                awaitQuietly(start);
+                running.release();
+            });
+            releaser.start();
+            start.countDown();
+            waiting.dispose();
+            releaser.join();
+            // 订阅者已收到名额时由它释放，与取消时的归还只生效一次
+            AdmissionController.Permit permit = granted.get();
+            if (permit != null) {
+                permit.release();
+            }
+
+            assertThat(admission.inFlight()).as("第 %d 次", i).isZero();
+            assertThat(admission.queued()).as("第 %d 次", i).isZero();
+        }
+    }
+
+    private static AdmissionController controller(int maxConcurrent, int maxQueue,
+                                                  Duration high, Duration normal, Duration low) {
+        return new AdmissionController(new SimpleMeterRegistry(), true, maxConcurrent, maxQueue,
+                high, normal, low, 1, "", 0, "");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.deepknow.agentoz.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairQueueTest {
+
+    @Test
+    void dequeuesByWeightInRoundRobinOrder() {
+        FairQueue<String> queue = new FairQueue<>();
+        for (int i = 1; i <= 4; i++) {
+            queue.add("a", 2, "a" + i);
+            queue.add("b", 1, "b" + i);
+        }
+
+        assertThat(drain(queue)).containsExactly("a1", "a2", "b1", "a3", "a4", "b2", "b3", "b4");
+        assertThat(queue.size()).isZero();
+        assertThat(queue.poll(tenant -> true)).isNull();
+    }
+
+    @Test
+    void skipsIneligibleTenantWithoutSpendingItsTurn() {
+        FairQueue<String> queue = new FairQueue<>();
+        queue.add("a", 1, "a1");
+        queue.add("a", 1, "a2");
+        queue.add("b", 1, "b1");
+
+        assertThat(queue.poll(tenant -> !tenant.equals("a"))).isEqualTo("b1");
+        assertThat(queue.poll(tenant -> !tenant.equals("a"))).isNull();
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(drain(queue)).containsExactly("a1", "a2");
+    }
+
+    @Test
+    void removeDropsEmptiedLane() {
+        FairQueue<String> queue = new FairQueue<>();
+        queue.add("a", 1, "a1");
+        queue.add("b", 1, "b1");
+
+        assertThat(queue.remove("a", "a1")).isTrue();
+        assertThat(queue.remove("a", "a1")).isFalse();
+        assertThat(queue.remove("c", "c1")).isFalse();
+        assertThat(queue.size()).isEqualTo(1);
+
+        // 租户重新入队时排到末尾
+        queue.add("a", 1, "a2");
+        assertThat(drain(queue)).containsExactly("b1", "a2");
+    }
+
+    @Test
+    void evictLastTakesNewestItemOfLongestLane() {
+        FairQueue<String> queue = new FairQueue<>();
+        queue.add("a", 1, "a1");
+        queue.add("b", 1, "b1");
+        queue.add("b", 1, "b2");
+        queue.add("b", 1, "b3");
+
+        assertThat(queue.evictLast()).isEqualTo("b3");
+        assertThat(queue.evictLast()).isEqualTo("b2");
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(drain(queue)).containsExactly("a1", "b1");
+        assertThat(queue.evictLast()).isNull();
+    }
+
+    private static List<String> drain(FairQueue<String> queue) {
+        List<String> order = new ArrayList<>();
+        for (String next = queue.poll(tenant -> true); next != null; next = queue.poll(tenant -> true)) {
+            order.add(next);
+        }
+        return order;
+    }
+}
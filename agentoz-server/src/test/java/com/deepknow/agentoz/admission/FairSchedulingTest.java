@@ -0,0 +1,124 @@
+package com.deepknow.agentoz.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FairSchedulingSimulation 的确定性版本：批量租户压满执行名额并排起长队后，交互请求要等几个轮次结束才能执行
+ * <p>
+ * 不计时，按轮次计数：每次释放最早获得的名额代表一个轮次结束。
+ */
+class FairSchedulingTest {
+
+    private static final int SLOTS = 4;
+    private static final int BATCH_BACKLOG = 20;
+
+    @Test
+    void interactiveWaitsBehindWholeBatchBacklogWithoutTenants() {
+        Cluster cluster = new Cluster(controller("", ""));
+        cluster.submit("shared", SLOTS + BATCH_BACKLOG);
+
+        Grant interactive = cluster.submit("shared");
+
+        assertThat(cluster.turnsUntil(interactive)).isEqualTo(BATCH_BACKLOG + 1);
+    }
+
+    @Test
+    void weightedTenantOvertakesBatchBacklog() {
+        Cluster cluster = new Cluster(controller("web=4", ""));
+        cluster.submit("eval", SLOTS + BATCH_BACKLOG);
+
+        List<Grant> interactive = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            interactive.add(cluster.submit("web"));
+        }
+
+        // eval 的通道先轮到一次，之后 web 按权重连续出队
+        assertThat(cluster.turnsUntil(interactive.get(SLOTS - 1))).isEqualTo(SLOTS + 1);
+        assertThat(interactive).allMatch(grant -> grant.permit != null);
+        assertThat(cluster.admission.queued()).isEqualTo(BATCH_BACKLOG - 1);
+    }
+
+    @Test
+    void batchConcurrencyCapKeepsSlotFreeForInteractive() {
+        Cluster cluster = new Cluster(controller("web=4", "eval=" + (SLOTS - 1)));
+        cluster.submit("eval", SLOTS + BATCH_BACKLOG);
+        assertThat(cluster.admission.inFlight()).isEqualTo(SLOTS - 1);
+
+        Grant interactive = cluster.submit("web");
+
+        assertThat(cluster.turnsUntil(interactive)).isZero();
+        assertThat(cluster.admission.inFlight()).isEqualTo(SLOTS);
+    }
+
+    @Test
+    void lowPriorityIsRejectedInsteadOfQueuedWhenFull() {
+        AdmissionController admission = controller("", "");
+        for (int i = 0; i < SLOTS; i++) {
+            admission.admit(Priority.NORMAL, "web").subscribe();
+        }
+
+        assertThatThrownBy(() -> admission.admitBatch(Map.of("tenantId", "eval")).block())
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThat(admission.queued()).isZero();
+    }
+
+    private static AdmissionController controller(String weights, String maxConcurrent) {
+        return new AdmissionController(new SimpleMeterRegistry(), true, SLOTS, 1000,
+                Duration.ofMinutes(5), Duration.ofMinutes(5), Duration.ZERO,
+                1, weights, 0, maxConcurrent);
+    }
+
+    private static final class Grant {
+
+        private volatile AdmissionController.Permit permit;
+    }
+
+    /**
+     * 按获得名额的先后释放，模拟轮次依次结束
+     */
+    private static final class Cluster {
+
+        private final AdmissionController admission;
+        private final Deque<AdmissionController.Permit> running = new ArrayDeque<>();
+
+        private Cluster(AdmissionController admission) {
+            this.admission = admission;
+        }
+
+        private void submit(String tenant, int count) {
+            for (int i = 0; i < count; i++) {
+                submit(tenant);
+            }
+        }
+
+        private Grant submit(String tenant) {
+            Grant grant = new Grant();
+            admission.admit(Priority.NORMAL, tenant).subscribe(permit -> {
+                grant.permit = permit;
+                running.addLast(permit);
+            });
+            return grant;
+        }
+
+        private int turnsUntil(Grant grant) {
+            int turns = 0;
+            while (grant.permit == null) {
+                assertThat(running).as("没有正在执行的轮次，请求不会再获得名额").isNotEmpty();
+                running.pollFirst().release();
+                turns++;
+            }
+            return turns;
+        }
+    }
+}
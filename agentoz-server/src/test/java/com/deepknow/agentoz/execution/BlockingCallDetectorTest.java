@@ -0,0 +1,86 @@
+package com.deepknow.agentoz.execution;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlockingCallDetectorTest {
+
+    private static final List<String> PREFIXES = List.of("NettyServerWorker", " reactor-http-", "");
+
+    @Test
+    void treatsConfiguredPrefixesAndReactorNonBlockingThreadsAsNonBlocking() {
+        BlockingCallDetector detector = new BlockingCallDetector(new SimpleMeterRegistry(), "off", PREFIXES);
+
+        assertThat(detector.isNonBlocking(new Thread("NettyServerWorker-3-1"))).isTrue();
+        assertThat(detector.isNonBlocking(new Thread("reactor-http-epoll-2"))).isTrue();
+        assertThat(detector.isNonBlocking(new Thread("DubboServerHandler-1"))).isFalse();
+        assertThat(detector.isNonBlocking(Thread.currentThread())).isFalse();
+        assertThat(Mono.fromCallable(() -> detector.isNonBlocking(Thread.currentThread()))
+                .subscribeOn(Schedulers.parallel())
+                .block()).isTrue();
+    }
+
+    @Test
+    void offModeNeverComplains() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BlockingCallDetector detector = new BlockingCallDetector(registry, "off", PREFIXES);
+
+        assertThatCode(() -> onThread("NettyServerWorker-1", () -> detector.check("session.load")))
+                .doesNotThrowAnyException();
+        assertThat(registry.find("agentoz.execution.blocking.violations").counter()).isNull();
+    }
+
+    @Test
+    void warnModeCountsViolationsWithoutFailing() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BlockingCallDetector detector = new BlockingCallDetector(registry, " Warn ", PREFIXES);
+
+        assertThat(onThread("NettyServerWorker-1", () -> detector.check("session.load"))).isNull();
+        detector.check("session.load");
+
+        assertThat(registry.get("agentoz.execution.blocking.violations").tag("operation", "session.load")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errorModeThrowsOnlyOnNonBlockingThreads() throws InterruptedException {
+        BlockingCallDetector detector = new BlockingCallDetector(new SimpleMeterRegistry(), "error", PREFIXES);
+
+        assertThat(onThread("reactor-http-nio-1", () -> detector.check("session.save")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("session.save");
+        assertThatCode(() -> detector.check("session.save")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsUnknownMode() {
+        assertThatThrownBy(() -> new BlockingCallDetector(new SimpleMeterRegistry(), "strict", PREFIXES))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 在指定名称的线程上执行，返回抛出的异常
+     */
+    private static Throwable onThread(String name, Runnable body) throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, name);
+        thread.start();
+        thread.join();
+        return failure.get();
+    }
+}
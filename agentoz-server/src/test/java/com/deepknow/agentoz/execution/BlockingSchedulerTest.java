@@ -0,0 +1,60 @@
+package com.deepknow.agentoz.execution;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockingSchedulerTest {
+
+    private final BlockingCallDetector detector = new BlockingCallDetector(new SimpleMeterRegistry(), "error",
+            List.of("NettyServerWorker"));
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void runsBodyOffNonBlockingThreads(boolean virtualThreads) {
+        BlockingScheduler blocking = new BlockingScheduler(new SimpleMeterRegistry(), virtualThreads, 4, 100);
+        try {
+            String thread = Mono.defer(() -> blocking.fromCallable(() -> {
+                        detector.check("session.load");
+                        return Thread.currentThread().getName();
+                    }))
+                    .subscribeOn(Schedulers.parallel())
+                    .block(Duration.ofSeconds(5));
+
+            assertThat(thread).startsWith("agentoz-blocking");
+        } finally {
+            blocking.destroy();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void limitsConcurrentCalls(boolean virtualThreads) {
+        BlockingScheduler blocking = new BlockingScheduler(new SimpleMeterRegistry(), virtualThreads, 2, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try {
+            Flux.range(0, 12)
+                    .flatMap(i -> blocking.fromCallable(() -> {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(20);
+                        running.decrementAndGet();
+                        return i;
+                    }))
+                    .blockLast(Duration.ofSeconds(10));
+
+            assertThat(peak.get()).isBetween(1, 2);
+        } finally {
+            blocking.destroy();
+        }
+    }
+}
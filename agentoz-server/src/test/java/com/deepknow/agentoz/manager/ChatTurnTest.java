@@ -0,0 +1,64 @@
+package com.deepknow.agentoz.manager;
+
+import com.deepknow.agentoz.lifecycle.ServiceDrainingException;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatTurnTest {
+
+    @Test
+    void executeEmitsResultOfCall() {
+        ChatTurn turn = turn();
+
+        assertThat(turn.execute(Mono.just("done")).block(Duration.ofSeconds(5))).isEqualTo("done");
+        assertThatThrownBy(() -> turn.execute(Mono.error(new IllegalStateException("模型失败"))).block())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void cancelForCheckpointFailsCallerAfterCallHasReleased() {
+        ChatTurn turn = turn();
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        turn.execute(Mono.never().doFinally(signal -> events.add("released:" + signal)))
+                .subscribe(value -> events.add("value"), e -> {
+                    events.add("failed");
+                    failure.set(e);
+                });
+
+        assertThat(turn.cancelForCheckpoint()).isTrue();
+        assertThat(events).containsExactly("released:" + SignalType.CANCEL, "failed");
+        assertThat(failure.get()).isInstanceOf(ServiceDrainingException.class);
+    }
+
+    @Test
+    void cancellingCallerCancelsCall() {
+        ChatTurn turn = turn();
+        AtomicReference<SignalType> released = new AtomicReference<>();
+
+        Disposable caller = turn.execute(Mono.never().doFinally(released::set)).subscribe();
+        caller.dispose();
+
+        assertThat(released.get()).isEqualTo(SignalType.CANCEL);
+    }
+
+    @Test
+    void nothingToCancelBeforeExecutionStarts() {
+        assertThat(turn().cancelForCheckpoint()).isFalse();
+    }
+
+    private static ChatTurn turn() {
+        return new ChatTurn("agent-1", "conv-1", "agent-1:conv-1", null, null, 0, ChatTurn.UNBOUND, null);
+    }
+}
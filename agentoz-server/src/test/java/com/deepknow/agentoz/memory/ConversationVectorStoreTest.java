@@ -0,0 +1,130 @@
+package com.deepknow.agentoz.memory;
+
+import io.agentscope.core.message.MsgRole;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationVectorStoreTest {
+
+    private static final String[] MESSAGES = {
+            "我们的数据库用的是 MySQL 8，主从各一台",
+            "部署在杭州的 Kubernetes 集群上",
+            "周报每周五下午五点前发到群里",
+            "下个季度的目标是把 p99 延迟降到 200 毫秒以内",
+            "测试环境的 Redis 密码上周刚换过",
+    };
+
+    private final HashingEmbedder embedder = new HashingEmbedder(128);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recallsMostSimilarMessageAndSkipsExcluded() throws IOException {
+        try (ConversationVectorStore store = open(16)) {
+            appendAll(store);
+
+            List<ConversationVectorStore.Entry> entries = search(store, "数据库是 MySQL 吗", Set.of());
+            assertThat(entries).isNotEmpty();
+            assertThat(entries.get(0).messageId()).isEqualTo("m0");
+            assertThat(entries.get(0).role()).isEqualTo(MsgRole.USER);
+            assertThat(entries.get(0).text()).isEqualTo(MESSAGES[0]);
+
+            assertThat(search(store, "数据库是 MySQL 吗", Set.of("m0")))
+                    .extracting(ConversationVectorStore.Entry::messageId)
+                    .doesNotContain("m0");
+        }
+    }
+
+    @Test
+    void reopensAfterCloseWithPersistedGraph() throws IOException {
+        try (ConversationVectorStore store = open(16)) {
+            appendAll(store);
+        }
+        assertThat(directory.resolve("conv.hnsw")).exists();
+
+        try (ConversationVectorStore store = open(16)) {
+            assertThat(store.size()).isEqualTo(MESSAGES.length);
+            assertThat(store.contains("m3")).isTrue();
+            assertThat(search(store, "p99 延迟的目标", Set.of()).get(0).messageId()).isEqualTo("m3");
+        }
+    }
+
+    @Test
+    void recoversCommittedMessagesWithoutGraphAfterCrash() throws IOException {
+        // 不调用 close，模拟进程异常退出：图结构没有写出
+        ConversationVectorStore crashed = open(16);
+        appendAll(crashed);
+        assertThat(directory.resolve("conv.hnsw")).doesNotExist();
+
+        try (ConversationVectorStore store = open(16)) {
+            assertThat(store.size()).isEqualTo(MESSAGES.length);
+            assertThat(search(store, "Redis 密码", Set.of()).get(0).messageId()).isEqualTo("m4");
+            // 恢复后继续追加
+            assertThat(store.append("m5", MsgRole.USER, "新来的同事叫小王", embedder.embed("新来的同事叫小王"))).isTrue();
+            assertThat(store.size()).isEqualTo(MESSAGES.length + 1);
+        }
+    }
+
+    @Test
+    void truncatesLogToCommittedRecords() throws IOException {
+        try (ConversationVectorStore store = open(16)) {
+            appendAll(store);
+        }
+        Path log = directory.resolve("conv.log");
+        long committed = Files.size(log);
+        // 提交点之后写了一半的记录
+        Files.write(log, new byte[]{0, 0, 0, 42, 1, 0}, StandardOpenOption.APPEND);
+
+        try (ConversationVectorStore store = open(16)) {
+            assertThat(store.size()).isEqualTo(MESSAGES.length);
+        }
+        assertThat(Files.size(log)).isEqualTo(committed);
+
+        // 日志比提交点短：以日志中完整的记录为准
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(committed - 1);
+        }
+        try (ConversationVectorStore store = open(16)) {
+            assertThat(store.size()).isEqualTo(MESSAGES.length - 1);
+            assertThat(store.contains("m4")).isFalse();
+            assertThat(search(store, "数据库是 MySQL 吗", Set.of()).get(0).messageId()).isEqualTo("m0");
+        }
+    }
+
+    @Test
+    void refusesAppendWhenFull() throws IOException {
+        try (ConversationVectorStore store = open(2)) {
+            assertThat(store.append("m0", MsgRole.USER, MESSAGES[0], embedder.embed(MESSAGES[0]))).isTrue();
+            assertThat(store.append("m1", MsgRole.USER, MESSAGES[1], embedder.embed(MESSAGES[1]))).isTrue();
+            assertThat(store.append("m2", MsgRole.USER, MESSAGES[2], embedder.embed(MESSAGES[2]))).isFalse();
+            assertThat(store.size()).isEqualTo(2);
+        }
+    }
+
+    private ConversationVectorStore open(int capacity) throws IOException {
+        return new ConversationVectorStore(directory, "conv", capacity, 8, 32);
+    }
+
+    private void appendAll(ConversationVectorStore store) throws IOException {
+        for (int i = 0; i < MESSAGES.length; i++) {
+            MsgRole role = i % 2 == 0 ? MsgRole.USER : MsgRole.ASSISTANT;
+            assertThat(store.append("m" + i, role, MESSAGES[i], embedder.embed(MESSAGES[i]))).isTrue();
+        }
+    }
+
+    private List<ConversationVectorStore.Entry> search(ConversationVectorStore store, String query, Set<String> exclude)
+            throws IOException {
+        return store.search(embedder.embed(query), 5, 32, exclude, 0, 3);
+    }
+}
@@ -0,0 +1,227 @@
+package com.deepknow.agentoz.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.RedissonFencedLock;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationLeaseManagerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final FakeSession session = new FakeSession();
+    private final AtomicLong tokens = new AtomicLong();
+    private final List<Long> locked = new CopyOnWriteArrayList<>();
+    private final List<Long> unlocked = new CopyOnWriteArrayList<>();
+    private final RedissonClient redisson = mock(RedissonClient.class);
+
+    private ConversationLeaseManager manager;
+
+    @BeforeEach
+    void setUp() {
+        // Redis 上的租约：每次获取都成功并发放递增的令牌，记录加解锁的持有者编号
+        RedissonFencedLock lock = mock(RedissonFencedLock.class);
+        when(lock.getName()).thenReturn("agentoz:lease:s1");
+        when(lock.tryLockAndGetTokenAsync(anyLong(), anyLong(), any(TimeUnit.class), anyLong())).thenAnswer(call -> {
+            locked.add(call.getArgument(3));
+            return new CompletableFutureWrapper<>(tokens.incrementAndGet());
+        });
+        when(lock.unlockAsync(anyLong())).thenAnswer(call -> {
+            unlocked.add(call.getArgument(0));
+            return new CompletableFutureWrapper<>((Void) null);
+        });
+        when(redisson.getFencedLock(anyString())).thenReturn(lock);
+        RAtomicLong counter = mock(RAtomicLong.class);
+        when(counter.expireAsync(any(Duration.class))).thenReturn(new CompletableFutureWrapper<>(true));
+        when(redisson.getAtomicLong(anyString())).thenReturn(counter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    void nextTurnWithinLingerReusesLeaseWithoutRedis() {
+        manager = manager(Duration.ofSeconds(30));
+
+        ConversationLease first = manager.acquire("s1");
+        first.close();
+        ConversationLease second = manager.acquire("s1");
+
+        assertThat(second.token()).isEqualTo(first.token());
+        assertThat(locked).hasSize(1);
+        assertThat(unlocked).isEmpty();
+        second.close();
+    }
+
+    @Test
+    void releasesLeaseWhenLingerExpires() {
+        manager = manager(Duration.ofMillis(50));
+
+        manager.acquire("s1").close();
+        awaitUnlocks(1);
+
+        // 保留期满后下一轮重新在 Redis 上获取，令牌推进
+        ConversationLease next = manager.acquire("s1");
+        assertThat(next.token()).isEqualTo(2);
+        assertThat(session.fences).containsEntry("s1", 2L);
+        next.close();
+    }
+
+    @Test
+    void lostLeaseIsReacquiredWithNewOwnerAndToken() throws Exception {
+        manager = manager(Duration.ofSeconds(30));
+        ConversationLease first = manager.acquire("s1");
+
+        // 同一会话的下一轮在本地排队，保持持有状态不被移除
+        CompletableFuture<ConversationLease> waiting = CompletableFuture.supplyAsync(() -> manager.acquire("s1"));
+        Thread.sleep(100);
+        assertThat(waiting).isNotDone();
+
+        // 异步写入 Redis 时发现令牌已过期
+        session.staleWrite("s1", first.token());
+        first.close();
+        ConversationLease second = waiting.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        assertThat(second.token()).isEqualTo(2);
+        // 放弃旧的持有者编号，用新编号重新获取
+        assertThat(unlocked).containsExactly(locked.get(0));
+        assertThat(locked).hasSize(2).doesNotHaveDuplicates();
+        assertThat(session.fences).containsEntry("s1", 2L);
+        second.close();
+    }
+
+    @Test
+    void rejectsLeaseWhenFenceIsAhead() {
+        manager = manager(Duration.ofSeconds(30));
+        session.fences.put("s1", 10L);
+
+        assertThatThrownBy(() -> manager.acquire("s1")).isInstanceOf(StaleSessionWriteException.class);
+        assertThat(unlocked).containsExactly(locked.get(0));
+
+        // 失败的获取不留下持有状态
+        session.fences.put("s1", 0L);
+        ConversationLease lease = manager.acquire("s1");
+        assertThat(lease.token()).isEqualTo(2);
+        lease.close();
+    }
+
+    @Test
+    void leaveKeepsLeaseWhileJournalWritesArePending() throws InterruptedException {
+        manager = manager(Duration.ZERO);
+        session.pending.add("s1");
+
+        ConversationLease lease = manager.acquire("s1");
+        lease.close();
+        Thread.sleep(300);
+        assertThat(unlocked).isEmpty();
+
+        // 写入期间到来的下一轮直接复用
+        ConversationLease next = manager.acquire("s1");
+        assertThat(next.token()).isEqualTo(lease.token());
+        next.close();
+
+        session.pending.remove("s1");
+        awaitUnlocks(1);
+        assertThat(locked).hasSize(1);
+    }
+
+    @Test
+    void expireKeepsLeaseWhileJournalWritesArePending() throws InterruptedException {
+        manager = manager(Duration.ofMillis(50));
+        session.pending.add("s1");
+
+        manager.acquire("s1").close();
+        Thread.sleep(300);
+        assertThat(unlocked).isEmpty();
+
+        session.pending.remove("s1");
+        awaitUnlocks(1);
+    }
+
+    @Test
+    void lostLeaseIsReleasedWithoutWaitingForPendingWrites() {
+        manager = manager(Duration.ofSeconds(30));
+        session.pending.add("s1");
+
+        ConversationLease lease = manager.acquire("s1");
+        lease.markLost();
+        lease.close();
+
+        // 记录会被 fence 拒绝，不必等待写入
+        assertThat(unlocked).hasSize(1);
+    }
+
+    private ConversationLeaseManager manager(Duration linger) {
+        return new ConversationLeaseManager(redisson, session, new SimpleMeterRegistry(),
+                TIMEOUT, linger, Duration.ofDays(7));
+    }
+
+    private void awaitUnlocks(int count) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (unlocked.size() < count && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(unlocked).hasSize(count);
+    }
+
+    /**
+     * 只实现租约用到的部分：fence、未写入 Redis 的会话和令牌过期通知
+     */
+    private static final class FakeSession extends RedisSession {
+
+        private final Map<String, Long> fences = new ConcurrentHashMap<>();
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+        private volatile BiConsumer<String, Long> staleListener;
+
+        private FakeSession() {
+            super(null, null);
+        }
+
+        @Override
+        public void onStaleWrite(BiConsumer<String, Long> listener) {
+            staleListener = listener;
+        }
+
+        @Override
+        public boolean hasPendingWrites(String sessionId) {
+            return pending.contains(sessionId);
+        }
+
+        @Override
+        public boolean advanceFence(String sessionId, long token) {
+            return fences.merge(sessionId, token, Math::max) == token;
+        }
+
+        private void staleWrite(String sessionId, long token) {
+            staleListener.accept(sessionId, token);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.deepknow.agentoz.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionJournalReplicatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysUnacknowledgedRecordsAfterRestart() throws IOException {
+        // Redis 不可用期间进程退出：记录留在本地日志中
+        try (SessionJournalReplicator replicator = replicator(record -> {
+            throw new RedisConnectionFailureException("连接被拒绝");
+        })) {
+            replicator.submit(JournalRecord.value("s1", 3, "memory", "v1"));
+            replicator.submit(JournalRecord.list("s1", 3, "history", List.of("a", "b")));
+            replicator.submit(JournalRecord.value("s2", 5, "memory", "w1"));
+            assertThat(replicator.pending("s1").values()).containsEntry("memory", "v1");
+        }
+
+        List<JournalRecord> applied = new CopyOnWriteArrayList<>();
+        try (SessionJournalReplicator replicator = replicator(applied::add)) {
+            assertThat(replicator.awaitReplicated(TIMEOUT)).isTrue();
+            assertThat(applied).extracting(JournalRecord::sequence).containsExactly(1L, 2L, 3L);
+            assertThat(applied.get(1).values()).containsExactly("a", "b");
+            assertThat(applied).extracting(JournalRecord::token).containsExactly(3L, 3L, 5L);
+            assertThat(replicator.pendingSessionIds()).isEmpty();
+        }
+    }
+
+    @Test
+    void servesPendingStateUntilReplicated() throws Exception {
+        CountDownLatch redisBack = new CountDownLatch(1);
+        try (SessionJournalReplicator replicator = replicator(record -> {
+            try {
+                redisBack.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            replicator.submit(JournalRecord.value("s1", 1, "memory", "v1"));
+            replicator.submit(JournalRecord.delete("s1", 1));
+            replicator.submit(JournalRecord.value("s1", 1, "memory", "v2"));
+
+            SessionJournalReplicator.Pending pending = replicator.pending("s1");
+            assertThat(pending.deleted()).isTrue();
+            assertThat(pending.values()).isEqualTo(Map.of("memory", "v2"));
+            assertThat(replicator.hasPending("s1")).isTrue();
+
+            redisBack.countDown();
+            assertThat(replicator.awaitReplicated(TIMEOUT)).isTrue();
+            assertThat(replicator.hasPending("s1")).isFalse();
+            assertThat(replicator.pending("s1")).isNull();
+        }
+    }
+
+    @Test
+    void dropsFencedRecordAndNotifiesListener() throws IOException {
+        List<String> staleSessions = new CopyOnWriteArrayList<>();
+        List<JournalRecord> applied = new CopyOnWriteArrayList<>();
+        try (SessionJournalReplicator replicator = replicator(record -> {
+            if (record.token() < 2) {
+                throw new StaleSessionWriteException(record.sessionId(), record.token());
+            }
+            applied.add(record);
+        })) {
+            replicator.onStaleWrite((sessionId, token) -> staleSessions.add(sessionId + "@" + token));
+            replicator.submit(JournalRecord.value("s1", 1, "memory", "old"));
+            replicator.submit(JournalRecord.value("s2", 2, "memory", "new"));
+
+            assertThat(replicator.awaitReplicated(TIMEOUT)).isTrue();
+            assertThat(staleSessions).containsExactly("s1@1");
+            assertThat(applied).extracting(JournalRecord::sessionId).containsExactly("s2");
+        }
+        try (SessionJournal journal = new SessionJournal(directory, 4096, false)) {
+            assertThat(journal.pending()).isZero();
+        }
+    }
+
+    private SessionJournalReplicator replicator(SessionJournalReplicator.Target target) throws IOException {
+        return new SessionJournalReplicator(new SessionJournal(directory, 4096, false), target,
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,116 @@
+package com.deepknow.agentoz.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordRoundTripsThroughEncoding() {
+        JournalRecord record = JournalRecord.list("会话-1", 7, "memory", List.of("{\"a\":1}", "{\"b\":\"二\"}"));
+
+        JournalRecord decoded = JournalRecord.decode(42, record.encode());
+
+        assertThat(decoded).isEqualTo(record.withSequence(42));
+    }
+
+    @Test
+    void reopenResumesAfterCheckpoint() throws IOException {
+        try (SessionJournal journal = new SessionJournal(directory, 4096, false)) {
+            for (int i = 1; i <= 3; i++) {
+                assertThat(journal.append(JournalRecord.value("s1", 1, "state", "v" + i))).isEqualTo(i);
+            }
+            assertThat(journal.poll(10)).hasSize(3);
+            journal.acknowledge(1);
+        }
+
+        try (SessionJournal journal = new SessionJournal(directory, 4096, false)) {
+            assertThat(journal.pending()).isEqualTo(2);
+            List<JournalRecord> replay = journal.poll(10);
+            assertThat(replay).extracting(JournalRecord::sequence).containsExactly(2L, 3L);
+            assertThat(replay).extracting(record -> record.values().get(0)).containsExactly("v2", "v3");
+            assertThat(journal.append(JournalRecord.delete("s1", 1))).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void truncatesTornRecordOnRecovery() throws IOException {
+        try (SessionJournal journal = new SessionJournal(directory, 4096, false)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(JournalRecord.value("s1", 1, "state", "v" + i));
+            }
+        }
+        // 第三条记录的内容写了一半：CRC 校验失败
+        corruptLastRecord(onlySegment());
+
+        try (SessionJournal journal = new SessionJournal(directory, 4096, false)) {
+            assertThat(journal.pending()).isEqualTo(2);
+            assertThat(journal.poll(10)).extracting(JournalRecord::sequence).containsExactly(1L, 2L);
+            assertThat(journal.append(JournalRecord.value("s1", 1, "state", "v3'"))).isEqualTo(3);
+            assertThat(journal.poll(10)).extracting(record -> record.values().get(0)).containsExactly("v3'");
+        }
+    }
+
+    @Test
+    void deletesSegmentsOnceAcknowledged() throws IOException {
+        try (SessionJournal journal = new SessionJournal(directory, 256, false)) {
+            for (int i = 0; i < 20; i++) {
+                journal.append(JournalRecord.value("s" + i, 1, "state", "x".repeat(64)));
+            }
+            assertThat(segments()).hasSizeGreaterThan(1);
+
+            List<JournalRecord> records = journal.poll(100);
+            assertThat(records).hasSize(20);
+            journal.acknowledge(records.get(records.size() - 1).sequence());
+
+            assertThat(journal.pending()).isZero();
+            assertThat(segments()).hasSize(1);
+        }
+        try (SessionJournal journal = new SessionJournal(directory, 256, false)) {
+            assertThat(journal.pending()).isZero();
+            assertThat(journal.poll(100)).isEmpty();
+            assertThat(journal.append(JournalRecord.value("s", 1, "state", "v"))).isEqualTo(21);
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertThat(segments).hasSize(1);
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static void corruptLastRecord(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int position = 0;
+            int last = 0;
+            while (buffer.getInt(position) != 0) {
+                last = position;
+                position += Integer.BYTES * 2 + buffer.getInt(position);
+            }
+            int end = last + Integer.BYTES * 2 + buffer.getInt(last) - 1;
+            buffer.put(end, (byte) (buffer.get(end) ^ 0xff));
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.deepknow.agentoz.stream;
+
+import com.deepknow.agentoz.api.dto.AgentChatResponse;
+import com.deepknow.agentoz.api.enums.EventType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TurnStreamRegistryTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final FakeMirror mirror = new FakeMirror();
+
+    @Test
+    void resumesMidTurnFromLastSeq() {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 16, Duration.ofSeconds(30));
+        TurnStream stream = registry.open("s1", "t1");
+        emit(stream, 3);
+
+        // 客户端收到 seq=1 后断开，轮次继续进行
+        List<Long> resumed = new CopyOnWriteArrayList<>();
+        AtomicReference<Boolean> completed = new AtomicReference<>(false);
+        registry.resume("s1", "t1", 1).subscribe(response -> resumed.add(response.getSeq()),
+                e -> { }, () -> completed.set(true));
+        assertThat(resumed).containsExactly(2L, 3L);
+
+        // 重连后收到实时事件，轮次结束时流完成
+        emit(stream, 1);
+        registry.finish(stream);
+        assertThat(resumed).containsExactly(2L, 3L, 4L);
+        assertThat(completed.get()).isTrue();
+        assertThat(mirror.replays).isEmpty();
+    }
+
+    @Test
+    void resumesFinishedTurnWithinRetention() {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 16, Duration.ofSeconds(30));
+        TurnStream stream = registry.open("s1", "t1");
+        emit(stream, 3);
+        registry.finish(stream);
+
+        // 不指定 turnId 时恢复该会话最近的轮次
+        assertThat(seqs(registry.resume("s1", null, 0))).containsExactly(1L, 2L, 3L);
+        assertThat(seqs(registry.resume("s1", "t1", 2))).containsExactly(3L);
+        assertThat(seqs(registry.resume("s1", "t1", 3))).isEmpty();
+        assertThat(mirror.replays).isEmpty();
+    }
+
+    @Test
+    void fallsBackToMirrorAfterRetention() throws InterruptedException {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 16, Duration.ofMillis(50));
+        TurnStream stream = registry.open("s1", "t1");
+        emit(stream, 2);
+        registry.finish(stream);
+        Thread.sleep(200);
+
+        assertThat(seqs(registry.resume("s1", "t1", 1))).isEmpty();
+        assertThat(mirror.replays).containsExactly("s1/t1/1");
+    }
+
+    @Test
+    void failsWhenEventsFellOutOfBuffer() {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 2, Duration.ofSeconds(30));
+        TurnStream stream = registry.open("s1", "t1");
+        emit(stream, 5);
+
+        // 缓冲区只剩 seq=4、5，从 seq=1 之后恢复会丢事件
+        assertThatThrownBy(() -> registry.resume("s1", "t1", 1).blockLast(TIMEOUT))
+                .isInstanceOf(StreamNotResumableException.class);
+
+        // 紧接缓冲区起点的位置仍可恢复
+        registry.finish(stream);
+        assertThat(seqs(registry.resume("s1", "t1", 3))).containsExactly(4L, 5L);
+        assertThat(mirror.replays).isEmpty();
+    }
+
+    @Test
+    void turnIdMismatchFallsThroughToMirror() {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 16, Duration.ofSeconds(30));
+        TurnStream previous = registry.open("s1", "t1");
+        emit(previous, 2);
+        registry.finish(previous);
+        registry.open("s1", "t2");
+
+        // 本节点的流已被新一轮取代，旧轮次交给跨节点副本（由副本判断是否可恢复）
+        assertThat(seqs(registry.resume("s1", "t1", 1))).isEmpty();
+        assertThat(mirror.replays).containsExactly("s1/t1/1");
+        assertThat(mirror.attached).containsExactly("t1", "t2");
+    }
+
+    @Test
+    void detachedStreamIsNotResumable() {
+        TurnStreamRegistry registry = new TurnStreamRegistry(mirror, 16, Duration.ofSeconds(30));
+        TurnStream stream = registry.openDetached("s1", "t1");
+        emit(stream, 1);
+
+        assertThat(mirror.attached).isEmpty();
+        registry.resume("s1", "t1", 0).blockLast(TIMEOUT);
+        assertThat(mirror.replays).containsExactly("s1/t1/0");
+    }
+
+    @Test
+    void firstEventCarriesTurnId() {
+        TurnStream stream = new TurnStream("s1", "t1", 16);
+        emit(stream, 2);
+        stream.complete();
+        // 完成后发出的事件被丢弃
+        emit(stream, 1);
+
+        List<AgentChatResponse> events = stream.events().collectList().block(TIMEOUT);
+        assertThat(events).extracting(AgentChatResponse::getSeq).containsExactly(1L, 2L);
+        assertThat(events).extracting(AgentChatResponse::getTurnId).containsExactly("t1", null);
+    }
+
+    private static void emit(TurnStream stream, int count) {
+        for (int i = 0; i < count; i++) {
+            stream.emit(AgentChatResponse.builder().eventType(EventType.TEXT.name()).build());
+        }
+    }
+
+    private static List<Long> seqs(Flux<AgentChatResponse> events) {
+        return events.map(AgentChatResponse::getSeq).collectList().block(TIMEOUT);
+    }
+
+    /**
+     * 记录挂载的轮次和重放请求，重放结果为空
+     */
+    private static final class FakeMirror implements TurnEventMirror {
+
+        private final List<String> attached = new CopyOnWriteArrayList<>();
+        private final List<String> replays = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void attach(TurnStream stream) {
+            attached.add(stream.turnId());
+        }
+
+        @Override
+        public Flux<AgentChatResponse> replay(String sessionId, String turnId, long afterSeq) {
+            replays.add(sessionId + "/" + turnId + "/" + afterSeq);
+            return Flux.empty();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.deepknow.agentoz.tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agentscope.core.agent.Agent;
+import io.agentscope.core.hook.PostCallEvent;
+import io.agentscope.core.hook.ReasoningChunkEvent;
+import io.agentscope.core.message.ContentBlock;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import io.agentscope.core.message.ToolResultBlock;
+import io.agentscope.core.message.ToolUseBlock;
+import io.agentscope.core.tool.AgentTool;
+import io.agentscope.core.tool.ToolCallParam;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpeculativeToolHookTest {
+
+    /**
+     * Hook 只把 Agent 透传给工具调用
+     */
+    private static final Agent AGENT = (Agent) Proxy.newProxyInstance(Agent.class.getClassLoader(),
+            new Class<?>[]{Agent.class}, (proxy, method, args) -> null);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ToolSpeculator speculator = new ToolSpeculator(new ObjectMapper(), registry, true,
+            List.of("search", "weather"));
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private final SpeculativeToolHook hook = new SpeculativeToolHook(speculator,
+            Map.of("search", tool("search"), "weather", tool("weather")));
+
+    @Test
+    void speculatesToolCallAfterText() {
+        TextBlock text = TextBlock.builder().text("我先查一下").build();
+
+        chunk(text, toolUse("call_1", "search", "{\"query\":\"MyS"));
+        assertThat(calls).isEmpty();
+
+        chunk(text, toolUse("call_1", "search", "{\"query\":\"MySQL\"}"));
+        assertThat(calls).containsExactly("search:MySQL");
+
+        ToolResultBlock result = hook.take(call("call_1", "search", Map.of("query", "MySQL")))
+                .block(Duration.ofSeconds(5));
+        assertThat(result.getOutput()).extracting(block -> ((TextBlock) block).getText())
+                .containsExactly("search:MySQL");
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void speculatesEachCompleteParallelToolCall() {
+        ToolUseBlock search = toolUse("call_1", "search", "{\"query\":\"MySQL\"}");
+
+        // 第一个调用的参数已完整，第二个仍在输出中
+        chunk(search, toolUse("call_2", "weather", "{\"city\":\"杭"));
+        assertThat(calls).containsExactly("search:MySQL");
+
+        chunk(search, toolUse("call_2", "weather", "{\"city\":\"杭州\"}"));
+        // 同一调用只发起一次
+        assertThat(calls).containsExactly("search:MySQL", "weather:杭州");
+
+        assertThat(hook.take(call("call_2", "weather", Map.of("city", "杭州")))).isNotNull();
+        assertThat(hook.take(call("call_1", "search", Map.of("query", "MySQL")))).isNotNull();
+    }
+
+    @Test
+    void discardsUntakenSpeculationsWhenTurnEnds() {
+        chunk(toolUse("call_1", "search", "{\"query\":\"MySQL\"}"),
+                toolUse("call_2", "weather", "{\"city\":\"杭州\"}"));
+
+        hook.onEvent(new PostCallEvent(AGENT, Msg.builder().role(MsgRole.ASSISTANT).textContent("完成").build()))
+                .block();
+
+        assertThat(count("unused")).isEqualTo(2);
+        assertThat(hook.take(call("call_1", "search", Map.of("query", "MySQL")))).isNull();
+    }
+
+    private void chunk(ContentBlock... blocks) {
+        Msg accumulated = Msg.builder().role(MsgRole.ASSISTANT).content(List.of(blocks)).build();
+        hook.onEvent(new ReasoningChunkEvent(AGENT, "model", null, accumulated, accumulated)).block();
+    }
+
+    private double count(String result) {
+        return registry.get("agentoz.tool.speculation").tag("result", result).counter().count();
+    }
+
+    private static ToolUseBlock toolUse(String id, String name, String raw) {
+        return new ToolUseBlock(id, name, Map.of(), raw, null);
+    }
+
+    /**
+     * 实际调用时的工具调用块：参数已解析
+     */
+    private static ToolUseBlock call(String id, String name, Map<String, Object> input) {
+        return new ToolUseBlock(id, name, input);
+    }
+
+    private AgentTool tool(String name) {
+        return new AgentTool() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return name;
+            }
+
+            @Override
+            public Map<String, Object> getParameters() {
+                return Map.of();
+            }
+
+            @Override
+            public Mono<ToolResultBlock> callAsync(ToolCallParam param) {
+                String call = name + ":" + param.getInput().values().iterator().next();
+                calls.add(call);
+                return Mono.just(ToolResultBlock.text(call));
+            }
+        };
+    }
+}
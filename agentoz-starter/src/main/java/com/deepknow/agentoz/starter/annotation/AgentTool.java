@@ -21,4 +21,11 @@ public @interface AgentTool {
      * 工具描述 (Prompt)，用于告诉 LLM 如何使用此工具
      */
     String description() default "";
+
+    /**
+     * 是否幂等（相同参数重复调用没有额外副作用，结果相同）
+     * <p>
+     * 通过 MCP 工具注解 idempotentHint 告知调用方；幂等的工具允许调用方在模型输出完整参数后提前执行
+     */
+    boolean idempotent() default false;
 }
@@ -99,6 +99,8 @@ public class McpToolRegistry implements ApplicationContextAware {
                 .name(name)
                 .description(description)
                 .inputSchema(inputSchemaJson)
+                .annotations(new McpSchema.ToolAnnotations(null, null, null,
+                        annotation.idempotent() ? Boolean.TRUE : null, null, null))
                 .build();
 
         // 2. 构建执行闭包 (Context, Request) -> Result
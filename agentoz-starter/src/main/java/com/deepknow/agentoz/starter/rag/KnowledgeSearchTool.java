@@ -0,0 +1,29 @@
+package com.deepknow.agentoz.starter.rag;
+
+import com.deepknow.agentoz.starter.annotation.AgentParam;
+import com.deepknow.agentoz.starter.annotation.AgentTool;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 知识检索工具（MCP Tool：knowledge_search）
+ */
+@RequiredArgsConstructor
+public class KnowledgeSearchTool {
+
+    private final RagClient ragClient;
+
+    @AgentTool(name = "knowledge_search",
+            description = "在私有知识库中检索与问题相关的文档片段，返回片段文本、相关度和来源信息",
+            idempotent = true)
+    public List<RetrievedChunk> search(@AgentParam("检索内容，用自然语言描述要查找的知识") String query,
+                                       @AgentParam(value = "返回的片段数，默认 5", required = false) Integer topK) {
+        try {
+            return ragClient.query(query, topK == null ? 0 : topK).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
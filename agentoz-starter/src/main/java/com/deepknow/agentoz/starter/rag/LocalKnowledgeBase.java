@@ -0,0 +1,98 @@
+package com.deepknow.agentoz.starter.rag;
+
+import com.deepknow.agentoz.vector.HnswIndex;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内知识库：片段文本在堆上，向量在 {@link HnswIndex} 的堆外内存中，节点编号即片段下标
+ */
+@Slf4j
+final class LocalKnowledgeBase {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final List<RetrievedChunk> chunks;
+    private final HnswIndex index;
+    private final int efSearch;
+
+    private LocalKnowledgeBase(List<RetrievedChunk> chunks, HnswIndex index, int efSearch) {
+        this.chunks = chunks;
+        this.index = index;
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 读取片段文件（JSON Lines），分批调用 /embed 生成向量并建立索引
+     */
+    static LocalKnowledgeBase load(Path documents, RagClient client, RagProperties.Local config) throws IOException {
+        long start = System.nanoTime();
+        List<RetrievedChunk> chunks = readChunks(documents);
+        if (chunks.isEmpty()) {
+            throw new IllegalStateException("知识库片段文件为空: " + documents);
+        }
+
+        HnswIndex index = null;
+        int batchSize = Math.max(1, config.getEmbedBatchSize());
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            List<String> texts = new ArrayList<>(batchSize);
+            for (RetrievedChunk chunk : chunks.subList(from, Math.min(from + batchSize, chunks.size()))) {
+                texts.add(chunk.getText());
+            }
+            for (float[] vector : client.embed(texts, "document").join()) {
+                if (index == null) {
+                    index = new HnswIndex(vector.length, chunks.size(), config.getM(), config.getEfConstruction(), 42);
+                }
+                index.add(vector);
+            }
+        }
+        log.info("[RAG] 本地索引已建立: {} 个片段，{} 维，耗时 {} ms",
+                chunks.size(), index.dimension(), (System.nanoTime() - start) / 1_000_000);
+        return new LocalKnowledgeBase(chunks, index, config.getEfSearch());
+    }
+
+    List<RetrievedChunk> search(float[] query, int topK) {
+        List<HnswIndex.Hit> hits = index.search(query, topK, efSearch);
+        List<RetrievedChunk> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            RetrievedChunk chunk = chunks.get(hit.id());
+            results.add(new RetrievedChunk(chunk.getText(), (double) hit.score(), chunk.getMetadata()));
+        }
+        return results;
+    }
+
+    private static List<RetrievedChunk> readChunks(Path documents) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<RetrievedChunk> chunks = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(documents, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node = objectMapper.readTree(line);
+                JsonNode text = node.get("text");
+                if (text == null || text.asText().isBlank()) {
+                    continue;
+                }
+                Map<String, Object> metadata = node.has("metadata")
+                        ? objectMapper.convertValue(node.get("metadata"), METADATA_TYPE)
+                        : Map.of();
+                chunks.add(new RetrievedChunk(text.asText(), null, metadata));
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,133 @@
+package com.deepknow.agentoz.starter.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索请求攒批：第一个请求到达后等待 window，或攒够 maxSize 条时立即发出，合并为一次 /query/batch 调用
+ * <p>
+ * 服务端没有 /query/batch（旧版本 agentoz-rag 返回 404 / 405）时，之后的请求逐条调用 /query。
+ */
+@Slf4j
+final class QueryBatcher implements AutoCloseable {
+
+    private final RagClient client;
+    private final int maxSize;
+    private final long windowNanos;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rag-query-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private volatile boolean batchUnsupported;
+
+    QueryBatcher(RagClient client, int maxSize, Duration window) {
+        this.client = client;
+        this.maxSize = maxSize;
+        this.windowNanos = window.toNanos();
+    }
+
+    CompletableFuture<List<RetrievedChunk>> submit(RagClient.QueryKey key) {
+        if (batchUnsupported) {
+            return client.querySingle(key);
+        }
+        Pending request = new Pending(key, new CompletableFuture<>());
+        List<Pending> ready = null;
+        synchronized (this) {
+            pending.add(request);
+            if (pending.size() >= maxSize) {
+                ready = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return request.future();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    private void flush() {
+        List<Pending> ready;
+        synchronized (this) {
+            ready = takePending();
+        }
+        if (!ready.isEmpty()) {
+            send(ready);
+        }
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> ready = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return ready;
+    }
+
+    private void send(List<Pending> batch) {
+        if (batch.size() == 1 || batchUnsupported) {
+            batch.forEach(this::sendSingle);
+            return;
+        }
+        List<RagClient.QueryKey> keys = new ArrayList<>(batch.size());
+        for (Pending request : batch) {
+            keys.add(request.key());
+        }
+        client.queryBatch(keys).whenComplete((results, e) -> {
+            if (e == null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future().complete(results.get(i));
+                }
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (cause instanceof RagServiceException rejected
+                    && (rejected.getStatusCode() == 404 || rejected.getStatusCode() == 405)) {
+                batchUnsupported = true;
+                log.warn("[RAG] 服务端不支持 /query/batch，改为逐条检索");
+                batch.forEach(this::sendSingle);
+                return;
+            }
+            batch.forEach(request -> request.future().completeExceptionally(cause));
+        });
+    }
+
+    private void sendSingle(Pending request) {
+        client.querySingle(request.key()).whenComplete((result, e) -> {
+            if (e != null) {
+                request.future().completeExceptionally(unwrap(e));
+            } else {
+                request.future().complete(result);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private record Pending(RagClient.QueryKey key, CompletableFuture<List<RetrievedChunk>> future) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.deepknow.agentoz.starter.rag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(RagProperties.class)
+@ConditionalOnProperty(prefix = "agentoz.rag", name = "enabled", havingValue = "true")
+public class RagAutoConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public RagClient ragClient(RagProperties properties, ObjectMapper objectMapper) {
+        log.info("[AgentOZ Starter] 创建知识检索客户端: {}", properties.getBaseUrl());
+        return new RagClient(properties, objectMapper);
+    }
+
+    /**
+     * 由 McpToolRegistry 扫描注册为 knowledge_search 工具
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public KnowledgeSearchTool knowledgeSearchTool(RagClient ragClient) {
+        return new KnowledgeSearchTool(ragClient);
+    }
+}
@@ -0,0 +1,260 @@
+package com.deepknow.agentoz.starter.rag;
+
+import com.deepknow.agentoz.vector.HnswIndex;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * agentoz-rag 检索客户端
+ * <p>
+ * 检索结果按规范化后的查询文本和 top_k 缓存，相同查询的并发请求只发出一次；
+ * 未命中的请求在很短的窗口内攒批，合并为一次 /query/batch 调用（服务端不支持时自动退回 /query）。
+ * HTTP 使用 JDK HttpClient：连接复用，请求异步发送，不占用调用线程。
+ * <p>
+ * 开启本地索引时，启动后在后台为知识库片段生成向量并建立 {@link HnswIndex}，
+ * 建好之后检索只需通过 /embed 生成查询向量，不再访问向量库。
+ */
+@Slf4j
+public class RagClient implements AutoCloseable {
+
+    private static final TypeReference<List<RetrievedChunk>> CHUNKS = new TypeReference<>() {
+    };
+
+    private final RagProperties properties;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+
+    /**
+     * 为 null 表示不缓存
+     */
+    private final AsyncCache<QueryKey, List<RetrievedChunk>> results;
+    private final AsyncCache<String, float[]> queryEmbeddings;
+
+    /**
+     * 为 null 表示不攒批
+     */
+    private final QueryBatcher batcher;
+
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rag-local-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile LocalKnowledgeBase localKnowledgeBase;
+
+    public RagClient(RagProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.baseUrl = properties.getBaseUrl().endsWith("/")
+                ? properties.getBaseUrl().substring(0, properties.getBaseUrl().length() - 1)
+                : properties.getBaseUrl();
+        this.httpClient = HttpClient.newBuilder()
+                // uvicorn 只支持 HTTP/1.1，避免每个新连接先尝试 h2c 升级
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .build();
+        RagProperties.Cache cache = properties.getCache();
+        this.results = cache.getMaxSize() > 0
+                ? Caffeine.newBuilder().maximumSize(cache.getMaxSize()).expireAfterWrite(cache.getTtl()).buildAsync()
+                : null;
+        this.queryEmbeddings = cache.getMaxSize() > 0
+                ? Caffeine.newBuilder().maximumSize(cache.getMaxSize()).buildAsync()
+                : null;
+        RagProperties.Batch batch = properties.getBatch();
+        this.batcher = batch.isEnabled() && batch.getMaxSize() > 1
+                ? new QueryBatcher(this, batch.getMaxSize(), batch.getWindow())
+                : null;
+    }
+
+    /**
+     * 开启本地索引时在后台建立索引，建好之前检索照常访问远程服务
+     */
+    public void start() {
+        RagProperties.Local local = properties.getLocal();
+        if (!local.isEnabled()) {
+            return;
+        }
+        if (local.getDocuments() == null || local.getDocuments().isBlank()) {
+            log.warn("[RAG] 已开启本地索引但未配置 agentoz.rag.local.documents，继续使用远程检索");
+            return;
+        }
+        indexBuilder.execute(() -> {
+            try {
+                localKnowledgeBase = LocalKnowledgeBase.load(Path.of(local.getDocuments()), this, local);
+            } catch (Exception e) {
+                log.error("[RAG] 建立本地索引失败，继续使用远程检索: {}", local.getDocuments(), e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        indexBuilder.shutdownNow();
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    /**
+     * 检索知识片段
+     *
+     * @param topK 小于等于 0 时使用 default-top-k，超出 max-top-k 时按上限
+     */
+    public CompletableFuture<List<RetrievedChunk>> query(String query, int topK) {
+        if (query == null || query.isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("query 不能为空"));
+        }
+        int k = topK <= 0 ? properties.getDefaultTopK() : Math.min(topK, properties.getMaxTopK());
+        QueryKey key = new QueryKey(normalize(query), k);
+        if (results == null) {
+            return fetch(key);
+        }
+        // 同一个 key 的并发请求共享同一个 future；失败的 future 不会留在缓存中
+        return results.get(key, (ignored, executor) -> fetch(key));
+    }
+
+    /**
+     * 本地索引是否已建好
+     */
+    public boolean isLocalIndexReady() {
+        return localKnowledgeBase != null;
+    }
+
+    private CompletableFuture<List<RetrievedChunk>> fetch(QueryKey key) {
+        LocalKnowledgeBase local = localKnowledgeBase;
+        if (local != null) {
+            return embedQuery(key.query()).thenApply(vector -> local.search(vector, key.topK()));
+        }
+        return batcher != null ? batcher.submit(key) : querySingle(key);
+    }
+
+    CompletableFuture<List<RetrievedChunk>> querySingle(QueryKey key) {
+        return post("/query", queryBody(key)).thenApply(json -> toChunks(json.get("results")));
+    }
+
+    /**
+     * 多条检索合并为一次调用，结果与 keys 一一对应
+     */
+    CompletableFuture<List<List<RetrievedChunk>>> queryBatch(List<QueryKey> keys) {
+        List<Map<String, Object>> queries = new ArrayList<>(keys.size());
+        for (QueryKey key : keys) {
+            queries.add(queryBody(key));
+        }
+        return post("/query/batch", Map.of("queries", queries)).thenApply(json -> {
+            JsonNode results = json.get("results");
+            if (results == null || results.size() != keys.size()) {
+                throw new IllegalStateException("批量检索结果数与请求数不一致: " + keys.size());
+            }
+            List<List<RetrievedChunk>> chunks = new ArrayList<>(keys.size());
+            for (JsonNode result : results) {
+                chunks.add(toChunks(result));
+            }
+            return chunks;
+        });
+    }
+
+    /**
+     * 生成向量，结果与 texts 一一对应
+     *
+     * @param textType query / document
+     */
+    CompletableFuture<List<float[]>> embed(List<String> texts, String textType) {
+        return post("/embed", Map.of("texts", texts, "text_type", textType)).thenApply(json -> {
+            JsonNode embeddings = json.get("embeddings");
+            if (embeddings == null || embeddings.size() != texts.size()) {
+                throw new IllegalStateException("向量数与文本数不一致: " + texts.size());
+            }
+            List<float[]> vectors = new ArrayList<>(texts.size());
+            for (JsonNode embedding : embeddings) {
+                float[] vector = new float[embedding.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) embedding.get(i).asDouble();
+                }
+                vectors.add(vector);
+            }
+            return vectors;
+        });
+    }
+
+    private CompletableFuture<float[]> embedQuery(String query) {
+        if (queryEmbeddings == null) {
+            return embed(List.of(query), "query").thenApply(vectors -> vectors.get(0));
+        }
+        return queryEmbeddings.get(query, (ignored, executor) ->
+                embed(List.of(query), "query").thenApply(vectors -> vectors.get(0)));
+    }
+
+    private CompletableFuture<JsonNode> post(String path, Object body) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(properties.getRequestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                String text = new String(response.body(), StandardCharsets.UTF_8);
+                throw new RagServiceException(path, response.statusCode(), text.length() > 200 ? text.substring(0, 200) : text);
+            }
+            try {
+                return objectMapper.readTree(response.body());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private List<RetrievedChunk> toChunks(JsonNode results) {
+        if (results == null || results.isNull()) {
+            return List.of();
+        }
+        return List.copyOf(objectMapper.convertValue(results, CHUNKS));
+    }
+
+    private static Map<String, Object> queryBody(QueryKey key) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", key.query());
+        body.put("top_k", key.topK());
+        return body;
+    }
+
+    /**
+     * 规范化查询文本：全角转半角（NFKC）、合并空白、英文转小写，使写法不同的同一问题命中同一缓存
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC);
+        return normalized.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    record QueryKey(String query, int topK) {
+    }
+}
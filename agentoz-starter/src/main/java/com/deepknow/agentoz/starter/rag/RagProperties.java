@@ -0,0 +1,103 @@
+package com.deepknow.agentoz.starter.rag;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "agentoz.rag")
+public class RagProperties {
+    /**
+     * 是否启用知识检索（注册 knowledge_search 工具）
+     */
+    private boolean enabled = false;
+
+    /**
+     * agentoz-rag 服务地址
+     */
+    private String baseUrl = "http://localhost:18000";
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * 单次 HTTP 请求超时
+     */
+    private Duration requestTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 未指定 top_k 时返回的片段数，以及允许的上限
+     */
+    private int defaultTopK = 5;
+    private int maxTopK = 20;
+
+    private Cache cache = new Cache();
+
+    private Batch batch = new Batch();
+
+    private Local local = new Local();
+
+    /**
+     * 检索结果缓存，按规范化后的查询文本和 top_k 缓存
+     */
+    @Data
+    public static class Cache {
+        /**
+         * 最多缓存的查询数，0 表示不缓存（相同查询的并发请求也不再合并）
+         */
+        private long maxSize = 10000;
+
+        /**
+         * 知识库更新后最长在这段时间内返回旧结果
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    /**
+     * 并发检索请求合并为一次 /query/batch 调用
+     */
+    @Data
+    public static class Batch {
+        private boolean enabled = true;
+
+        /**
+         * 第一个请求到达后最多等待的时间
+         */
+        private Duration window = Duration.ofMillis(5);
+
+        /**
+         * 攒够这么多条立即发出
+         */
+        private int maxSize = 16;
+    }
+
+    /**
+     * 进程内向量索引（HNSW，向量存放在堆外），用于热点知识库：检索不再访问向量库，只需生成查询向量
+     */
+    @Data
+    public static class Local {
+        private boolean enabled = false;
+
+        /**
+         * 知识库片段文件（JSON Lines，每行 {"text": ..., "metadata": {...}}），启动时生成向量并建立索引
+         */
+        private String documents;
+
+        /**
+         * 每个节点的邻居数
+         */
+        private int m = 16;
+
+        private int efConstruction = 200;
+
+        /**
+         * 检索时的候选集大小，越大召回率越高、越慢；小于 top_k 时按 top_k
+         */
+        private int efSearch = 64;
+
+        /**
+         * 一次 /embed 调用最多携带的片段数
+         */
+        private int embedBatchSize = 25;
+    }
+}
@@ -0,0 +1,18 @@
+package com.deepknow.agentoz.starter.rag;
+
+/**
+ * agentoz-rag 返回了非 200 响应
+ */
+public class RagServiceException extends RuntimeException {
+
+    private final int statusCode;
+
+    public RagServiceException(String path, int statusCode, String body) {
+        super("知识检索服务调用失败: " + path + " HTTP " + statusCode + (body == null || body.isEmpty() ? "" : " " + body));
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,25 @@
+package com.deepknow.agentoz.starter.rag;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 检索到的知识片段（与 agentoz-rag /query 返回的 results 元素一致）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetrievedChunk {
+
+    private String text;
+
+    /**
+     * 相似度，越大越相关
+     */
+    private Double score;
+
+    private Map<String, Object> metadata;
+}
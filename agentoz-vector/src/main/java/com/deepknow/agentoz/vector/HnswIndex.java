@@ -0,0 +1,477 @@
+package com.deepknow.agentoz.vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW 近似最近邻索引（余弦相似度）
+ * <p>
+ * 向量归一化后连续存放在一块堆外内存中（DirectByteBuffer，或调用方映射的文件），不占用堆，也不参与 GC 标记；
+ * 分层的邻居列表在堆上，相对向量很小，重新打开向量文件时通过 {@link #restore} 重建。容量在创建时固定。
+ * 写入串行执行，与检索通过读写锁互斥，适合建好之后以检索为主的场景（知识库、会话语义记忆）。
+ */
+public final class HnswIndex {
+
+    private static final int MAX_LEVEL = 16;
+    private static final int GRAPH_MAGIC = 0x484E5357;
+
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.similarity(), a.similarity());
+    private static final Comparator<Candidate> WORST_FIRST = (a, b) -> Float.compare(a.similarity(), b.similarity());
+
+    private final int dimension;
+    private final int capacity;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    private final FloatBuffer vectors;
+
+    /**
+     * 节点 -> 层 -> 邻居列表，第 0 个元素是邻居数
+     */
+    private final int[][][] links;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param m              每层的邻居数（第 0 层为 2m）
+     * @param efConstruction 插入时的候选集大小
+     */
+    public HnswIndex(int dimension, int capacity, int m, int efConstruction, long seed) {
+        this(allocate(dimension, capacity), dimension, m, efConstruction, seed);
+    }
+
+    /**
+     * 使用调用方提供的向量存储（例如映射的文件），容量为其可容纳的向量数。
+     * 存储中已有的向量不会自动编入索引，需调用 {@link #restore}
+     */
+    public HnswIndex(FloatBuffer vectors, int dimension, int m, int efConstruction, long seed) {
+        if (dimension <= 0 || m < 2) {
+            throw new IllegalArgumentException("dimension 必须为正数，m 不小于 2");
+        }
+        if (vectors.capacity() < dimension) {
+            throw new IllegalArgumentException("向量存储容纳不下一个 " + dimension + " 维向量");
+        }
+        this.dimension = dimension;
+        this.capacity = vectors.capacity() / dimension;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.vectors = vectors;
+        this.links = new int[capacity][][];
+    }
+
+    private static FloatBuffer allocate(int dimension, int capacity) {
+        if (dimension <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("dimension、capacity 必须为正数");
+        }
+        if ((long) dimension * capacity * Float.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("向量总大小超过 2GB: " + dimension + " x " + capacity);
+        }
+        return ByteBuffer.allocateDirect(dimension * capacity * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    /**
+     * 写入一个向量
+     *
+     * @return 节点编号，从 0 开始连续分配
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            if (size == capacity) {
+                throw new IllegalStateException("索引已满: " + capacity);
+            }
+            int id = size;
+            vectors.put(id * dimension, normalized);
+            insert(id, normalized);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 为存储中前 count 个向量建立索引（这些向量由之前的 {@link #add} 写入，已归一化），
+     * 用于重新打开持久化的向量文件
+     */
+    public void restore(int count) {
+        if (count < 0 || count > capacity) {
+            throw new IllegalArgumentException("count 超出容量: " + count);
+        }
+        lock.writeLock().lock();
+        try {
+            float[] vector = new float[dimension];
+            while (size < count) {
+                vectors.get(size * dimension, vector);
+                insert(size, vector.clone());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写出图结构（入口点和各节点的邻居列表），配合持久化的向量存储使用，重新打开时用 {@link #readGraph} 代替重建
+     */
+    public void writeGraph(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(GRAPH_MAGIC);
+            out.writeInt(dimension);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int id = 0; id < size; id++) {
+                out.writeByte(links[id].length);
+                for (int[] neighbors : links[id]) {
+                    out.writeShort(neighbors.length);
+                    for (int i = 0; i <= neighbors[0]; i++) {
+                        out.writeInt(neighbors[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 读取 {@link #writeGraph} 写出的图结构，之后写入的向量仍需 {@link #restore}；只能在空索引上调用
+     *
+     * @param limit 存储中已提交的向量数，图的节点数超过它（向量存储被截断）时放弃读取
+     * @return 是否已读取
+     */
+    public boolean readGraph(DataInput in, int limit) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (size != 0) {
+                throw new IllegalStateException("只能在空索引上读取图结构");
+            }
+            if (in.readInt() != GRAPH_MAGIC || in.readInt() != dimension) {
+                return false;
+            }
+            int nodes = in.readInt();
+            if (nodes > limit || nodes > capacity) {
+                return false;
+            }
+            int entry = in.readInt();
+            int top = in.readInt();
+            int[][][] read = new int[nodes][][];
+            for (int id = 0; id < nodes; id++) {
+                read[id] = new int[in.readUnsignedByte()][];
+                for (int l = 0; l < read[id].length; l++) {
+                    int[] neighbors = new int[in.readUnsignedShort()];
+                    neighbors[0] = in.readInt();
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        neighbors[i] = in.readInt();
+                    }
+                    read[id][l] = neighbors;
+                }
+            }
+            System.arraycopy(read, 0, links, 0, nodes);
+            size = nodes;
+            entryPoint = entry;
+            maxLevel = top;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 持有写锁时调用：向量已写入 id 位置
+     */
+    private void insert(int id, float[] normalized) {
+        int level = randomLevel();
+        links[id] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[id][l] = new int[maxConnections(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = id;
+            maxLevel = level;
+            return;
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = descending(searchLayer(normalized, current, efConstruction, l));
+            for (Candidate neighbor : selectNeighbors(found, m)) {
+                append(links[id][l], neighbor.id());
+                connect(neighbor.id(), id, l);
+            }
+            current = found.get(0).id();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = id;
+        }
+    }
+
+    /**
+     * 检索最相似的 k 个向量，按相似度降序
+     *
+     * @param ef 候选集大小，小于 k 时按 k
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            List<Candidate> found = descending(searchLayer(normalized, current, Math.max(ef, k), 0));
+            List<Hit> hits = new ArrayList<>(Math.min(k, found.size()));
+            for (int i = 0; i < found.size() && i < k; i++) {
+                hits.add(new Hit(found.get(i).id(), found.get(i).similarity()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 暴力检索（精确结果），用于评估召回率
+     */
+    public List<Hit> exactSearch(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(WORST_FIRST);
+            for (int id = 0; id < size; id++) {
+                best.add(new Candidate(id, similarity(normalized, id)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best.size());
+            for (Candidate candidate : descending(best)) {
+                hits.add(new Hit(candidate.id(), candidate.similarity()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    private int greedyClosest(float[] query, int entry, int level) {
+        int current = entry;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float similarity = similarity(query, neighbors[i]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在一层内从 entry 出发做最佳优先搜索
+     *
+     * @return 最相似的至多 ef 个节点（堆顶为其中最不相似的）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        visited.set(entry);
+        Candidate start = new Candidate(entry, similarity(query, entry));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[] neighbors = links[closest.id()][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：候选与已选邻居的相似度高于与目标的相似度时跳过，使邻居分布在不同方向；
+     * 不足 limit 个时再按相似度补足
+     *
+     * @param sorted 按相似度降序
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> sorted, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        for (Candidate candidate : sorted) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (similarity(candidate.id(), chosen.id()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        for (Candidate candidate : sorted) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            if (!selected.contains(candidate)) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 反向连接 node -> added，邻居已满时重新选择
+     */
+    private void connect(int node, int added, int level) {
+        int[] neighbors = links[node][level];
+        int limit = neighbors.length - 1;
+        if (neighbors[0] < limit) {
+            append(neighbors, added);
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(limit + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Candidate(neighbors[i], similarity(node, neighbors[i])));
+        }
+        candidates.add(new Candidate(added, similarity(node, added)));
+        candidates.sort(BEST_FIRST);
+        List<Candidate> selected = selectNeighbors(candidates, limit);
+        neighbors[0] = 0;
+        for (Candidate candidate : selected) {
+            append(neighbors, candidate.id());
+        }
+    }
+
+    private static void append(int[] neighbors, int id) {
+        neighbors[++neighbors[0]] = id;
+    }
+
+    private static List<Candidate> descending(PriorityQueue<Candidate> heap) {
+        List<Candidate> sorted = new ArrayList<>(heap);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        return Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier));
+    }
+
+    private float similarity(float[] query, int id) {
+        int base = id * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors.get(base + i);
+        }
+        return sum;
+    }
+
+    private float similarity(int a, int b) {
+        int baseA = a * dimension;
+        int baseB = b * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors.get(baseA + i) * vectors.get(baseB + i);
+        }
+        return sum;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度应为 " + dimension + ": " + vector.length);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * @param score 余弦相似度
+     */
+    public record Hit(int id, float score) {
+    }
+
+    private record Candidate(int id, float similarity) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.deepknow.agentoz.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void recallAgainstExactSearchIsHigh() {
+        SplittableRandom random = new SplittableRandom(7);
+        HnswIndex index = new HnswIndex(DIMENSION, 2000, 16, 100, 42);
+        for (int i = 0; i < 2000; i++) {
+            index.add(randomVector(random));
+        }
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> exact = ids(index.exactSearch(query, 10));
+            for (HnswIndex.Hit hit : index.search(query, 10, 64)) {
+                if (exact.contains(hit.id())) {
+                    found++;
+                }
+            }
+            expected += exact.size();
+        }
+        assertThat(found / (double) expected).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void searchReturnsStoredVectorFirstWithCosineScore() {
+        SplittableRandom random = new SplittableRandom(11);
+        HnswIndex index = new HnswIndex(DIMENSION, 100, 8, 50, 42);
+        float[][] vectors = new float[100][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+            assertThat(index.add(vectors[i])).isEqualTo(i);
+        }
+
+        // 余弦相似度与向量长度无关
+        float[] scaled = vectors[37].clone();
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] *= 5;
+        }
+        List<HnswIndex.Hit> hits = index.search(scaled, 5, 32);
+
+        assertThat(hits).hasSize(5);
+        assertThat(hits.get(0).id()).isEqualTo(37);
+        assertThat(hits.get(0).score()).isCloseTo(1f, offset(1e-5f));
+        for (int i = 1; i < hits.size(); i++) {
+            assertThat(hits.get(i).score()).isLessThanOrEqualTo(hits.get(i - 1).score());
+        }
+    }
+
+    @Test
+    void graphRoundTripAndRestoreMatchOriginal() throws Exception {
+        SplittableRandom random = new SplittableRandom(13);
+        FloatBuffer storage = ByteBuffer.allocateDirect(300 * DIMENSION * Float.BYTES).asFloatBuffer();
+        HnswIndex original = new HnswIndex(storage, DIMENSION, 8, 50, 42);
+        for (int i = 0; i < 200; i++) {
+            original.add(randomVector(random));
+        }
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        original.writeGraph(new DataOutputStream(graph));
+        // 图写出之后又提交的向量，重新打开时逐条编入
+        for (int i = 0; i < 50; i++) {
+            original.add(randomVector(random));
+        }
+
+        HnswIndex reopened = new HnswIndex(storage, DIMENSION, 8, 50, 42);
+        assertThat(reopened.readGraph(new DataInputStream(new ByteArrayInputStream(graph.toByteArray())), 250))
+                .isTrue();
+        reopened.restore(250);
+        HnswIndex rebuilt = new HnswIndex(storage, DIMENSION, 8, 50, 42);
+        rebuilt.restore(250);
+
+        assertThat(reopened.size()).isEqualTo(250);
+        assertThat(rebuilt.size()).isEqualTo(250);
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<HnswIndex.Hit> exact = original.exactSearch(query, 1);
+            assertThat(reopened.search(query, 1, 100)).isEqualTo(exact);
+            assertThat(rebuilt.search(query, 1, 100)).isEqualTo(exact);
+        }
+    }
+
+    @Test
+    void readGraphRejectsGraphLargerThanCommittedVectors() throws Exception {
+        SplittableRandom random = new SplittableRandom(17);
+        FloatBuffer storage = ByteBuffer.allocateDirect(20 * DIMENSION * Float.BYTES).asFloatBuffer();
+        HnswIndex original = new HnswIndex(storage, DIMENSION, 4, 10, 42);
+        for (int i = 0; i < 10; i++) {
+            original.add(randomVector(random));
+        }
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        original.writeGraph(new DataOutputStream(graph));
+
+        HnswIndex reopened = new HnswIndex(storage, DIMENSION, 4, 10, 42);
+        assertThat(reopened.readGraph(new DataInputStream(new ByteArrayInputStream(graph.toByteArray())), 9))
+                .isFalse();
+        assertThat(reopened.size()).isZero();
+    }
+
+    @Test
+    void rejectsWrongDimensionAndOverflow() {
+        HnswIndex index = new HnswIndex(DIMENSION, 1, 4, 10, 42);
+        assertThatThrownBy(() -> index.add(new float[DIMENSION + 1])).isInstanceOf(IllegalArgumentException.class);
+        index.add(randomVector(new SplittableRandom(1)));
+        assertThatThrownBy(() -> index.add(randomVector(new SplittableRandom(2))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(new HnswIndex(DIMENSION, 1, 4, 10, 42).search(new float[DIMENSION], 3, 10)).isEmpty();
+    }
+
+    private static float[] randomVector(SplittableRandom random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) (random.nextDouble() * 2 - 1);
+        }
+        return vector;
+    }
+
+    private static Set<Integer> ids(List<HnswIndex.Hit> hits) {
+        Set<Integer> ids = new HashSet<>();
+        for (HnswIndex.Hit hit : hits) {
+            ids.add(hit.id());
+        }
+        return ids;
+    }
+}
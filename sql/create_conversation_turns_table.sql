@@ -0,0 +1,14 @@
+-- 创建会话历史表（每轮一行，替代 conversations.history_context 中不断增长的 JSON 数组）
+CREATE TABLE IF NOT EXISTS `conversation_turns` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键 ID，同一会话内按写入顺序递增',
+  `conversation_id` VARCHAR(64) NOT NULL COMMENT '会话 ID',
+  `turn_id` VARCHAR(64) NOT NULL COMMENT '轮次 ID，与会话 ID 一起保证重复写入幂等',
+  `agent_id` VARCHAR(64) NOT NULL COMMENT 'Agent ID',
+  `messages` JSON NOT NULL COMMENT '本轮新增的消息（Msg 数组）',
+  `message_count` INT NOT NULL COMMENT '本轮新增的消息数',
+  `summarized` TINYINT NOT NULL DEFAULT 0 COMMENT '是否已计入 conversations 的汇总字段',
+  `completed_at` DATETIME(3) NOT NULL COMMENT '轮次完成时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_conversation_turn` (`conversation_id`, `turn_id`),
+  KEY `idx_conversation_agent` (`conversation_id`, `agent_id`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='会话历史表（每轮一行）';
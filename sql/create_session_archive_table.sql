@@ -0,0 +1,10 @@
+-- 创建 Session 冷存储表（空闲 Session 从 Redis 降级后的压缩快照）
+CREATE TABLE IF NOT EXISTS `session_archive` (
+  `session_id` VARCHAR(191) NOT NULL COMMENT 'Session ID（agentId:conversationId）',
+  `payload` LONGBLOB NOT NULL COMMENT 'gzip 压缩的 Session 快照',
+  `raw_size` INT NOT NULL COMMENT '压缩前字节数',
+  `compressed_size` INT NOT NULL COMMENT '压缩后字节数',
+  `archived_at` DATETIME NOT NULL COMMENT '降级时间',
+  PRIMARY KEY (`session_id`),
+  KEY `idx_archived_at` (`archived_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Session 冷存储表';
@@ -0,0 +1,14 @@
+-- 创建 Token 用量日汇总表
+CREATE TABLE IF NOT EXISTS `token_usage_daily` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键 ID',
+  `agent_id` VARCHAR(64) NOT NULL COMMENT 'Agent ID',
+  `usage_date` DATE NOT NULL COMMENT '日期',
+  `input_tokens` BIGINT NOT NULL DEFAULT 0 COMMENT '输入（prompt）Token 数',
+  `output_tokens` BIGINT NOT NULL DEFAULT 0 COMMENT '输出（completion）Token 数',
+  `calls` BIGINT NOT NULL DEFAULT 0 COMMENT '模型调用次数',
+  `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_agent_date` (`agent_id`, `usage_date`),
+  KEY `idx_usage_date` (`usage_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Token 用量日汇总表';